@@ -6,6 +6,7 @@
 
 package com.hp.hpl.jena.graph;
 
+import com.hp.hpl.jena.JenaRuntime;
 import com.hp.hpl.jena.datatypes.DatatypeFormatException;
 import com.hp.hpl.jena.datatypes.RDFDatatype;
 import com.hp.hpl.jena.datatypes.TypeMapper;
@@ -27,9 +28,20 @@ import com.hp.hpl.jena.shared.PrefixMapping;
 public abstract class Node {
     
     final protected Object label;
-    static final int THRESHOLD = 10000;
     
-    static final NodeCache present = new NodeCache(); 
+    static final NodeCache present = new NodeCache( cacheSize() ); 
+    
+    /**
+        Answer the node cache size given by the system property 
+        <code>jena.nodecache.size</code>, or the default size if it is not
+        set or is not a number.
+    */
+    private static int cacheSize()
+        {
+        String size = JenaRuntime.getSystemProperty( "jena.nodecache.size", "" + NodeCache.DEFAULT_SIZE );
+        try { return Integer.parseInt( size.trim() ); }
+        catch (NumberFormatException e) { return NodeCache.DEFAULT_SIZE; }
+        }
     
     /**
         The canonical instance of Node_ANY. No other instances are required.
@@ -259,7 +271,7 @@ public abstract class Node {
     /* package visibility only */ Node( Object label ) 
         { this.label = label; }
         
-    static private boolean caching = true;
+    static private volatile boolean caching = true;
     
     /**
         provided only for testing purposes. _cache(false)_ switches off caching and
@@ -271,15 +283,22 @@ public abstract class Node {
         if (wantCache == false) present.clear();
         caching = wantCache;
         }
+    
+    /**
+        Answer the cache used by create, eg to read its hit, miss and eviction
+        counts. Its size is set by the system property <code>jena.nodecache.size</code>.
+    */
+    public static NodeCache getCache()
+        { return present; }
         
     /**
         We object strongly to null labels: for example, they make .equals flaky. We reuse nodes 
         from the recent cache if we can. Otherwise, the maker knows how to construct a new
-        node of the correct class, and we add that node to the cache. create is
-        synchronised to avoid threading problems - a separate thread might zap the
-        cache entry that get is currently looking at.
+        node of the correct class, and we add that node to the cache. create is not
+        synchronised; the cache is safe for concurrent use and at worst two threads
+        creating the same node at once get distinct but equal nodes.
     */
-    public static synchronized Node create( NodeMaker maker, Object label )
+    public static Node create( NodeMaker maker, Object label )
         {
         if (label == null) throw new JenaException( "Node.make: null label" );
         Node node = present.get( label );
@@ -292,7 +311,6 @@ public abstract class Node {
     */
     private static Node cacheNewNode( Object label, Node n )
         { 
-        if (present.size() > THRESHOLD) { /* System.err.println( "> trashing node cache" ); */ present.clear(); }
         if (caching) present.put( label, n );
         return n;
         }
@@ -6,69 +6,173 @@
 
 package com.hp.hpl.jena.graph;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /**
     A NodeCache caches nodes according to their labels, to reduce store turnover
-    at the expense of some additional computation. The cache is represented as an
-    array indexed by the reduced hashcode of the labels of the nodes it contains.
-    Only the most recent node with any given reduced hash is kept. This tactic
-    means that we don't need to have any explicit cache-clearing code in normal
-    oepration.
+    at the expense of some additional computation. It is safe for concurrent use
+    and takes no locks: lookups are plain volatile reads and insertions replace
+    slots in place, so parser and query threads creating nodes at the same time
+    do not serialise on a shared monitor.
+<p>
+    The cache is split into shards, selected by the high bits of the label's hash,
+    so that the hit/miss/eviction counters of different shards do not contend.
+    Each shard is a set-associative table: a label maps to a bucket of
+    <code>WAYS</code> slots and may live in any of them. When a bucket is full a 
+    victim is chosen by the CLOCK policy, sweeping a per-bucket hand over the 
+    slots and passing over (and clearing the reference bit of) any node that has 
+    been used since the hand last went by. So frequently used nodes such as 
+    rdf:type stay resident while one-off labels that share their bucket cycle 
+    through the other slots, rather than each colliding label evicting the last 
+    as in a direct-mapped cache.
+<p>
+    Caching is best-effort: two threads missing on the same label at once may
+    each construct a node and one will replace the other in the cache. That is
+    harmless since nodes with equal labels are equal.
      
 	@author kers
  */
 public class NodeCache
     {
     /**
-        The defined size of the cache; 5000 is mostly guesswork. (It didn't *quite*
-        fill up when running the tests and had about an 85% hit-rate).
+        The default capacity of the cache, used unless the system property
+        <code>jena.nodecache.size</code> says otherwise.
+    */
+    public static final int DEFAULT_SIZE = 16384;
+    
+    /**
+        The number of slots in a bucket, ie the associativity of the cache.
+    */
+    protected static final int WAYS = 8;
+    
+    protected final Shard [] shards;
+    
+    protected final int shardShift;
+    
+    /**
+        Initialise a cache of the default size.
     */
-    protected static final int SIZE = 5000;
+    public NodeCache()
+        { this( DEFAULT_SIZE ); }
+    
+    /**
+        Initialise a cache of roughly <code>capacity</code> nodes (rounded up
+        to a power of two), sharded according to the number of processors.
+    */
+    public NodeCache( int capacity )
+        { this( capacity, 4 * Runtime.getRuntime().availableProcessors() ); }
+    
+    /**
+        Initialise a cache of roughly <code>capacity</code> nodes split into about
+        <code>nShards</code> shards. Both are rounded up to powers of two, and the
+        number of shards is limited so that each has at least one bucket.
+    */
+    public NodeCache( int capacity, int nShards )
+        {
+        int buckets = powerOfTwo( Math.max( 1, capacity / WAYS ) );
+        int n = Math.min( powerOfTwo( Math.max( 1, nShards ) ), buckets );
+        shards = new Shard[n];
+        for (int i = 0; i < n; i += 1) shards[i] = new Shard( buckets / n );
+        shardShift = 32 - Integer.numberOfTrailingZeros( n );
+        }
+    
+    private static int powerOfTwo( int n )
+        {
+        int result = 1;
+        while (result < n && result < (1 << 30)) result <<= 1;
+        return result;
+        }
     
     /**
-        The cache nodes, indexed by their label's reduced hash.
+        Scramble the label's hash so that both the high bits (used to pick the
+        shard) and the low bits (used to pick the bucket) depend on all of it.
     */
-    protected final Node [] nodes = new Node [SIZE];
+    private static int spread( Object label )
+        {
+        int h = label.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+        }
     
-    protected static final boolean counting = false;
+    private Shard shardFor( int h )
+        { return shardShift == 32 ? shards[0] : shards[h >>> shardShift]; }
     
     /**
-        Wipe the cache of all entries.
+        Wipe the cache of all entries. The counters are not reset.
     */
     public void clear()
-        { for (int i = 0; i < SIZE; i += 1) nodes[i] = null; }
+        { for (int i = 0; i < shards.length; i += 1) shards[i].clear(); }
     
+    /**
+        Answer the number of nodes the cache can hold.
+    */
+    public int capacity()
+        { return shards.length * shards[0].slots.length(); }
+    
+    /**
+        Answer the number of used slots in the cache. This walks the whole cache
+        so is intended for statistics only.
+    */
     public int size()
-        { return 0; }
+        {
+        int result = 0;
+        for (int i = 0; i < shards.length; i += 1) result += shards[i].count();
+        return result;
+        }
     
-    private int hits = 0;
-    private int misses = 0;
+    /**
+        Answer the number of lookups which found their node.
+    */
+    public long getHits()
+        {
+        long result = 0;
+        for (int i = 0; i < shards.length; i += 1) result += shards[i].hits.get();
+        return result;
+        }
     
     /**
-        Answer the number of used slots in the cache
+        Answer the number of lookups which did not find their node.
     */
-    private int count()
+    public long getMisses()
         {
-        int result = 0;
-        for (int i = 0; i < SIZE; i += 1) if (nodes[i] != null) result += 1;
+        long result = 0;
+        for (int i = 0; i < shards.length; i += 1) result += shards[i].misses.get();
         return result;
         }
     
     /**
-        Answer the node with the given <code>label</code> in the cache, or 
-        <code>null</code> if there isn't one. Selects the slot in the cache by the
-        reduced hash of the label, and confirms that the Node is the right one using
-        .equals() on this label and that node's label.
+        Answer the number of nodes which have been displaced from the cache to
+        make room for another.
     */
-    public Node get( Object label )
+    public long getEvictions()
+        {
+        long result = 0;
+        for (int i = 0; i < shards.length; i += 1) result += shards[i].evictions.get();
+        return result;
+        }
+    
+    /**
+        Reset the hit, miss and eviction counters to zero.
+    */
+    public void resetCounts()
         {
-        Node present = nodes[(label.hashCode() & 0x7fffffff) % SIZE]; 
-        if (counting)
+        for (int i = 0; i < shards.length; i += 1) 
             {
-            if (present == null || !label.equals( present.label )) misses += 1; else hits += 1;
-            if ((misses + hits) % 100 == 0) 
-                System.err.println( ">> hits: " + hits + ", misses: " + misses + ", occ: " + count() + "/" + SIZE );
+            Shard s = shards[i];
+            s.hits.set( 0 ); s.misses.set( 0 ); s.evictions.set( 0 );
             }
-        return present == null || !label.equals( present.label ) ? null : present;
+        }
+    
+    /**
+        Answer the node with the given <code>label</code> in the cache, or 
+        <code>null</code> if there isn't one. Selects the bucket by the hash of 
+        the label, and confirms that a Node is the right one using .equals() on 
+        this label and that node's label.
+    */
+    public Node get( Object label )
+        {
+        int h = spread( label );
+        return shardFor( h ).get( label, h );
         }
     
     /**
@@ -77,7 +181,98 @@ public class NodeCache
     */
     public void put( Object label, Node cached )
         {
-        nodes[(label.hashCode() & 0x7fffffff) % SIZE] = cached;
+        int h = spread( label );
+        shardFor( h ).put( cached, h );
+        }
+    
+    @Override public String toString()
+        {
+        return "NodeCache(hits: " + getHits() + ", misses: " + getMisses() 
+            + ", evictions: " + getEvictions() + ", occ: " + size() + "/" + capacity() + ")";
+        }
+    
+    /**
+        One shard of the cache: a table of buckets of <code>WAYS</code> slots
+        with their CLOCK reference bits and hands. The reference bits and hands
+        are updated without synchronisation; a lost update only makes the choice
+        of victim slightly less accurate.
+    */
+    protected static class Shard
+        {
+        protected final AtomicReferenceArray<Node> slots;
+        protected final byte [] referenced;
+        protected final byte [] hands;
+        protected final int mask;
+        
+        protected final AtomicLong hits = new AtomicLong();
+        protected final AtomicLong misses = new AtomicLong();
+        protected final AtomicLong evictions = new AtomicLong();
+        
+        Shard( int buckets )
+            {
+            slots = new AtomicReferenceArray<Node>( buckets * WAYS );
+            referenced = new byte[buckets * WAYS];
+            hands = new byte[buckets];
+            mask = buckets - 1;
+            }
+        
+        Node get( Object label, int h )
+            {
+            int base = (h & mask) * WAYS;
+            for (int i = base; i < base + WAYS; i += 1)
+                {
+                Node present = slots.get( i );
+                if (present == null) break;
+                if (label.equals( present.label ))
+                    {
+                    if (referenced[i] == 0) referenced[i] = 1;
+                    hits.incrementAndGet();
+                    return present;
+                    }
+                }
+            misses.incrementAndGet();
+            return null;
+            }
+        
+        /**
+            Add the node to its bucket: take the first empty slot if there is one,
+            otherwise sweep the hand until it reaches an unreferenced slot. The
+            sweep ends within two turns of the bucket since it clears the bits
+            it passes.
+        */
+        void put( Node n, int h )
+            {
+            int bucket = h & mask;
+            int base = bucket * WAYS;
+            for (int i = base; i < base + WAYS; i += 1)
+                if (slots.get( i ) == null && slots.compareAndSet( i, null, n )) return;
+            int hand = hands[bucket];
+            for (int k = 0; k < 2 * WAYS; k += 1)
+                {
+                int i = base + hand;
+                hand = (hand + 1) & (WAYS - 1);
+                if (referenced[i] == 0) break;
+                referenced[i] = 0;
+                }
+            int victim = base + ((hand - 1) & (WAYS - 1));
+            hands[bucket] = (byte) hand;
+            referenced[victim] = 0;
+            slots.set( victim, n );
+            evictions.incrementAndGet();
+            }
+        
+        void clear()
+            {
+            for (int i = 0; i < referenced.length; i += 1) 
+                { slots.set( i, null ); referenced[i] = 0; }
+            }
+        
+        int count()
+            {
+            int result = 0;
+            for (int i = 0; i < referenced.length; i += 1) if (slots.get( i ) != null) result += 1;
+            return result;
+            }
         }
     }
 
@@ -0,0 +1,59 @@
+/*
+ 	(c) Copyright 2009 Hewlett-Packard Development Company, LP
+ 	All rights reserved.
+*/
+
+package com.hp.hpl.jena.graph;
+
+/**
+    A PredicateStatisticsHandler is a GraphStatisticsHandler that also knows,
+    for each predicate, how many distinct subjects and objects its triples
+    have. These let an optimiser estimate how many triples a pattern matches
+    once one of its variables has been bound by an earlier pattern.
+    
+ 	@author hedgehog
+*/
+public interface PredicateStatisticsHandler extends GraphStatisticsHandler
+    {
+    /**
+        Answer an estimate of the number of distinct subjects of the triples
+        with predicate <code>P</code>, or of all the triples in the graph if
+        <code>P</code> is not concrete; answer -1 if no estimate is available.
+    */
+    public long getDistinctSubjects( Node P );
+    
+    /**
+        Answer an estimate of the number of distinct objects of the triples
+        with predicate <code>P</code>, or of all the triples in the graph if
+        <code>P</code> is not concrete; answer -1 if no estimate is available.
+    */
+    public long getDistinctObjects( Node P );
+    }
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -51,7 +51,8 @@ public class FileGraph extends GraphMemFaster
     
     /**
         The language used to read and write the graph, guessed from the filename's
-        suffix.
+        suffix. FileUtils.langBinary (suffix ".rdfb") keeps the graph as a binary
+        snapshot, which loads without parsing.
     */
     public final String lang;
     
@@ -141,11 +142,18 @@ public class FileGraph extends GraphMemFaster
     @Override
     public void close()
         {
-        saveContents( name );
+        saveOnClose();
         super.close();
         if (count == 0) notify.notifyClosed( name );
         }
     
+    /**
+        Make the contents of this graph persistent as it is closed (by any of
+        its openers); here, by writing them all out to the file.
+    */
+    protected void saveOnClose()
+        { saveContents( name ); }
+    
     /**
        Delete the backing file. Primarily intended for test cleanup.
     */
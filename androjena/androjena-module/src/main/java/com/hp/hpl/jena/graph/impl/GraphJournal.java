@@ -0,0 +1,371 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.graph.impl;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.shared.JenaException;
+
+/**
+    An append-only write-ahead log of changes to a graph: triples added and
+    deleted, graphs cleared, and the begin, commit and abort of transactions.
+    Records are buffered and written to the file in groups; they are forced
+    to the disk by <code>sync()</code>, which is called by <code>commit</code>
+    and whenever <code>groupSize</code> records have been logged since the
+    last sync, so a run of updates shares one fsync.
+<p>
+    Each record is its length, a CRC32 of its body and the body: an operation
+    byte and, for adds and deletes, the three nodes. A torn or damaged record
+    ends the log; <code>replay</code> drops it, and anything after it, from 
+    the file. Replaying a log is idempotent (for each triple, the last change
+    wins), so a log may be replayed over a snapshot that already includes 
+    some or all of it.
+
+    @author hedgehog
+*/
+public class GraphJournal
+    {
+    /**
+        What a journal is replayed into.
+    */
+    public interface Target
+        {
+        void add( Triple t );
+        void delete( Triple t );
+        void clear();
+        }
+    
+    public static final int DEFAULT_GROUP_SIZE = 1000;
+    
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private static final byte ADD = 1, DELETE = 2, CLEAR = 3, BEGIN = 4, COMMIT = 5, ABORT = 6;
+
+    private static final int URI = 1, BLANK = 2, PLAIN = 3, LANG = 4, TYPED = 5;
+    
+    protected final File file;
+    protected final RandomAccessFile raf;
+    protected final FileChannel channel;
+    
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream( 256 );
+    private final DataOutputStream bodyOut = new DataOutputStream( body );
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream( BUFFER_SIZE );
+    private final DataOutputStream pendingOut = new DataOutputStream( pending );
+    private final CRC32 crc = new CRC32();
+    
+    private int groupSize = DEFAULT_GROUP_SIZE;
+    private int unsynced = 0;
+    private long syncs = 0;
+    
+    /**
+        Open the journal in <code>file</code>, creating it if necessary. Call
+        <code>replay</code> (or <code>reset</code>) before logging anything.
+    */
+    public GraphJournal( File file )
+        {
+        try
+            {
+            this.file = file;
+            this.raf = new RandomAccessFile( file, "rw" );
+            this.channel = raf.getChannel();
+            }
+        catch (IOException e)
+            { throw new JenaException( e ); }
+        }
+    
+    /**
+        Set the number of records logged between syncs; answer the old value.
+    */
+    public int setGroupSize( int groupSize )
+        {
+        int old = this.groupSize;
+        this.groupSize = groupSize;
+        return old;
+        }
+    
+    /**
+        Answer the length of the journal, including records not yet written.
+    */
+    public long length()
+        {
+        try { return channel.size() + pending.size(); }
+        catch (IOException e) { throw new JenaException( e ); }
+        }
+    
+    /**
+        Answer the number of times the journal has been forced to the disk.
+    */
+    public long getSyncCount()
+        { return syncs; }
+    
+    public void add( Triple t )
+        { log( ADD, t ); }
+    
+    public void delete( Triple t )
+        { log( DELETE, t ); }
+    
+    public void clear()
+        { log( CLEAR, null ); }
+    
+    public void begin()
+        { log( BEGIN, null ); }
+    
+    /**
+        Log the commit of the current transaction and sync, so that the 
+        transaction is durable when this returns.
+    */
+    public void commit()
+        { log( COMMIT, null ); sync(); }
+    
+    public void abort()
+        { log( ABORT, null ); }
+    
+    /**
+        Force everything logged so far to the disk.
+    */
+    public void sync()
+        {
+        try
+            {
+            writePending();
+            channel.force( false );
+            syncs += 1;
+            unsynced = 0;
+            }
+        catch (IOException e)
+            { throw new JenaException( e ); }
+        }
+    
+    /**
+        Empty the journal, eg after its contents have been written into a 
+        snapshot.
+    */
+    public void reset()
+        {
+        try
+            {
+            pending.reset();
+            channel.truncate( 0 );
+            channel.position( 0 );
+            channel.force( true );
+            unsynced = 0;
+            }
+        catch (IOException e)
+            { throw new JenaException( e ); }
+        }
+    
+    public void close()
+        {
+        sync();
+        try { raf.close(); }
+        catch (IOException e) { throw new JenaException( e ); }
+        }
+    
+    /**
+        Replay the committed changes in the journal into <code>target</code>:
+        changes outside a transaction are applied as they are read, those of a 
+        transaction when its commit is read. Anything after the last complete,
+        undamaged, record is removed from the file, as is a transaction left
+        unfinished at its end (so that later records do not land inside it),
+        and the journal is left positioned at its end. Answer the number of
+        records read.
+    */
+    public long replay( Target target )
+        {
+        try
+            {
+            long size = channel.size(), position = 0, records = 0, begun = -1;
+            List<Object> transaction = null;
+            DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE ) );
+            try
+                {
+                byte [] bytes = new byte[256];
+                while (position + 8 <= size)
+                    {
+                    int length = in.readInt();
+                    long checksum = in.readInt() & 0xFFFFFFFFL;
+                    if (length <= 0 || position + 8 + length > size) break;
+                    if (bytes.length < length) bytes = new byte[Math.max( length, 2 * bytes.length )];
+                    in.readFully( bytes, 0, length );
+                    crc.reset();
+                    crc.update( bytes, 0, length );
+                    if (crc.getValue() != checksum) break;
+                    long start = position;
+                    position += 8 + length;
+                    records += 1;
+                    DataInputStream r = new DataInputStream( new ByteArrayInputStream( bytes, 0, length ) );
+                    byte op = r.readByte();
+                    switch (op)
+                        {
+                        case BEGIN: 
+                            transaction = new ArrayList<Object>(); 
+                            begun = start;
+                            break;
+                        case ABORT: 
+                            transaction = null; 
+                            break;
+                        case COMMIT:
+                            if (transaction != null) for (Object change: transaction) apply( target, change );
+                            transaction = null;
+                            break;
+                        case CLEAR:
+                            if (transaction == null) target.clear(); else transaction.add( Boolean.TRUE );
+                            break;
+                        case ADD: case DELETE:
+                            Triple t = new Triple( readNode( r ), readNode( r ), readNode( r ) );
+                            Object change = op == ADD ? (Object) t : new Object[] { t };
+                            if (transaction == null) apply( target, change ); else transaction.add( change );
+                            break;
+                        default:
+                            throw new JenaException( "bad operation " + op + " in journal " + file );
+                        }
+                    }
+                }
+            finally
+                { in.close(); }
+            if (transaction != null) position = begun;
+            if (position < size) channel.truncate( position );
+            channel.position( position );
+            return records;
+            }
+        catch (IOException e)
+            { throw new JenaException( e ); }
+        }
+    
+    /**
+        Apply a change held for a transaction: a Triple is an add, a Triple
+        wrapped in an array is a delete, and TRUE is a clear.
+    */
+    private static void apply( Target target, Object change )
+        {
+        if (change instanceof Triple) target.add( (Triple) change );
+        else if (change instanceof Object[]) target.delete( (Triple) ((Object []) change)[0] );
+        else target.clear();
+        }
+    
+    private void log( byte op, Triple t )
+        {
+        try
+            {
+            body.reset();
+            bodyOut.writeByte( op );
+            if (t != null)
+                {
+                writeNode( bodyOut, t.getSubject() );
+                writeNode( bodyOut, t.getPredicate() );
+                writeNode( bodyOut, t.getObject() );
+                }
+            crc.reset();
+            crc.update( body.toByteArray() );
+            pendingOut.writeInt( body.size() );
+            pendingOut.writeInt( (int) crc.getValue() );
+            body.writeTo( pendingOut );
+            if (pending.size() >= BUFFER_SIZE) writePending();
+            if (++unsynced >= groupSize) sync();
+            }
+        catch (IOException e)
+            { throw new JenaException( e ); }
+        }
+    
+    private void writePending() throws IOException
+        {
+        if (pending.size() == 0) return;
+        ByteBuffer b = ByteBuffer.wrap( pending.toByteArray() );
+        while (b.hasRemaining()) channel.write( b );
+        pending.reset();
+        }
+    
+    private static void writeNode( DataOutputStream out, Node n ) throws IOException
+        {
+        if (n.isURI())
+            { out.writeByte( URI ); writeString( out, n.getURI() ); }
+        else if (n.isBlank())
+            { out.writeByte( BLANK ); writeString( out, n.getBlankNodeLabel() ); }
+        else if (n.isLiteral())
+            {
+            LiteralLabel l = n.getLiteral();
+            String type = l.getDatatypeURI(), lang = l.language();
+            if (type != null)
+                { out.writeByte( TYPED ); writeString( out, l.getLexicalForm() ); writeString( out, type ); }
+            else if (lang != null && lang.length() > 0)
+                { out.writeByte( LANG ); writeString( out, l.getLexicalForm() ); writeString( out, lang ); }
+            else
+                { out.writeByte( PLAIN ); writeString( out, l.getLexicalForm() ); }
+            }
+        else
+            throw new JenaException( "cannot journal the node " + n );
+        }
+    
+    private static Node readNode( DataInputStream in ) throws IOException
+        {
+        byte kind = in.readByte();
+        switch (kind)
+            {
+            case URI: return Node.createURI( readString( in ) );
+            case BLANK: return Node.createAnon( new AnonId( readString( in ) ) );
+            case PLAIN: return Node.createLiteral( readString( in ), "", false );
+            case LANG: 
+                String lex = readString( in );
+                return Node.createLiteral( lex, readString( in ), false );
+            case TYPED:
+                String lexical = readString( in );
+                return Node.createLiteral( lexical, "", TypeMapper.getInstance().getSafeTypeByName( readString( in ) ) );
+            default:
+                throw new JenaException( "bad node kind " + kind + " in journal" );
+            }
+        }
+    
+    private static void writeString( DataOutputStream out, String s ) throws IOException
+        {
+        byte [] bytes = s.getBytes( "UTF-8" );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+        }
+    
+    private static String readString( DataInputStream in ) throws IOException
+        {
+        byte [] bytes = new byte[in.readInt()];
+        in.readFully( bytes );
+        return new String( bytes, "UTF-8" );
+        }
+    }
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,418 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.graph.impl;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.shared.JenaException;
+import com.hp.hpl.jena.shared.PrefixMapping;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+    A compact binary snapshot format for the triples and prefixes of a graph,
+    which can be loaded without any text parsing: the reader works straight 
+    off a (possibly memory-mapped) ByteBuffer.
+<p>
+    A snapshot is a header, the prefix mappings, a dictionary of the nodes
+    and then the triples as node ids in blocks:
+<pre>
+    header:     "JRBF" version(byte) #prefixes #nodes #triples
+    prefixes:   (prefix uri)*
+    nodes:      (kind payload)*, the id of a node being its position
+    triples:    (#triples #bytes triple*)* 0
+</pre>
+    Numbers are unsigned varints (7 bits a byte, low bits first) and strings
+    are a varint byte count and the UTF-8 bytes. A URI node is front-coded
+    against the previous URI node: the number of leading characters they
+    share and the rest of the URI. A typed literal refers to the URI node of 
+    its datatype, which always comes earlier. Blank nodes keep their ids, 
+    so a snapshot reloads as the very same graph.
+<p>
+    Within a block each triple is coded against the one before: the zig-zag
+    difference of the subject ids; then, if the subject is the same, the 
+    zig-zag difference of the predicate ids, otherwise the predicate id; 
+    then, likewise, the object against the previous object if the subject 
+    and predicate are the same. Graphs that list their triples grouped by 
+    subject (as the memory graphs do) thus cost a few bytes a triple. Each
+    block starts afresh and has its length in bytes, so a block can be 
+    skipped or decoded on its own.
+    
+    @author hedgehog
+*/
+public class GraphSnapshot
+    {
+    public static final int VERSION = 1;
+    
+    /** Triples per block, which is also the size of the batches added to the graph */
+    public static final int BLOCK_SIZE = 1024;
+    
+    private static final byte [] MAGIC = { 'J', 'R', 'B', 'F' };
+    
+    private static final int URI = 1, BLANK = 2, PLAIN = 3, LANG = 4, TYPED = 5;
+
+    private GraphSnapshot()
+        {}
+    
+    /**
+        Write a snapshot of <code>g</code> (its triples, as delivered by
+        <code>find</code>, and its prefixes) to <code>out</code>, which is
+        flushed but not closed.
+    */
+    public static void write( Graph g, OutputStream out ) throws IOException
+        {
+        Map<Node, Integer> ids = new HashMap<Node, Integer>();
+        List<Node> nodes = new ArrayList<Node>();
+        int [] triples = new int[3 * 1024];
+        int n = 0;
+        ExtendedIterator<Triple> it = g.find( Node.ANY, Node.ANY, Node.ANY );
+        try
+            {
+            while (it.hasNext())
+                {
+                Triple t = it.next();
+                if (3 * n + 3 > triples.length) 
+                    triples = grow( triples );
+                triples[3 * n] = idFor( t.getSubject(), ids, nodes );
+                triples[3 * n + 1] = idFor( t.getPredicate(), ids, nodes );
+                triples[3 * n + 2] = idFor( t.getObject(), ids, nodes );
+                n += 1;
+                }
+            }
+        finally
+            { it.close(); }
+        Map<String, String> prefixes = g.getPrefixMapping().getNsPrefixMap();
+        Encoder e = new Encoder( new BufferedOutputStream( out, 1 << 16 ) );
+        e.out.write( MAGIC );
+        e.out.write( VERSION );
+        e.writeNumber( prefixes.size() );
+        e.writeNumber( nodes.size() );
+        e.writeNumber( n );
+        for (Map.Entry<String, String> p: prefixes.entrySet())
+            { e.writeString( p.getKey() ); e.writeString( p.getValue() ); }
+        String previousURI = "";
+        for (Node node: nodes)
+            {
+            if (node.isURI())
+                {
+                String uri = node.getURI();
+                int shared = sharedPrefix( previousURI, uri );
+                e.out.write( URI );
+                e.writeNumber( shared );
+                e.writeString( uri.substring( shared ) );
+                previousURI = uri;
+                }
+            else if (node.isBlank())
+                {
+                e.out.write( BLANK );
+                e.writeString( node.getBlankNodeLabel() );
+                }
+            else
+                {
+                LiteralLabel l = node.getLiteral();
+                String type = l.getDatatypeURI();
+                String lang = l.language();
+                if (type != null)
+                    {
+                    e.out.write( TYPED );
+                    e.writeString( l.getLexicalForm() );
+                    e.writeNumber( ids.get( Node.createURI( type ) ).intValue() );
+                    }
+                else if (lang != null && lang.length() > 0)
+                    {
+                    e.out.write( LANG );
+                    e.writeString( l.getLexicalForm() );
+                    e.writeString( lang );
+                    }
+                else
+                    {
+                    e.out.write( PLAIN );
+                    e.writeString( l.getLexicalForm() );
+                    }
+                }
+            }
+        ByteArrayOutputStream block = new ByteArrayOutputStream( 8 * BLOCK_SIZE );
+        Encoder b = new Encoder( block );
+        for (int start = 0; start < n; start += BLOCK_SIZE)
+            {
+            int end = Math.min( n, start + BLOCK_SIZE );
+            int s = 0, p = 0, o = 0;
+            block.reset();
+            for (int i = start; i < end; i += 1)
+                {
+                int S = triples[3 * i], P = triples[3 * i + 1], O = triples[3 * i + 2];
+                b.writeNumber( zigzag( S - s ) );
+                if (S == s) b.writeNumber( zigzag( P - p ) ); else b.writeNumber( P );
+                if (S == s && P == p) b.writeNumber( zigzag( O - o ) ); else b.writeNumber( O );
+                s = S; p = P; o = O;
+                }
+            e.writeNumber( end - start );
+            e.writeNumber( block.size() );
+            block.writeTo( e.out );
+            }
+        e.writeNumber( 0 );
+        e.out.flush();
+        }
+    
+    /**
+        Write a snapshot of <code>g</code> to the file <code>f</code>.
+    */
+    public static void write( Graph g, File f ) throws IOException
+        {
+        OutputStream out = new FileOutputStream( f );
+        try { write( g, out ); }
+        finally { out.close(); }
+        }
+    
+    /**
+        Read a snapshot from <code>in</code> into <code>g</code>, adding the
+        triples in batches through its bulk update handler. The rest of a 
+        FileInputStream is memory-mapped; other streams are read into memory.
+        Answer the number of triples read.
+    */
+    public static long read( Graph g, InputStream in ) throws IOException
+        {
+        if (in instanceof FileInputStream)
+            {
+            FileChannel c = ((FileInputStream) in).getChannel();
+            long start = c.position();
+            return read( g, c.map( FileChannel.MapMode.READ_ONLY, start, c.size() - start ) );
+            }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte [] buffer = new byte[1 << 16];
+        for (int n; (n = in.read( buffer )) >= 0;) bytes.write( buffer, 0, n );
+        return read( g, ByteBuffer.wrap( bytes.toByteArray() ) );
+        }
+    
+    /**
+        Read the snapshot in the file <code>f</code> into <code>g</code>,
+        memory-mapping the file. Answer the number of triples read.
+    */
+    public static long read( Graph g, File f ) throws IOException
+        {
+        FileInputStream in = new FileInputStream( f );
+        try { return read( g, in ); }
+        finally { in.close(); }
+        }
+    
+    /**
+        Read the snapshot in <code>buffer</code>, from its position, into 
+        <code>g</code>. Answer the number of triples read.
+    */
+    public static long read( Graph g, ByteBuffer buffer )
+        {
+        try
+            { return new Decoder( buffer ).readInto( g ); }
+        catch (BufferUnderflowException e)
+            { throw new JenaException( "binary RDF snapshot is truncated" ); }
+        }
+    
+    private static int idFor( Node n, Map<Node, Integer> ids, List<Node> nodes )
+        {
+        Integer id = ids.get( n );
+        if (id == null)
+            {
+            if (n.isLiteral() && n.getLiteralDatatypeURI() != null)
+                idFor( Node.createURI( n.getLiteralDatatypeURI() ), ids, nodes );
+            id = Integer.valueOf( nodes.size() );
+            ids.put( n, id );
+            nodes.add( n );
+            }
+        return id.intValue();
+        }
+    
+    private static int [] grow( int [] a )
+        {
+        int [] bigger = new int[a.length * 2];
+        System.arraycopy( a, 0, bigger, 0, a.length );
+        return bigger;
+        }
+    
+    private static int sharedPrefix( String a, String b )
+        {
+        int limit = Math.min( a.length(), b.length() ), i = 0;
+        while (i < limit && a.charAt( i ) == b.charAt( i )) i += 1;
+        return i;
+        }
+    
+    private static long zigzag( long n )
+        { return (n << 1) ^ (n >> 63); }
+    
+    private static long unzigzag( long n )
+        { return (n >>> 1) ^ -(n & 1); }
+    
+    /**
+        Writes the varints and strings of a snapshot.
+    */
+    private static class Encoder
+        {
+        final OutputStream out;
+        
+        Encoder( OutputStream out )
+            { this.out = out; }
+        
+        void writeNumber( long n ) throws IOException
+            {
+            while ((n & ~0x7FL) != 0)
+                {
+                out.write( (int) ((n & 0x7F) | 0x80) );
+                n >>>= 7;
+                }
+            out.write( (int) n );
+            }
+        
+        void writeString( String s ) throws IOException
+            {
+            byte [] bytes = s.getBytes( "UTF-8" );
+            writeNumber( bytes.length );
+            out.write( bytes );
+            }
+        }
+    
+    /**
+        Reads a snapshot from a ByteBuffer.
+    */
+    private static class Decoder
+        {
+        final ByteBuffer in;
+        byte [] scratch = new byte[256];
+        
+        Decoder( ByteBuffer in )
+            { this.in = in; }
+        
+        long readInto( Graph g )
+            {
+            for (int i = 0; i < MAGIC.length; i += 1)
+                if (in.get() != MAGIC[i]) throw new JenaException( "not a binary RDF snapshot" );
+            int version = in.get();
+            if (version != VERSION) throw new JenaException( "unsupported binary RDF snapshot version " + version );
+            int prefixCount = readInt();
+            Node [] nodes = new Node[readInt()];
+            long tripleCount = readNumber();
+            PrefixMapping pm = g.getPrefixMapping();
+            for (int i = 0; i < prefixCount; i += 1)
+                {
+                String prefix = readString();
+                pm.setNsPrefix( prefix, readString() );
+                }
+            Map<Node, RDFDatatype> types = new HashMap<Node, RDFDatatype>();
+            String previousURI = "";
+            for (int i = 0; i < nodes.length; i += 1)
+                {
+                int kind = in.get();
+                switch (kind)
+                    {
+                    case URI:
+                        int shared = readInt();
+                        previousURI = previousURI.substring( 0, shared ) + readString();
+                        nodes[i] = Node.createURI( previousURI );
+                        break;
+                    case BLANK:
+                        nodes[i] = Node.createAnon( new AnonId( readString() ) );
+                        break;
+                    case PLAIN:
+                        nodes[i] = Node.createLiteral( readString(), "", false );
+                        break;
+                    case LANG:
+                        String lex = readString();
+                        nodes[i] = Node.createLiteral( lex, readString(), false );
+                        break;
+                    case TYPED:
+                        String lexical = readString();
+                        Node type = nodes[readInt()];
+                        RDFDatatype dt = types.get( type );
+                        if (dt == null)
+                            types.put( type, dt = TypeMapper.getInstance().getSafeTypeByName( type.getURI() ) );
+                        nodes[i] = Node.createLiteral( lexical, "", dt );
+                        break;
+                    default:
+                        throw new JenaException( "bad node kind " + kind + " in binary RDF snapshot" );
+                    }
+                }
+            BulkUpdateHandler bulk = g.getBulkUpdateHandler();
+            long total = 0;
+            for (int count; (count = readInt()) > 0;)
+                {
+                readNumber(); // the block's length in bytes
+                Triple [] batch = new Triple[count];
+                int s = 0, p = 0, o = 0;
+                for (int i = 0; i < count; i += 1)
+                    {
+                    int S = s + (int) unzigzag( readNumber() );
+                    int P = S == s ? p + (int) unzigzag( readNumber() ) : readInt();
+                    int O = S == s && P == p ? o + (int) unzigzag( readNumber() ) : readInt();
+                    batch[i] = new Triple( nodes[S], nodes[P], nodes[O] );
+                    s = S; p = P; o = O;
+                    }
+                bulk.add( batch );
+                total += count;
+                }
+            if (total != tripleCount) 
+                throw new JenaException( "binary RDF snapshot has " + total + " triples, expected " + tripleCount );
+            return total;
+            }
+        
+        long readNumber()
+            {
+            long result = 0;
+            for (int shift = 0;; shift += 7)
+                {
+                byte b = in.get();
+                result |= (long) (b & 0x7F) << shift;
+                if (b >= 0) return result;
+                }
+            }
+        
+        int readInt()
+            { return (int) readNumber(); }
+        
+        String readString()
+            {
+            int length = readInt();
+            if (scratch.length < length) scratch = new byte[Math.max( length, 2 * scratch.length )];
+            in.get( scratch, 0, length );
+            try { return new String( scratch, 0, length, "UTF-8" ); }
+            catch (UnsupportedEncodingException e) { throw new JenaException( e ); }
+            }
+        }
+    }
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,326 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.graph.impl;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.mem.GraphTripleStoreBase;
+import com.hp.hpl.jena.shared.*;
+import com.hp.hpl.jena.util.FileUtils;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+    A FileGraph which keeps its file up to date with a write-ahead journal
+    rather than by writing the whole graph out. The file holds a snapshot 
+    (in the graph's language; the binary RDF snapshot, suffix ".rdfb", loads
+    fastest) and a sibling file, with ".journal" appended to the name, logs
+    every change since. Opening the graph reads the snapshot and replays the
+    journal; a commit appends to the journal and syncs it, so its cost is 
+    proportional to the size of the change, not of the graph. Changes made 
+    outside transactions are synced in groups (see GraphJournal). When the 
+    journal grows beyond <code>compactSize</code> bytes it is compacted: the
+    snapshot is rewritten and the journal emptied.
+<p>
+    An abort undoes the changes of the transaction in memory, using a list
+    of them kept since begin(). A transaction which is still open when the
+    graph is closed is aborted.
+    
+    @author hedgehog
+*/
+public class JournaledFileGraph extends FileGraph
+    {
+    public static final long DEFAULT_COMPACT_SIZE = 4L << 20;
+    
+    /**
+        The journal; null while the snapshot is loaded and the journal replayed,
+        so that those changes are not logged again.
+    */
+    protected GraphJournal journal;
+    
+    /**
+        The journal is compacted into the snapshot when it grows beyond this
+        many bytes.
+    */
+    protected long compactSize = DEFAULT_COMPACT_SIZE;
+    
+    /**
+        The changes made in the current transaction, or null if there is none:
+        a Triple was added, a Triple wrapped in an array was deleted.
+    */
+    protected List<Object> undo;
+    
+    private long checkedAtSync = 0;
+    
+    /**
+        See JournaledFileGraph( notify, f, lang, create, strict, style ).
+    */
+    public JournaledFileGraph( File f, boolean create, boolean strict )
+        { this( NotifyOnClose.ignore, f, FileUtils.guessLang( f.toString() ), create, strict, ReificationStyle.Minimal ); }
+    
+    /**
+        As for the corresponding FileGraph constructor; in addition the journal
+        is emptied, if <code>create</code> is true, or replayed. A new graph
+        has an empty snapshot written at once, so that it can be opened again
+        even if it is never compacted.
+    */
+    public JournaledFileGraph( NotifyOnClose notify, File f, String lang, boolean create, boolean strict, ReificationStyle style )
+        {
+        super( notify, f, lang, create, strict, style );
+        GraphJournal j = new GraphJournal( journalFile( f ) );
+        if (create)
+            {
+            saveContents( f );
+            j.reset();
+            }
+        else
+            j.replay( new GraphJournal.Target() 
+                {
+                public void add( Triple t ) { performAdd( t ); }
+                public void delete( Triple t ) { performDelete( t ); }
+                public void clear() { JournaledFileGraph.this.clear(); }
+                } );
+        journal = j;
+        }
+    
+    /**
+        Answer the file that journals changes to the graph kept in <code>f</code>.
+    */
+    public static File journalFile( File f )
+        { return new File( f.getPath() + ".journal" ); }
+    
+    public GraphJournal getJournal()
+        { return journal; }
+    
+    public void setCompactSize( long compactSize )
+        { this.compactSize = compactSize; }
+    
+    @Override public void performAdd( Triple t )
+        {
+        if (journal == null) { super.performAdd( t ); return; }
+        boolean absent = undo != null && !containsExactly( t );
+        super.performAdd( t );
+        journal.add( t );
+        if (absent) undo.add( t );
+        checkCompact();
+        }
+    
+    @Override public void performAddAll( Triple [] triples )
+        {
+        if (journal == null) 
+            super.performAddAll( triples );
+        else if (undo != null)
+            for (int i = 0; i < triples.length; i += 1) performAdd( triples[i] );
+        else
+            {
+            super.performAddAll( triples );
+            for (int i = 0; i < triples.length; i += 1) journal.add( triples[i] );
+            checkCompact();
+            }
+        }
+    
+    @Override public void performDelete( Triple t )
+        {
+        if (journal == null) { super.performDelete( t ); return; }
+        boolean present = undo != null && containsExactly( t );
+        super.performDelete( t );
+        journal.delete( t );
+        if (present) undo.add( new Object[] { t } );
+        checkCompact();
+        }
+    
+    @Override public void clear()
+        {
+        if (journal != null)
+            {
+            if (undo != null)
+                {
+                ExtendedIterator<Triple> it = find( Node.ANY, Node.ANY, Node.ANY );
+                try { while (it.hasNext()) undo.add( new Object[] { it.next() } ); }
+                finally { it.close(); }
+                }
+            journal.clear();
+            }
+        super.clear();
+        }
+    
+    /**
+        Write the whole graph out as the snapshot and empty the journal. The
+        snapshot is on the disk, file and directory entry, before the journal
+        is emptied; if this is interrupted, the journal will simply be replayed
+        again over the new snapshot (replay is idempotent).
+    */
+    public void compact()
+        {
+        if (undo != null) throw new JenaException( "cannot compact a journal during a transaction" );
+        saveContents( name );
+        journal.reset();
+        }
+    
+    /**
+        As for FileGraph, but the snapshot is forced to the disk before it is
+        renamed into place, and the rename is forced by syncing the directory,
+        since emptying the journal afterwards relies on both having happened.
+    */
+    @Override protected void saveContents( File targetName )
+        {
+        try
+            {
+            File intermediate = new File( targetName.getPath() + ".new" );
+            FileOutputStream out = new FileOutputStream( intermediate );
+            try
+                {
+                model.write( out, lang );
+                out.flush();
+                out.getFD().sync();
+                }
+            finally
+                { out.close(); }
+            updateFrom( targetName, intermediate );
+            syncDirectory( targetName.getAbsoluteFile().getParentFile() );
+            }
+        catch (IOException e)
+            { throw new JenaException( e ); }
+        }
+    
+    /**
+        Force the entries of the directory <code>dir</code> to the disk. A 
+        directory can only be opened for this through java.nio.file, which
+        older platforms (Android before API 26) do not have; there, and where
+        the file system will not sync a directory, this does nothing.
+    */
+    protected static void syncDirectory( File dir )
+        {
+        if (dir == null) return;
+        try
+            {
+            FileChannel c = FileChannel.open( dir.toPath(), java.nio.file.StandardOpenOption.READ );
+            try { c.force( true ); }
+            finally { c.close(); }
+            }
+        catch (IOException e)
+            {}
+        catch (LinkageError e)
+            {}
+        }
+    
+    /**
+        Compact, if no transaction is in progress, once the journal has been 
+        synced and is too long. Looking at its length only after syncs keeps
+        the cost of the check off every update.
+    */
+    protected void checkCompact()
+        {
+        if (undo == null && journal.getSyncCount() != checkedAtSync)
+            {
+            checkedAtSync = journal.getSyncCount();
+            if (journal.length() > compactSize) compact();
+            }
+        }
+    
+    /**
+        Sync the journal; on the last close, compact it if it is too long, and
+        close it. 
+    */
+    @Override protected void saveOnClose()
+        {
+        if (count == 1)
+            {
+            if (undo != null) abort();
+            journal.sync();
+            if (journal.length() > compactSize) compact();
+            journal.close();
+            }
+        else
+            journal.sync();
+        }
+    
+    /**
+        Delete the backing file and the journal.
+    */
+    @Override public void delete()
+        {
+        super.delete();
+        journalFile( name ).delete();
+        }
+    
+    private boolean containsExactly( Triple t )
+        { return ((GraphTripleStoreBase) store).containsByEquality( t ); }
+    
+    protected void begin()
+        {
+        if (undo != null) throw new JenaException( "nested transactions not supported" );
+        journal.begin();
+        undo = new ArrayList<Object>();
+        }
+    
+    protected void commit()
+        {
+        journal.commit();
+        undo = null;
+        checkCompact();
+        }
+    
+    protected void abort()
+        {
+        List<Object> changes = undo;
+        if (changes == null) throw new JenaException( "no transaction to abort" );
+        undo = null;
+        journal.abort();
+        for (int i = changes.size() - 1; i >= 0; i -= 1)
+            {
+            Object change = changes.get( i );
+            if (change instanceof Triple) 
+                super.performDelete( (Triple) change );
+            else 
+                super.performAdd( (Triple) ((Object []) change)[0] );
+            }
+        }
+    
+    @Override public TransactionHandler getTransactionHandler()
+        {
+        if (th == null) th = new TransactionHandlerBase()
+            {
+            public boolean transactionsSupported() { return true; }
+            public void begin() { JournaledFileGraph.this.begin(); }
+            public void commit() { JournaledFileGraph.this.commit(); }
+            public void abort() { JournaledFileGraph.this.abort(); }
+            };
+        return th;
+        }
+    }
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -29,6 +29,16 @@ public class ArrayBunch implements TripleBunch
     public ArrayBunch()
         { elements = new Triple[5]; }
     
+    /**
+        Initialise this bunch as a copy of <code>other</code>.
+    */
+    public ArrayBunch( ArrayBunch other )
+        {
+        elements = new Triple[other.elements.length];
+        System.arraycopy( other.elements, 0, elements, 0, other.size );
+        size = other.size;
+        }
+    
     public boolean containsBySameValueAs( Triple t )
         {
         int i = size;
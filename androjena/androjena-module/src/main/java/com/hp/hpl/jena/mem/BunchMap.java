@@ -44,6 +44,20 @@ public interface BunchMap
     */
     public void remove( Object key );
 
+    /**
+        Hint that this map is about to hold about <code>expected</code> keys,
+        so that it can make room for them all at once. Implementations are
+        free to ignore the hint.
+    */
+    public void ensureCapacity( int expected );
+
+    /**
+        Answer a new BunchMap with the same associations as this one. The
+        bunches themselves are shared, but later changes to the associations
+        of either map do not affect the other.
+    */
+    public BunchMap copy();
+
     /**
         Answer an iterator over all the keys in this map.
     */
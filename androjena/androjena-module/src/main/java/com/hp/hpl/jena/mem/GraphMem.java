@@ -47,12 +47,28 @@ public class GraphMem extends GraphMemBase implements Graph
     @Override public void performAdd( Triple t )
         { if (!getReifier().handledAdd( t )) store.add( t ); }
 
+    @Override public void performAddAll( Triple [] triples )
+        { ((GraphTripleStoreBase) store).addAll( notHandledByReifier( triples ) ); }
+
     @Override public void performDelete( Triple t )
         { if (!getReifier().handledRemove( t )) store.delete( t ); }
 
     @Override public int graphBaseSize()  
         { return store.size(); }
     
+    @Override public GraphMem snapshot()
+        {
+        GraphMem result = new GraphMem( ReificationStyle.Minimal );
+        ((GraphTripleStoreBase) result.store).becomeSnapshotOf( (GraphTripleStoreBase) store );
+        return result;
+        }
+    
+    @Override public boolean hasCheapSnapshots()
+        { return true; }
+    
+    @Override protected GraphStatisticsHandler createStatisticsHandler()
+        { return new GraphMemStatisticsHandler( (GraphTripleStoreBase) store, getReifier() ); }
+    
     @Override public QueryHandler queryHandler()
         {
         if (queryHandler == null) queryHandler = new GraphMemBaseQueryHandler( this );
@@ -5,9 +5,12 @@
 */
 package com.hp.hpl.jena.mem;
 
+import java.util.*;
+
 import com.hp.hpl.jena.graph.*;
 import com.hp.hpl.jena.graph.impl.*;
 import com.hp.hpl.jena.shared.ReificationStyle;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 
 /**
      GraphMemBase - a common base class for GraphMem and SmallGraphMem.
@@ -78,6 +81,38 @@ public abstract class GraphMemBase extends GraphBase
          Remove all triples from this graph; used to implement removeAll.
     */
     public abstract void clear();
+    
+    /**
+        Answer a read-only snapshot of this graph: an in-memory graph whose 
+        contents are this graph's contents now, and are not affected by later
+        updates to this graph. Readers of the snapshot need no lock, and its
+        iterators are never invalidated by updates to this graph. The snapshot
+        has the Minimal reification style: it holds the triples of this graph's
+        store (including, for the Standard style, reification triples) but not
+        the reifier's fragments. 
+        
+        <p>Graphs whose snapshots are cheap (see {@link #hasCheapSnapshots()}) share
+        their indexes with the snapshot, and it may be taken while another 
+        thread is updating this graph. By default, other graphs copy their 
+        triples into a GraphMem; that takes time and memory in proportion to 
+        the size of the graph and, like any other read of this graph, must not
+        overlap an update.
+    */
+    public GraphMemBase snapshot()
+        {
+        GraphMem copy = new GraphMem( ReificationStyle.Minimal );
+        ExtendedIterator<Triple> it = graphBaseFind( Triple.ANY );
+        try { while (it.hasNext()) copy.performAdd( it.next() ); }
+        finally { it.close(); }
+        return copy.snapshot();
+        }
+    
+    /**
+        Answer true iff {@link #snapshot()} shares this graph's indexes rather 
+        than copying its triples, so is cheap and may overlap updates.
+    */
+    public boolean hasCheapSnapshots()
+        { return false; }
 
     @Override
     public BulkUpdateHandler getBulkUpdateHandler()
@@ -86,6 +121,38 @@ public abstract class GraphMemBase extends GraphBase
         return bulkHandler;
         }
 
+    /**
+        Add all the triples of <code>triples</code> to this graph, without
+        notifying listeners; this is the array <code>add</code> of the bulk
+        update handler. By default each triple is given to <code>performAdd</code>
+        in turn. Subclasses whose store can take a whole batch override this.
+    */
+    public void performAddAll( Triple [] triples )
+        { for (int i = 0; i < triples.length; i += 1) performAdd( triples[i] ); }
+    
+    /**
+        Answer the elements of <code>triples</code> that the reifier does not
+        take for itself, in their original order. If it takes none of them,
+        answer <code>triples</code> itself.
+    */
+    protected Triple [] notHandledByReifier( Triple [] triples )
+        {
+        Reifier r = getReifier();
+        List<Triple> kept = null;
+        for (int i = 0; i < triples.length; i += 1)
+            {
+            boolean handled = r.handledAdd( triples[i] );
+            if (handled && kept == null)
+                {
+                kept = new ArrayList<Triple>( triples.length );
+                for (int j = 0; j < i; j += 1) kept.add( triples[j] );
+                }
+            else if (!handled && kept != null)
+                kept.add( triples[i] );
+            }
+        return kept == null ? triples : kept.toArray( new Triple[kept.size()] );
+        }
+
     /**
         Answer true iff this triple can be compared for sameValueAs by .equals(),
         ie, it is a concrete triple with a non-literal object.
@@ -6,12 +6,14 @@
 
 package com.hp.hpl.jena.mem;
 
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.graph.impl.GraphWithPerform;
 import com.hp.hpl.jena.graph.impl.SimpleBulkUpdateHandler;
 
 /**
  	A GraphMemBulkUpdateHandler specialises the SimpleBulkUpdateHandler
- 	by doing removeAll efficiently, by clearing the indexes directly.
+ 	by doing removeAll efficiently, by clearing the indexes directly, and by
+ 	handing arrays of triples to the graph as a single batch.
  	@author hedgehog
 */
 
@@ -20,6 +22,17 @@ public class GraphMemBulkUpdateHandler extends SimpleBulkUpdateHandler
 	public GraphMemBulkUpdateHandler( GraphWithPerform graph ) 
 	    { super( graph ); }
 	
+	/**
+	    Add the triples as one batch, so that the graph can prepare its store
+	    for all of them at once, and notify them as an array.
+	*/
+	@Override
+    public void add( Triple [] triples )
+	    {
+	    ((GraphMemBase) graph).performAddAll( triples );
+	    manager.notifyAddArray( graph, triples );
+	    }
+	
 	@Override
     public void removeAll()
 	    {
@@ -0,0 +1,154 @@
+/*
+ 	(c) Copyright 2009 Hewlett-Packard Development Company, LP
+ 	All rights reserved - see end of file.
+*/
+
+package com.hp.hpl.jena.mem;
+
+import java.util.Iterator;
+
+import com.hp.hpl.jena.graph.*;
+
+/**
+    The statistics handler for the memory graphs. It answers from the sizes of
+    the store's S/P/O indexes, scanning a small index bunch when two nodes are
+    concrete, and from the store's live per-predicate statistics for the
+    numbers of distinct subjects and objects.
+    
+ 	@author hedgehog
+*/
+public class GraphMemStatisticsHandler implements PredicateStatisticsHandler
+    {
+    protected final GraphTripleStoreBase store;
+    protected final Reifier reifier;
+    
+    /**
+        The largest index bunch that will be scanned to get an exact count for
+        a two-concrete-node pattern; above this the smaller of the two bunch 
+        sizes is used as the estimate.
+    */
+    protected static final int SCAN_LIMIT = 64;
+    
+    public GraphMemStatisticsHandler( GraphTripleStoreBase store, Reifier reifier )
+        { this.store = store; this.reifier = reifier; }
+
+    private static class C 
+        {
+        static final int NONE = 0;
+        static final int S = 1, P = 2, O = 4;
+        static final int SP = S + P, SO = S + O, PO = P + O;
+        static final int SPO = S + P + O;
+        }
+    
+    /**
+        Answer a good estimate of the number of triples matching (S, P, O).
+        
+        <p>If there are any reifier triples, return -1. (We may be able to
+        improve this later.)
+        
+        <p>If only one of S, P, O is concrete, answers the number of triples
+        with that value in that field.
+        
+        <p>If two of S, P, O are concrete, answers the exact number of matching
+        triples if the smaller of their index bunches is small enough to scan,
+        and otherwise the size of that smaller bunch.
+        
+     	@see com.hp.hpl.jena.graph.GraphStatisticsHandler#getStatistic(com.hp.hpl.jena.graph.Node, com.hp.hpl.jena.graph.Node, com.hp.hpl.jena.graph.Node)
+     */
+    public long getStatistic( Node S, Node P, Node O )
+        {
+        if (reifier.size() > 0) return -1;
+        int concrete = (S.isConcrete() ? C.S : 0) + (P.isConcrete() ? C.P : 0) + (O.isConcrete() ? C.O : 0);
+        switch (concrete)
+            {
+            case C.NONE:
+                return store.size();
+            
+            case C.S:
+                return countInMap( S, store.subjects );
+                
+            case C.SP:
+                return countsInMaps( S, store.subjects, P, store.predicates, Triple.create( S, P, Node.ANY ) );
+            
+            case C.SO:
+                return countsInMaps( S, store.subjects, O, store.objects, Triple.create( S, Node.ANY, O ) );
+                
+            case C.P:
+                return countInMap( P, store.predicates );
+                
+            case C.PO:
+                return countsInMaps( P, store.predicates, O, store.objects, Triple.create( Node.ANY, P, O ) );
+            
+            case C.O:
+                return countInMap( O, store.objects );
+                
+            case C.SPO:
+                return store.contains( Triple.create( S, P, O ) ) ? 1 : 0;
+            }
+        return -1;
+        }
+
+    public long getDistinctSubjects( Node P )
+        {
+        if (reifier.size() > 0) return -1;
+        return P.isConcrete() 
+            ? store.statistics.distinctSubjects( P.getIndexingValue(), store.predicates )
+            : store.subjects.bunchMap.size();
+        }
+
+    public long getDistinctObjects( Node P )
+        {
+        if (reifier.size() > 0) return -1;
+        return P.isConcrete() 
+            ? store.statistics.distinctObjects( P.getIndexingValue(), store.predicates )
+            : store.objects.bunchMap.size();
+        }
+    
+    protected long countInMap( Node n, NodeToTriplesMapBase map )
+        { return map.sizeOf( n.getIndexingValue() ); }
+    
+    /**
+        Answer the number of triples matching <code>pattern</code>, whose
+        concrete nodes are <code>a</code>, indexed by <code>mapA</code>, and 
+        <code>b</code>, indexed by <code>mapB</code>.
+    */
+    protected long countsInMaps( Node a, NodeToTriplesMapBase mapA, Node b, NodeToTriplesMapBase mapB, Triple pattern )
+        {
+        int countA = mapA.sizeOf( a.getIndexingValue() ), countB = mapB.sizeOf( b.getIndexingValue() );
+        if (countA == 0 || countB == 0) return 0;
+        if (Math.min( countA, countB ) > SCAN_LIMIT) return Math.min( countA, countB );
+        Iterator<Triple> it = countA <= countB 
+            ? mapA.iteratorForIndexed( a.getIndexingValue() ) 
+            : mapB.iteratorForIndexed( b.getIndexingValue() );
+        long count = 0;
+        while (it.hasNext()) if (pattern.matches( it.next() )) count += 1;
+        return count;
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -13,6 +13,7 @@ import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.graph.TripleMatch;
 import com.hp.hpl.jena.graph.impl.TripleStore;
+import com.hp.hpl.jena.shared.*;
 import com.hp.hpl.jena.util.iterator.*;
 
 public abstract class GraphTripleStoreBase implements TripleStore
@@ -22,6 +23,17 @@ public abstract class GraphTripleStoreBase implements TripleStore
     protected NodeToTriplesMapBase predicates;
     protected NodeToTriplesMapBase objects;
     
+    /**
+        The per-predicate distinct subject and object estimates, kept up to
+        date as triples are added.
+    */
+    protected final PredicateStatistics statistics = new PredicateStatistics();
+    
+    /**
+        True iff this store is a snapshot, and so may not be changed.
+    */
+    protected boolean readOnly = false;
+    
     protected GraphTripleStoreBase
         ( Graph parent,
         NodeToTriplesMapBase subjects,
@@ -39,23 +51,64 @@ public abstract class GraphTripleStoreBase implements TripleStore
      public void close()
          { subjects = predicates = objects = null; }
      
+     /**
+          Make this store, which must be new and empty, a read-only snapshot of
+          <code>live</code>, which has the same kind of indexes. The indexes are 
+          shared, not copied, so this is cheap; <code>live</code> copies index
+          tables and bunches as it changes them (the first change after a snapshot
+          copies the index tables, but not the bunches, which are only copied as
+          they are changed), so the snapshot is unaffected by later changes to 
+          <code>live</code>, and iterators over it never see concurrent 
+          modifications.
+          
+          <p>Updates to a store are synchronised on the store, so a snapshot
+          may be taken while another thread is updating <code>live</code>.
+     */
+     public void becomeSnapshotOf( GraphTripleStoreBase live )
+         {
+         synchronized (live)
+             {
+             subjects.shareFrom( live.subjects );
+             predicates.shareFrom( live.predicates );
+             objects.shareFrom( live.objects );
+             }
+         readOnly = true;
+         }
+     
      /**
           Add a triple to this triple store.
      */
-     public void add( Triple t )
+     public synchronized void add( Triple t )
          {
+         if (readOnly) throw new AddDeniedException( "snapshots are read-only", t );
          if (subjects.add( t ))
              {
              predicates.add( t );
              objects.add( t ); 
+             statistics.added( t );
              }
          }
      
+     /**
+          Add all the triples of <code>triples</code> to this triple store. The
+          indexes are sized for the batch up front, so that a large load does 
+          not rehash them over and over as it goes.
+     */
+     public synchronized void addAll( Triple [] triples )
+         {
+         if (readOnly) throw new AddDeniedException( "snapshots are read-only" );
+         subjects.ensureCapacityFor( triples );
+         predicates.ensureCapacityFor( triples );
+         objects.ensureCapacityFor( triples );
+         for (int i = 0; i < triples.length; i += 1) add( triples[i] );
+         }
+     
      /**
           Remove a triple from this triple store.
      */
-     public void delete( Triple t )
+     public synchronized void delete( Triple t )
          {
+         if (readOnly) throw new DeleteDeniedException( "snapshots are read-only", t );
          if (subjects.remove( t ))
              {
              predicates.remove( t );
@@ -66,11 +119,13 @@ public abstract class GraphTripleStoreBase implements TripleStore
      /**
           Clear this store, ie remove all triples from it.
      */
-     public void clear()
+     public synchronized void clear()
          {
+         if (readOnly) throw new DeleteDeniedException( "snapshots are read-only" );
          subjects.clear();
          predicates.clear();
          objects.clear();
+         statistics.clear();
          }
 
      /**
@@ -140,13 +195,34 @@ public abstract class GraphTripleStoreBase implements TripleStore
          Node sm = t.getSubject();
              
          if (sm.isConcrete())
-             return new StoreTripleIterator( parent, subjects.iterator( sm, pm, om ), subjects, predicates, objects );
+             return storeIterator( subjects.iterator( sm, pm, om ), subjects, predicates, objects );
          else if (om.isConcrete())
-             return new StoreTripleIterator( parent, objects.iterator( om, sm, pm ), objects, subjects, predicates );
+             return storeIterator( objects.iterator( om, sm, pm ), objects, subjects, predicates );
          else if (pm.isConcrete())
-             return new StoreTripleIterator( parent, predicates.iterator( pm, om, sm ), predicates, subjects, objects );
+             return storeIterator( predicates.iterator( pm, om, sm ), predicates, subjects, objects );
          else
-             return new StoreTripleIterator( parent, subjects.iterateAll(), subjects, predicates, objects );
+             return storeIterator( subjects.iterateAll(), subjects, predicates, objects );
+         }
+     
+     /**
+          Answer a StoreTripleIterator over <code>it</code> whose removes are
+          synchronised like the other updates, and refused if this store is
+          a snapshot.
+     */
+     protected StoreTripleIterator storeIterator
+         ( Iterator<Triple> it, NodeToTriplesMapBase X, NodeToTriplesMapBase A, NodeToTriplesMapBase B )
+         {
+         return new StoreTripleIterator( parent, it, X, A, B )
+             {
+             @Override public void remove()
+                 {
+                 synchronized (GraphTripleStoreBase.this)
+                     {
+                     if (readOnly) throw new DeleteDeniedException( "snapshots are read-only", current );
+                     super.remove();
+                     }
+                 }
+             };
          }
     }
 
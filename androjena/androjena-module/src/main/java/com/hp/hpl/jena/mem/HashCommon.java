@@ -181,6 +181,16 @@ public abstract class HashCommon<Key>
         capacity = nextSize( capacity * 2 );
         threshold = (int) (capacity * loadFactor);
         }
+    
+    /**
+        Work out the capacity and threshold sizes for a table big enough to
+        hold <code>expected</code> elements without growing.
+    */
+    protected void growCapacityAndThresholdFor( int expected )
+        {
+        capacity = nextSize( (int) (expected / loadFactor) );
+        threshold = (int) (capacity * loadFactor);
+        }
      
     static final int [] primes =
         {
@@ -21,6 +21,23 @@ public class HashedBunchMap extends HashCommon<Object> implements BunchMap
         values = new TripleBunch[capacity];
         }
 
+    /**
+        Initialise this map as a copy of <code>other</code>, with the same
+        capacity and associations.
+    */
+    protected HashedBunchMap( HashedBunchMap other )
+        {
+        super( other.capacity );
+        values = new TripleBunch[capacity];
+        System.arraycopy( other.keys, 0, keys, 0, capacity );
+        System.arraycopy( other.values, 0, values, 0, capacity );
+        size = other.size;
+        threshold = other.threshold;
+        }
+
+    public BunchMap copy()
+        { return new HashedBunchMap( this ); }
+
     @Override protected Object[] newKeyArray( int size )
         { return new Object[size]; }
     
@@ -57,12 +74,35 @@ public class HashedBunchMap extends HashCommon<Object> implements BunchMap
             }
         }
 
+    /**
+        Grow the table now, if necessary, so that it can hold 
+        <code>expected</code> keys without any further rehashing.
+    */
+    public void ensureCapacity( int expected )
+        {
+        if (expected >= threshold)
+            {
+            final int oldCapacity = capacity;
+            growCapacityAndThresholdFor( expected );
+            rehash( oldCapacity );
+            }
+        }
+
     protected void grow()
         {
-        Object [] oldContents = keys;
-        TripleBunch [] oldValues = values;
         final int oldCapacity = capacity;
         growCapacityAndThreshold();
+        rehash( oldCapacity );
+        }
+
+    /**
+        Move the entries of the old <code>oldCapacity</code>-sized tables into
+        new tables of the (already updated) current capacity.
+    */
+    private void rehash( int oldCapacity )
+        {
+        Object [] oldContents = keys;
+        TripleBunch [] oldValues = values;
         keys = newKeyArray( capacity );
         values = new TripleBunch[capacity];
         for (int i = 0; i < oldCapacity; i += 1)
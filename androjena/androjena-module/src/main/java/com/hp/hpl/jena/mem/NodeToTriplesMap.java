@@ -29,7 +29,9 @@ public class NodeToTriplesMap extends NodeToTriplesMapBase
         {
         Object o = getIndexField( t );
         OpenSetBunch s = (OpenSetBunch) bunchMap.get( o );
-        if (s == null) bunchMap.put( o, s = createSetBunch() );
+        if (s == null) putBunch( o, s = createSetBunch() );
+        else if (s.contains( t )) return false;
+        else s = (OpenSetBunch) writableBunch( o, s );
         if (s.baseSet().add( t )) { size += 1; return true; } else return false; 
         }
 
@@ -47,6 +49,13 @@ public class NodeToTriplesMap extends NodeToTriplesMapBase
     private OpenSetBunch createSetBunch()
         { return new OpenSetBunch(); }
     
+    @Override protected TripleBunch copyBunch( TripleBunch b )
+        {
+        OpenSetBunch result = createSetBunch();
+        result.baseSet().addAll( ((OpenSetBunch) b).baseSet() );
+        return result;
+        }
+    
     /** 
      	@see com.hp.hpl.jena.mem.Temp#remove(com.hp.hpl.jena.graph.Triple)
     */
@@ -54,22 +63,22 @@ public class NodeToTriplesMap extends NodeToTriplesMapBase
         { 
         Object o = getIndexField( t );
         OpenSetBunch s = (OpenSetBunch) bunchMap.get( o );
-        if (s == null)
+        if (s == null || !s.contains( t ))
             return false;
         else
             {
-            Set<Triple> base = s.baseSet();
-            boolean result = base.remove( t );
-            if (result) size -= 1;
-            if (base.isEmpty()) bunchMap.remove( o );
-            return result;
+            Set<Triple> base = ((OpenSetBunch) writableBunch( o, s )).baseSet();
+            base.remove( t );
+            size -= 1;
+            if (base.isEmpty()) removeBunch( o );
+            return true;
         	} 
         }
     
     @Override public ExtendedIterator<Triple> iterator( Object o, HashCommon.NotifyEmpty container )
         {
         TripleBunch b = bunchMap.get( o );
-        return b == null ? NullIterator.<Triple>instance() : b.iterator();
+        return b == null ? NullIterator.<Triple>instance() : bunchIterator( o, b, HashCommon.NotifyEmpty.ignore );
         }
     
     /** 
@@ -119,11 +128,12 @@ public class NodeToTriplesMap extends NodeToTriplesMapBase
 
     @Override public ExtendedIterator<Triple> iterator( Node index, Node n2, Node n3 )
         {
-        TripleBunch s = bunchMap.get( index.getIndexingValue() );
+        Object indexValue = index.getIndexingValue();
+        TripleBunch s = bunchMap.get( indexValue );
         return s == null
             ? NullIterator.<Triple>instance()
             : f2.filterOn( n2 ).and( f3.filterOn( n3 ) )
-                .filterKeep( s.iterator() )
+                .filterKeep( bunchIterator( indexValue, s, HashCommon.NotifyEmpty.ignore ) )
             ;
         }
 
@@ -34,6 +34,20 @@ public abstract class NodeToTriplesMapBase
     protected final Field f2;
     protected final Field f3;
     
+    /**
+        True iff <code>bunchMap</code> is shared with a snapshot of this NTM,
+        and so must be copied before this NTM next changes it.
+    */
+    protected boolean mapShared = false;
+    
+    /**
+        The bunches this NTM may change in place, held as an identity set. 
+        Null if this NTM has never been snapshotted, in which case all its 
+        bunches are its own; otherwise any bunch not in this set may be shared 
+        with a snapshot, and is copied before it is changed.
+    */
+    protected Map<TripleBunch, TripleBunch> owned = null;
+    
     public NodeToTriplesMapBase( Field indexField, Field f2, Field f3 )
         { this.indexField = indexField; this.f2 = f2; this.f3 = f3; }
     
@@ -73,11 +87,144 @@ public abstract class NodeToTriplesMapBase
         Clear this NTM; it will contain no triples.
     */
     public void clear()
-        { bunchMap.clear(); size = 0; }
+        { 
+        if (mapShared) { bunchMap = new HashedBunchMap(); mapShared = false; }
+        else bunchMap.clear(); 
+        size = 0; 
+        }
 
     public int size()
         { return size; }
 
+    /**
+        Answer the number of triples indexed by the item <code>y</code>.
+    */
+    public int sizeOf( Object y )
+        {
+        TripleBunch b = bunchMap.get( y );
+        return b == null ? 0 : b.size();
+        }
+
+    /**
+        The most triples of a batch that <code>ensureCapacityFor</code> will
+        look at when estimating how many new index keys the batch brings.
+    */
+    protected static final int SAMPLE_SIZE = 64;
+
+    /**
+        Prepare this NTM to receive the batch <code>triples</code> by sizing 
+        the bunch map for the keys it is likely to add. The number of distinct
+        keys is estimated from an evenly-spaced sample of the batch; 
+        over-estimates cost only a little early growth, since the map would 
+        have grown to that size anyway.
+    */
+    public void ensureCapacityFor( Triple [] triples )
+        {
+        int n = triples.length;
+        if (n == 0) return;
+        int step = Math.max( 1, n / SAMPLE_SIZE );
+        Set<Object> seen = new HashSet<Object>();
+        int sampled = 0;
+        for (int i = 0; i < n; i += step, sampled += 1) 
+            seen.add( getIndexField( triples[i] ) );
+        long expected = bunchMap.size() + (long) n * seen.size() / sampled;
+        writableMap().ensureCapacity( (int) Math.min( expected, Integer.MAX_VALUE / 2 ) );
+        }
+
+    /**
+        Make this NTM, which must be new and is never to be changed, a snapshot 
+        of <code>live</code>: it shares <code>live</code>'s bunch map and 
+        bunches, which <code>live</code> will copy before it next changes them.
+        The caller must ensure that <code>live</code> is not being changed
+        concurrently.
+    */
+    public void shareFrom( NodeToTriplesMapBase live )
+        {
+        bunchMap = live.bunchMap;
+        size = live.size;
+        live.mapShared = true;
+        live.owned = new IdentityHashMap<TripleBunch, TripleBunch>();
+        }
+    
+    /**
+        Answer the bunch map, first replacing it by a copy if it is shared
+        with a snapshot.
+    */
+    protected BunchMap writableMap()
+        {
+        if (mapShared) { bunchMap = bunchMap.copy(); mapShared = false; }
+        return bunchMap;
+        }
+    
+    /**
+        Answer a bunch with the same triples as <code>b</code>, which may then
+        be changed without affecting <code>b</code>.
+    */
+    protected abstract TripleBunch copyBunch( TripleBunch b );
+    
+    /**
+        Answer <code>b</code>, the current bunch for the index value 
+        <code>o</code>, if this NTM may change it in place; otherwise replace it
+        by a copy, which this NTM then owns, and answer that.
+    */
+    protected TripleBunch writableBunch( Object o, TripleBunch b )
+        {
+        if (owned == null || owned.containsKey( b )) return b;
+        TripleBunch copy = copyBunch( b );
+        putBunch( o, copy );
+        return copy;
+        }
+    
+    /**
+        Make <code>b</code>, which this NTM owns, the bunch for the index value
+        <code>o</code>.
+    */
+    protected void putBunch( Object o, TripleBunch b )
+        {
+        writableMap().put( o, b );
+        if (owned != null) owned.put( b, b );
+        }
+    
+    /**
+        Remove the bunch for the index value <code>o</code>.
+    */
+    protected void removeBunch( Object o )
+        { writableMap().remove( o ); }
+    
+    /**
+        Answer an iterator over <code>b</code>, the bunch for the index value
+        <code>key</code>. Once this NTM has been snapshotted, <code>b</code> may
+        be shared with a snapshot: then the iterator's <code>remove</code> does
+        not change <code>b</code> but removes the triple from this NTM's own
+        copy, and the iteration carries on over the unchanged original.
+    */
+    protected ExtendedIterator<Triple> bunchIterator( final Object key, final TripleBunch b, HashCommon.NotifyEmpty container )
+        {
+        final Iterator<Triple> base = b.iterator( container );
+        return new NiceIterator<Triple>()
+            {
+            protected Triple current;
+            
+            @Override public boolean hasNext()
+                { return base.hasNext(); }
+            
+            @Override public Triple next()
+                { return current = base.next(); }
+            
+            @Override public void remove()
+                {
+                if (!mapShared && (owned == null || owned.containsKey( b )) && bunchMap.get( key ) == b)
+                    base.remove();
+                else
+                    {
+                    TripleBunch w = writableBunch( key, bunchMap.get( key ) );
+                    w.remove( current );
+                    if (w.size() == 0) removeBunch( key );
+                    }
+                }
+            };
+        }
+
     public void removedOneViaIterator()
         { size -= 1; /* System.err.println( ">> rOVI: size := " + size ); */ }
 
@@ -0,0 +1,216 @@
+/*
+ 	(c) Copyright 2009 Hewlett-Packard Development Company, LP
+ 	All rights reserved - see end of file.
+*/
+
+package com.hp.hpl.jena.mem;
+
+import java.util.*;
+
+import com.hp.hpl.jena.graph.Triple;
+
+/**
+    Per-predicate statistics for a triple store: for each predicate, a pair of
+    small HyperLogLog sketches estimating the number of distinct subjects and
+    distinct objects of the triples with that predicate. (The number of triples
+    per predicate is already known exactly from the predicate index.)
+    
+    <p>The sketches are updated as triples are added. Sketches cannot forget,
+    so deletions are not tracked as they happen; instead, when a predicate has
+    lost more than STALE_PERCENT of the triples added to its sketches, the
+    sketches are rebuilt from the predicate index the next time they are
+    asked for.
+    
+    <p>Additions are expected to be done under the graph's write lock, ie not
+    concurrently with anything else; queries may be concurrent with each 
+    other, and are synchronised because they may rebuild sketches.
+    
+ 	@author hedgehog
+*/
+public class PredicateStatistics
+    {
+    /**
+        The log (base 2) of the number of one-byte registers in each sketch.
+        128 registers give a standard error of about 9%, which is plenty for
+        choosing between join orders.
+    */
+    protected static final int LOG_REGISTERS = 7;
+    
+    protected static final int REGISTERS = 1 << LOG_REGISTERS;
+    
+    /**
+        The percentage of a predicate's added triples which may have been
+        deleted before its sketches are rebuilt.
+    */
+    protected static final int STALE_PERCENT = 10;
+    
+    protected final Map<Object, Sketches> sketches = new HashMap<Object, Sketches>();
+    
+    /**
+        The most recently updated predicate and its sketches; loads tend to
+        have runs of triples with the same predicate.
+    */
+    protected Object lastKey = null;
+    protected Sketches last = null;
+    
+    /**
+        Note that <code>t</code> has been added to the store (and was not
+        already present).
+    */
+    public void added( Triple t )
+        {
+        Object p = t.getPredicate().getIndexingValue();
+        if (!p.equals( lastKey ))
+            {
+            Sketches s = sketches.get( p );
+            if (s == null) sketches.put( p, s = new Sketches() );
+            lastKey = p; last = s;
+            }
+        last.add( t );
+        }
+    
+    /**
+        Forget all the statistics, because the store has been cleared.
+    */
+    public synchronized void clear()
+        { sketches.clear(); lastKey = last = null; }
+    
+    /**
+        Answer an estimate of the number of distinct subjects of the triples
+        in <code>predicates</code> indexed by the predicate value <code>p</code>.
+    */
+    public synchronized long distinctSubjects( Object p, NodeToTriplesMapBase predicates )
+        {
+        int count = predicates.sizeOf( p );
+        return count == 0 ? 0 : clamp( current( p, count, predicates ).subjects.estimate(), count );
+        }
+    
+    /**
+        Answer an estimate of the number of distinct objects of the triples
+        in <code>predicates</code> indexed by the predicate value <code>p</code>.
+    */
+    public synchronized long distinctObjects( Object p, NodeToTriplesMapBase predicates )
+        {
+        int count = predicates.sizeOf( p );
+        return count == 0 ? 0 : clamp( current( p, count, predicates ).objects.estimate(), count );
+        }
+    
+    /**
+        A predicate with triples has at least one distinct subject and object,
+        and no more of them than it has triples.
+    */
+    protected static long clamp( long estimate, int count )
+        { return Math.max( 1, Math.min( estimate, count ) ); }
+    
+    /**
+        Answer the sketches for <code>p</code>, which currently has
+        <code>count</code> triples, rebuilding them from the predicate index
+        if too many triples have been deleted since they were built.
+    */
+    protected Sketches current( Object p, int count, NodeToTriplesMapBase predicates )
+        {
+        Sketches s = sketches.get( p );
+        if (s == null || (s.added - count) * 100L > s.added * (long) STALE_PERCENT)
+            {
+            s = new Sketches();
+            Iterator<Triple> it = predicates.iteratorForIndexed( p );
+            while (it.hasNext()) s.add( it.next() );
+            sketches.put( p, s );
+            if (p.equals( lastKey )) last = s;
+            }
+        return s;
+        }
+    
+    /**
+        The sketches for one predicate, and the number of triples that have
+        been added to them.
+    */
+    protected static class Sketches
+        {
+        protected final Sketch subjects = new Sketch();
+        protected final Sketch objects = new Sketch();
+        protected int added = 0;
+        
+        public void add( Triple t )
+            {
+            subjects.add( t.getSubject().getIndexingValue() );
+            objects.add( t.getObject().getIndexingValue() );
+            added += 1;
+            }
+        }
+    
+    /**
+        A HyperLogLog sketch over the hash codes of the values added to it.
+    */
+    protected static class Sketch
+        {
+        protected final byte [] registers = new byte[REGISTERS];
+        
+        public void add( Object x )
+            {
+            int h = mix( x.hashCode() );
+            int i = h >>> (32 - LOG_REGISTERS);
+            int rank = Integer.numberOfLeadingZeros( (h << LOG_REGISTERS) | (1 << (LOG_REGISTERS - 1)) ) + 1;
+            if (rank > registers[i]) registers[i] = (byte) rank;
+            }
+        
+        /**
+            Answer the estimated number of distinct values added, using linear
+            counting for small cardinalities where the raw estimate is biased.
+        */
+        public long estimate()
+            {
+            double sum = 0;
+            int zeros = 0;
+            for (int i = 0; i < REGISTERS; i += 1)
+                {
+                sum += 1.0 / (1L << registers[i]);
+                if (registers[i] == 0) zeros += 1;
+                }
+            double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+            double e = alpha * REGISTERS * REGISTERS / sum;
+            if (e <= 2.5 * REGISTERS && zeros > 0) e = REGISTERS * Math.log( (double) REGISTERS / zeros );
+            return Math.round( e );
+            }
+        
+        /**
+            Spread the bits of a hash code, which for strings and small
+            integers are poorly distributed in the high bits.
+        */
+        protected static int mix( int h )
+            {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            return h ^ (h >>> 16);
+            }
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -32,6 +32,16 @@ public class WrappedHashMap implements BunchMap
     public void remove( Object key )
         { map.remove( key ); }
 
+    public void ensureCapacity( int expected )
+        {}
+
+    public BunchMap copy()
+        {
+        WrappedHashMap result = new WrappedHashMap();
+        result.map.putAll( map );
+        return result;
+        }
+
     public ExtendedIterator<Object> keyIterator()
         { return WrappedIterator.create( map.keySet().iterator() ); }
     }
@@ -0,0 +1,664 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP, all rights reserved.
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.mem.encoded;
+
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.graph.impl.TripleStore;
+import com.hp.hpl.jena.util.iterator.*;
+
+/**
+    A TripleStore which holds its triples as ids from a {@link NodeDictionary}
+    in sorted primitive arrays. The triples are kept in levels, each of which
+    has one {@link TripleRun} per permutation (SPO, POS and OSP) so that any
+    pattern with a concrete node is answered by binary search, and the first
+    position of each run is stored once per distinct node. There are no Triple 
+    objects or per-triple hash entries, so a triple costs a little over eight 
+    bytes in each permutation.
+<p>
+    Updates go to delta buffers: added triples are collected in a small 
+    unsorted buffer, which when full is sorted into a new level, and levels 
+    are merged whenever the most recent is at least half the size of the one 
+    before, so there are only logarithmically many of them. Deleted triples 
+    are remembered in a set and dropped when their level is next merged; 
+    {@link #compact()} merges everything into a single level.
+<p>
+    As with {@link EncodedTripleStore}, triples are distinct by node equality 
+    while matching in find is by sameValueAs, the store is not synchronized, 
+    and its iterators fail fast if the store is updated other than through 
+    their own remove.
+    
+    @see GraphMemCompact
+*/
+public class CompactTripleStore implements TripleStore
+    {
+    /**
+        The number of added triples held in the delta buffer before they are 
+        sorted into a level.
+    */
+    public static final int BUFFER_SIZE = 256;
+    
+    /** The permutations, used to index the runs of a level */
+    protected static final int SPO = 0, POS = 1, OSP = 2;
+    
+    protected final Graph parent;
+    protected NodeDictionary dictionary;
+    
+    /** 
+        The sorted levels, largest first. Replaced rather than updated in place
+        so that an iterator keeps a consistent view. 
+    */
+    protected Level [] levels = new Level[0];
+    
+    /** The delta buffer of added triples, in order of addition */
+    protected final int [] bufferS = new int[BUFFER_SIZE];
+    protected final int [] bufferP = new int[BUFFER_SIZE];
+    protected final int [] bufferO = new int[BUFFER_SIZE];
+    protected int buffered = 0;
+    protected final TripleSet bufferSet = new TripleSet();
+    
+    /** Triples deleted from the levels which have not yet been merged away */
+    protected final TripleSet deleted = new TripleSet();
+    
+    protected int size = 0;
+    
+    /** Count of updates, used to make the iterators fail fast */
+    protected int changes = 0;
+    
+    public CompactTripleStore( Graph parent )
+        { this( parent, new NodeDictionary() ); }
+    
+    public CompactTripleStore( Graph parent, NodeDictionary dictionary )
+        {
+        this.parent = parent;
+        this.dictionary = dictionary;
+        }
+    
+    /**
+        Switch this store to encoding with the given dictionary. Only allowed
+        while the store is empty.
+    */
+    public void setDictionary( NodeDictionary dictionary )
+        {
+        if (levels.length > 0 || buffered > 0) throw new IllegalStateException( "cannot change the dictionary of a store which has been used" );
+        this.dictionary = dictionary;
+        }
+    
+    /**
+        Answer the dictionary used to encode this store's nodes.
+    */
+    public NodeDictionary getDictionary()
+        { return dictionary; }
+    
+    /**
+        Answer the number of sorted levels; the buffer is not counted.
+    */
+    public int levelCount()
+        { return levels.length; }
+    
+    public void close()
+        { clear(); }
+    
+    public void add( Triple t )
+        {
+        int s = dictionary.encode( t.getSubject() );
+        int p = dictionary.encode( t.getPredicate() );
+        int o = dictionary.encode( t.getObject() );
+        if (bufferSet.contains( s, p, o )) return;
+        if (inLevels( s, p, o ))
+            {
+            if (deleted.remove( s, p, o )) 
+                { size += 1; changes += 1; }
+            return;
+            }
+        bufferS[buffered] = s; bufferP[buffered] = p; bufferO[buffered] = o;
+        buffered += 1;
+        bufferSet.add( s, p, o );
+        size += 1;
+        changes += 1;
+        if (buffered == BUFFER_SIZE) flush();
+        }
+    
+    public void delete( Triple t )
+        {
+        int s = dictionary.lookup( t.getSubject() );
+        int p = dictionary.lookup( t.getPredicate() );
+        int o = dictionary.lookup( t.getObject() );
+        if (s < 0 || p < 0 || o < 0) return;
+        if (removeTriple( s, p, o ))
+            {
+            changes += 1;
+            if (deleted.size() > size) compact();
+            }
+        }
+    
+    public int size()
+        { return size; }
+    
+    public boolean isEmpty()
+        { return size == 0; }
+    
+    /**
+        Answer true iff this store contains a triple which is sameValueAs the
+        concrete triple <code>t</code>.
+    */
+    public boolean contains( Triple t )
+        {
+        if (!t.getObject().isLiteral()) return containsByEquality( t );
+        ExtendedIterator<Triple> it = find( t );
+        try { return it.hasNext(); } finally { it.close(); }
+        }
+    
+    /**
+        Answer true iff this store contains a triple equal to <code>t</code>.
+    */
+    public boolean containsByEquality( Triple t )
+        {
+        int s = dictionary.lookup( t.getSubject() );
+        int p = dictionary.lookup( t.getPredicate() );
+        int o = dictionary.lookup( t.getObject() );
+        if (s < 0 || p < 0 || o < 0) return false;
+        return bufferSet.contains( s, p, o ) || (!deleted.contains( s, p, o ) && inLevels( s, p, o ));
+        }
+    
+    public void clear()
+        {
+        levels = new Level[0];
+        buffered = 0;
+        bufferSet.clear();
+        deleted.clear();
+        size = 0;
+        changes += 1;
+        }
+    
+    /**
+        Sort the buffer into a level and merge all the levels into one, dropping
+        any deleted triples. Worth doing after a bulk load, since finds then
+        need only one binary search per permutation.
+    */
+    public void compact()
+        {
+        if (buffered > 0) flush();
+        Level [] ls = levels;
+        if (ls.length > 1 || (ls.length == 1 && !deleted.isEmpty()))
+            {
+            Level result = ls[ls.length - 1];
+            for (int i = ls.length - 2; i >= 0; i -= 1) result = merge( ls[i], result );
+            if (ls.length == 1) result = merge( result, null );
+            levels = result.size() == 0 ? new Level[0] : new Level[] { result };
+            }
+        changes += 1;
+        }
+    
+    public ExtendedIterator<Node> listSubjects()
+        { return listNodes( SPO, bufferS ); }
+    
+    public ExtendedIterator<Node> listPredicates()
+        { return listNodes( POS, bufferP ); }
+    
+    public ExtendedIterator<Node> listObjects()
+        { return listNodes( OSP, bufferO ); }
+    
+    /**
+        Answer an ExtendedIterator returning all the triples from this store that
+        match the pattern <code>tm = (S, P, O)</code>. The permutation is chosen
+        so that the concrete nodes of the pattern lead its runs.
+    */
+    public ExtendedIterator<Triple> find( TripleMatch tm )
+        {
+        Triple t = tm.asTriple();
+        Node sm = t.getSubject(), pm = t.getPredicate(), om = t.getObject();
+        int s = -1, p = -1, o = -1;
+        if (sm.isConcrete() && (s = dictionary.lookupValue( sm )) < 0) return NullIterator.instance();
+        if (pm.isConcrete() && (p = dictionary.lookupValue( pm )) < 0) return NullIterator.instance();
+        if (om.isConcrete() && (o = dictionary.lookupValue( om )) < 0) return NullIterator.instance();
+        int perm = s >= 0 ? (p < 0 && o >= 0 ? OSP : SPO) : p >= 0 ? POS : o >= 0 ? OSP : SPO;
+        return new CompactTripleIterator( perm, sm, pm, om, s, p, o );
+        }
+    
+    /**
+        Answer the sort key of a term: its value id and then its own id, so 
+        that terms with the same value are adjacent in a run.
+    */
+    static long rank( NodeDictionary d, int term )
+        { return ((long) d.valueOf( term ) << 32) | term; }
+    
+    /**
+        Remove the triple with the given ids, without compacting. Answer true
+        iff it was present.
+    */
+    protected boolean removeTriple( int s, int p, int o )
+        {
+        if (bufferSet.remove( s, p, o ))
+            {
+            int i = buffered - 1;
+            while (bufferS[i] != s || bufferP[i] != p || bufferO[i] != o) i -= 1;
+            buffered -= 1;
+            bufferS[i] = bufferS[buffered]; bufferP[i] = bufferP[buffered]; bufferO[i] = bufferO[buffered];
+            size -= 1;
+            return true;
+            }
+        if (!deleted.contains( s, p, o ) && inLevels( s, p, o ))
+            {
+            deleted.add( s, p, o );
+            size -= 1;
+            return true;
+            }
+        return false;
+        }
+    
+    /**
+        Answer true iff some level holds the triple, whether or not it has 
+        been deleted.
+    */
+    protected boolean inLevels( int s, int p, int o )
+        {
+        Level [] ls = levels;
+        for (int i = 0; i < ls.length; i += 1)
+            if (runContains( ls[i].runs[SPO], s, p, o )) return true;
+        return false;
+        }
+    
+    private boolean runContains( TripleRun run, int a, int b, int c )
+        {
+        NodeDictionary d = dictionary;
+        int k = TripleRun.lowerBound( d, run.keys, 0, run.keys.length, rank( d, a ) );
+        if (k == run.keys.length || run.keys[k] != a) return false;
+        int to = run.starts[k + 1];
+        long rb = rank( d, b );
+        int from = TripleRun.lowerBound( d, run.seconds, run.starts[k], to, rb );
+        if (from == to || run.seconds[from] != b) return false;
+        to = TripleRun.lowerBound( d, run.seconds, from, to, rb + 1 );
+        int i = TripleRun.lowerBound( d, run.thirds, from, to, rank( d, c ) );
+        return i < to && run.thirds[i] == c;
+        }
+    
+    /**
+        Sort the buffer into a new level and merge levels until each is less
+        than half the size of the one before it.
+    */
+    protected void flush()
+        {
+        int n = buffered;
+        long [] rs = ranks( bufferS, n ), rp = ranks( bufferP, n ), ro = ranks( bufferO, n );
+        TripleRun [] runs = new TripleRun[3];
+        runs[SPO] = sortedRun( n, bufferS, rs, bufferP, rp, bufferO, ro );
+        runs[POS] = sortedRun( n, bufferP, rp, bufferO, ro, bufferS, rs );
+        runs[OSP] = sortedRun( n, bufferO, ro, bufferS, rs, bufferP, rp );
+        buffered = 0;
+        bufferSet.clear();
+        Level [] ls = new Level[levels.length + 1];
+        System.arraycopy( levels, 0, ls, 0, levels.length );
+        ls[levels.length] = new Level( runs );
+        int count = ls.length;
+        while (count > 1 && ls[count - 2].size() <= 2 * ls[count - 1].size())
+            {
+            ls[count - 2] = merge( ls[count - 2], ls[count - 1] );
+            count -= 1;
+            if (ls[count - 1].size() == 0) count -= 1;
+            }
+        if (count < ls.length)
+            {
+            Level [] trimmed = new Level[count];
+            System.arraycopy( ls, 0, trimmed, 0, count );
+            ls = trimmed;
+            }
+        levels = ls;
+        }
+    
+    private long [] ranks( int [] terms, int n )
+        {
+        long [] result = new long[n];
+        for (int i = 0; i < n; i += 1) result[i] = rank( dictionary, terms[i] );
+        return result;
+        }
+    
+    private static TripleRun sortedRun( int n, int [] a, long [] ra, int [] b, long [] rb, int [] c, long [] rc )
+        {
+        int [] order = new int[n];
+        for (int i = 0; i < n; i += 1) order[i] = i;
+        sort( order, new int[n], 0, n, ra, rb, rc );
+        TripleRun.Builder builder = new TripleRun.Builder( n );
+        for (int i = 0; i < n; i += 1)
+            {
+            int j = order[i];
+            builder.add( a[j], b[j], c[j] );
+            }
+        return builder.build();
+        }
+    
+    /**
+        Merge sort the entries <code>[from, to)</code> of <code>order</code> by
+        the ranks of the triples they index.
+    */
+    private static void sort( int [] order, int [] scratch, int from, int to, long [] ra, long [] rb, long [] rc )
+        {
+        if (to - from < 2) return;
+        int mid = (from + to) >>> 1;
+        sort( order, scratch, from, mid, ra, rb, rc );
+        sort( order, scratch, mid, to, ra, rb, rc );
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to)
+            {
+            int x = order[i], y = order[j];
+            int cmp = compare( ra[x], ra[y] );
+            if (cmp == 0) cmp = compare( rb[x], rb[y] );
+            if (cmp == 0) cmp = compare( rc[x], rc[y] );
+            scratch[k++] = cmp <= 0 ? order[i++] : order[j++];
+            }
+        while (i < mid) scratch[k++] = order[i++];
+        while (j < to) scratch[k++] = order[j++];
+        System.arraycopy( scratch, from, order, from, to - from );
+        }
+    
+    private static int compare( long x, long y )
+        { return x < y ? -1 : x > y ? 1 : 0; }
+    
+    /**
+        Answer a level holding the triples of <code>x</code> and <code>y</code>
+        (which may be null) less any deleted ones, which are then forgotten.
+        The SPO runs are merged last since that is when the dropped triples 
+        are removed from the deleted set.
+    */
+    protected Level merge( Level x, Level y )
+        {
+        TripleRun [] runs = new TripleRun[3];
+        runs[POS] = mergeRuns( POS, x, y );
+        runs[OSP] = mergeRuns( OSP, x, y );
+        runs[SPO] = mergeRuns( SPO, x, y );
+        return new Level( runs );
+        }
+    
+    private TripleRun mergeRuns( int perm, Level x, Level y )
+        {
+        NodeDictionary d = dictionary;
+        RunCursor cx = new RunCursor( x.runs[perm] ), cy = new RunCursor( y == null ? null : y.runs[perm] );
+        TripleRun.Builder builder = new TripleRun.Builder( x.size() + (y == null ? 0 : y.size()) );
+        boolean checkDeleted = !deleted.isEmpty();
+        while (cx.valid || cy.valid)
+            {
+            RunCursor c;
+            if (!cx.valid) c = cy;
+            else if (!cy.valid) c = cx;
+            else
+                {
+                int cmp = compare( rank( d, cx.first ), rank( d, cy.first ) );
+                if (cmp == 0) cmp = compare( rank( d, cx.second ), rank( d, cy.second ) );
+                if (cmp == 0) cmp = compare( rank( d, cx.third ), rank( d, cy.third ) );
+                c = cmp <= 0 ? cx : cy;
+                }
+            if (!checkDeleted || !isDeleted( perm, c.first, c.second, c.third ))
+                builder.add( c.first, c.second, c.third );
+            else if (perm == SPO) 
+                deleted.remove( c.first, c.second, c.third );
+            c.advance();
+            }
+        return builder.build();
+        }
+    
+    private boolean isDeleted( int perm, int a, int b, int c )
+        {
+        switch (perm)
+            {
+            case SPO: return deleted.contains( a, b, c );
+            case POS: return deleted.contains( c, a, b );
+            default: return deleted.contains( b, c, a );
+            }
+        }
+    
+    /**
+        Answer an iterator over the distinct nodes leading the runs of one 
+        permutation, plus those in the matching column of the buffer.
+    */
+    private ExtendedIterator<Node> listNodes( int perm, int [] buffer )
+        {
+        Set<Node> result = new LinkedHashSet<Node>();
+        Level [] ls = levels;
+        for (int l = 0; l < ls.length; l += 1)
+            {
+            TripleRun run = ls[l].runs[perm];
+            for (int k = 0; k < run.keys.length; k += 1)
+                if (deleted.isEmpty() || hasLiveEntry( perm, run, k )) 
+                    result.add( dictionary.decode( run.keys[k] ) );
+            }
+        for (int i = 0; i < buffered; i += 1) result.add( dictionary.decode( buffer[i] ) );
+        return WrappedIterator.createNoRemove( result.iterator() );
+        }
+    
+    private boolean hasLiveEntry( int perm, TripleRun run, int k )
+        {
+        for (int i = run.starts[k]; i < run.starts[k + 1]; i += 1)
+            if (!isDeleted( perm, run.keys[k], run.seconds[i], run.thirds[i] )) return true;
+        return false;
+        }
+    
+    /**
+        One level of the store: the same triples sorted in each permutation.
+    */
+    protected static class Level
+        {
+        protected final TripleRun [] runs;
+        
+        protected Level( TripleRun [] runs )
+            { this.runs = runs; }
+        
+        protected int size()
+            { return runs[SPO].size(); }
+        }
+    
+    /**
+        A position in a run, used to merge runs in order.
+    */
+    protected static class RunCursor
+        {
+        protected final TripleRun run;
+        protected int key = 0, entry = 0;
+        protected int first, second, third;
+        protected boolean valid;
+        
+        protected RunCursor( TripleRun run )
+            {
+            this.run = run;
+            this.valid = run != null && run.size() > 0;
+            if (valid) load();
+            }
+        
+        protected void advance()
+            {
+            entry += 1;
+            if (entry == run.size()) { valid = false; return; }
+            if (entry == run.starts[key + 1]) key += 1;
+            load();
+            }
+        
+        private void load()
+            {
+            first = run.keys[key];
+            second = run.seconds[entry];
+            third = run.thirds[entry];
+            }
+        }
+    
+    /**
+        Iterator over the matching triples of each level, in the chosen
+        permutation, and then of the buffer. The buffer is visited in 
+        descending order so that removing the current triple, which moves the
+        buffer's last entry into its place, does not disturb the iteration;
+        removing a triple from a level only marks it deleted.
+    */
+    protected class CompactTripleIterator extends NiceIterator<Triple>
+        {
+        protected final int perm;
+        protected final Node sm, pm, om;
+        protected final int s, p, o;
+        
+        /** The value ids bound in the first and second positions of the permutation, or -1 */
+        protected final int first, second;
+        
+        protected final Level [] snapshot = levels;
+        protected int level = -1;
+        protected TripleRun run;
+        protected int key, keyLimit;
+        protected int entry, entryLimit;
+        protected int bufferCursor = buffered;
+        
+        protected int expectedChanges = changes;
+        protected boolean ready = false;
+        protected boolean ahead = false;
+        protected int nextS, nextP, nextO;
+        protected int currentS = -1, currentP, currentO;
+        protected Triple current;
+        
+        protected CompactTripleIterator( int perm, Node sm, Node pm, Node om, int s, int p, int o )
+            {
+            this.perm = perm;
+            this.sm = sm; this.pm = pm; this.om = om;
+            this.s = s; this.p = p; this.o = o;
+            this.first = perm == SPO ? s : perm == POS ? p : o;
+            this.second = perm == SPO ? p : perm == POS ? o : s;
+            }
+        
+        @Override public boolean hasNext()
+            {
+            if (changes != expectedChanges) throw new ConcurrentModificationException();
+            if (!ready) 
+                {
+                ahead = advance();
+                ready = true;
+                }
+            return ahead;
+            }
+        
+        @Override public Triple next()
+            {
+            if (!hasNext()) throw new NoSuchElementException( "CompactTripleIterator.next()" );
+            ready = false;
+            currentS = nextS; currentP = nextP; currentO = nextO;
+            return current = new Triple
+                ( dictionary.decode( currentS ), dictionary.decode( currentP ), dictionary.decode( currentO ) );
+            }
+        
+        @Override public void remove()
+            {
+            if (currentS < 0) throw new IllegalStateException( "no current triple to remove" );
+            if (changes != expectedChanges) throw new ConcurrentModificationException();
+            removeTriple( currentS, currentP, currentO );
+            currentS = -1;
+            changes += 1;
+            expectedChanges = changes;
+            parent.getEventManager().notifyDeleteTriple( parent, current );
+            }
+        
+        private boolean advance()
+            {
+            while (true)
+                {
+                if (entry < entryLimit)
+                    {
+                    int i = entry++;
+                    if (acceptFromRun( run.keys[key], run.seconds[i], run.thirds[i] )) return true;
+                    }
+                else if (key + 1 < keyLimit)
+                    openKey( key + 1 );
+                else if (level + 1 < snapshot.length)
+                    openLevel( level + 1 );
+                else if (bufferCursor > 0)
+                    {
+                    int i = --bufferCursor;
+                    if (accept( bufferS[i], bufferP[i], bufferO[i] )) return true;
+                    }
+                else
+                    return false;
+                }
+            }
+        
+        private void openLevel( int l )
+            {
+            NodeDictionary d = dictionary;
+            level = l;
+            run = snapshot[l].runs[perm];
+            int n = run.keys.length;
+            int from = first < 0 ? 0 : TripleRun.lowerBound( d, run.keys, 0, n, (long) first << 32 );
+            keyLimit = first < 0 ? n : TripleRun.lowerBound( d, run.keys, from, n, (long) (first + 1) << 32 );
+            key = from - 1;
+            entry = entryLimit = 0;
+            }
+        
+        private void openKey( int k )
+            {
+            key = k;
+            entry = run.starts[k];
+            entryLimit = run.starts[k + 1];
+            if (second >= 0)
+                {
+                NodeDictionary d = dictionary;
+                entry = TripleRun.lowerBound( d, run.seconds, entry, entryLimit, (long) second << 32 );
+                entryLimit = TripleRun.lowerBound( d, run.seconds, entry, entryLimit, (long) (second + 1) << 32 );
+                }
+            }
+        
+        private boolean acceptFromRun( int a, int b, int c )
+            {
+            int ts, tp, to;
+            switch (perm)
+                {
+                case SPO: ts = a; tp = b; to = c; break;
+                case POS: tp = a; to = b; ts = c; break;
+                default: to = a; ts = b; tp = c; break;
+                }
+            if (!deleted.isEmpty() && deleted.contains( ts, tp, to )) return false;
+            return accept( ts, tp, to );
+            }
+        
+        private boolean accept( int ts, int tp, int to )
+            {
+            if (matches( s, sm, ts ) && matches( p, pm, tp ) && matches( o, om, to ))
+                {
+                nextS = ts; nextP = tp; nextO = to;
+                return true;
+                }
+            return false;
+            }
+        
+        private boolean matches( int value, Node pattern, int term )
+            {
+            if (value < 0) return true;
+            if (dictionary.valueOf( term ) != value) return false;
+            return !pattern.isLiteral() || pattern.sameValueAs( dictionary.decode( term ) );
+            }
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
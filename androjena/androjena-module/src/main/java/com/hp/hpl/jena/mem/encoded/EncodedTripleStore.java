@@ -0,0 +1,418 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP, all rights reserved.
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.mem.encoded;
+
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.graph.impl.TripleStore;
+import com.hp.hpl.jena.util.iterator.*;
+
+/**
+    A TripleStore which holds its triples as ids from a {@link NodeDictionary}
+    rather than as Triple objects. Each triple occupies one slot of three
+    parallel int arrays; a slot is found from its triple through an open
+    addressed hash table of slots, and from any one of its nodes through
+    S, P and O {@link SlotIndex}es keyed by value id. Triple objects are only
+    built for the results of a find.
+<p>
+    Like GraphTripleStore, triples are stored by equality (two literals with
+    the same value but different lexical forms make different triples) while
+    matching in find is by sameValueAs. As with the other mem stores, the
+    store is not synchronized and its iterators fail fast if the store is
+    updated other than through their own remove.
+    
+    @see GraphMemEncoded
+*/
+public class EncodedTripleStore implements TripleStore
+    {
+    protected final Graph parent;
+    protected NodeDictionary dictionary;
+    
+    /** The term ids of the triple in each slot, subjects[slot] is -1 if the slot is free */
+    protected int [] subjects, predicates, objects;
+    
+    /** The number of slots which have ever been used */
+    protected int highWater = 0;
+    
+    /** Slots freed by delete, reused by add */
+    protected int [] freeSlots = new int[16];
+    protected int freeCount = 0;
+    
+    /** Open addressed table of slot + 1, 0 marks an empty entry */
+    protected int [] table = new int[64];
+    
+    protected final SlotIndex bySubject = new SlotIndex();
+    protected final SlotIndex byPredicate = new SlotIndex();
+    protected final SlotIndex byObject = new SlotIndex();
+    
+    protected int size = 0;
+    
+    /** Count of updates, used to make the iterators fail fast */
+    protected int changes = 0;
+    
+    public EncodedTripleStore( Graph parent )
+        { this( parent, new NodeDictionary() ); }
+    
+    public EncodedTripleStore( Graph parent, NodeDictionary dictionary )
+        { 
+        this.parent = parent; 
+        this.dictionary = dictionary;
+        allocateSlots( 32 );
+        }
+    
+    /**
+        Switch this store to encoding with the given dictionary. Only allowed
+        while the store is empty.
+    */
+    public void setDictionary( NodeDictionary dictionary )
+        {
+        if (highWater > 0) throw new IllegalStateException( "cannot change the dictionary of a store which has been used" );
+        this.dictionary = dictionary;
+        }
+    
+    /**
+        Answer the dictionary used to encode this store's nodes.
+    */
+    public NodeDictionary getDictionary()
+        { return dictionary; }
+    
+    public void close()
+        { clear(); }
+    
+    public void add( Triple t )
+        {
+        int s = dictionary.encode( t.getSubject() );
+        int p = dictionary.encode( t.getPredicate() );
+        int o = dictionary.encode( t.getObject() );
+        if (findSlot( s, p, o ) >= 0) return;
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot();
+        subjects[slot] = s; predicates[slot] = p; objects[slot] = o;
+        insertInTable( slot );
+        bySubject.add( dictionary.valueOf( s ), slot );
+        byPredicate.add( dictionary.valueOf( p ), slot );
+        byObject.add( dictionary.valueOf( o ), slot );
+        size += 1;
+        changes += 1;
+        }
+    
+    public void delete( Triple t )
+        {
+        int s = dictionary.lookup( t.getSubject() );
+        int p = dictionary.lookup( t.getPredicate() );
+        int o = dictionary.lookup( t.getObject() );
+        if (s < 0 || p < 0 || o < 0) return;
+        int slot = findSlot( s, p, o );
+        if (slot >= 0) 
+            {
+            removeSlot( slot );
+            changes += 1;
+            }
+        }
+    
+    public int size()
+        { return size; }
+    
+    public boolean isEmpty()
+        { return size == 0; }
+    
+    /**
+        Answer true iff this store contains a triple which is sameValueAs the
+        concrete triple <code>t</code>.
+    */
+    public boolean contains( Triple t )
+        {
+        if (!t.getObject().isLiteral()) return containsByEquality( t );
+        ExtendedIterator<Triple> it = find( t );
+        try { return it.hasNext(); } finally { it.close(); }
+        }
+    
+    /**
+        Answer true iff this store contains a triple equal to <code>t</code>.
+    */
+    public boolean containsByEquality( Triple t )
+        {
+        int s = dictionary.lookup( t.getSubject() );
+        int p = dictionary.lookup( t.getPredicate() );
+        int o = dictionary.lookup( t.getObject() );
+        return s >= 0 && p >= 0 && o >= 0 && findSlot( s, p, o ) >= 0;
+        }
+    
+    public void clear()
+        {
+        highWater = 0;
+        allocateSlots( 32 );
+        freeCount = 0;
+        table = new int[64];
+        bySubject.clear(); byPredicate.clear(); byObject.clear();
+        size = 0;
+        changes += 1;
+        }
+    
+    public ExtendedIterator<Node> listSubjects()
+        { return listNodes( bySubject, subjects ); }
+    
+    public ExtendedIterator<Node> listPredicates()
+        { return listNodes( byPredicate, predicates ); }
+    
+    public ExtendedIterator<Node> listObjects()
+        { return listNodes( byObject, objects ); }
+    
+    /**
+        Answer an ExtendedIterator returning all the triples from this store that
+        match the pattern <code>tm = (S, P, O)</code>. The concrete node with the 
+        fewest triples selects the slots to examine, the other positions are 
+        checked by value id.
+    */
+    public ExtendedIterator<Triple> find( TripleMatch tm )
+        {
+        Triple t = tm.asTriple();
+        Node sm = t.getSubject(), pm = t.getPredicate(), om = t.getObject();
+        int s = -1, p = -1, o = -1;
+        if (sm.isConcrete() && (s = dictionary.lookupValue( sm )) < 0) return NullIterator.instance();
+        if (pm.isConcrete() && (p = dictionary.lookupValue( pm )) < 0) return NullIterator.instance();
+        if (om.isConcrete() && (o = dictionary.lookupValue( om )) < 0) return NullIterator.instance();
+        SlotIndex index = null;
+        int key = -1;
+        if (s >= 0) 
+            { index = bySubject; key = s; }
+        if (o >= 0 && (index == null || byObject.size( o ) < index.size( key )))
+            { index = byObject; key = o; }
+        if (p >= 0 && (index == null || byPredicate.size( p ) < index.size( key )))
+            { index = byPredicate; key = p; }
+        if (index != null && index.size( key ) == 0) return NullIterator.instance();
+        return new EncodedTripleIterator( index, key, sm, pm, om, s, p, o );
+        }
+    
+    /**
+        Answer the slot holding the triple with the given term ids, or -1.
+    */
+    protected int findSlot( int s, int p, int o )
+        {
+        int mask = table.length - 1;
+        for (int i = hash( s, p, o ) & mask;; i = (i + 1) & mask)
+            {
+            int entry = table[i];
+            if (entry == 0) return -1;
+            int slot = entry - 1;
+            if (subjects[slot] == s && predicates[slot] == p && objects[slot] == o) return slot;
+            }
+        }
+    
+    protected void removeSlot( int slot )
+        {
+        removeFromTable( slot );
+        bySubject.remove( dictionary.valueOf( subjects[slot] ), slot );
+        byPredicate.remove( dictionary.valueOf( predicates[slot] ), slot );
+        byObject.remove( dictionary.valueOf( objects[slot] ), slot );
+        subjects[slot] = -1;
+        if (freeCount == freeSlots.length)
+            {
+            int [] bigger = new int[freeCount * 2];
+            System.arraycopy( freeSlots, 0, bigger, 0, freeCount );
+            freeSlots = bigger;
+            }
+        freeSlots[freeCount++] = slot;
+        size -= 1;
+        }
+    
+    protected Triple tripleAt( int slot )
+        { 
+        return new Triple
+            ( dictionary.decode( subjects[slot] ), 
+            dictionary.decode( predicates[slot] ), 
+            dictionary.decode( objects[slot] ) ); 
+        }
+    
+    private static int hash( int s, int p, int o )
+        {
+        int h = s * 0x9E3779B1 + p * 0x85EBCA6B + o * 0xC2B2AE35;
+        return h ^ (h >>> 16);
+        }
+    
+    private int hashOf( int slot )
+        { return hash( subjects[slot], predicates[slot], objects[slot] ); }
+    
+    private void insertInTable( int slot )
+        {
+        if ((size + 1) * 4 > table.length * 3) rehash( table.length * 2 );
+        int mask = table.length - 1;
+        int i = hashOf( slot ) & mask;
+        while (table[i] != 0) i = (i + 1) & mask;
+        table[i] = slot + 1;
+        }
+    
+    /**
+        Remove a slot from the hash table, shifting back any later entries of
+        the same probe sequence so that no tombstones are needed.
+    */
+    private void removeFromTable( int slot )
+        {
+        int mask = table.length - 1;
+        int i = hashOf( slot ) & mask;
+        while (table[i] != slot + 1) i = (i + 1) & mask;
+        int hole = i;
+        for (int j = (hole + 1) & mask; table[j] != 0; j = (j + 1) & mask)
+            {
+            int home = hashOf( table[j] - 1 ) & mask;
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable)
+                {
+                table[hole] = table[j];
+                hole = j;
+                }
+            }
+        table[hole] = 0;
+        }
+    
+    private void rehash( int newLength )
+        {
+        int [] old = table;
+        table = new int[newLength];
+        int mask = newLength - 1;
+        for (int k = 0; k < old.length; k += 1)
+            {
+            if (old[k] == 0) continue;
+            int i = hashOf( old[k] - 1 ) & mask;
+            while (table[i] != 0) i = (i + 1) & mask;
+            table[i] = old[k];
+            }
+        }
+    
+    private int nextSlot()
+        {
+        if (highWater == subjects.length) allocateSlots( subjects.length * 2 );
+        return highWater++;
+        }
+    
+    private void allocateSlots( int n )
+        {
+        int [] s = new int[n], p = new int[n], o = new int[n];
+        if (subjects != null && highWater > 0)
+            {
+            System.arraycopy( subjects, 0, s, 0, highWater );
+            System.arraycopy( predicates, 0, p, 0, highWater );
+            System.arraycopy( objects, 0, o, 0, highWater );
+            }
+        subjects = s; predicates = p; objects = o;
+        }
+    
+    /**
+        Answer an iterator over the distinct nodes in one position, using the 
+        term ids in <code>terms</code> for the node of each indexed slot. 
+    */
+    private ExtendedIterator<Node> listNodes( SlotIndex index, int [] terms )
+        {
+        java.util.Set<Node> result = new java.util.LinkedHashSet<Node>( index.keyCount() * 2 );
+        for (int key = 0; key < index.keyLimit(); key += 1)
+            {
+            int n = index.size( key );
+            if (n == 0) continue;
+            int [] bag = index.bag( key );
+            for (int i = 0; i < n; i += 1) result.add( dictionary.decode( terms[bag[i]] ) );
+            }
+        return WrappedIterator.createNoRemove( result.iterator() );
+        }
+    
+    /**
+        Iterator over the slots of one bag (or of the whole store if there is
+        no bag) which match the pattern. Slots are visited in descending order 
+        so that removing the current triple, which moves a bag's last entry 
+        into its place, does not disturb the iteration.
+    */
+    protected class EncodedTripleIterator extends NiceIterator<Triple>
+        {
+        protected final int [] bag;
+        protected int cursor;
+        protected final Node sm, pm, om;
+        protected final int s, p, o;
+        protected int expectedChanges = changes;
+        protected int nextSlot = -1;
+        protected int currentSlot = -1;
+        protected Triple current;
+        
+        protected EncodedTripleIterator( SlotIndex index, int key, Node sm, Node pm, Node om, int s, int p, int o )
+            {
+            this.bag = index == null ? null : index.bag( key );
+            this.cursor = index == null ? highWater : index.size( key );
+            this.sm = sm; this.pm = pm; this.om = om;
+            this.s = s; this.p = p; this.o = o;
+            }
+        
+        @Override public boolean hasNext()
+            {
+            if (changes != expectedChanges) throw new ConcurrentModificationException();
+            while (nextSlot < 0 && cursor > 0)
+                {
+                int slot = bag == null ? --cursor : bag[--cursor];
+                if (subjects[slot] >= 0 && matches( slot )) nextSlot = slot;
+                }
+            return nextSlot >= 0;
+            }
+        
+        @Override public Triple next()
+            {
+            if (!hasNext()) throw new NoSuchElementException( "EncodedTripleIterator.next()" );
+            currentSlot = nextSlot;
+            nextSlot = -1;
+            return current = tripleAt( currentSlot );
+            }
+        
+        @Override public void remove()
+            {
+            if (currentSlot < 0) throw new IllegalStateException( "no current triple to remove" );
+            if (changes != expectedChanges) throw new ConcurrentModificationException();
+            removeSlot( currentSlot );
+            currentSlot = -1;
+            changes += 1;
+            expectedChanges = changes;
+            parent.getEventManager().notifyDeleteTriple( parent, current );
+            }
+        
+        private boolean matches( int slot )
+            {
+            return 
+                matches( s, sm, subjects[slot] ) 
+                && matches( p, pm, predicates[slot] ) 
+                && matches( o, om, objects[slot] );
+            }
+        
+        private boolean matches( int value, Node pattern, int term )
+            {
+            if (value < 0) return true;
+            if (dictionary.valueOf( term ) != value) return false;
+            return !pattern.isLiteral() || pattern.sameValueAs( dictionary.decode( term ) );
+            }
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP, all rights reserved.
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.mem.encoded;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.graph.impl.*;
+import com.hp.hpl.jena.graph.query.*;
+import com.hp.hpl.jena.mem.*;
+import com.hp.hpl.jena.shared.ReificationStyle;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+    A memory-backed graph which stores its triples as int ids from a
+    {@link NodeDictionary}, see {@link EncodedTripleStore}. It uses much less 
+    heap per triple than GraphMem, which holds each Triple object in three
+    hashed bunches, at the cost of building a Triple for each find result. 
+    Graphs which share a dictionary share the encoding of their nodes, 
+    so each distinct node is held once.
+*/
+public class GraphMemEncoded extends GraphMemBase
+    {
+    /**
+        Initialise a GraphMemEncoded with its own dictionary and the Minimal
+        reification style.
+    */
+    public GraphMemEncoded()
+        { this( new NodeDictionary(), ReificationStyle.Minimal ); }
+    
+    /**
+        Initialise a GraphMemEncoded which encodes its nodes with the given,
+        possibly shared, dictionary.
+    */
+    public GraphMemEncoded( NodeDictionary dictionary, ReificationStyle style )
+        { 
+        super( style ); 
+        ((EncodedTripleStore) store).setDictionary( dictionary );
+        }
+    
+    @Override protected TripleStore createTripleStore()
+        { return new EncodedTripleStore( this ); }
+    
+    /**
+        Answer the dictionary used to encode this graph's nodes.
+    */
+    public NodeDictionary getDictionary()
+        { return ((EncodedTripleStore) store).getDictionary(); }
+    
+    @Override protected void destroy()
+        { store.close(); }
+    
+    @Override public void performAdd( Triple t )
+        { if (!getReifier().handledAdd( t )) store.add( t ); }
+    
+    @Override public void performDelete( Triple t )
+        { if (!getReifier().handledRemove( t )) store.delete( t ); }
+    
+    @Override public int graphBaseSize()  
+        { return store.size(); }
+    
+    @Override public QueryHandler queryHandler()
+        {
+        if (queryHandler == null) queryHandler = new GraphMemBaseQueryHandler( this );
+        return queryHandler;
+        }
+    
+    @Override public ExtendedIterator<Triple> graphBaseFind( TripleMatch m ) 
+        { return store.find( m.asTriple() ); }
+    
+    @Override public boolean graphBaseContains( Triple t )
+        { return isSafeForEquality( t ) ? store.contains( t ) : super.graphBaseContains( t ); }
+    
+    @Override public void clear()
+        { 
+        store.clear(); 
+        ((SimpleReifier) getReifier()).clear();
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
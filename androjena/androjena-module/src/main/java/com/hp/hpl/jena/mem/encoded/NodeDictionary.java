@@ -0,0 +1,148 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP, all rights reserved.
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.mem.encoded;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+    A dictionary mapping Nodes to dense int ids and back, which can be
+    shared between several encoded graphs (and threads). Ids are allocated
+    from 0 upwards and are never reused; nodes are never removed.
+<p>
+    Each node also has a <i>value id</i>, the id of the first node encoded
+    with the same indexing value (see <code>Node.getIndexingValue()</code>).
+    Non-literal nodes are their own value; literals which are the same
+    value, such as "1"^^xsd:int and "01"^^xsd:int, share a value id, so
+    value-based matching can compare ints.
+<p>
+    Lookups do not lock; only the allocation of a new id is synchronized.
+*/
+public class NodeDictionary
+    {
+    protected final ConcurrentHashMap<Node, Integer> ids = new ConcurrentHashMap<Node, Integer>();
+    
+    protected final ConcurrentHashMap<Object, Integer> valueIds = new ConcurrentHashMap<Object, Integer>();
+    
+    /**
+        The nodes by id and their value ids. Replaced, not updated in place, 
+        when grown so that readers always see a consistent array.
+    */
+    protected volatile Node [] nodes = new Node[64];
+    protected volatile int [] values = new int[64];
+    
+    protected volatile int size = 0;
+    
+    public NodeDictionary()
+        {}
+    
+    /**
+        Answer the id of <code>n</code>, allocating one if it has not been
+        seen before.
+    */
+    public int encode( Node n )
+        {
+        Integer id = ids.get( n );
+        return id == null ? allocate( n ) : id.intValue();
+        }
+    
+    /**
+        Answer the id of <code>n</code>, or -1 if it has never been encoded.
+    */
+    public int lookup( Node n )
+        {
+        Integer id = ids.get( n );
+        return id == null ? -1 : id.intValue();
+        }
+    
+    /**
+        Answer the value id shared by all nodes with the same indexing value
+        as <code>n</code>, or -1 if no such node has been encoded.
+    */
+    public int lookupValue( Node n )
+        {
+        if (!n.isLiteral()) return lookup( n );
+        Integer id = valueIds.get( n.getIndexingValue() );
+        return id == null ? -1 : id.intValue();
+        }
+    
+    /**
+        Answer the node with the given id.
+    */
+    public Node decode( int id )
+        { return nodes[id]; }
+    
+    /**
+        Answer the value id of the node with the given id.
+    */
+    public int valueOf( int id )
+        { return values[id]; }
+    
+    /**
+        Answer the number of nodes encoded so far; all ids are less than this.
+    */
+    public int size()
+        { return size; }
+    
+    protected synchronized int allocate( Node n )
+        {
+        Integer existing = ids.get( n );
+        if (existing != null) return existing.intValue();
+        int id = size;
+        if (id == nodes.length) grow();
+        int value = id;
+        if (n.isLiteral())
+            {
+            Object key = n.getIndexingValue();
+            Integer v = valueIds.get( key );
+            if (v == null) valueIds.put( key, new Integer( id ) ); else value = v.intValue();
+            }
+        nodes[id] = n;
+        values[id] = value;
+        size = id + 1;
+        ids.put( n, new Integer( id ) );
+        return id;
+        }
+    
+    private void grow()
+        {
+        int newLength = nodes.length * 2;
+        Node [] newNodes = new Node[newLength];
+        int [] newValues = new int[newLength];
+        System.arraycopy( nodes, 0, newNodes, 0, size );
+        System.arraycopy( values, 0, newValues, 0, size );
+        values = newValues;
+        nodes = newNodes;
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP, all rights reserved.
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.mem.encoded;
+
+/**
+    An index from node ids to the slots of the triples which have that node
+    in one position. Ids are dense so the index is an array of growable int
+    bags, indexed by id. Each slot's position within its bag is recorded so
+    that removal is constant time: the last entry of the bag is moved into 
+    the hole.
+*/
+class SlotIndex
+    {
+    protected int [][] bags = new int[16][];
+    protected int [] sizes = new int[16];
+    protected int [] positions = new int[16];
+    protected int keys = 0;
+    
+    void add( int key, int slot )
+        {
+        if (key >= bags.length) growKeys( key + 1 );
+        if (slot >= positions.length) growSlots( slot + 1 );
+        int [] bag = bags[key];
+        int n = sizes[key];
+        if (bag == null) 
+            { bag = bags[key] = new int[2]; keys += 1; }
+        else if (n == 0)
+            keys += 1;
+        else if (n == bag.length)
+            {
+            int [] bigger = new int[n + (n >> 1) + 1];
+            System.arraycopy( bag, 0, bigger, 0, n );
+            bag = bags[key] = bigger;
+            }
+        bag[n] = slot;
+        positions[slot] = n;
+        sizes[key] = n + 1;
+        }
+    
+    void remove( int key, int slot )
+        {
+        int [] bag = bags[key];
+        int last = sizes[key] - 1;
+        int pos = positions[slot];
+        int moved = bag[last];
+        bag[pos] = moved;
+        positions[moved] = pos;
+        sizes[key] = last;
+        if (last == 0) 
+            {
+            keys -= 1;
+            if (bag.length > 8) bags[key] = null;
+            }
+        }
+    
+    /**
+        Answer the number of slots indexed under <code>key</code>.
+    */
+    int size( int key )
+        { return key < sizes.length ? sizes[key] : 0; }
+    
+    /**
+        Answer the bag for <code>key</code>; only the first <code>size( key )</code>
+        entries are meaningful.
+    */
+    int [] bag( int key )
+        { return bags[key]; }
+    
+    /**
+        Answer the number of keys with at least one slot.
+    */
+    int keyCount()
+        { return keys; }
+    
+    /**
+        Answer one more than the largest key which may have slots.
+    */
+    int keyLimit()
+        { return sizes.length; }
+    
+    void clear()
+        {
+        bags = new int[16][];
+        sizes = new int[16];
+        positions = new int[16];
+        keys = 0;
+        }
+    
+    private void growKeys( int minimum )
+        {
+        int n = Math.max( minimum, bags.length * 2 );
+        int [][] newBags = new int[n][];
+        int [] newSizes = new int[n];
+        System.arraycopy( bags, 0, newBags, 0, bags.length );
+        System.arraycopy( sizes, 0, newSizes, 0, sizes.length );
+        bags = newBags;
+        sizes = newSizes;
+        }
+    
+    private void growSlots( int minimum )
+        {
+        int [] newPositions = new int[Math.max( minimum, positions.length * 2 )];
+        System.arraycopy( positions, 0, newPositions, 0, positions.length );
+        positions = newPositions;
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
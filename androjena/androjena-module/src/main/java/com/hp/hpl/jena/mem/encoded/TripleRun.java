@@ -0,0 +1,142 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP, all rights reserved.
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.mem.encoded;
+
+/**
+    An immutable sorted run of encoded triples in one permutation of their
+    positions (SPO, POS or OSP), as used by {@link CompactTripleStore}. The
+    triples are held as (first, second, third) term ids sorted by the
+    rank of each term in turn, with the first position compressed: each
+    distinct first term appears once in <code>keys</code> and 
+    <code>starts</code> gives the extent of its entries in the 
+    <code>seconds</code> and <code>thirds</code> columns.
+<p>
+    The rank of a term (see {@link CompactTripleStore#rank}) orders terms by 
+    value id and then by term id, so all the terms sharing a value are adjacent 
+    and a find by value is a range search.
+*/
+class TripleRun
+    {
+    protected final int [] keys;
+    protected final int [] starts;
+    protected final int [] seconds;
+    protected final int [] thirds;
+    
+    protected TripleRun( int [] keys, int [] starts, int [] seconds, int [] thirds )
+        {
+        this.keys = keys;
+        this.starts = starts;
+        this.seconds = seconds;
+        this.thirds = thirds;
+        }
+    
+    /**
+        Answer the number of triples in this run.
+    */
+    int size()
+        { return seconds.length; }
+    
+    /**
+        Answer the number of distinct first terms in this run.
+    */
+    int keyCount()
+        { return keys.length; }
+    
+    /**
+        Answer the index of the first entry of <code>terms</code> in 
+        <code>[from, to)</code> whose rank is not less than <code>rank</code>,
+        or <code>to</code> if there isn't one.
+    */
+    static int lowerBound( NodeDictionary d, int [] terms, int from, int to, long rank )
+        {
+        int lo = from, hi = to;
+        while (lo < hi)
+            {
+            int mid = (lo + hi) >>> 1;
+            if (CompactTripleStore.rank( d, terms[mid] ) < rank) lo = mid + 1; else hi = mid;
+            }
+        return lo;
+        }
+    
+    /**
+        Accumulates triples, which must be added in sorted order, into a run of 
+        at most <code>capacity</code> triples.
+    */
+    static class Builder
+        {
+        protected int [] keys, starts, seconds, thirds;
+        protected int keyCount = 0;
+        protected int size = 0;
+        
+        Builder( int capacity )
+            {
+            keys = new int[capacity];
+            starts = new int[capacity + 1];
+            seconds = new int[capacity];
+            thirds = new int[capacity];
+            }
+        
+        void add( int first, int second, int third )
+            {
+            if (keyCount == 0 || keys[keyCount - 1] != first)
+                {
+                keys[keyCount] = first;
+                starts[keyCount] = size;
+                keyCount += 1;
+                }
+            seconds[size] = second;
+            thirds[size] = third;
+            size += 1;
+            }
+        
+        /**
+            Answer the run built so far, with its arrays trimmed to size. The
+            builder must not be used afterwards.
+        */
+        TripleRun build()
+            {
+            starts[keyCount] = size;
+            return new TripleRun
+                ( trim( keys, keyCount ), trim( starts, keyCount + 1 ), 
+                trim( seconds, size ), trim( thirds, size ) );
+            }
+        
+        private static int [] trim( int [] a, int n )
+            {
+            if (a.length == n) return a;
+            int [] result = new int[n];
+            System.arraycopy( a, 0, result, 0, n );
+            return result;
+            }
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
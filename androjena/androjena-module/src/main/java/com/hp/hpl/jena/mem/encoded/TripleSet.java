@@ -0,0 +1,142 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP, all rights reserved.
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.mem.encoded;
+
+/**
+    A set of encoded triples, held in an open addressed hash table of term 
+    id triples. Used by {@link CompactTripleStore} to record the deletions
+    from its sorted runs which have not yet been merged away.
+*/
+class TripleSet
+    {
+    /** Three ids per entry; an entry whose subject is -1 is empty */
+    protected int [] table;
+    protected int size = 0;
+    
+    TripleSet()
+        { allocate( 16 ); }
+    
+    int size()
+        { return size; }
+    
+    boolean isEmpty()
+        { return size == 0; }
+    
+    boolean contains( int s, int p, int o )
+        { return indexOf( s, p, o ) >= 0; }
+    
+    /**
+        Add the triple, answering true iff it was not already present.
+    */
+    boolean add( int s, int p, int o )
+        {
+        if (indexOf( s, p, o ) >= 0) return false;
+        if ((size + 1) * 4 > capacity() * 3) rehash( capacity() * 2 );
+        insert( s, p, o );
+        size += 1;
+        return true;
+        }
+    
+    /**
+        Remove the triple, answering true iff it was present. Later entries of
+        the same probe sequence are shifted back so that no tombstones are needed.
+    */
+    boolean remove( int s, int p, int o )
+        {
+        int i = indexOf( s, p, o );
+        if (i < 0) return false;
+        int mask = capacity() - 1;
+        int hole = i;
+        for (int j = (hole + 1) & mask; table[j * 3] >= 0; j = (j + 1) & mask)
+            {
+            int home = hash( table[j * 3], table[j * 3 + 1], table[j * 3 + 2] ) & mask;
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable)
+                {
+                System.arraycopy( table, j * 3, table, hole * 3, 3 );
+                hole = j;
+                }
+            }
+        table[hole * 3] = -1;
+        size -= 1;
+        return true;
+        }
+    
+    void clear()
+        {
+        allocate( 16 );
+        size = 0;
+        }
+    
+    private int capacity()
+        { return table.length / 3; }
+    
+    private int indexOf( int s, int p, int o )
+        {
+        int mask = capacity() - 1;
+        for (int i = hash( s, p, o ) & mask;; i = (i + 1) & mask)
+            {
+            int k = i * 3;
+            if (table[k] < 0) return -1;
+            if (table[k] == s && table[k + 1] == p && table[k + 2] == o) return i;
+            }
+        }
+    
+    private void insert( int s, int p, int o )
+        {
+        int mask = capacity() - 1;
+        int i = hash( s, p, o ) & mask;
+        while (table[i * 3] >= 0) i = (i + 1) & mask;
+        table[i * 3] = s; table[i * 3 + 1] = p; table[i * 3 + 2] = o;
+        }
+    
+    private void rehash( int newCapacity )
+        {
+        int [] old = table;
+        allocate( newCapacity );
+        for (int k = 0; k < old.length; k += 3)
+            if (old[k] >= 0) insert( old[k], old[k + 1], old[k + 2] );
+        }
+    
+    private void allocate( int capacity )
+        {
+        table = new int[capacity * 3];
+        for (int k = 0; k < table.length; k += 3) table[k] = -1;
+        }
+    
+    private static int hash( int s, int p, int o )
+        {
+        int h = s * 0x9E3779B1 + p * 0x85EBCA6B + o * 0xC2B2AE35;
+        return h ^ (h >>> 16);
+        }
+    }
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
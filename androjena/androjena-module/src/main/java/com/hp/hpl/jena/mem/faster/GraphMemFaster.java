@@ -31,12 +31,25 @@ public class GraphMemFaster extends GraphMemBase
     @Override public void performAdd( Triple t )
         { if (!getReifier().handledAdd( t )) store.add( t ); }
 
+    @Override public void performAddAll( Triple [] triples )
+        { ((GraphTripleStoreBase) store).addAll( notHandledByReifier( triples ) ); }
+
     @Override public void performDelete( Triple t )
         { if (!getReifier().handledRemove( t )) store.delete( t ); }
 
     @Override public int graphBaseSize()  
         { return store.size(); }
     
+    @Override public GraphMemFaster snapshot()
+        {
+        GraphMemFaster result = new GraphMemFaster( ReificationStyle.Minimal );
+        ((GraphTripleStoreBase) result.store).becomeSnapshotOf( (GraphTripleStoreBase) store );
+        return result;
+        }
+    
+    @Override public boolean hasCheapSnapshots()
+        { return true; }
+    
     @Override public QueryHandler queryHandler()
         { 
         if (queryHandler == null) queryHandler = new GraphMemFasterQueryHandler( this );
@@ -48,89 +61,15 @@ public class GraphMemFaster extends GraphMemBase
     
     /**
         The GraphMemFasterStatisticsHandler exploits the existing FasterTripleStore
-        indexes to deliver statistics information for single-concrete-node queries
-        and for trivial cases of two-concrete-node queries.        
+        indexes, and the store's live per-predicate statistics, to deliver 
+        statistics information; see GraphMemStatisticsHandler.
         
      	@author kers
     */
-    protected static class GraphMemFasterStatisticsHandler implements GraphStatisticsHandler
+    protected static class GraphMemFasterStatisticsHandler extends GraphMemStatisticsHandler
         {
-        protected final FasterTripleStore store;
-        protected final Reifier reifier;
-        
         public GraphMemFasterStatisticsHandler( FasterTripleStore store, Reifier reifier )
-            { this.store = store; this.reifier = reifier; }
-
-        private static class C 
-            {
-            static final int NONE = 0;
-            static final int S = 1, P = 2, O = 4;
-            static final int SP = S + P, SO = S + O, PO = P + O;
-            static final int SPO = S + P + O;
-            }
-        
-        /**
-            Answer a good estimate of the number of triples matching (S, P, O)
-            if cheaply possible.
-            
-            <p>If there are any reifier triples, return -1. (We may be able to
-            improve this later.)
-            
-            <p>If only one of S, P, O is concrete, answers the number of triples
-            with that value in that field.
-            
-            <p>If two of S, P, P are concrete and at least one of them has no
-            corresponding triples, answers 0.
-            
-            <p>Otherwise answers -1, ie, no information available. (May change;
-            the two degenerate cases might deserve an answer.)
-            
-         	@see com.hp.hpl.jena.graph.GraphStatisticsHandler#getStatistic(com.hp.hpl.jena.graph.Node, com.hp.hpl.jena.graph.Node, com.hp.hpl.jena.graph.Node)
-         */
-        public long getStatistic( Node S, Node P, Node O )
-            {
-            if (reifier.size() > 0) return -1;
-            int concrete = (S.isConcrete() ? C.S : 0) + (P.isConcrete() ? C.P : 0) + (O.isConcrete() ? C.O : 0);
-            switch (concrete)
-                {
-                case C.NONE:
-                    return store.size();
-                
-                case C.S:
-                    return countInMap( S, store.getSubjects() );
-                    
-                case C.SP:
-                    return countsInMap( S, store.getSubjects(), P, store.getPredicates() );
-                
-                case C.SO:
-                    return countsInMap( S, store.getSubjects(), O, store.getObjects() );
-                    
-                case C.P:
-                    return countInMap( P, store.getPredicates() );
-                    
-                case C.PO:
-                    return countsInMap( P, store.getPredicates(), O, store.getObjects() );
-                
-                case C.O:
-                    return countInMap( O, store.getObjects() );
-                    
-                case C.SPO:
-                    return store.contains( Triple.create( S, P, O ) ) ? 1 : 0;
-                }
-            return -1;
-            }
-
-        public long countsInMap( Node a, NodeToTriplesMapFaster mapA, Node b, NodeToTriplesMapFaster mapB )
-            {
-            long countA = countInMap( a, mapA ), countB = countInMap( b, mapB );
-            return countA == 0 || countB == 0 ? 0 : -1L;
-            }
-        
-        public long countInMap( Node n, NodeToTriplesMapFaster map )
-            {
-            TripleBunch b = map.get( n.getIndexingValue() );
-            return b == null ? 0 : b.size();
-            }
+            { super( store, reifier ); }
         }
     
     /**
@@ -29,17 +29,17 @@ public class NodeToTriplesMapFaster extends NodeToTriplesMapBase
        {
        Object o = getIndexField( t );
        TripleBunch s = bunchMap.get( o );
-       if (s == null) bunchMap.put( o, s = new ArrayBunch() );
-       if (s.contains( t ))
+       if (s == null) 
+           putBunch( o, s = new ArrayBunch() );
+       else if (s.contains( t ))
            return false;
        else
-           {
-           if (s.size() == 9 && s instanceof ArrayBunch)
-               bunchMap.put( o, s = new HashedTripleBunch( s ) );
-           s.add( t );
-           size += 1; 
-           return true; 
-           } 
+           s = writableBunch( o, s );
+       if (s.size() == 9 && s instanceof ArrayBunch)
+           putBunch( o, s = new HashedTripleBunch( s ) );
+       s.add( t );
+       size += 1; 
+       return true; 
        }
     
     /**
@@ -54,13 +54,17 @@ public class NodeToTriplesMapFaster extends NodeToTriplesMapBase
            return false;
        else
            {
+           s = writableBunch( o, s );
            s.remove( t );
            size -= 1;
-           if (s.size() == 0) bunchMap.remove( o );
+           if (s.size() == 0) removeBunch( o );
            return true;
         } 
     }
     
+    @Override protected TripleBunch copyBunch( TripleBunch b )
+        { return b instanceof ArrayBunch ? new ArrayBunch( (ArrayBunch) b ) : new HashedTripleBunch( b ); }
+    
     /**
         Answer an iterator over all the triples in this NTM which have index node
         <code>o</code>.
@@ -69,7 +73,7 @@ public class NodeToTriplesMapFaster extends NodeToTriplesMapBase
        {
        // System.err.println( ">> BOINK" ); // if (true) throw new JenaException( "BOINK" );
        TripleBunch s = bunchMap.get( o );
-       return s == null ? NullIterator.<Triple>instance() : s.iterator( container );
+       return s == null ? NullIterator.<Triple>instance() : bunchIterator( o, s, container );
        }
     
     public class NotifyMe implements HashCommon.NotifyEmpty
@@ -112,7 +116,7 @@ public class NodeToTriplesMapFaster extends NodeToTriplesMapBase
        return s == null
            ? NullIterator.<Triple>instance()
            : f2.filterOn( n2 ).and( f3.filterOn( n3 ) )
-               .filterKeep( s.iterator( new NotifyMe( indexValue ) ) )
+               .filterKeep( bunchIterator( indexValue, s, new NotifyMe( indexValue ) ) )
            ;
        }    
 
@@ -0,0 +1,106 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.n3.ntriples;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URL;
+
+import com.hp.hpl.jena.graph.GraphEvents;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFErrorHandler;
+import com.hp.hpl.jena.rdf.model.RDFReader;
+import com.hp.hpl.jena.rdf.model.impl.RDFDefaultErrorHandler;
+import com.hp.hpl.jena.shared.JenaException;
+import com.hp.hpl.jena.shared.UnknownPropertyException;
+
+/**
+ * The RDFReader for "N-TRIPLE", using {@link ParserNTriples}. It reads
+ * what the older NTripleReader does, reports syntax errors in the same way
+ * and adds the triples to the model's graph in batches.
+ */
+public class NTriplesReader implements RDFReader
+{
+    private RDFErrorHandler errorHandler = new RDFDefaultErrorHandler() ;
+
+    public void read(Model model, InputStream in, String base)
+    { read(model, in, null, base) ; }
+
+    public void read(Model model, Reader reader, String base)
+    { read(model, null, reader, base) ; }
+
+    public void read(Model model, String url)
+    {
+        InputStream in = null ;
+        try {
+            in = new URL(url).openStream() ;
+            read(model, in, url) ;
+        } catch (IOException ex) {
+            throw new JenaException(ex) ;
+        } finally {
+            if ( in != null )
+                try { in.close() ; } catch (IOException ex) {}
+        }
+    }
+
+    public Object setProperty(String propName, Object propValue)
+    {
+        errorHandler.error(new UnknownPropertyException(propName)) ;
+        return null ;
+    }
+
+    public RDFErrorHandler setErrorHandler(RDFErrorHandler errHandler)
+    {
+        RDFErrorHandler old = errorHandler ;
+        errorHandler = errHandler ;
+        return old ;
+    }
+
+    private void read(Model model, InputStream in, Reader reader, String base)
+    {
+        ParserNTriples parser = new ParserNTriples(new NTriplesGraphInserter(model.getGraph())) ;
+        parser.setErrorHandler(errorHandler) ;
+        model.notifyEvent(GraphEvents.startRead) ;
+        try {
+            if ( in != null )
+                parser.parse(in, base) ;
+            else
+                parser.parse(reader, base) ;
+        } finally {
+            model.notifyEvent(GraphEvents.finishRead) ;
+        }
+    }
+}
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
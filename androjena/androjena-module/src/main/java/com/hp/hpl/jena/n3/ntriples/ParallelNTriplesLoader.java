@@ -0,0 +1,296 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.n3.ntriples;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.hp.hpl.jena.graph.BulkUpdateHandler;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.GraphEvents;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFErrorHandler;
+import com.hp.hpl.jena.rdf.model.impl.RDFDefaultErrorHandler;
+import com.hp.hpl.jena.shared.JenaException;
+import com.hp.hpl.jena.shared.SyntaxError;
+
+/**
+ * Loads an N-Triples file using several threads. The file is split into
+ * chunks at line boundaries and each chunk is parsed by a
+ * {@link ParserNTriples} on a thread pool; the batches of triples are passed
+ * back to the calling thread, which adds them to the graph through its
+ * BulkUpdateHandler (so a memory graph takes each batch in one go). Graphs
+ * need not be thread safe.
+ * <p>
+ * All the chunk parsers share one blank node scope, made afresh for each
+ * load, so a label used in several chunks is still one blank node, and is 
+ * not the same blank node as in any other load. Syntax errors are reported 
+ * to the error handler, possibly from several threads at once, with line
+ * numbers counted from the start of the chunk named in the message.
+ */
+public class ParallelNTriplesLoader
+{
+    /** Chunks are at least this many bytes */
+    public static final long MIN_CHUNK_SIZE = 1 << 20 ;
+    
+    /** The file is cut into about this many chunks per thread, to balance the load */
+    private static final int CHUNKS_PER_THREAD = 4 ;
+    
+    /** Batches that may be waiting for the graph, per thread */
+    private static final int QUEUE_PER_THREAD = 16 ;
+    
+    /** Marks the end of the batches of one chunk */
+    private static final Triple[] END = new Triple[0] ;
+
+    private final int threads ;
+    private RDFErrorHandler errorHandler = new RDFDefaultErrorHandler() ;
+
+    /** A loader using one thread per available processor */
+    public ParallelNTriplesLoader()
+    { this(Runtime.getRuntime().availableProcessors()) ; }
+
+    public ParallelNTriplesLoader(int threads)
+    {
+        if ( threads < 1 )
+            throw new IllegalArgumentException("threads must be at least 1: " + threads) ;
+        this.threads = threads ;
+    }
+
+    public RDFErrorHandler setErrorHandler(RDFErrorHandler errorHandler)
+    {
+        RDFErrorHandler old = this.errorHandler ;
+        this.errorHandler = errorHandler ;
+        return old ;
+    }
+
+    /**
+     * Load the file into the model's graph, bracketed by startRead and
+     * finishRead events as a reader would. Answer the number of triples read.
+     */
+    public long load(Model model, File file)
+    {
+        model.notifyEvent(GraphEvents.startRead) ;
+        try { return load(model.getGraph(), file) ; }
+        finally { model.notifyEvent(GraphEvents.finishRead) ; }
+    }
+
+    /** Load the file into the graph. Answer the number of triples read. */
+    public long load(Graph graph, File file)
+    {
+        long[] bounds ;
+        try { bounds = chunkBoundaries(file) ; }
+        catch (IOException ex) { throw new JenaException(ex) ; }
+        int chunks = bounds.length - 1 ;
+        String scope = new AnonId().getLabelString() + "_" ;
+        BlockingQueue<Triple[]> queue = new ArrayBlockingQueue<Triple[]>(threads * QUEUE_PER_THREAD) ;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, chunks))) ;
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>(chunks) ;
+            for ( int i = 0 ; i < chunks ; i++ )
+                results.add(pool.submit(new ChunkParser(file, bounds[i], bounds[i+1], scope, queue))) ;
+            BulkUpdateHandler bulk = graph.getBulkUpdateHandler() ;
+            for ( int finished = 0 ; finished < chunks ; )
+            {
+                Triple[] batch = queue.take() ;
+                if ( batch == END )
+                    finished++ ;
+                else
+                    bulk.add(batch) ;
+            }
+            long count = 0 ;
+            boolean syntaxErrors = false ;
+            for ( Future<Long> result : results )
+            {
+                try { count += result.get().longValue() ; }
+                catch (ExecutionException ex)
+                {
+                    Throwable cause = ex.getCause() ;
+                    if ( cause instanceof SyntaxError )
+                        syntaxErrors = true ;
+                    else if ( cause instanceof RuntimeException )
+                        throw (RuntimeException)cause ;
+                    else if ( cause instanceof Error )
+                        throw (Error)cause ;
+                    else
+                        throw new JenaException(cause) ;
+                }
+            }
+            if ( syntaxErrors )
+                throw new SyntaxError("unknown") ;
+            return count ;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt() ;
+            throw new JenaException(ex) ;
+        } finally {
+            pool.shutdownNow() ;
+        }
+    }
+
+    /**
+     * Answer the offsets at which the chunks of the file start, followed by
+     * the length of the file. Every chunk but the last ends just after a 
+     * newline.
+     */
+    private long[] chunkBoundaries(File file) throws IOException
+    {
+        RandomAccessFile f = new RandomAccessFile(file, "r") ;
+        try {
+            long length = f.length() ;
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, length / (threads * CHUNKS_PER_THREAD)) ;
+            List<Long> starts = new ArrayList<Long>() ;
+            starts.add(Long.valueOf(0)) ;
+            byte[] b = new byte[4096] ;
+            for ( long p = chunkSize ; p < length ; )
+            {
+                long next = nextLineStart(f, p, b) ;
+                if ( next < 0 || next >= length )
+                    break ;
+                starts.add(Long.valueOf(next)) ;
+                p = next + chunkSize ;
+            }
+            long[] bounds = new long[starts.size() + 1] ;
+            for ( int i = 0 ; i < starts.size() ; i++ )
+                bounds[i] = starts.get(i).longValue() ;
+            bounds[starts.size()] = length ;
+            return bounds ;
+        } finally {
+            f.close() ;
+        }
+    }
+
+    /** Answer the offset just after the first newline at or after p, or -1 if there is none */
+    private static long nextLineStart(RandomAccessFile f, long p, byte[] b) throws IOException
+    {
+        f.seek(p) ;
+        for ( int n ; (n = f.read(b)) > 0 ; p += n )
+        {
+            for ( int i = 0 ; i < n ; i++ )
+                if ( b[i] == '\n' )
+                    return p + i + 1 ;
+        }
+        return -1 ;
+    }
+
+    /** Parses one chunk of the file, queueing its batches and then END */
+    private class ChunkParser implements Callable<Long>
+    {
+        private final File file ;
+        private final long start, end ;
+        private final String scope ;
+        private final BlockingQueue<Triple[]> queue ;
+
+        ChunkParser(File file, long start, long end, String scope, BlockingQueue<Triple[]> queue)
+        {
+            this.file = file ;
+            this.start = start ;
+            this.end = end ;
+            this.scope = scope ;
+            this.queue = queue ;
+        }
+
+        public Long call() throws IOException
+        {
+            RandomAccessFile f = new RandomAccessFile(file, "r") ;
+            try {
+                TripleSink sink = new TripleSink() {
+                    public void triples(Triple[] triples)
+                    {
+                        try { queue.put(triples) ; }
+                        catch (InterruptedException ex) { throw new JenaException(ex) ; }
+                    }
+                } ;
+                ParserNTriples parser = new ParserNTriples(sink) ;
+                parser.setErrorHandler(errorHandler) ;
+                parser.setBlankNodeScope(scope) ;
+                f.seek(start) ;
+                parser.parse(new ChunkInputStream(f, end - start), file.getPath() + " from byte " + start) ;
+                return Long.valueOf(parser.getTripleCount()) ;
+            } finally {
+                f.close() ;
+                try { queue.put(END) ; }
+                catch (InterruptedException ex) { Thread.currentThread().interrupt() ; }
+            }
+        }
+    }
+
+    /** Reads the next <code>remaining</code> bytes of a file */
+    private static class ChunkInputStream extends InputStream
+    {
+        private final RandomAccessFile f ;
+        private long remaining ;
+
+        ChunkInputStream(RandomAccessFile f, long remaining)
+        {
+            this.f = f ;
+            this.remaining = remaining ;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            if ( remaining <= 0 )
+                return -1 ;
+            int b = f.read() ;
+            if ( b >= 0 )
+                remaining-- ;
+            return b ;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if ( remaining <= 0 )
+                return -1 ;
+            int n = f.read(b, off, (int)Math.min(len, remaining)) ;
+            if ( n > 0 )
+                remaining -= n ;
+            return n ;
+        }
+    }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
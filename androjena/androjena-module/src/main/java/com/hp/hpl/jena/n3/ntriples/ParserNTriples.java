@@ -0,0 +1,593 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.n3.ntriples;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.impl.LiteralLabelFactory;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.rdf.model.RDFErrorHandler;
+import com.hp.hpl.jena.rdf.model.impl.RDFDefaultErrorHandler;
+import com.hp.hpl.jena.shared.JenaException;
+import com.hp.hpl.jena.shared.SyntaxError;
+
+/**
+ * N-Triples parser which works directly on the UTF-8 bytes of its input.
+ * The input is read in large blocks and each line is tokenized in place
+ * in the block; terms are decoded into one reusable buffer, and IRIs are 
+ * looked up by their bytes in a cache of recently seen nodes so that the
+ * usual repeated predicates, types and subjects cost neither a String nor a 
+ * trip through Node.create. Triples are delivered to a {@link TripleSink} in 
+ * batches.
+ * <p>
+ * Syntax errors are reported to the error handler and the rest of the line
+ * skipped, as NTripleReader does; if there were any, a SyntaxError is thrown
+ * at the end. Lines may end with LF or CR LF, and, as NTripleReader allows, 
+ * a line may hold several triples. A parser may be reused but is 
+ * not thread safe; blank node labels are scoped to one call of parse unless
+ * a blank node scope is set, which lets several parsers (say, of different
+ * parts of one document) agree on their blank nodes.
+ */
+public class ParserNTriples
+{
+    /** Number of triples delivered to the sink at a time */
+    public static final int BATCH_SIZE = 1000 ;
+
+    private static final int BUFFER_SIZE = 1 << 16 ;
+    private static final int CACHE_SIZE = 4096 ;
+
+    private final TripleSink sink ;
+    private RDFErrorHandler errorHandler = new RDFDefaultErrorHandler() ;
+    private String base = "" ;
+
+    private InputStream in ;
+    private byte[] buf = new byte[BUFFER_SIZE] ;
+    /** Start of the unconsumed input and end of the valid input in buf */
+    private int pos, limit ;
+    /** Where the search for the next end of line resumes */
+    private int scan ;
+    private boolean eof ;
+
+    private int lineNumber ;
+    private int lineStart, lineEnd ;
+
+    private char[] term = new char[256] ;
+    private int termLength ;
+    /** The node parsed by the last call of a parseXXX method */
+    private Node node ;
+
+    private final byte[][] cacheKeys = new byte[CACHE_SIZE][] ;
+    private final Node[] cacheNodes = new Node[CACHE_SIZE] ;
+    private final Map<String, Node> bNodes = new HashMap<String, Node>() ;
+    private String bNodeScope = null ;
+    private final Map<Node, RDFDatatype> datatypes = new HashMap<Node, RDFDatatype>() ;
+
+    private Triple[] batch ;
+    private int batchCount ;
+    private int errorCount ;
+    private long tripleCount ;
+
+    public ParserNTriples(TripleSink sink) { this.sink = sink ; }
+
+    public RDFErrorHandler setErrorHandler(RDFErrorHandler errorHandler)
+    {
+        RDFErrorHandler old = this.errorHandler ;
+        this.errorHandler = errorHandler ;
+        return old ;
+    }
+
+    /**
+     * Make the blank node for a label depend only on the label and the given
+     * scope: parsers with the same scope produce the same blank node for the 
+     * same label, without sharing any table. A null scope (the default) gives
+     * fresh blank nodes for each call of parse.
+     */
+    public void setBlankNodeScope(String scope) { bNodeScope = scope ; }
+
+    /** Answer the number of triples produced by the last parse */
+    public long getTripleCount() { return tripleCount ; }
+
+    /** Parse the characters of a Reader, which are encoded as UTF-8 internally */
+    public void parse(Reader reader, String base)
+    { parse(new UTF8InputStream(reader), base) ; }
+
+    /**
+     * Parse N-Triples from UTF-8 (or ASCII) bytes, sending the triples to the
+     * sink. The base is only used to identify the input in error messages.
+     */
+    public void parse(InputStream input, String base)
+    {
+        this.in = input ;
+        this.base = base == null ? "" : base + ": " ;
+        pos = limit = scan = 0 ;
+        eof = false ;
+        lineNumber = 0 ;
+        errorCount = 0 ;
+        tripleCount = 0 ;
+        bNodes.clear() ;
+        batch = new Triple[BATCH_SIZE] ;
+        batchCount = 0 ;
+        try {
+            while ( nextLine() )
+            {
+                lineNumber++ ;
+                try { parseLine() ; }
+                catch (SyntaxError ex)
+                {
+                    errorCount++ ;
+                    errorHandler.error(ex) ;
+                }
+            }
+        } catch (IOException ex) {
+            throw new JenaException(ex) ;
+        }
+        if ( batchCount > 0 )
+        {
+            Triple[] last = new Triple[batchCount] ;
+            System.arraycopy(batch, 0, last, 0, batchCount) ;
+            sink.triples(last) ;
+        }
+        batch = null ;
+        in = null ;
+        if ( errorCount != 0 )
+            throw new SyntaxError("unknown") ;
+    }
+
+    /**
+     * Set lineStart and lineEnd to the next line of input, excluding its end
+     * of line, reading more input as needed. Answer false at end of input.
+     */
+    private boolean nextLine() throws IOException
+    {
+        while ( true )
+        {
+            for ( int i = scan ; i < limit ; i++ )
+            {
+                if ( buf[i] == '\n' )
+                {
+                    lineStart = pos ;
+                    lineEnd = i > pos && buf[i-1] == '\r' ? i - 1 : i ;
+                    pos = scan = i + 1 ;
+                    return true ;
+                }
+            }
+            scan = limit ;
+            if ( eof )
+            {
+                if ( pos == limit )
+                    return false ;
+                lineStart = pos ;
+                lineEnd = buf[limit-1] == '\r' ? limit - 1 : limit ;
+                pos = scan = limit ;
+                return true ;
+            }
+            fill() ;
+        }
+    }
+
+    /** Move the unconsumed input to the start of the buffer, growing it if full, and read more */
+    private void fill() throws IOException
+    {
+        int remaining = limit - pos ;
+        if ( pos > 0 )
+        {
+            System.arraycopy(buf, pos, buf, 0, remaining) ;
+            scan -= pos ;
+            pos = 0 ;
+            limit = remaining ;
+        }
+        if ( limit == buf.length )
+        {
+            byte[] bigger = new byte[buf.length * 2] ;
+            System.arraycopy(buf, 0, bigger, 0, limit) ;
+            buf = bigger ;
+        }
+        int n = in.read(buf, limit, buf.length - limit) ;
+        if ( n < 0 )
+            eof = true ;
+        else
+            limit += n ;
+    }
+
+    private void parseLine()
+    {
+        int p = skipWhite(lineStart) ;
+        // Any number of statements, with or without whitespace between them.
+        while ( p != lineEnd && buf[p] != '#' )
+            p = skipWhite(parseTriple(p)) ;
+    }
+
+    /** Parse one triple, answering the position after its '.' */
+    private int parseTriple(int p)
+    {
+        switch (buf[p])
+        {
+            case '<': p = parseIRI(p) ; break ;
+            case '_': p = parseBlankNode(p, false) ; break ;
+            default: throw error(p, "expected subject") ;
+        }
+        Node s = node ;
+
+        p = skipWhite(p) ;
+        if ( p == lineEnd || buf[p] != '<' )
+            throw error(p, "expected predicate") ;
+        p = parseIRI(p) ;
+        Node pred = node ;
+
+        p = skipWhite(p) ;
+        if ( p == lineEnd )
+            throw error(p, "expected object") ;
+        switch (buf[p])
+        {
+            case '<': p = parseIRI(p) ; break ;
+            case '_': p = parseBlankNode(p, true) ; break ;
+            case '"': p = parseLiteral(p) ; break ;
+            case 'x': p = parseXMLLiteral(p) ; break ;
+            default: throw error(p, "expected object") ;
+        }
+        Node o = node ;
+
+        p = skipWhite(p) ;
+        if ( p == lineEnd || buf[p] != '.' )
+            throw error(p, "expected \".\"") ;
+
+        batch[batchCount++] = new Triple(s, pred, o) ;
+        tripleCount++ ;
+        if ( batchCount == BATCH_SIZE )
+        {
+            sink.triples(batch) ;
+            batch = new Triple[BATCH_SIZE] ;
+            batchCount = 0 ;
+        }
+        return p + 1 ;
+    }
+
+    private int skipWhite(int p)
+    {
+        while ( p < lineEnd && (buf[p] == ' ' || buf[p] == '\t' || buf[p] == '\r') )
+            p++ ;
+        return p ;
+    }
+
+    /** Parse an IRI starting at its opening '<', answering the position after the '>' */
+    private int parseIRI(int p)
+    {
+        int start = ++p ;
+        int hash = 0 ;
+        for ( ; p < lineEnd && buf[p] != '>' ; p++ )
+            hash = 31 * hash + buf[p] ;
+        if ( p == lineEnd )
+            throw error(start - 1, "unterminated IRI") ;
+        node = cachedURI(start, p, hash) ;
+        return p + 1 ;
+    }
+
+    /**
+     * Answer the URI node for the IRI with the given bytes. Any given bytes
+     * always decode to the same IRI, so the cache can be keyed by bytes 
+     * whether or not they contain escapes.
+     */
+    private Node cachedURI(int start, int end, int hash)
+    {
+        int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1) ;
+        byte[] key = cacheKeys[slot] ;
+        if ( key != null && key.length == end - start )
+        {
+            int i = 0 ;
+            while ( i < key.length && key[i] == buf[start + i] )
+                i++ ;
+            if ( i == key.length )
+                return cacheNodes[slot] ;
+        }
+        Node n = Node.createURI(decode(start, end, true)) ;
+        key = new byte[end - start] ;
+        System.arraycopy(buf, start, key, 0, key.length) ;
+        cacheKeys[slot] = key ;
+        cacheNodes[slot] = n ;
+        return n ;
+    }
+
+    /** Parse a blank node label starting at its '_' */
+    private int parseBlankNode(int p, boolean object)
+    {
+        if ( p + 1 >= lineEnd || buf[p+1] != ':' )
+            throw error(p, "expected \"_:\"") ;
+        int start = p + 2 ;
+        int end = start ;
+        while ( end < lineEnd && buf[end] != ' ' && buf[end] != '\t' )
+        {
+            // A label can't end with '.', so that is the terminator of the triple,
+            // possibly with the next triple straight after it.
+            if ( object && buf[end] == '.' && (end + 1 == lineEnd || isEndOfTerm(buf[end+1])) )
+                break ;
+            end++ ;
+        }
+        if ( end == start )
+            throw error(p, "expected bNode label") ;
+        String label = decode(start, end, true) ;
+        Node n = bNodes.get(label) ;
+        if ( n == null )
+        {
+            n = bNodeScope == null ? Node.createAnon() : Node.createAnon(new AnonId(bNodeScope + label)) ;
+            bNodes.put(label, n) ;
+        }
+        node = n ;
+        return end ;
+    }
+
+    /** Parse a literal starting at its opening quote */
+    private int parseLiteral(int p)
+    {
+        int start = ++p ;
+        while ( p < lineEnd && buf[p] != '"' )
+            p += buf[p] == '\\' ? 2 : 1 ;
+        if ( p >= lineEnd )
+            throw error(start - 1, "unterminated literal") ;
+        String lex = decode(start, p, false) ;
+        p++ ;
+
+        String lang = "" ;
+        if ( p < lineEnd && (buf[p] == '@' || buf[p] == '-') )
+        {
+            if ( buf[p] == '-' )
+                warning(p, "Language tags should be introduced with @ not -.") ;
+            int langStart = ++p ;
+            while ( p < lineEnd && (isAlphaNum(buf[p]) || buf[p] == '-') )
+                p++ ;
+            lang = decode(langStart, p, false) ;
+        }
+        if ( p + 2 < lineEnd && buf[p] == '^' && buf[p+1] == '^' && buf[p+2] == '<' )
+        {
+            if ( lang.length() > 0 )
+                warning(p, "Language tags are not permitted on typed literals.") ;
+            p = parseIRI(p + 2) ;
+            RDFDatatype dt = datatypes.get(node) ;
+            if ( dt == null )
+            {
+                dt = TypeMapper.getInstance().getSafeTypeByName(node.getURI()) ;
+                datatypes.put(node, dt) ;
+            }
+            node = Node.createLiteral(LiteralLabelFactory.createLiteralLabel(lex, "", dt)) ;
+        }
+        else
+            node = Node.createLiteral(lex, lang, false) ;
+        return p ;
+    }
+
+    /** Parse the deprecated xml"..." form of an XML literal */
+    private int parseXMLLiteral(int p)
+    {
+        if ( p + 3 >= lineEnd || buf[p+1] != 'm' || buf[p+2] != 'l' || buf[p+3] != '"' )
+            throw error(p, "expected object") ;
+        warning(p, "Use ^^rdf:XMLLiteral not xml\"literals\", .") ;
+        p = parseLiteral(p + 3) ;
+        node = Node.createLiteral(node.getLiteralLexicalForm(), "", true) ;
+        return p ;
+    }
+
+    /** Whether a '.' followed by b ends a triple rather than being in a blank node label */
+    private static boolean isEndOfTerm(byte b)
+    {
+        return b == ' ' || b == '\t' || b == '\r' || b == '<' || b == '#' ;
+    }
+
+    private static boolean isAlphaNum(byte b)
+    {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') ;
+    }
+
+    private String decode(int start, int end, boolean iri)
+    {
+        char[] chars = decodeChars(start, end, iri) ;
+        return new String(chars, 0, termLength) ;
+    }
+
+    /**
+     * Decode the UTF-8 bytes and escapes of a term into the term buffer, 
+     * setting termLength. IRIs allow only the \\u and \\U escapes.
+     */
+    private char[] decodeChars(int start, int end, boolean iri)
+    {
+        if ( term.length < end - start )
+            term = new char[Math.max(end - start, term.length * 2)] ;
+        char[] chars = term ;
+        int n = 0 ;
+        int p = start ;
+        while ( p < end )
+        {
+            int b = buf[p] ;
+            if ( b >= 0 && b != '\\' )
+            {
+                chars[n++] = (char)b ;
+                p++ ;
+            }
+            else if ( b == '\\' )
+            {
+                if ( p + 1 >= end )
+                    throw error(p, "illegal escape sequence") ;
+                char c = (char)buf[p+1] ;
+                p += 2 ;
+                switch (c)
+                {
+                    case 'u':
+                        chars[n++] = (char)hex(p, 4, end) ; p += 4 ; break ;
+                    case 'U':
+                    {
+                        int cp = hex(p, 8, end) ;
+                        p += 8 ;
+                        if ( cp >= 0x10000 )
+                        {
+                            chars[n++] = (char)(0xD800 + ((cp - 0x10000) >> 10)) ;
+                            chars[n++] = (char)(0xDC00 + ((cp - 0x10000) & 0x3FF)) ;
+                        }
+                        else
+                            chars[n++] = (char)cp ;
+                        break ;
+                    }
+                    default:
+                        if ( iri )
+                            throw error(p - 2, "illegal escape sequence '" + c + "'") ;
+                        switch (c)
+                        {
+                            case 't': chars[n++] = '\t' ; break ;
+                            case 'n': chars[n++] = '\n' ; break ;
+                            case 'r': chars[n++] = '\r' ; break ;
+                            case 'b': chars[n++] = '\b' ; break ;
+                            case 'f': chars[n++] = '\f' ; break ;
+                            case '"': case '\'': case '\\': chars[n++] = c ; break ;
+                            default: throw error(p - 2, "illegal escape sequence '" + c + "'") ;
+                        }
+                }
+            }
+            else
+            {
+                // Multi-byte UTF-8 sequence
+                b &= 0xFF ;
+                int extra = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : 1 ;
+                if ( b < 0xC0 || p + extra >= end )
+                    throw error(p, "bad UTF-8 encoding") ;
+                int cp = b & (0x3F >> extra) ;
+                for ( int i = 1 ; i <= extra ; i++ )
+                    cp = (cp << 6) | (buf[p+i] & 0x3F) ;
+                p += extra + 1 ;
+                if ( cp >= 0x10000 )
+                {
+                    chars[n++] = (char)(0xD800 + ((cp - 0x10000) >> 10)) ;
+                    chars[n++] = (char)(0xDC00 + ((cp - 0x10000) & 0x3FF)) ;
+                }
+                else
+                    chars[n++] = (char)cp ;
+            }
+        }
+        termLength = n ;
+        return chars ;
+    }
+
+    private int hex(int p, int digits, int end)
+    {
+        if ( p + digits > end )
+            throw error(p, "bad unicode escape sequence") ;
+        int result = 0 ;
+        for ( int i = p ; i < p + digits ; i++ )
+        {
+            int d = Character.digit((char)buf[i], 16) ;
+            if ( d < 0 )
+                throw error(p, "bad unicode escape sequence") ;
+            result = (result << 4) | d ;
+        }
+        return result ;
+    }
+
+    private SyntaxError error(int p, String msg)
+    { return new SyntaxError(message("Syntax error", msg, p)) ; }
+
+    private void warning(int p, String msg)
+    { errorHandler.warning(new SyntaxError(message("Deprecation warning", msg, p))) ; }
+
+    private String message(String sort, String msg, int p)
+    {
+        return base + sort + " at line " + lineNumber + " position " + (p - lineStart + 1) + ": " + msg ;
+    }
+
+    /**
+     * InputStream of the UTF-8 encoding of the characters from a Reader. 
+     * Surrogates are encoded individually, which the parser decodes back 
+     * into the same characters.
+     */
+    private static class UTF8InputStream extends InputStream
+    {
+        private final Reader reader ;
+        private final char[] chars = new char[8192] ;
+        private final byte[] bytes = new byte[3 * 8192] ;
+        private int pos = 0, limit = 0 ;
+
+        UTF8InputStream(Reader reader) { this.reader = reader ; }
+
+        @Override
+        public int read() throws IOException
+        {
+            if ( pos == limit && !more() )
+                return -1 ;
+            return bytes[pos++] & 0xFF ;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if ( pos == limit && !more() )
+                return -1 ;
+            int n = Math.min(len, limit - pos) ;
+            System.arraycopy(bytes, pos, b, off, n) ;
+            pos += n ;
+            return n ;
+        }
+
+        private boolean more() throws IOException
+        {
+            int n = reader.read(chars, 0, chars.length) ;
+            if ( n < 0 )
+                return false ;
+            int k = 0 ;
+            for ( int i = 0 ; i < n ; i++ )
+            {
+                char c = chars[i] ;
+                if ( c < 0x80 )
+                    bytes[k++] = (byte)c ;
+                else if ( c < 0x800 )
+                {
+                    bytes[k++] = (byte)(0xC0 | (c >> 6)) ;
+                    bytes[k++] = (byte)(0x80 | (c & 0x3F)) ;
+                }
+                else
+                {
+                    bytes[k++] = (byte)(0xE0 | (c >> 12)) ;
+                    bytes[k++] = (byte)(0x80 | ((c >> 6) & 0x3F)) ;
+                    bytes[k++] = (byte)(0x80 | (c & 0x3F)) ;
+                }
+            }
+            pos = 0 ;
+            limit = k ;
+            return true ;
+        }
+    }
+}
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
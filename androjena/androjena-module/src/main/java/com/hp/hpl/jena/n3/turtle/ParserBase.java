@@ -65,6 +65,7 @@ public class ParserBase
     
     // label => bNode for construct templates patterns
     LabelToNodeMap bNodeLabels = new LabelToNodeMap() ;
+    public void setLabelToNodeMap(LabelToNodeMap map) { bNodeLabels = map ; }
     
     TurtleEventHandler handler = null ; 
     public void setEventHandler(TurtleEventHandler h) { handler = h ; }
@@ -10,6 +10,7 @@ import java.io.*;
 
 
 import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.n3.ntriples.NTriplesGraphInserter;
 import com.hp.hpl.jena.n3.turtle.parser.ParseException;
 import com.hp.hpl.jena.n3.turtle.parser.TokenMgrError;
 import com.hp.hpl.jena.n3.turtle.parser.TurtleParser;
@@ -56,7 +57,14 @@ public class ParserTurtle
         }
     }
     
-    
+    /** Parse in streaming mode, through a TurtlePushParser: bNode labels take
+     *  bounded memory and the triples are added to the graph in batches. */
+    public void parseStreaming(Graph graph, String baseURI, InputStream in)
+    {
+        TurtleEventBatcher batcher = new TurtleEventBatcher(new NTriplesGraphInserter(graph), graph.getPrefixMapping()) ;
+        try { TurtlePushParser.parse(in, batcher, baseURI) ; }
+        finally { batcher.flush() ; }
+    }
 }
 
 /*
@@ -0,0 +1,93 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.n3.turtle;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.AnonId;
+
+/** Map from _:* form to bNodes in bounded memory. The bNode for a label is
+ *  made from the label and a scope, fresh for each map (and each clear),
+ *  so the same label always gives the same bNode and nothing need be
+ *  remembered about labels that have been seen. A small cache of recently
+ *  used labels saves making the id again for the usual runs of references
+ *  to the same bNode.
+ */
+
+public class ScopedLabelToNodeMap extends LabelToNodeMap
+{
+    public static final int DEFAULT_CACHE_SIZE = 1000 ;
+
+    private String scope ;
+    private final Map<String, Node> recent ;
+
+    public ScopedLabelToNodeMap()
+    { this(DEFAULT_CACHE_SIZE) ; }
+
+    public ScopedLabelToNodeMap(final int cacheSize)
+    {
+        scope = newScope() ;
+        recent = new LinkedHashMap<String, Node>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Node> eldest)
+            { return size() > cacheSize ; }
+        } ;
+    }
+
+    @Override
+    public Node asNode(String label)
+    {
+        Node n = recent.get(label) ;
+        if ( n != null )
+            return n ;
+        n = Node.createAnon(new AnonId(scope + label)) ;
+        recent.put(label, n) ;
+        return n ;
+    }
+
+    /** Start a new scope: labels seen from now on give new bNodes */
+    @Override
+    public void clear()
+    {
+        recent.clear() ;
+        scope = newScope() ;
+    }
+
+    private static String newScope()
+    { return new AnonId().getLabelString() + "_" ; }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
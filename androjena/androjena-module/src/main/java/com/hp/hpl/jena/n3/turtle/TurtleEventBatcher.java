@@ -0,0 +1,99 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.n3.turtle;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.n3.ntriples.TripleSink;
+import com.hp.hpl.jena.shared.PrefixMapping;
+
+/** Event handler which checks the triples as TurtleRDFGraphInserter does 
+ *  and passes them on to a TripleSink in batches. Prefixes go to the given
+ *  prefix mapping, if there is one. Call flush at the end to pass on the
+ *  last, partly filled, batch.
+ */
+
+public class TurtleEventBatcher implements TurtleEventHandler
+{
+    public static final int BATCH_SIZE = 1000 ;
+
+    private final TripleSink sink ;
+    private final PrefixMapping prefixes ;
+    private Triple[] batch = new Triple[BATCH_SIZE] ;
+    private int count = 0 ;
+
+    public TurtleEventBatcher(TripleSink sink, PrefixMapping prefixes)
+    {
+        this.sink = sink ;
+        this.prefixes = prefixes ;
+    }
+
+    public void triple(int line, int col, Triple triple)
+    {
+        TurtleRDFGraphInserter.checkTriple(line, col, triple) ;
+        batch[count++] = triple ;
+        if ( count == BATCH_SIZE )
+            flush() ;
+    }
+
+    /** Pass on any triples not yet sent to the sink */
+    public void flush()
+    {
+        if ( count == 0 )
+            return ;
+        Triple[] triples = batch ;
+        if ( count < BATCH_SIZE )
+        {
+            triples = new Triple[count] ;
+            System.arraycopy(batch, 0, triples, 0, count) ;
+        }
+        else
+            batch = new Triple[BATCH_SIZE] ;
+        count = 0 ;
+        sink.triples(triples) ;
+    }
+
+    public void startFormula(int line, int col)
+    { throw new TurtleParseException("["+line+", "+col+"] : Error: Formula found") ; }
+
+    public void endFormula(int line, int col)
+    { throw new TurtleParseException("["+line+", "+col+"] : Error: Formula found") ; }
+
+    public void prefix(int line, int col, String prefix, String iri)
+    {
+        if ( prefixes != null )
+            prefixes.setNsPrefix(prefix, iri) ;
+    }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
@@ -0,0 +1,305 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.n3.turtle;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import com.hp.hpl.jena.n3.turtle.parser.JavaCharStream;
+import com.hp.hpl.jena.n3.turtle.parser.ParseException;
+import com.hp.hpl.jena.n3.turtle.parser.TokenMgrError;
+import com.hp.hpl.jena.n3.turtle.parser.TurtleParser;
+import com.hp.hpl.jena.n3.turtle.parser.TurtleParserTokenManager;
+import com.hp.hpl.jena.shared.JenaException;
+
+/** Turtle parser which is given its input, as UTF-8 bytes, a chunk at a time.
+ *  Each push decodes the bytes and looks for the ends of statements (a "."
+ *  followed by white space, outside any IRI, string, comment or bracket); 
+ *  once there is enough text, the complete statements are parsed and their
+ *  events sent to the handler, and only the text of the unfinished statement
+ *  is kept. A push never waits for more input, so the caller can feed it from
+ *  non-blocking reads, and the memory used is bounded by the chunk size and
+ *  the longest statement. Prefixes, the base and bNode labels carry over from
+ *  one statement to the next as usual; by default bNode labels are mapped by
+ *  a {@link ScopedLabelToNodeMap}, which also needs only bounded memory.
+ *  <p>
+ *  Call finish at the end of the input. Errors are thrown as 
+ *  TurtleParseException, with line and column numbers counted from the start 
+ *  of the whole input.
+ */
+
+public class TurtlePushParser
+{
+    /** Complete statements are parsed once there are this many characters of them */
+    public static final int SEGMENT_SIZE = 1 << 14 ;
+
+    private static final int NORMAL = 0, COMMENT = 1, IRI = 2, STRING = 3, LONG_STRING = 4 ;
+
+    private final TurtleParser parser ;
+    private final CharsetDecoder decoder = Charset.forName("UTF-8").newDecoder()
+        .onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT) ;
+    private byte[] leftover = new byte[0] ;
+
+    private char[] chars = new char[2 * SEGMENT_SIZE] ;
+    private int length = 0 ;        // chars[0, length) is text not yet parsed
+    private int scanned = 0 ;       // chars[0, scanned) has been scanned for statement ends
+    private int boundary = 0 ;      // chars[0, boundary) is complete statements
+    private int mode = NORMAL ;
+    private char quote ;
+    private int depth = 0 ;
+
+    private int line = 1, column = 1 ;
+    private boolean finished = false ;
+
+    public TurtlePushParser(TurtleEventHandler handler, String baseURI)
+    { this(handler, baseURI, new ScopedLabelToNodeMap()) ; }
+
+    public TurtlePushParser(TurtleEventHandler handler, String baseURI, LabelToNodeMap labels)
+    {
+        parser = new TurtleParser(new StringReader("")) ;
+        parser.setEventHandler(handler) ;
+        parser.setBaseURI(baseURI) ;
+        parser.setLabelToNodeMap(labels) ;
+    }
+
+    /** Parse all of a stream, pushing it in blocks */
+    public static void parse(InputStream in, TurtleEventHandler handler, String baseURI)
+    {
+        TurtlePushParser parser = new TurtlePushParser(handler, baseURI) ;
+        byte[] buffer = new byte[1 << 16] ;
+        try {
+            for ( int n ; (n = in.read(buffer)) >= 0 ; )
+                parser.push(buffer, 0, n) ;
+        } catch (IOException ex) { throw new JenaException(ex) ; }
+        parser.finish() ;
+    }
+
+    public void push(byte[] bytes)
+    { push(bytes, 0, bytes.length) ; }
+
+    /** Push the next len bytes of input, parsing any statements they complete */
+    public void push(byte[] bytes, int offset, int len)
+    {
+        if ( finished )
+            throw new IllegalStateException("TurtlePushParser: push after finish") ;
+        ByteBuffer in ;
+        if ( leftover.length == 0 )
+            in = ByteBuffer.wrap(bytes, offset, len) ;
+        else
+        {
+            in = ByteBuffer.allocate(leftover.length + len) ;
+            in.put(leftover).put(bytes, offset, len) ;
+            in.flip() ;
+        }
+        decode(in, false) ;
+        leftover = new byte[in.remaining()] ;
+        in.get(leftover) ;
+        scan(false) ;
+        if ( boundary >= SEGMENT_SIZE )
+            parseSegment(boundary) ;
+    }
+
+    /** The input has ended: parse whatever is left, which should be complete statements */
+    public void finish()
+    {
+        if ( finished )
+            return ;
+        finished = true ;
+        decode(ByteBuffer.wrap(leftover), true) ;
+        leftover = null ;
+        CharBuffer out = room(16) ;
+        decoder.flush(out) ;
+        length = out.position() ;
+        scan(true) ;
+        parseSegment(length) ;
+    }
+
+    private void decode(ByteBuffer in, boolean endOfInput)
+    {
+        // UTF-8 never has more chars than bytes
+        CharBuffer out = room(in.remaining()) ;
+        CoderResult r = decoder.decode(in, out, endOfInput) ;
+        if ( r.isError() )
+            throw new TurtleParseException("["+line+", "+column+"] : Error: Bad UTF-8 in input, after this position") ;
+        length = out.position() ;
+    }
+
+    /** Answer a CharBuffer over the free end of chars, growing it to at least n chars */
+    private CharBuffer room(int n)
+    {
+        if ( chars.length - length < n )
+        {
+            char[] bigger = new char[Math.max(chars.length * 2, length + n)] ;
+            System.arraycopy(chars, 0, bigger, 0, length) ;
+            chars = bigger ;
+        }
+        return CharBuffer.wrap(chars, length, chars.length - length) ;
+    }
+
+    /**
+     * Continue looking for the ends of statements from where the last scan
+     * stopped, recording the last one found in boundary. Stops early if it 
+     * needs to see characters which have not arrived yet.
+     */
+    private void scan(boolean atEnd)
+    {
+        int i = scanned ;
+        scanning:
+        for ( ; i < length ; i++ )
+        {
+            char ch = chars[i] ;
+            switch (mode)
+            {
+                case NORMAL:
+                    if ( ch == '#' )
+                        mode = COMMENT ;
+                    else if ( ch == '<' )
+                    {
+                        if ( i + 1 == length && ! atEnd )
+                            break scanning ;
+                        // "<-" is a token; anything else starts an IRI
+                        if ( i + 1 == length || chars[i+1] != '-' )
+                            mode = IRI ;
+                    }
+                    else if ( ch == '"' || ch == '\'' )
+                    {
+                        if ( i + 2 >= length && ! atEnd )
+                            break scanning ;
+                        quote = ch ;
+                        if ( i + 2 < length && chars[i+1] == ch && chars[i+2] == ch )
+                        {
+                            mode = LONG_STRING ;
+                            i += 2 ;
+                        }
+                        else
+                            mode = STRING ;
+                    }
+                    else if ( ch == '(' || ch == '[' || ch == '{' )
+                        depth++ ;
+                    else if ( ch == ')' || ch == ']' || ch == '}' )
+                        depth-- ;
+                    else if ( ch == '.' && depth == 0 )
+                    {
+                        if ( i + 1 == length && ! atEnd )
+                            break scanning ;
+                        if ( i + 1 == length || isEndOfStatement(chars[i+1]) )
+                            boundary = i + 1 ;
+                    }
+                    break ;
+                case COMMENT:
+                    if ( ch == '\n' || ch == '\r' )
+                        mode = NORMAL ;
+                    break ;
+                case IRI:
+                    if ( ch == '>' )
+                        mode = NORMAL ;
+                    break ;
+                case STRING:
+                    if ( ch == '\\' )
+                    {
+                        if ( i + 1 == length && ! atEnd )
+                            break scanning ;
+                        i++ ;
+                    }
+                    // A newline can't be in a short string: leave the error to the parser
+                    else if ( ch == quote || ch == '\n' || ch == '\r' )
+                        mode = NORMAL ;
+                    break ;
+                case LONG_STRING:
+                    if ( ch == '\\' )
+                    {
+                        if ( i + 1 == length && ! atEnd )
+                            break scanning ;
+                        i++ ;
+                    }
+                    else if ( ch == quote )
+                    {
+                        if ( i + 2 >= length && ! atEnd )
+                            break scanning ;
+                        if ( i + 2 < length && chars[i+1] == quote && chars[i+2] == quote )
+                        {
+                            mode = NORMAL ;
+                            i += 2 ;
+                        }
+                    }
+                    break ;
+            }
+        }
+        scanned = Math.min(i, length) ;
+    }
+
+    private static boolean isEndOfStatement(char ch)
+    { return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\r' || ch == '\f' || ch == '#' ; }
+
+    /** Parse chars[0, end) and drop it from the buffer */
+    private void parseSegment(int end)
+    {
+        JavaCharStream stream = new JavaCharStream(new CharArrayReader(chars, 0, end), line, column) ;
+        parser.ReInit(new TurtleParserTokenManager(stream)) ;
+        try { parser.parse() ; }
+        catch (ParseException ex)
+        { throw new TurtleParseException(ex.getMessage()) ; }
+        catch (TokenMgrError tErr)
+        { throw new TurtleParseException(tErr.getMessage()) ; }
+        catch (TurtleParseException ex) { throw ex ; }
+        catch (JenaException ex)  { throw new TurtleParseException(ex.getMessage(), ex) ; }
+
+        for ( int i = 0 ; i < end ; i++ )
+        {
+            char ch = chars[i] ;
+            if ( ch == '\n' || ( ch == '\r' && ( i + 1 == length || chars[i+1] != '\n' ) ) )
+            {
+                line++ ;
+                column = 1 ;
+            }
+            else
+                column++ ;
+        }
+        System.arraycopy(chars, end, chars, 0, length - end) ;
+        length -= end ;
+        scanned -= end ;
+        boundary = 0 ;
+    }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
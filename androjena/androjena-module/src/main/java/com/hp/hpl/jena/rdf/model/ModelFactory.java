@@ -15,6 +15,7 @@ import com.hp.hpl.jena.graph.*;
 import com.hp.hpl.jena.graph.compose.Union;
 import com.hp.hpl.jena.graph.impl.FileGraphMaker;
 import com.hp.hpl.jena.graph.impl.SimpleGraphMaker;
+import com.hp.hpl.jena.mem.GraphMemBase;
 import com.hp.hpl.jena.ontology.*;
 import com.hp.hpl.jena.ontology.impl.OntModelImpl;
 import com.hp.hpl.jena.rdf.model.impl.*;
@@ -129,6 +130,34 @@ public class ModelFactory extends ModelFactoryBase
     public static Model withHiddenStatements( Model m )
         { return ModelReifier.withHiddenStatements( m ); }
 
+    /**
+        Answer a read-only Model with the statements of <code>m</code> as they are 
+        now, and <code>m</code>'s prefixes. Later changes to <code>m</code> are not
+        reflected in the snapshot, which can be read (eg by a long query) without 
+        holding <code>m</code>'s lock and without blocking its writers. 
+        <code>m</code> must be backed by an in-memory graph. For default models
+        the snapshot is cheap; other in-memory graphs are copied, holding 
+        <code>m</code>'s read lock (see GraphMemBase.snapshot).
+    */
+    public static Model createSnapshot( Model m )
+        {
+        Graph g = m.getGraph();
+        if (!(g instanceof GraphMemBase)) throw new UnsupportedOperationException( "snapshots need an in-memory graph" );
+        GraphMemBase mem = (GraphMemBase) g;
+        Graph snapshot;
+        if (mem.hasCheapSnapshots())
+            snapshot = mem.snapshot();
+        else
+            {
+            m.enterCriticalSection( Lock.READ );
+            try { snapshot = mem.snapshot(); }
+            finally { m.leaveCriticalSection(); }
+            }
+        Model result = new ModelCom( snapshot );
+        result.setNsPrefixes( m );
+        return result;
+        }
+
     /**
         construct a new memory-based model that does not capture reification triples
         (but still handles reifyAs() and .as(ReifiedStatement).
@@ -0,0 +1,87 @@
+/*
+ *  (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.hp.hpl.jena.rdf.model.impl;
+
+import com.hp.hpl.jena.graph.GraphEvents;
+import com.hp.hpl.jena.graph.impl.GraphSnapshot;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.shared.*;
+
+import java.io.*;
+import java.net.URL;
+
+/** Reads a binary RDF snapshot (see {@link GraphSnapshot}) into a model.
+ * A snapshot read from a FileInputStream is memory-mapped. Snapshots are
+ * bytes, so they cannot be read from a Reader.
+ */
+public class BinaryRDFReader extends Object implements RDFReader {
+
+    RDFErrorHandler errorHandler = new RDFDefaultErrorHandler();
+
+    public BinaryRDFReader() {
+    }
+
+    public void read(Model model, Reader r, String base) {
+        throw new JenaException("a binary RDF snapshot cannot be read from a Reader");
+    }
+
+    public void read(Model model, InputStream in, String base) {
+        model.notifyEvent(GraphEvents.startRead);
+        try {
+            GraphSnapshot.read(model.getGraph(), in);
+        } catch (IOException e) {
+            throw new JenaException(e);
+        } finally {
+            model.notifyEvent(GraphEvents.finishRead);
+        }
+    }
+
+    public void read(Model model, String url) {
+        try {
+            InputStream in = new URL(url).openStream();
+            try {
+                read(model, in, url);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new JenaException(e);
+        }
+    }
+
+    public Object setProperty(String propName, Object propValue) {
+        errorHandler.error(new UnknownPropertyException(propName));
+        return null;
+    }
+
+    public RDFErrorHandler setErrorHandler(RDFErrorHandler errHandler) {
+        RDFErrorHandler old = errorHandler;
+        errorHandler = errHandler;
+        return old;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ *  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.hp.hpl.jena.rdf.model.impl;
+
+import com.hp.hpl.jena.graph.impl.GraphSnapshot;
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.shared.*;
+
+import java.io.*;
+
+/** Writes a model as a binary RDF snapshot (see {@link GraphSnapshot}),
+ * including any hidden reification statements. Snapshots are bytes, so
+ * they cannot be written to a Writer; the base is not used.
+ */
+public class BinaryRDFWriter extends Object implements RDFWriter {
+
+    RDFErrorHandler errorHandler = new RDFDefaultErrorHandler();
+
+    public BinaryRDFWriter() {
+    }
+
+    public void write(Model model, Writer out, String base) {
+        throw new JenaException("a binary RDF snapshot cannot be written to a Writer");
+    }
+
+    public void write(Model model, OutputStream out, String base) {
+        try {
+            GraphSnapshot.write(ModelFactory.withHiddenStatements(model).getGraph(), out);
+        } catch (IOException e) {
+            errorHandler.error(e);
+        }
+    }
+
+    public Object setProperty(String propName, Object propValue) {
+        errorHandler.error(new UnknownPropertyException(propName));
+        return null;
+    }
+
+    public RDFErrorHandler setErrorHandler(RDFErrorHandler errHandler) {
+        RDFErrorHandler old = errorHandler;
+        errorHandler = errHandler;
+        return old;
+    }
+}
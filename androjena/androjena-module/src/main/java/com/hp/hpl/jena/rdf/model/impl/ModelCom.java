@@ -1267,7 +1267,19 @@ public class ModelCom
             modelLock = new LockMRSW() ;
         return modelLock ;
     }
-    
+
+    /**
+        Set the lock used by this model's critical sections, eg a
+        LockReadMostly for a model shared by many reading threads. This
+        must be done before the model's lock is first used.
+    */
+    public synchronized void setLock( Lock lock )
+    {
+        if ( modelLock != null )
+            throw new JenaException( "setLock: the model's lock is already in use" ) ;
+        modelLock = lock ;
+    }
+
     public synchronized Lock getLock()
     {
         return getModelLock() ;
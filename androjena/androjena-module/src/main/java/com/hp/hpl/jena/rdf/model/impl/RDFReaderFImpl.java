@@ -44,6 +44,10 @@ public class RDFReaderFImpl extends Object implements RDFReaderF {
 
     private static final String GRDDLREADER = "com.hp.hpl.jena.grddl.GRDDLReader";
     private static final String TURTLEREADER = "com.hp.hpl.jena.n3.turtle.TurtleReader" ;
+    private static final String NTRIPLESREADER = "com.hp.hpl.jena.n3.ntriples.NTriplesReader" ;
+    
+    // Old reader (character at a time)
+    //private static final String NTRIPLESREADER = Jena.PATH + ".rdf.model.impl.NTripleReader" ;
     
     // Old reader (N3 based)
     //private static final String TURTLEREADER = "com.hp.hpl.jena.n3.N3TurtleJenaReader" ;
@@ -60,19 +64,21 @@ public class RDFReaderFImpl extends Object implements RDFReaderF {
                                               "TURTLE",
                                               "Turtle",
                                               "TTL",
-                                              "GRDDL"};
+                                              "GRDDL",
+                                              "RDF/BINARY"};
     // default readers for each language
 
     protected static final String DEFAULTREADERS[] = {
         "com.hp.hpl.jena.rdf.arp.JenaReader",
         "com.hp.hpl.jena.rdf.arp.JenaReader",
-        Jena.PATH + ".rdf.model.impl.NTripleReader",
-        Jena.PATH + ".rdf.model.impl.NTripleReader",
+        NTRIPLESREADER,
+        NTRIPLESREADER,
         TURTLEREADER, //com.hp.hpl.jena.n3.N3JenaReader.class.getName(),  // N3 replaced by a Turtle-based parser 
         TURTLEREADER,
         TURTLEREADER,
         TURTLEREADER,
-        GRDDLREADER
+        GRDDLREADER,
+        Jena.PATH + ".rdf.model.impl.BinaryRDFReader"
     };
 
     protected static final String DEFAULTLANG = LANGS[0];
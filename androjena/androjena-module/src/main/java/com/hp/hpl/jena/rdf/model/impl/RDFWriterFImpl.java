@@ -61,7 +61,8 @@ public class RDFWriterFImpl extends Object implements RDFWriterF {
           N3JenaWriter.n3WriterTriplesAlt,
           N3JenaWriter.turtleWriter,
           N3JenaWriter.turtleWriterAlt1, 
-          N3JenaWriter.turtleWriterAlt2 
+          N3JenaWriter.turtleWriterAlt2,
+          "RDF/BINARY"
         };
     // default readers for each language
 
@@ -84,6 +85,7 @@ public class RDFWriterFImpl extends Object implements RDFWriterF {
             Jena.PATH + ".n3.N3TurtleJenaWriter",   // Alternative names for Turtle
             Jena.PATH + ".n3.N3TurtleJenaWriter",
             Jena.PATH + ".n3.N3TurtleJenaWriter",
+            Jena.PATH + ".rdf.model.impl.BinaryRDFWriter",
              };
 
     protected static final String DEFAULTLANG = LANGS[0];
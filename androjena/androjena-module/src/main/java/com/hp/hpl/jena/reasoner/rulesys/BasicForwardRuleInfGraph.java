@@ -13,6 +13,8 @@ import com.hp.hpl.jena.reasoner.*;
 import com.hp.hpl.jena.reasoner.rulesys.impl.*;
 import com.hp.hpl.jena.shared.ReificationStyle;
 import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.mem.encoded.GraphMemEncoded;
+import com.hp.hpl.jena.mem.encoded.NodeDictionary;
 
 import java.util.*;
 
@@ -63,6 +65,27 @@ public class BasicForwardRuleInfGraph extends BaseInfGraph implements ForwardRul
     /** Flag which, if true, enables tracing of rule actions to logger.info */
     protected boolean traceOn = false;
     
+    /** Number of network partitions a RETE engine should match in parallel */
+    protected int ruleParallelism = 1;
+    
+    /** Flag, if true a RETE engine builds its network from compiled nodes */
+    protected boolean compiledMatching = false;
+    
+    /** Dictionary used to encode the deductions graph, null to use an ordinary GraphMem */
+    protected NodeDictionary nodeDictionary;
+    
+    /** Flag, if true then deletes are processed incrementally rather than by recomputing the closure */
+    protected boolean incrementalDeletes = false;
+    
+    /** Profiler recording rule and builtin statistics, null if profiling is off */
+    protected RuleProfiler profiler;
+    
+    /** Flag, if true the non-RETE engine processes additions by semi-naive evaluation */
+    protected boolean semiNaive = false;
+    
+    /** Incremental delete support, created on first use */
+    protected DRedMaintainer dred;
+    
     private static Logger logger = LoggerFactory.getLogger(BasicForwardRuleInfGraph.class);
     
 //=======================================================================
@@ -132,6 +155,8 @@ public class BasicForwardRuleInfGraph extends BaseInfGraph implements ForwardRul
         } else {
             engine = new FRuleEngine(this);
         }
+        ((FRuleEngine)engine).setSemiNaive(semiNaive);
+        engine.setProfiler(profiler);
     }
     
     /**
@@ -238,6 +263,112 @@ public class BasicForwardRuleInfGraph extends BaseInfGraph implements ForwardRul
     public void setFunctorFiltering(boolean param) {
         filterFunctors = param;
     }
+    
+    /**
+     * Set the number of network partitions which a RETE engine should match
+     * in parallel, values above 1 enable parallel matching. Has no effect on
+     * the non-RETE engine. Should be set before the graph is prepared.
+     */
+    public void setRuleParallelism(int parallelism) {
+        ruleParallelism = parallelism;
+        if (engine instanceof RETEEngine) {
+            ((RETEEngine)engine).setParallelism(parallelism);
+        }
+    }
+    
+    /**
+     * Set to true to have a RETE engine build its network from compiled nodes
+     * rather than interpreted ones. Has no effect on the non-RETE engine. 
+     * Should be set before the graph is prepared.
+     * @see RETEEngine#setCompiledMatching(boolean)
+     */
+    public void setCompiledMatching(boolean compiled) {
+        compiledMatching = compiled;
+        if (engine instanceof RETEEngine) {
+            ((RETEEngine)engine).setCompiledMatching(compiled);
+        }
+    }
+    
+    /**
+     * Set to true to have the non-RETE engine process additions set-at-a-time
+     * by semi-naive evaluation, which is much faster for bulk loads. Has no
+     * effect on a RETE engine. Should be set before the graph is prepared.
+     * @see FRuleEngine#setSemiNaive(boolean)
+     */
+    public void setSemiNaive(boolean semiNaive) {
+        this.semiNaive = semiNaive;
+        if (engine instanceof FRuleEngine) {
+            ((FRuleEngine)engine).setSemiNaive(semiNaive);
+        }
+    }
+    
+    /**
+     * Set the profiler which should record the rule activations, firings, 
+     * builtin calls and, for a RETE engine, the join node statistics of this
+     * graph. Null switches profiling off.
+     * @see RuleProfiler
+     */
+    public void setProfiler(RuleProfiler profiler) {
+        this.profiler = profiler;
+        engine.setProfiler(profiler);
+    }
+    
+    /**
+     * Return the profiler recording this graph's statistics, or null
+     * if profiling is off.
+     */
+    public RuleProfiler getProfiler() {
+        return profiler;
+    }
+    
+    /**
+     * Set a dictionary with which to encode the deductions graph. The deductions
+     * are then held as int ids in a {@link GraphMemEncoded}, which takes much
+     * less heap than a GraphMem for large closures. The dictionary may be shared
+     * with other graphs. Should be set before the graph is prepared, null
+     * reverts to an ordinary GraphMem.
+     */
+    public void setNodeDictionary(NodeDictionary dictionary) {
+        nodeDictionary = dictionary;
+    }
+    
+    /**
+     * Set to true to process deletes incrementally using the DRed (delete
+     * and rederive) algorithm: only the deductions which depended on the deleted
+     * triple are removed and any of those with alternative derivations are
+     * restored. Rule sets which can't be maintained this way (see 
+     * {@link DRedMaintainer#canMaintain(List)}) fall back to the normal delete processing.
+     */
+    public void setIncrementalDeletes(boolean incremental) {
+        incrementalDeletes = incremental;
+    }
+    
+    /**
+     * Return the incremental delete support for this graph, which records the
+     * number of overdeleted and rederived triples, or null if incremental deletes
+     * are not enabled or the rule set can't be maintained incrementally.
+     */
+    public DRedMaintainer getDeletionMaintainer() {
+        if (dred == null && incrementalDeletes && DRedMaintainer.canMaintain(getMaintainedRules())) {
+            dred = new DRedMaintainer(this, getMaintainedRules());
+        }
+        return incrementalDeletes ? dred : null;
+    }
+    
+    /**
+     * Return the forward rules whose deductions are maintained by incremental deletes.
+     */
+    protected List<Rule> getMaintainedRules() {
+        return rules;
+    }
+    
+    /**
+     * Return a graph of deductions which do not depend on the data and so must
+     * survive any delete, such as those preloaded from a schema.
+     */
+    protected Graph getPreservedDeductions() {
+        return schemaGraph;
+    }
    
     /**
      * Extended find interface used in situations where the implementator
@@ -337,6 +468,7 @@ public class BasicForwardRuleInfGraph extends BaseInfGraph implements ForwardRul
     @Override
     public void performDelete(Triple t) {
         version++;
+        if (isPrepared && incrementalDeletes && deleteIncrementally(t)) return;
         if (fdata != null) {
             Graph data = fdata.getGraph();
             if (data != null) {
@@ -347,6 +479,94 @@ public class BasicForwardRuleInfGraph extends BaseInfGraph implements ForwardRul
             fdeductions.getGraph().delete(t);
         }
     }
+    
+    /**
+     * Remove a data triple and incrementally update the deductions. The
+     * deductions which depend on the triple are overdeleted, then each of them 
+     * (and the triple itself) which can still be derived from the remaining 
+     * triples is rederived and passed back to the rule engine to restore its
+     * consequences. Should only be called on a prepared graph.
+     * @return false if the delete could not be processed incrementally, in
+     * which case nothing has been changed
+     */
+    protected boolean deleteIncrementally(Triple t) {
+        DRedMaintainer maintainer = getDeletionMaintainer();
+        if (maintainer == null || fdata == null) return false;
+        Graph data = fdata.getGraph();
+        if (data == null || !data.contains(t)) return false;
+        Graph preserved = getPreservedDeductions();
+        
+        // Overdelete
+        Set<Triple> overdeleted;
+        if (engine instanceof RETEEngine) {
+            data.delete(t);
+            overdeleted = ((RETEEngine)engine).overdelete(t, maintainer, preserved);
+        } else {
+            overdeleted = maintainer.overdelete(t, fdeductions.getGraph(), preserved);
+            data.delete(t);
+            Graph deductions = getCurrentDeductionsGraph();
+            for (Iterator<Triple> i = overdeleted.iterator(); i.hasNext(); ) {
+                deductions.delete(i.next());
+            }
+        }
+        
+        // Rederive
+        List<Triple> candidates = new ArrayList<Triple>(overdeleted.size() + 1);
+        candidates.add(t);
+        candidates.addAll(overdeleted);
+        if (derivations != null) {
+            for (Iterator<Triple> i = candidates.iterator(); i.hasNext(); ) {
+                derivations.remove(i.next());
+            }
+        }
+        // The engine is not guaranteed to restore every consequence of a rederived
+        // triple (the basic engine fires each rule once per triple) so repeat
+        // until no more of the candidates can be rederived
+        List<Triple> pending = candidates;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            List<Triple> remaining = new ArrayList<Triple>();
+            for (Iterator<Triple> i = pending.iterator(); i.hasNext(); ) {
+                Triple c = i.next();
+                // Skip any already restored as a consequence of an earlier rederivation
+                if (containsDataMatch(c)) continue;
+                RuleDerivation derivation = null;
+                if ((preserved != null && preserved.contains(c)) || (derivation = maintainer.findDerivation(c)) != null) {
+                    if (engine instanceof RETEEngine) {
+                        ((RETEEngine)engine).addTriple(c, true);
+                        ((RETEEngine)engine).runAll();
+                    } else {
+                        addDeduction(c);
+                        engine.add(c);
+                    }
+                    if (derivations != null && derivation != null) {
+                        logDerivation(c, derivation);
+                    }
+                    changed = true;
+                } else {
+                    remaining.add(c);
+                }
+            }
+            pending = remaining;
+        }
+        int rederived = 0;
+        for (Iterator<Triple> i = candidates.iterator(); i.hasNext(); ) {
+            if (containsDataMatch(i.next())) rederived++;
+        }
+        maintainer.recordDelete(overdeleted.size(), rederived);
+        return true;
+    }
+    
+    /**
+     * Return true if the data or deductions contain the given triple.
+     */
+    private boolean containsDataMatch(Triple t) {
+        ClosableIterator<Triple> i = findDataMatches(t.getSubject(), t.getPredicate(), t.getObject());
+        boolean result = i.hasNext();
+        i.close();
+        return result;
+    }
    
     /** 
      * Free all resources, any further use of this Graph is an error.
@@ -408,7 +628,9 @@ public class BasicForwardRuleInfGraph extends BaseInfGraph implements ForwardRul
                 return dg;
             }
         }
-        Graph dg = Factory.createGraphMem( style ); 
+        Graph dg = (nodeDictionary == null) 
+                    ? Factory.createGraphMem( style ) 
+                    : new GraphMemEncoded( nodeDictionary, style ); 
         safeDeductions = new SafeGraph( dg );
         return dg;
     }
@@ -509,6 +731,14 @@ public class BasicForwardRuleInfGraph extends BaseInfGraph implements ForwardRul
         return engine.getNRulesFired();
     }
     
+    /**
+     * Return the forward rule engine in use, may be null if the graph
+     * has not yet been prepared. Intended for instrumentation only.
+     */
+    public FRuleEngineI getEngine() {
+        return engine;
+    }
+    
     @Override
     public Reifier constructReifier()
         { 
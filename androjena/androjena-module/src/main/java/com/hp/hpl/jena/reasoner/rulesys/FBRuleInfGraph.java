@@ -150,6 +150,7 @@ public class FBRuleInfGraph  extends BasicForwardRuleInfGraph implements Backwar
      */
     @Override
     protected void instantiateRuleEngine(List<Rule> rules) {
+        if (engine != null) engine.setProfiler(null);
         if (rules != null) {
             if (useRETE) {
                 engine = new RETEEngine(this, rules);
@@ -163,6 +164,13 @@ public class FBRuleInfGraph  extends BasicForwardRuleInfGraph implements Backwar
                 engine = new FRuleEngine(this);
             }
         }
+        if (engine instanceof RETEEngine) {
+            ((RETEEngine)engine).setParallelism(ruleParallelism);
+            ((RETEEngine)engine).setCompiledMatching(compiledMatching);
+        } else {
+            ((FRuleEngine)engine).setSemiNaive(semiNaive);
+        }
+        engine.setProfiler(profiler);
     }
 
     /**
@@ -517,6 +525,41 @@ public class FBRuleInfGraph  extends BasicForwardRuleInfGraph implements Backwar
         super.setTraceOn(state);
         bEngine.setTraceOn(state);
     }
+    
+    /**
+     * Set the profiler which should record the statistics of both the
+     * forward and backward engines. Null switches profiling off.
+     * @see RuleProfiler
+     */
+    @Override
+    public void setProfiler(RuleProfiler profiler) {
+        super.setProfiler(profiler);
+        bEngine.setProfiler(profiler);
+    }
+
+    /**
+     * Switch concurrent tabling on or off in the backward rule engine so that
+     * backward queries from different threads can be evaluated in parallel.
+     * @see LPBRuleEngine#setConcurrentTabling(boolean)
+     */
+    public void setConcurrentTabling(boolean concurrent) {
+        bEngine.setConcurrentTabling(concurrent);
+    }
+
+    /**
+     * Set the store which holds completed tabled goals in the backward rule engine.
+     * @see LPBRuleEngine#setTableStore(LPTableStore)
+     */
+    public void setTableStore(LPTableStore store) {
+        bEngine.setTableStore(store);
+    }
+
+    /**
+     * Return the store which holds completed tabled goals in the backward rule engine.
+     */
+    public LPTableStore getTableStore() {
+        return bEngine.getTableStore();
+    }
 
     /**
      * Set to true to enable derivation caching
@@ -655,6 +698,14 @@ public class FBRuleInfGraph  extends BasicForwardRuleInfGraph implements Backwar
     @Override
     public void performDelete(Triple t) {
         version++;
+        // Incremental deletes can't be used with the TGC caches, or with preprocessing
+        // hooks since those may add deductions which no rule can rederive
+        if (isPrepared && incrementalDeletes && !useTGCCaching
+                && (preprocessorHooks == null || preprocessorHooks.isEmpty())
+                && deleteIncrementally(t)) {
+            bEngine.reset();
+            return;
+        }
         boolean removeIsFromBase = fdata.getGraph().contains(t);
         fdata.getGraph().delete(t);
         if (useTGCCaching) {
@@ -668,7 +719,8 @@ public class FBRuleInfGraph  extends BasicForwardRuleInfGraph implements Backwar
         // Full incremental remove processing requires reference counting
         // of all deductions. It's not clear the cost of maintaining the
         // reference counts is worth it so the current implementation
-        // forces a recompute if any external deletes are performed.
+        // forces a recompute if any external deletes are performed,
+        // unless incremental deletes are enabled (see above).
         if (isPrepared) {
             bEngine.deleteAllRules();
             isPrepared = false;
@@ -678,6 +730,23 @@ public class FBRuleInfGraph  extends BasicForwardRuleInfGraph implements Backwar
         bEngine.reset();
     }
     
+    /**
+     * Return the forward rules whose deductions are maintained by incremental deletes.
+     */
+    @Override
+    protected List<Rule> getMaintainedRules() {
+        return rules;
+    }
+    
+    /**
+     * Return a graph of deductions which do not depend on the data and so must
+     * survive any delete, here those preloaded from the schema graph.
+     */
+    @Override
+    protected Graph getPreservedDeductions() {
+        return schemaGraph == null ? null : ((FBRuleInfGraph)schemaGraph).getDeductionsGraph();
+    }
+    
     /**
      * Return a new inference graph which is a clone of the current graph
      * together with an additional set of data premises. Attempts to the replace
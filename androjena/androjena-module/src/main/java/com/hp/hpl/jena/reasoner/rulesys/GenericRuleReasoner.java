@@ -13,6 +13,7 @@ import com.hp.hpl.jena.reasoner.*;
 import com.hp.hpl.jena.reasoner.rulesys.impl.*;
 import com.hp.hpl.jena.vocabulary.*;
 import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.mem.encoded.NodeDictionary;
 import com.hp.hpl.jena.rdf.model.*;
 
 import java.util.*;
@@ -52,6 +53,33 @@ public class GenericRuleReasoner extends FBRuleReasoner {
     /** Flag, if true then find results will be filtered to remove functors and illegal RDF */
     public boolean filterFunctors = true;
     
+    /** Number of network partitions the forward RETE engine matches in parallel, 1 for sequential matching */
+    protected int ruleParallelism = 1;
+    
+    /** Flag, if true the forward RETE engine builds its network from compiled nodes */
+    protected boolean compiledMatching = false;
+    
+    /** Flag, if true the basic forward engine uses semi-naive evaluation */
+    protected boolean semiNaive = false;
+    
+    /** Dictionary shared by the encoded deductions graphs of all bound graphs, null if not encoding */
+    protected NodeDictionary nodeDictionary;
+    
+    /** Flag, if true then backward queries from different threads are evaluated in parallel, not applicable to FORWARD modes */
+    protected boolean enableConcurrentTabling = false;
+    
+    /** Approximate memory budget in bytes for completed tabled goals, 0 for no bound, not applicable to FORWARD modes */
+    protected long tableMemoryBudget = 0;
+    
+    /** Eviction policy for completed tabled goals once the memory budget is reached, "lru" or "lfu" */
+    protected String tableEvictionPolicy = "lru";
+    
+    /** Flag, if true then deletes are processed incrementally by the forward rules, not applicable to BACKWARD mode */
+    protected boolean enableIncrementalDeletes = false;
+    
+    /** Flag, if true then each bound graph is given a profiler to record rule statistics */
+    protected boolean profiling = false;
+    
     /** A prebuilt copy of the OWL translation hook */
     private static final OWLRuleTranslationHook owlTranslator = new OWLRuleTranslationHook();
     
@@ -178,6 +206,101 @@ public class GenericRuleReasoner extends FBRuleReasoner {
         filterFunctors = param;
     }
     
+    /**
+     * Set the number of partitions of the RETE network which should be matched
+     * in parallel when forward rules are run by the RETE engine (FORWARD_RETE and
+     * HYBRID modes). Values above 1 enable parallel matching, the default of 1
+     * matches sequentially. The resulting closure is the same in either case.
+     */
+    public void setRuleParallelism(int parallelism) {
+        this.ruleParallelism = parallelism;
+    }
+    
+    /**
+     * Set to true to have the RETE engine (FORWARD_RETE and HYBRID modes) 
+     * compile the rule bodies into specialized network nodes, with constants,
+     * variable slots and builtins resolved once, rather than interpreting them
+     * for each token. The resulting closure is the same in either case.
+     */
+    public void setCompiledMatching(boolean compiledMatching) {
+        this.compiledMatching = compiledMatching;
+    }
+    
+    /**
+     * Set to true to have each graph bound by this reasoner collect rule, RETE
+     * join and builtin statistics in its own {@link RuleProfiler}, which can be
+     * retrieved from the graph with getProfiler. The rule timings are sampled to
+     * keep the overhead low.
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+    
+    /**
+     * Set to true to have the basic forward engine (FORWARD mode, and HYBRID mode 
+     * when {@link FBRuleInfGraph#useRETE} is off) process additions set-at-a-time
+     * by semi-naive evaluation rather than one triple at a time. The resulting
+     * closure is the same but bulk loads are much faster.
+     */
+    public void setSemiNaive(boolean semiNaive) {
+        this.semiNaive = semiNaive;
+    }
+    
+    /**
+     * Set to true to hold the forward deductions (FORWARD, FORWARD_RETE and
+     * HYBRID modes) in dictionary-encoded graphs, which take much less memory
+     * than the default GraphMem for large closures. All the graphs bound by this
+     * reasoner share one node dictionary.
+     */
+    public void setEncodedDeductions(boolean encodedDeductions) {
+        if (!encodedDeductions) {
+            nodeDictionary = null;
+        } else if (nodeDictionary == null) {
+            nodeDictionary = new NodeDictionary();
+        }
+    }
+    
+    /**
+     * Set to true to let the backward rule engine evaluate queries from
+     * different threads in parallel (BACKWARD and HYBRID modes). Completed 
+     * tabled goals are shared between the threads.
+     */
+    public void setConcurrentTabling(boolean enableConcurrentTabling) {
+        this.enableConcurrentTabling = enableConcurrentTabling;
+    }
+    
+    /**
+     * Set an approximate bound, in bytes, on the memory used by completed tabled
+     * goals in the backward rule engine (BACKWARD and HYBRID modes). Once the
+     * bound is reached completed goals are evicted and recomputed when next needed.
+     * The default of 0 means no bound.
+     */
+    public void setTableMemoryBudget(long budget) {
+        this.tableMemoryBudget = budget;
+    }
+    
+    /**
+     * Set the order in which completed tabled goals are evicted once the table
+     * memory budget is reached, "lru" (least recently used first, the default) 
+     * or "lfu" (least frequently used first).
+     */
+    public void setTableEvictionPolicy(String policy) {
+        if (!policy.equals("lru") && !policy.equals("lfu")) {
+            throw new IllegalParameterException("PROPtableEvictionPolicy can only be 'lru' or 'lfu', not " + policy);
+        }
+        this.tableEvictionPolicy = policy;
+    }
+    
+    /**
+     * Set to true to process deletes incrementally in the forward rules (FORWARD,
+     * FORWARD_RETE and HYBRID modes) rather than recomputing the whole closure.
+     * Only the deductions which depended on a deleted triple are removed and
+     * those with other derivations are then rederived.
+     */
+    public void setIncrementalDeletes(boolean enableIncrementalDeletes) {
+        this.enableIncrementalDeletes = enableIncrementalDeletes;
+    }
+    
     /**
      * Add a new preprocessing hook defining an operation that
      * should be run when the inference graph is being prepared. This can be
@@ -277,6 +400,33 @@ public class GenericRuleReasoner extends FBRuleReasoner {
         } else if (parameter.equals(ReasonerVocabulary.PROPenableTGCCaching)) {
             enableTGCCaching =  Util.convertBooleanPredicateArg(parameter, value);
             
+        } else if (parameter.equals(ReasonerVocabulary.PROPruleParallelism)) {
+            ruleParallelism =  Util.convertIntegerPredicateArg(parameter, value);
+            
+        } else if (parameter.equals(ReasonerVocabulary.PROPcompiledMatching)) {
+            compiledMatching =  Util.convertBooleanPredicateArg(parameter, value);
+            
+        } else if (parameter.equals(ReasonerVocabulary.PROPsemiNaive)) {
+            semiNaive =  Util.convertBooleanPredicateArg(parameter, value);
+            
+        } else if (parameter.equals(ReasonerVocabulary.PROPencodedDeductions)) {
+            setEncodedDeductions(Util.convertBooleanPredicateArg(parameter, value));
+            
+        } else if (parameter.equals(ReasonerVocabulary.PROPprofiling)) {
+            profiling =  Util.convertBooleanPredicateArg(parameter, value);
+            
+        } else if (parameter.equals(ReasonerVocabulary.PROPenableConcurrentTabling)) {
+            enableConcurrentTabling =  Util.convertBooleanPredicateArg(parameter, value);
+            
+        } else if (parameter.equals(ReasonerVocabulary.PROPtableMemoryBudget)) {
+            tableMemoryBudget =  Util.convertLongPredicateArg(parameter, value);
+            
+        } else if (parameter.equals(ReasonerVocabulary.PROPtableEvictionPolicy)) {
+            setTableEvictionPolicy(value.toString());
+            
+        } else if (parameter.equals(ReasonerVocabulary.PROPenableIncrementalDeletes)) {
+            enableIncrementalDeletes =  Util.convertBooleanPredicateArg(parameter, value);
+            
         } else if (parameter.equals(ReasonerVocabulary.PROPruleMode)) {
             if (value.equals(FORWARD.name)) {
                 mode = FORWARD;
@@ -334,6 +484,15 @@ public class GenericRuleReasoner extends FBRuleReasoner {
         grr.setTraceOn(traceOn);
         grr.setTransitiveClosureCaching(enableTGCCaching);
         grr.setFunctorFiltering(filterFunctors);
+        grr.setRuleParallelism(ruleParallelism);
+        grr.setCompiledMatching(compiledMatching);
+        grr.setSemiNaive(semiNaive);
+        grr.nodeDictionary = nodeDictionary;
+        grr.setConcurrentTabling(enableConcurrentTabling);
+        grr.setTableMemoryBudget(tableMemoryBudget);
+        grr.setTableEvictionPolicy(tableEvictionPolicy);
+        grr.setIncrementalDeletes(enableIncrementalDeletes);
+        grr.setProfiling(profiling);
         if (preprocessorHooks != null) {
             for (Iterator<RulePreprocessHook> i = preprocessorHooks.iterator(); i.hasNext(); ) {
                 grr.addPreprocessingHook(i.next());
@@ -360,13 +519,25 @@ public class GenericRuleReasoner extends FBRuleReasoner {
         if (mode == FORWARD) {
             graph = new BasicForwardRuleInfGraph(this, rules, schemaArg);
             ((BasicForwardRuleInfGraph)graph).setTraceOn(traceOn);
+            ((BasicForwardRuleInfGraph)graph).setSemiNaive(semiNaive);
+            ((BasicForwardRuleInfGraph)graph).setNodeDictionary(nodeDictionary);
+            ((BasicForwardRuleInfGraph)graph).setIncrementalDeletes(enableIncrementalDeletes);
+            if (profiling) ((BasicForwardRuleInfGraph)graph).setProfiler(new RuleProfiler());
         } else if (mode == FORWARD_RETE) {
                 graph = new RETERuleInfGraph(this, rules, schemaArg);
                 ((BasicForwardRuleInfGraph)graph).setTraceOn(traceOn);
                 ((BasicForwardRuleInfGraph)graph).setFunctorFiltering(filterFunctors);
+                ((BasicForwardRuleInfGraph)graph).setRuleParallelism(ruleParallelism);
+                ((BasicForwardRuleInfGraph)graph).setCompiledMatching(compiledMatching);
+                ((BasicForwardRuleInfGraph)graph).setNodeDictionary(nodeDictionary);
+                ((BasicForwardRuleInfGraph)graph).setIncrementalDeletes(enableIncrementalDeletes);
+                if (profiling) ((BasicForwardRuleInfGraph)graph).setProfiler(new RuleProfiler());
         } else if (mode == BACKWARD) {
             graph = new LPBackwardRuleInfGraph(this, getBruleStore(), data, schemaArg);
             ((LPBackwardRuleInfGraph)graph).setTraceOn(traceOn);
+            if (enableConcurrentTabling) ((LPBackwardRuleInfGraph)graph).setConcurrentTabling(true);
+            if (tableMemoryBudget > 0) ((LPBackwardRuleInfGraph)graph).setTableStore(createTableStore());
+            if (profiling) ((LPBackwardRuleInfGraph)graph).setProfiler(new RuleProfiler());
         } else {
             List<Rule> ruleSet = ((FBRuleInfGraph)schemaArg).getRules();
             FBRuleInfGraph fbgraph = new FBRuleInfGraph(this, ruleSet, schemaArg);
@@ -374,6 +545,14 @@ public class GenericRuleReasoner extends FBRuleReasoner {
             if (enableTGCCaching) fbgraph.setUseTGCCache();
             fbgraph.setTraceOn(traceOn);
             fbgraph.setFunctorFiltering(filterFunctors);
+            fbgraph.setRuleParallelism(ruleParallelism);
+            fbgraph.setCompiledMatching(compiledMatching);
+            fbgraph.setSemiNaive(semiNaive);
+            fbgraph.setNodeDictionary(nodeDictionary);
+            fbgraph.setIncrementalDeletes(enableIncrementalDeletes);
+            if (enableConcurrentTabling) fbgraph.setConcurrentTabling(true);
+            if (tableMemoryBudget > 0) fbgraph.setTableStore(createTableStore());
+            if (profiling) fbgraph.setProfiler(new RuleProfiler());
             if (preprocessorHooks!= null) {
                 for (Iterator<RulePreprocessHook> i = preprocessorHooks.iterator(); i.hasNext(); ) {
                     fbgraph.addPreprocessingHook(i.next());
@@ -409,6 +588,14 @@ public class GenericRuleReasoner extends FBRuleReasoner {
         return bRuleStore;
     }
     
+    /**
+     * Create a table store for the backward engine which keeps to the table memory budget.
+     */
+    protected LPTableStore createTableStore() {
+        int policy = tableEvictionPolicy.equals("lfu") ? LPBoundedTableStore.LFU : LPBoundedTableStore.LRU;
+        return new LPBoundedTableStore(tableMemoryBudget, policy);
+    }
+    
 //  =======================================================================
 //  Inner classes
 
@@ -261,6 +261,46 @@ public class LPBackwardRuleInfGraph extends BaseInfGraph implements BackwardRule
         engine.setTraceOn(state);
     }
     
+    /**
+     * Set the profiler which should record the rule calls, exits and builtin
+     * calls of the rule engine. Null switches profiling off.
+     * @see LPBRuleEngine#setProfiler(RuleProfiler)
+     */
+    public void setProfiler(RuleProfiler profiler) {
+        engine.setProfiler(profiler);
+    }
+    
+    /**
+     * Return the profiler in use, or null if profiling is off.
+     */
+    public RuleProfiler getProfiler() {
+        return engine.getProfiler();
+    }
+    
+    /**
+     * Switch concurrent tabling on or off in the rule engine so that 
+     * queries from different threads can be evaluated in parallel.
+     * @see LPBRuleEngine#setConcurrentTabling(boolean)
+     */
+    public void setConcurrentTabling(boolean concurrent) {
+        engine.setConcurrentTabling(concurrent);
+    }
+    
+    /**
+     * Set the store which holds completed tabled goals in the rule engine.
+     * @see LPBRuleEngine#setTableStore(LPTableStore)
+     */
+    public void setTableStore(LPTableStore store) {
+        engine.setTableStore(store);
+    }
+    
+    /**
+     * Return the store which holds completed tabled goals in the rule engine.
+     */
+    public LPTableStore getTableStore() {
+        return engine.getTableStore();
+    }
+    
     /**
      * Return true if tracing is switched on
      */
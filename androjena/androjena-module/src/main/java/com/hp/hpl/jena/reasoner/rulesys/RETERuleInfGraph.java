@@ -72,11 +72,17 @@ public class RETERuleInfGraph extends BasicForwardRuleInfGraph {
      */
     @Override
     protected void instantiateRuleEngine(List<Rule> rules) {
+        RETEEngine reteEngine;
         if (rules != null) {
-            engine = new RETEEngine(this, rules);
+            reteEngine = new RETEEngine(this, rules);
         } else {
-            engine = new RETEEngine(this);
+            reteEngine = new RETEEngine(this);
         }
+        reteEngine.setParallelism(ruleParallelism);
+        reteEngine.setCompiledMatching(compiledMatching);
+        if (engine != null) engine.setProfiler(null);
+        reteEngine.setProfiler(profiler);
+        engine = reteEngine;
     }
 
     /**
@@ -96,6 +102,7 @@ public class RETERuleInfGraph extends BasicForwardRuleInfGraph {
     @Override
     public void performDelete(Triple t) {
         if (!isPrepared) prepare();
+        if (incrementalDeletes && deleteIncrementally(t)) return;
         if (fdata != null) {
             Graph data = fdata.getGraph();
             if (data != null) {
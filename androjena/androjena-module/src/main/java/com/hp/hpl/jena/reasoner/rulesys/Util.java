@@ -315,6 +315,28 @@ public class Util {
         }            
     }
     
+    /**
+     * Convert the value of an integer configuration parameter to a long value.
+     * Allows the value to be specified using a String or Number.
+     * @param parameter the configuration property being set (to help with error messages)
+     * @param value the parameter value
+     * @return the converted value
+     * @throws IllegalParameterException if the value can't be converted
+     */
+    public static long convertLongPredicateArg(Property parameter, Object value) {
+        if (value instanceof Number) {
+            return ((Number)value).longValue();
+        } else if (value instanceof String) {
+            try {
+                return Long.parseLong((String)value);
+            } catch (NumberFormatException e) {
+                throw new IllegalParameterException("Illegal type for " + parameter + " setting - use an integer");
+            }
+        } else {
+            throw new IllegalParameterException("Illegal type for " + parameter + " setting - use an integer");
+        }            
+    }
+    
     /**
      * Replace the value for a given parameter on the resource by a new value.
      * @param config the resource whose values are to be updated
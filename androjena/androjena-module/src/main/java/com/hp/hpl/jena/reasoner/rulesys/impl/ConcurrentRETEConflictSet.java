@@ -0,0 +1,123 @@
+/******************************************************************
+ * File:        ConcurrentRETEConflictSet.java
+ * 
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.hp.hpl.jena.reasoner.rulesys.BindingEnvironment;
+import com.hp.hpl.jena.reasoner.rulesys.ForwardRuleInfGraphI;
+import com.hp.hpl.jena.reasoner.rulesys.Rule;
+
+/**
+ * Variant of the conflict set used by the parallel matching mode of the
+ * RETEEngine. Rule firing requests may arrive concurrently from the matching 
+ * workers. For monotonic rule sets the firings cannot be executed on the
+ * workers, since that would modify the deductions graph while other workers
+ * are reading it, so they are deferred and executed as a batch by
+ * {@link #flush} once the matching round is complete. For non-monotonic
+ * rule sets the requests are stacked up as normal, under a lock.
+ */
+public class ConcurrentRETEConflictSet extends RETEConflictSet {
+
+    /** monotonic rule firings waiting for the end of the current matching round */
+    protected List<CSEntry> deferred = new ArrayList<CSEntry>();
+    
+    /** Construct an empty conflict set, noting whether the overall rule system is monotonic or not */
+    public ConcurrentRETEConflictSet(RETERuleContext context, boolean isMonotonic) {
+        super(context, isMonotonic);
+    }
+    
+    /**
+     * Record a request for a rule firing. May be called concurrently from
+     * several matching workers.
+     */
+    @Override
+    public synchronized void add(Rule rule, BindingEnvironment env, boolean isAdd) {
+        if (isMonotonic) {
+            deferred.add(new CSEntry(rule, env, isAdd));
+        } else {
+            super.add(rule, env, isAdd);
+        }
+    }
+
+    /**
+     * Return true if there are no more rules awaiting firing.
+     */
+    @Override
+    public synchronized boolean isEmpty() {
+        return deferred.isEmpty() && super.isEmpty();
+    }
+    
+    /**
+     * Pick on pending rule from the conflict set and fire it. Any deferred
+     * monotonic firings are executed first.
+     * Return true if there was a rule to fire.
+     */
+    @Override
+    public synchronized boolean fireOne() {
+        if (!deferred.isEmpty()) {
+            flush();
+            return true;
+        }
+        return super.fireOne();
+    }
+    
+    /**
+     * Execute all the deferred monotonic rule firings, in the order in
+     * which they were requested. Must only be called when no matching
+     * round is in progress.
+     */
+    public void flush() {
+        List<CSEntry> pending;
+        synchronized (this) {
+            if (deferred.isEmpty()) return;
+            pending = deferred;
+            deferred = new ArrayList<CSEntry>();
+        }
+        for (Iterator<CSEntry> i = pending.iterator(); i.hasNext(); ) {
+            CSEntry cse = i.next();
+            RETERuleContext context = new RETERuleContext((ForwardRuleInfGraphI)gcontext.getGraph(), gcontext.getEngine());
+            context.setEnv(cse.env);
+            context.setRule(cse.rule);
+            execute(context, cse.isAdd);
+        }
+    }
+}
+
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
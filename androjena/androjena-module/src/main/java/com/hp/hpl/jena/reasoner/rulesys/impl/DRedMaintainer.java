@@ -0,0 +1,452 @@
+/******************************************************************
+ * File:        DRedMaintainer.java
+ *
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.compose.Union;
+import com.hp.hpl.jena.reasoner.TriplePattern;
+import com.hp.hpl.jena.reasoner.rulesys.Builtin;
+import com.hp.hpl.jena.reasoner.rulesys.ClauseEntry;
+import com.hp.hpl.jena.reasoner.rulesys.ForwardRuleInfGraphI;
+import com.hp.hpl.jena.reasoner.rulesys.Functor;
+import com.hp.hpl.jena.reasoner.rulesys.Node_RuleVariable;
+import com.hp.hpl.jena.reasoner.rulesys.Rule;
+import com.hp.hpl.jena.reasoner.rulesys.RuleDerivation;
+import com.hp.hpl.jena.util.OneToManyMap;
+import com.hp.hpl.jena.util.iterator.ClosableIterator;
+
+/**
+ * Support for incremental maintenance of forward deductions under deletion
+ * using the DRed (delete and rederive) algorithm. When a data triple is
+ * removed every deduction which had at least one derivation using it, directly
+ * or through other such deductions, is first overdeleted. Each overdeleted
+ * triple is then checked for an alternative derivation from what remains
+ * and, if it has one, is rederived and fed back to the rule engine so
+ * that its own consequences are restored.
+ * <p>
+ * To limit the overdeletion a deduction which can be derived in one step
+ * from asserted triples (and preserved deductions) alone is never overdeleted,
+ * so the cascade stops there. Such a derivation can't depend on the deleted
+ * triple, even indirectly, so this doesn't affect the result. This matters for
+ * rules such as the OWL 2 RL equality rules where almost every deduction would
+ * otherwise depend on some reflexive owl:sameAs triple.
+ * </p>
+ * <p>
+ * The overdelete step is carried out here by evaluating the rules with one body
+ * clause bound to a deleted triple. The RETE engine can instead cascade the
+ * deletion through its network, see {@link RETEEngine#overdelete(Triple)}.
+ * Only rule sets for which a deletion can never enable a new deduction
+ * (no non-monotonic builtins, no backward rules built by forward rules)
+ * and whose deductions are reproducible (no makeTemp) can be maintained.
+ * </p>
+ */
+public class DRedMaintainer {
+
+    /** The inference graph whose deductions are being maintained */
+    protected ForwardRuleInfGraphI infGraph;
+
+    /** Map from predicate node to rule + body clause, Node_ANY is used for wildcard predicates */
+    protected OneToManyMap<Node, FRuleEngine.ClausePointer> bodyIndex = new OneToManyMap<Node, FRuleEngine.ClausePointer>();
+
+    /** Map from predicate node to rule + head clause, Node_ANY is used for wildcard predicates */
+    protected OneToManyMap<Node, FRuleEngine.ClausePointer> headIndex = new OneToManyMap<Node, FRuleEngine.ClausePointer>();
+
+    /** Number of deletes processed */
+    protected long nDeletes = 0;
+
+    /** Number of deductions overdeleted */
+    protected long nOverdeleted = 0;
+
+    /** Number of overdeleted deductions, or deleted data triples, which were rederived */
+    protected long nRederived = 0;
+
+    /**
+     * Constructor.
+     * @param infGraph the inference graph whose deductions are to be maintained
+     * @param rules the rules used to compute the deductions, should pass {@link #canMaintain(List)}
+     */
+    public DRedMaintainer(ForwardRuleInfGraphI infGraph, List<Rule> rules) {
+        this.infGraph = infGraph;
+        for (Iterator<Rule> i = rules.iterator(); i.hasNext(); ) {
+            Rule r = i.next();
+            if (r.isBackward()) continue;
+            ClauseEntry[] body = r.getBody();
+            for (int j = 0; j < body.length; j++) {
+                if (body[j] instanceof TriplePattern) {
+                    index(bodyIndex, ((TriplePattern)body[j]).getPredicate(), new FRuleEngine.ClausePointer(r, j));
+                }
+            }
+            ClauseEntry[] head = r.getHead();
+            for (int j = 0; j < head.length; j++) {
+                if (head[j] instanceof TriplePattern) {
+                    index(headIndex, ((TriplePattern)head[j]).getPredicate(), new FRuleEngine.ClausePointer(r, j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true if the deductions of the given rule set can be maintained
+     * incrementally.
+     */
+    public static boolean canMaintain(List<Rule> rules) {
+        for (Iterator<Rule> i = rules.iterator(); i.hasNext(); ) {
+            Rule r = i.next();
+            if (r.isBackward()) continue;
+            if (!r.isMonotonic()) return false;
+            ClauseEntry[] head = r.getHead();
+            for (int j = 0; j < head.length; j++) {
+                if (head[j] instanceof Rule) return false;
+            }
+            ClauseEntry[] body = r.getBody();
+            for (int j = 0; j < body.length; j++) {
+                if (body[j] instanceof Functor) {
+                    Functor f = (Functor)body[j];
+                    Builtin imp = f.getImplementor();
+                    if (imp == null || !imp.isMonotonic() || f.getName().equals("makeTemp")) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find all the deductions which have at least one derivation depending on
+     * the given data triple. Must be called before the triple is removed.
+     * @param deleted the data triple being deleted
+     * @param deductions the graph holding the deductions
+     * @param preserved optional graph of deductions which should never be
+     * overdeleted, such as those preloaded from a schema
+     * @return the set of deductions to remove
+     */
+    public Set<Triple> overdelete(Triple deleted, Graph deductions, Graph preserved) {
+        Graph raw = infGraph.getRawGraph();
+        Set<Triple> overdeleted = new LinkedHashSet<Triple>();
+        LinkedList<Triple> agenda = new LinkedList<Triple>();
+        agenda.add(deleted);
+        BFRuleContext context = new BFRuleContext(infGraph);
+        List<Triple> heads = new ArrayList<Triple>();
+        while (!agenda.isEmpty()) {
+            Triple t = agenda.removeFirst();
+            for (Iterator<FRuleEngine.ClausePointer> i = clausesFor(bodyIndex, t); i.hasNext(); ) {
+                FRuleEngine.ClausePointer cp = i.next();
+                Rule rule = cp.rule;
+                context.setRule(rule);
+                context.resetEnv(rule.getNumVars());
+                if (!FRuleEngine.match(cp.getClause(), t, context.getEnvStack())) continue;
+                heads.clear();
+                matchBody(rule, remainingClauses(rule, cp.index), context, heads, null, null, null, null);
+                for (Iterator<Triple> h = heads.iterator(); h.hasNext(); ) {
+                    Triple head = h.next();
+                    if (overdeleted.contains(head) || !deductions.contains(head)) continue;
+                    if (raw.contains(head) && !head.equals(deleted)) continue;
+                    if (preserved != null && preserved.contains(head)) continue;
+                    if (!head.equals(deleted) && hasGroundedDerivation(head, preserved, deleted)) continue;
+                    overdeleted.add(head);
+                    agenda.add(head);
+                }
+            }
+        }
+        return overdeleted;
+    }
+
+    /**
+     * Find a derivation of the given triple from the current contents of the
+     * graph by a single rule application.
+     * @return the derivation or null if the triple can't be derived
+     */
+    public RuleDerivation findDerivation(Triple t) {
+        return findDerivation(t, null, null);
+    }
+
+    /**
+     * Return true if the given triple can be derived by a single rule application
+     * whose body matches only asserted triples or preserved deductions. Such a
+     * triple need not be overdeleted, whatever else is being deleted.
+     * @param t the triple to check
+     * @param preserved optional graph of deductions which will survive the delete
+     * @param excluded a triple being deleted which should not be matched, may be null
+     */
+    public boolean hasGroundedDerivation(Triple t, Graph preserved, Triple excluded) {
+        Graph raw = infGraph.getRawGraph();
+        Graph source = (preserved == null) ? raw : new Union(raw, preserved);
+        return findDerivation(t, source, excluded) != null;
+    }
+
+    /**
+     * Record the outcome of one incremental delete.
+     * @param overdeleted the number of deductions overdeleted
+     * @param rederived the number of triples rederived
+     */
+    public synchronized void recordDelete(int overdeleted, int rederived) {
+        nDeletes++;
+        nOverdeleted += overdeleted;
+        nRederived += rederived;
+    }
+
+    /**
+     * Return the number of incremental deletes processed.
+     */
+    public synchronized long getDeleteCount() {
+        return nDeletes;
+    }
+
+    /**
+     * Return the total number of deductions overdeleted.
+     */
+    public synchronized long getOverdeletedCount() {
+        return nOverdeleted;
+    }
+
+    /**
+     * Return the total number of triples rederived after overdeletion.
+     */
+    public synchronized long getRederivedCount() {
+        return nRederived;
+    }
+
+//  =======================================================================
+//  Internal methods
+
+    /**
+     * Add a clause to a predicate index.
+     */
+    private static void index(OneToManyMap<Node, FRuleEngine.ClausePointer> map, Node predicate, FRuleEngine.ClausePointer cp) {
+        map.put(predicate.isVariable() ? Node.ANY : predicate, cp);
+    }
+
+    /**
+     * Return all the indexed clauses which might match the given triple.
+     */
+    private static Iterator<FRuleEngine.ClausePointer> clausesFor(OneToManyMap<Node, FRuleEngine.ClausePointer> map, Triple t) {
+        List<FRuleEngine.ClausePointer> clauses = new ArrayList<FRuleEngine.ClausePointer>();
+        for (Iterator<FRuleEngine.ClausePointer> i = map.getAll(t.getPredicate()); i.hasNext(); ) {
+            clauses.add(i.next());
+        }
+        for (Iterator<FRuleEngine.ClausePointer> i = map.getAll(Node.ANY); i.hasNext(); ) {
+            clauses.add(i.next());
+        }
+        return clauses.iterator();
+    }
+
+    /**
+     * Return the body triple patterns of a rule, other than the one at the given index.
+     */
+    private static List<ClauseEntry> remainingClauses(Rule rule, int skip) {
+        List<ClauseEntry> clauses = new ArrayList<ClauseEntry>(rule.bodyLength());
+        for (int i = 0; i < rule.bodyLength(); i++) {
+            if (i != skip && rule.getBodyElement(i) instanceof TriplePattern) {
+                clauses.add(rule.getBodyElement(i));
+            }
+        }
+        return clauses;
+    }
+
+    /**
+     * Return the indices of the variables bound by the body patterns of a rule.
+     */
+    private static Set<Integer> patternVariables(Rule rule) {
+        Set<Integer> vars = new HashSet<Integer>();
+        for (int i = 0; i < rule.bodyLength(); i++) {
+            if (rule.getBodyElement(i) instanceof TriplePattern) {
+                TriplePattern p = (TriplePattern)rule.getBodyElement(i);
+                collectVariables(p.getSubject(), vars);
+                collectVariables(p.getPredicate(), vars);
+                collectVariables(p.getObject(), vars);
+            }
+        }
+        return vars;
+    }
+
+    /**
+     * Add the indices of any variables in a pattern node to the set.
+     */
+    private static void collectVariables(Node n, Set<Integer> vars) {
+        if (n instanceof Node_RuleVariable) {
+            vars.add(new Integer(((Node_RuleVariable)n).getIndex()));
+        } else if (Functor.isFunctor(n)) {
+            Node[] args = ((Functor)n.getLiteralValue()).getArgs();
+            for (int i = 0; i < args.length; i++) {
+                collectVariables(args[i], vars);
+            }
+        }
+    }
+
+    /**
+     * Find a derivation of the given triple by a single rule application.
+     * @param t the triple to derive
+     * @param source the graph to match the rule bodies against, null for the
+     * data and deductions of the inference graph
+     * @param excluded a triple which should not be matched, may be null
+     * @return the derivation or null if the triple can't be derived
+     */
+    private RuleDerivation findDerivation(Triple t, Graph source, Triple excluded) {
+        BFRuleContext context = new BFRuleContext(infGraph);
+        List<Triple> matches = new ArrayList<Triple>();
+        for (Iterator<FRuleEngine.ClausePointer> i = clausesFor(headIndex, t); i.hasNext(); ) {
+            FRuleEngine.ClausePointer cp = i.next();
+            Rule rule = cp.rule;
+            TriplePattern head = (TriplePattern)rule.getHeadElement(cp.index);
+            // Only variables which the body patterns bind are taken from the triple,
+            // any bound by builtins are computed and the result checked against it
+            BindingStack headEnv = new BindingStack();
+            headEnv.reset(rule.getNumVars());
+            if (!FRuleEngine.match(head, t, headEnv)) continue;
+            context.setRule(rule);
+            context.resetEnv(rule.getNumVars());
+            BindingStack env = context.getEnvStack();
+            Node[] headBindings = headEnv.getEnvironment();
+            Set<Integer> bodyVars = patternVariables(rule);
+            for (int v = 0; v < headBindings.length; v++) {
+                if (headBindings[v] != null && bodyVars.contains(new Integer(v))) {
+                    env.bind(v, headBindings[v]);
+                }
+            }
+            matches.clear();
+            if (matchBody(rule, remainingClauses(rule, -1), context, matches, head, t, source, excluded)) {
+                return new RuleDerivation(rule, t, matches, infGraph);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Match the given body clauses against the graph, most bound clause first,
+     * then check the rule's guards.
+     * @param rule the rule being matched
+     * @param clauses the triple patterns still to be matched
+     * @param context the context holding the current bindings
+     * @param results if head is null the instantiated head triples of every
+     * match are added to this list, otherwise the body triples of the first match
+     * @param head if not null, the head clause which must reproduce the target triple,
+     * matching stops at the first match which does so
+     * @param target the triple being derived, if head is not null
+     * @param source the graph to match against, null for the data and deductions
+     * of the inference graph
+     * @param excluded a triple which should not be matched, may be null
+     * @return true if at least one match was found
+     */
+    private boolean matchBody(Rule rule, List<ClauseEntry> clauses, BFRuleContext context, List<Triple> results, 
+                    TriplePattern head, Triple target, Graph source, Triple excluded) {
+        boolean derive = head != null;
+        BindingStack env = context.getEnvStack();
+        if (clauses.isEmpty()) {
+            for (int i = 0; i < rule.bodyLength(); i++) {
+                Object clause = rule.getBodyElement(i);
+                if (clause instanceof Functor) {
+                    if (!((Functor)clause).evalAsBodyClause(context)) {
+                        return false;
+                    }
+                }
+            }
+            if (derive) {
+                if (!env.instantiate(head).equals(target)) return false;
+                for (int i = 0; i < rule.bodyLength(); i++) {
+                    Object clause = rule.getBodyElement(i);
+                    if (clause instanceof TriplePattern) {
+                        results.add(env.instantiate((TriplePattern)clause));
+                    }
+                }
+            } else {
+                for (int i = 0; i < rule.headLength(); i++) {
+                    Object clause = rule.getHeadElement(i);
+                    if (clause instanceof TriplePattern) {
+                        results.add(env.instantiate((TriplePattern)clause));
+                    }
+                }
+            }
+            return true;
+        }
+        int best = 0;
+        int bestscore = -1;
+        for (int i = 0; i < clauses.size(); i++) {
+            TriplePattern clause = (TriplePattern)clauses.get(i);
+            int score = FRuleEngine.scoreNodeBoundness(clause.getSubject(), env) * 3 +
+                        FRuleEngine.scoreNodeBoundness(clause.getPredicate(), env) * 2 +
+                        FRuleEngine.scoreNodeBoundness(clause.getObject(), env) * 3;
+            if (score > bestscore) {
+                bestscore = score;
+                best = i;
+            }
+        }
+        List<ClauseEntry> rest = new ArrayList<ClauseEntry>(clauses);
+        TriplePattern clause = (TriplePattern)rest.remove(best);
+        Node objPattern = env.getBinding(clause.getObject());
+        if (Functor.isFunctor(objPattern)) {
+            // Can't search on functor patterns so leave that as a wildcard
+            objPattern = null;
+        }
+        Node subjPattern = env.getBinding(clause.getSubject());
+        Node predPattern = env.getBinding(clause.getPredicate());
+        objPattern = env.getBinding(objPattern);
+        ClosableIterator<Triple> i = (source == null)
+                            ? infGraph.findDataMatches(subjPattern, predPattern, objPattern)
+                            : source.find(subjPattern, predPattern, objPattern);
+        boolean found = false;
+        try {
+            while (i.hasNext()) {
+                Triple t = i.next();
+                if (t.equals(excluded)) continue;
+                env.push();
+                if (FRuleEngine.match(clause.getPredicate(), t.getPredicate(), env)
+                        && FRuleEngine.match(clause.getObject(), t.getObject(), env)
+                        && FRuleEngine.match(clause.getSubject(), t.getSubject(), env)) {
+                    found |= matchBody(rule, rest, context, results, head, target, source, excluded);
+                }
+                env.unwind();
+                if (found && derive) return true;
+            }
+        } finally {
+            i.close();
+        }
+        return found;
+    }
+
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
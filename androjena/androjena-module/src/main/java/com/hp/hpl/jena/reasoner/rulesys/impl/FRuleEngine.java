@@ -62,6 +62,18 @@ public class FRuleEngine implements FRuleEngineI {
     /** True if we have processed the axioms in the rule set */
     boolean processedAxioms = false;
     
+    /** Profiler recording rule and builtin statistics, null if profiling is off */
+    protected RuleProfiler profiler;
+    
+    /** Flag, if true then additions are processed in rounds by semi-naive evaluation */
+    protected boolean semiNaive = false;
+    
+    /** True if the rule set can be evaluated semi-naively, null if not yet checked */
+    protected Boolean semiNaiveSafe;
+    
+    /** Number of delta triples matched against a rule clause in one batch of a semi-naive round */
+    protected static final int SEED_BATCH = 4096;
+    
     protected static Logger logger = LoggerFactory.getLogger(FRuleEngine.class);
     
 //  =======================================================================
@@ -178,6 +190,41 @@ public class FRuleEngine implements FRuleEngineI {
         this.recordDerivations = recordDerivations;
     }
     
+    /**
+     * Set the profiler which should record rule and builtin statistics,
+     * null to switch profiling off.
+     */
+    public void setProfiler(RuleProfiler profiler) {
+        this.profiler = profiler;
+    }
+    
+    /**
+     * Return the profiler in use, or null if profiling is off.
+     */
+    public RuleProfiler getProfiler() {
+        return profiler;
+    }
+    
+    /**
+     * Set to true to process additions set-at-a-time by semi-naive evaluation
+     * rather than one triple at a time. Each round joins the triples deduced by
+     * the previous round (the delta) against the full data, using one index
+     * lookup for each distinct set of join values, and the deductions of the
+     * round are asserted together at its end. This reaches the same closure as
+     * the default mode and is much faster for bulk loads. Rule sets which use
+     * non-monotonic builtins are always processed a triple at a time.
+     */
+    public void setSemiNaive(boolean semiNaive) {
+        this.semiNaive = semiNaive;
+    }
+    
+    /**
+     * Return true if semi-naive evaluation has been requested.
+     */
+    public boolean isSemiNaive() {
+        return semiNaive;
+    }
+    
     /**
      * Access the precomputed internal rule form. Used when precomputing the
      * internal axiom closures.
@@ -194,6 +241,7 @@ public class FRuleEngine implements FRuleEngineI {
         clauseIndex = rs.clauseIndex;
         predicatesUsed = rs.predicatesUsed;
         wildcardRule = rs.wildcardRule;
+        semiNaiveSafe = null;
     }
     
 //  =======================================================================
@@ -208,6 +256,36 @@ public class FRuleEngine implements FRuleEngineI {
      * @param context a context containing a set of new triples to be added
      */
     public void addSet(BFRuleContext context) {
+        if (profiler == null) {
+            dispatchSet(context);
+            return;
+        }
+        RuleProfiler.EngineStats stats = profiler.getEngineStats(RuleProfiler.FORWARD_ENGINE);
+        stats.run();
+        long start = System.nanoTime();
+        try {
+            dispatchSet(context);
+        } finally {
+            stats.addNanos(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Process the stack of additions using the selected evaluation mode.
+     */
+    private void dispatchSet(BFRuleContext context) {
+        if (semiNaive && isSemiNaiveSafe()) {
+            processRounds(context);
+        } else {
+            processSet(context);
+        }
+    }
+    
+    /**
+     * Process the stack of additions in a context, firing any relevant rules.
+     * @param context a context containing a set of new triples to be added
+     */
+    protected void processSet(BFRuleContext context) {
         Triple t;
         while ((t = context.getNextTriple()) != null) {
             if (infGraph.shouldTrace()) {
@@ -226,7 +304,20 @@ public class FRuleEngine implements FRuleEngineI {
                 if (match(trigger, t, context.getEnvStack())) {
                     nRulesTriggered++;
                     context.setRule(cp.rule);
-                    if (matchRuleBody(cp.index, context)) {
+                    boolean fired;
+                    if (profiler == null) {
+                        fired = matchRuleBody(cp.index, context);
+                    } else {
+                        RuleProfiler.RuleStats stats = profiler.getRuleStats(cp.rule);
+                        stats.activated();
+                        long start = profiler.startTimer();
+                        try {
+                            fired = matchRuleBody(cp.index, context);
+                        } finally {
+                            profiler.stopTimer(stats, start);
+                        }
+                    }
+                    if (fired) {
                         firedRules.add(cp.rule);
                         nRulesFired++;
                     }
@@ -245,6 +336,7 @@ public class FRuleEngine implements FRuleEngineI {
         clauseIndex = new OneToManyMap<Node, ClausePointer>();
         predicatesUsed = new HashSet<Node>();
         wildcardRule = false;
+        semiNaiveSafe = null;
             
         for (Iterator<Rule> i = rules.iterator(); i.hasNext(); ) {
             Rule r = i.next();
@@ -310,7 +402,11 @@ public class FRuleEngine implements FRuleEngineI {
                         Builtin imp = f.getImplementor();
                         if (imp != null) {
                             context.setRule(r);
-                            imp.headAction(f.getArgs(), f.getArgLength(), context);
+                            if (profiler != null) {
+                                profiler.headAction(imp, f.getArgs(), f.getArgLength(), context);
+                            } else {
+                                imp.headAction(f.getArgs(), f.getArgLength(), context);
+                            }
                         } else {
                             throw new ReasonerException("Invoking undefined Functor " + f.getName() +" in " + r.toShortString());
                         }
@@ -388,68 +484,10 @@ public class FRuleEngine implements FRuleEngineI {
      * @return true if the rule actually fires
      */
     private boolean matchClauseList(List<ClauseEntry> clauses, BFRuleContext context) {
-        Rule rule = context.getRule();
         BindingStack env = context.getEnvStack();
         int index = clauses.size() - 1;
         if (index == -1) {
-            // Check any non-pattern clauses 
-            for (int i = 0; i < rule.bodyLength(); i++) {
-                Object clause = rule.getBodyElement(i);
-                if (clause instanceof Functor) {
-                    // Fire a built in
-                    if (!((Functor)clause).evalAsBodyClause(context)) {
-                        return false;       // guard failed
-                    }
-                }
-            }
-            // Now fire the rule
-            if (infGraph.shouldTrace()) {
-                logger.info("Fired rule: " + rule.toShortString() + " = " + rule.instantiate(env));
-            }
-            List<Triple> matchList = null;
-            if (recordDerivations) {
-                // Create derivation record
-                matchList = new ArrayList<Triple>(rule.bodyLength());
-                for (int i = 0; i < rule.bodyLength(); i++) {
-                    Object clause = rule.getBodyElement(i);
-                    if (clause instanceof TriplePattern) {
-                        matchList.add(env.instantiate((TriplePattern)clause));
-                    } 
-                }
-            }
-            for (int i = 0; i < rule.headLength(); i++) {
-                Object hClause = rule.getHeadElement(i);
-                if (hClause instanceof TriplePattern) {
-                    Triple t = env.instantiate((TriplePattern) hClause);
-                    if (!t.getSubject().isLiteral()) {
-                        // Only add the result if it is legal at the RDF level.
-                        // E.g. RDFS rules can create assertions about literals
-                        // that we can't record in RDF
-                        if ( ! context.contains(t)  ) {
-                            context.add(t);
-                            if (recordDerivations) {
-                                infGraph.logDerivation(t, new RuleDerivation(rule, t, matchList, infGraph));
-                            }
-                        }
-                    }
-                } else if (hClause instanceof Functor) {
-                    Functor f = (Functor)hClause;
-                    Builtin imp = f.getImplementor();
-                    if (imp != null) {
-                        imp.headAction(f.getBoundArgs(env), f.getArgLength(), context);
-                    } else {
-                        throw new ReasonerException("Invoking undefined Functor " + f.getName() +" in " + rule.toShortString());
-                    }
-                } else if (hClause instanceof Rule) {
-                    Rule r = (Rule)hClause;
-                    if (r.isBackward()) {
-                        infGraph.addBRule(r.instantiate(env));
-                    } else {
-                        throw new ReasonerException("Found non-backward subrule : " + r); 
-                    }
-                }
-            }
-            return true;
+            return fireRule(context);
         }
         // More clauses left to match ...
         List<ClauseEntry> clausesCopy = new ArrayList<ClauseEntry>(clauses);
@@ -478,6 +516,414 @@ public class FRuleEngine implements FRuleEngineI {
         return foundMatch;
     }
 
+    /**
+     * Check the remaining clause guards of a rule whose body patterns have all
+     * been matched and, if they pass, fire the rule actions.
+     * @param context a context holding the rule and the bindings of its body patterns
+     * @return true if the rule actually fires
+     */
+    private boolean fireRule(BFRuleContext context) {
+        Rule rule = context.getRule();
+        BindingStack env = context.getEnvStack();
+        // Check any non-pattern clauses 
+        for (int i = 0; i < rule.bodyLength(); i++) {
+            Object clause = rule.getBodyElement(i);
+            if (clause instanceof Functor) {
+                // Fire a built in
+                boolean ok = (profiler == null)
+                    ? ((Functor)clause).evalAsBodyClause(context)
+                    : profiler.evalAsBodyClause((Functor)clause, context);
+                if (!ok) {
+                    return false;       // guard failed
+                }
+            }
+        }
+        // Now fire the rule
+        if (infGraph.shouldTrace()) {
+            logger.info("Fired rule: " + rule.toShortString() + " = " + rule.instantiate(env));
+        }
+        if (profiler != null) {
+            profiler.getRuleStats(rule).fired();
+        }
+        List<Triple> matchList = null;
+        if (recordDerivations) {
+            // Create derivation record
+            matchList = new ArrayList<Triple>(rule.bodyLength());
+            for (int i = 0; i < rule.bodyLength(); i++) {
+                Object clause = rule.getBodyElement(i);
+                if (clause instanceof TriplePattern) {
+                    matchList.add(env.instantiate((TriplePattern)clause));
+                } 
+            }
+        }
+        for (int i = 0; i < rule.headLength(); i++) {
+            Object hClause = rule.getHeadElement(i);
+            if (hClause instanceof TriplePattern) {
+                Triple t = env.instantiate((TriplePattern) hClause);
+                if (!t.getSubject().isLiteral()) {
+                    // Only add the result if it is legal at the RDF level.
+                    // E.g. RDFS rules can create assertions about literals
+                    // that we can't record in RDF
+                    if ( ! context.contains(t)  ) {
+                        context.add(t);
+                        if (recordDerivations) {
+                            infGraph.logDerivation(t, new RuleDerivation(rule, t, matchList, infGraph));
+                        }
+                    }
+                }
+            } else if (hClause instanceof Functor) {
+                Functor f = (Functor)hClause;
+                Builtin imp = f.getImplementor();
+                if (imp != null) {
+                    if (profiler != null) {
+                        profiler.headAction(imp, f.getBoundArgs(env), f.getArgLength(), context);
+                    } else {
+                        imp.headAction(f.getBoundArgs(env), f.getArgLength(), context);
+                    }
+                } else {
+                    throw new ReasonerException("Invoking undefined Functor " + f.getName() +" in " + rule.toShortString());
+                }
+            } else if (hClause instanceof Rule) {
+                Rule r = (Rule)hClause;
+                if (r.isBackward()) {
+                    infGraph.addBRule(r.instantiate(env));
+                } else {
+                    throw new ReasonerException("Found non-backward subrule : " + r); 
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Return true if the rules can be evaluated semi-naively. This needs all
+     * builtins, in rule bodies and heads, to be monotonic so that the result 
+     * does not depend on when in a round a rule is fired.
+     */
+    protected boolean isSemiNaiveSafe() {
+        if (semiNaiveSafe == null) {
+            boolean safe = true;
+            for (Iterator<ClausePointer> i = clauseIndex.values().iterator(); safe && i.hasNext(); ) {
+                Rule rule = i.next().rule;
+                if (!rule.isMonotonic()) {
+                    safe = false;
+                    break;
+                }
+                for (int j = 0; j < rule.bodyLength(); j++) {
+                    Object clause = rule.getBodyElement(j);
+                    if (clause instanceof Functor) {
+                        Builtin imp = ((Functor)clause).getImplementor();
+                        if (imp != null && !imp.isMonotonic()) {
+                            safe = false;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (!safe) {
+                logger.debug("Rule set has non-monotonic builtins, using tuple-at-a-time evaluation");
+            }
+            semiNaiveSafe = Boolean.valueOf(safe);
+        }
+        return semiNaiveSafe.booleanValue();
+    }
+    
+    /**
+     * Process the stack of additions by semi-naive evaluation. The stacked triples,
+     * which are already in the graph, form the delta for the first round. Each
+     * round fires all the rule instances which use at least one delta triple and
+     * the new deductions it makes form the delta for the next round.
+     * @param context a context containing a set of new triples to be added
+     */
+    protected void processRounds(BFRuleContext context) {
+        Set<Triple> delta = new LinkedHashSet<Triple>();
+        Triple t;
+        while ((t = context.getNextTriple()) != null) {
+            delta.add(t);
+        }
+        RoundContext roundContext = new RoundContext(infGraph);
+        int round = 0;
+        while (!delta.isEmpty()) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Semi-naive round " + round + ", delta of " + delta.size() + " triples");
+            }
+            processRound(delta, roundContext);
+            delta = roundContext.endRound();
+            round++;
+        }
+    }
+    
+    /**
+     * Run one round of semi-naive evaluation, leaving the deductions pending in the context.
+     * @param delta the triples added to the graph since the previous round
+     * @param context the context which collects the deductions
+     */
+    protected void processRound(Set<Triple> delta, BFRuleContext context) {
+        // Group the delta by the rule clauses each triple might match
+        Map<ClausePointer, List<Triple>> seeds = new LinkedHashMap<ClausePointer, List<Triple>>();
+        for (Iterator<Triple> i = delta.iterator(); i.hasNext(); ) {
+            Triple t = i.next();
+            if (infGraph.shouldTrace()) {
+                logger.info("Processing: " + PrintUtil.print(t));
+            }
+            Iterator<ClausePointer> i1 = clauseIndex.getAll(t.getPredicate());
+            Iterator<ClausePointer> i2 = clauseIndex.getAll(Node.ANY);
+            for (Iterator<ClausePointer> j = new ConcatenatedIterator<ClausePointer>(i1, i2); j.hasNext(); ) {
+                ClausePointer cp = j.next();
+                List<Triple> list = seeds.get(cp);
+                if (list == null) {
+                    list = new ArrayList<Triple>();
+                    seeds.put(cp, list);
+                }
+                list.add(t);
+            }
+        }
+        for (Iterator<Map.Entry<ClausePointer, List<Triple>>> i = seeds.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<ClausePointer, List<Triple>> entry = i.next();
+            ClausePointer cp = entry.getKey();
+            List<Triple> triples = entry.getValue();
+            for (int start = 0; start < triples.size(); start += SEED_BATCH) {
+                List<Triple> batch = triples.subList(start, Math.min(triples.size(), start + SEED_BATCH));
+                if (profiler == null) {
+                    matchDelta(cp, batch, delta, context);
+                } else {
+                    RuleProfiler.RuleStats stats = profiler.getRuleStats(cp.rule);
+                    long begin = System.nanoTime();
+                    try {
+                        matchDelta(cp, batch, delta, context);
+                    } finally {
+                        stats.addNanos(System.nanoTime() - begin);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Fire all instances of a rule in which the given clause is matched by one of 
+     * a batch of delta triples. To avoid firing an instance more than once, 
+     * clauses earlier in the rule body only match triples from before the delta.
+     * The remaining clauses are joined in turn, most bound first, against the
+     * whole set of partial matches. The partial matches are grouped by their 
+     * bindings for the clause so each group needs only one index lookup.
+     * @param cp the rule clause which is matched against the delta
+     * @param batch the delta triples to match against the clause
+     * @param delta all the delta triples of this round
+     * @param context the context which collects the deductions
+     */
+    private void matchDelta(ClausePointer cp, List<Triple> batch, Set<Triple> delta, BFRuleContext context) {
+        Rule rule = cp.rule;
+        int numVars = rule.getNumVars();
+        TriplePattern trigger = cp.getClause();
+        List<Node[]> matches = new ArrayList<Node[]>(batch.size());
+        for (Iterator<Triple> i = batch.iterator(); i.hasNext(); ) {
+            Node[] env = new Node[numVars];
+            if (match(trigger, i.next(), env)) {
+                matches.add(env);
+            }
+        }
+        if (matches.isEmpty()) return;
+        nRulesTriggered += matches.size();
+        if (profiler != null) {
+            RuleProfiler.RuleStats stats = profiler.getRuleStats(rule);
+            for (int i = 0; i < matches.size(); i++) stats.activated();
+        }
+        
+        // Join the remaining clauses
+        ClauseEntry[] body = rule.getBody();
+        boolean[] done = new boolean[body.length];
+        boolean[] bound = new boolean[numVars];
+        done[cp.index] = true;
+        markBound(trigger, bound);
+        while (!matches.isEmpty()) {
+            int next = -1;
+            int bestscore = -1;
+            for (int i = 0; i < body.length; i++) {
+                if (done[i] || !(body[i] instanceof TriplePattern)) continue;
+                TriplePattern clause = (TriplePattern) body[i];
+                int score = scoreBoundness(clause.getSubject(), bound) * 3 +
+                            scoreBoundness(clause.getPredicate(), bound) * 2 +
+                            scoreBoundness(clause.getObject(), bound) * 3;
+                if (score > bestscore) {
+                    bestscore = score;
+                    next = i;
+                }
+            }
+            if (next == -1) break;
+            TriplePattern clause = (TriplePattern) body[next];
+            matches = joinClause(matches, clause, next < cp.index ? delta : null);
+            done[next] = true;
+            markBound(clause, bound);
+        }
+        
+        // Check the guards and fire the surviving matches
+        context.setRule(rule);
+        BindingStack env = context.getEnvStack();
+        for (Iterator<Node[]> i = matches.iterator(); i.hasNext(); ) {
+            Node[] values = i.next();
+            context.resetEnv(numVars);
+            for (int v = 0; v < numVars; v++) {
+                if (values[v] != null) env.bind(v, values[v]);
+            }
+            if (fireRule(context)) {
+                nRulesFired++;
+            }
+        }
+    }
+    
+    /**
+     * Extend each of a set of partial matches by all the triples which match
+     * the given clause.
+     * @param matches the partial matches, as arrays of variable bindings
+     * @param clause the clause to join
+     * @param exclude if not null then triples in this set are not matched
+     * @return the extended matches
+     */
+    private List<Node[]> joinClause(List<Node[]> matches, TriplePattern clause, Set<Triple> exclude) {
+        // Group the matches by the lookup they need 
+        Map<Triple, List<Node[]>> groups = new LinkedHashMap<Triple, List<Node[]>>();
+        for (Iterator<Node[]> i = matches.iterator(); i.hasNext(); ) {
+            Node[] env = i.next();
+            Triple key = new Triple(lookupNode(clause.getSubject(), env),
+                                    lookupNode(clause.getPredicate(), env),
+                                    lookupNode(clause.getObject(), env));
+            List<Node[]> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<Node[]>(1);
+                groups.put(key, group);
+            }
+            group.add(env);
+        }
+        List<Node[]> result = new ArrayList<Node[]>();
+        for (Iterator<Map.Entry<Triple, List<Node[]>>> i = groups.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<Triple, List<Node[]>> entry = i.next();
+            Triple key = entry.getKey();
+            List<Node[]> group = entry.getValue();
+            ClosableIterator<Triple> it = infGraph.findDataMatches(
+                                wildcardToNull(key.getSubject()),
+                                wildcardToNull(key.getPredicate()),
+                                wildcardToNull(key.getObject()));
+            try {
+                while (it.hasNext()) {
+                    Triple t = it.next();
+                    if (exclude != null && exclude.contains(t)) continue;
+                    for (int j = 0; j < group.size(); j++) {
+                        Node[] env = group.get(j).clone();
+                        if (match(clause, t, env)) {
+                            result.add(env);
+                        }
+                    }
+                }
+            } finally {
+                it.close();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Return the value a clause node takes in a set of bindings, for use in an
+     * index lookup, or Node.ANY if it is unbound or can't be used in a lookup.
+     */
+    private static Node lookupNode(Node n, Node[] env) {
+        if (n instanceof Node_RuleVariable) {
+            Node value = env[((Node_RuleVariable)n).getIndex()];
+            return (value == null || Functor.isFunctor(value)) ? Node.ANY : value;
+        } else if (n instanceof Node_ANY || Functor.isFunctor(n)) {
+            return Node.ANY;
+        } else {
+            return n;
+        }
+    }
+    
+    /**
+     * Convert a Node.ANY lookup value to the null wildcard used by find.
+     */
+    private static Node wildcardToNull(Node n) {
+        return n == Node.ANY ? null : n;
+    }
+    
+    /**
+     * Record the variables bound by matching a clause.
+     */
+    private static void markBound(TriplePattern clause, boolean[] bound) {
+        markBound(clause.getSubject(), bound);
+        markBound(clause.getPredicate(), bound);
+        markBound(clause.getObject(), bound);
+    }
+    
+    /**
+     * Record the variables bound by matching a clause node.
+     */
+    private static void markBound(Node n, boolean[] bound) {
+        if (n instanceof Node_RuleVariable) {
+            bound[((Node_RuleVariable)n).getIndex()] = true;
+        } else if (Functor.isFunctor(n)) {
+            Node[] args = ((Functor)n.getLiteralValue()).getArgs();
+            for (int i = 0; i < args.length; i++) {
+                markBound(args[i], bound);
+            }
+        }
+    }
+    
+    /**
+     * Score a clause node in terms of groundedness, given the set of bound 
+     * variables. Version of {@link #scoreNodeBoundness} for semi-naive joins.
+     */
+    private static int scoreBoundness(Node n, boolean[] bound) {
+        if (n instanceof Node_ANY) {
+            return 0;
+        } else if (n instanceof Node_RuleVariable) {
+            return bound[((Node_RuleVariable)n).getIndex()] ? 3 : 1;
+        } else {
+            return 3;
+        }
+    }
+    
+    /**
+     * Test if a TriplePattern matches a Triple, extending an array of variable
+     * bindings. The bindings may be partly updated if the match fails.
+     * @return true if the pattern matches the triple
+     */
+    private static boolean match(TriplePattern pattern, Triple triple, Node[] env) {
+        return match(pattern.getPredicate(), triple.getPredicate(), env)
+            && match(pattern.getObject(), triple.getObject(), env)
+            && match(pattern.getSubject(), triple.getSubject(), env);
+    }
+    
+    /**
+     * Test if a pattern Node matches a Triple Node, extending an array of
+     * variable bindings. The bindings may be partly updated if the match fails.
+     * @return true if the pattern matches the node
+     */
+    private static boolean match(Node pattern, Node node, Node[] env) {
+        if (pattern instanceof Node_RuleVariable) {
+            int index = ((Node_RuleVariable)pattern).getIndex();
+            Node value = env[index];
+            if (value == null) {
+                env[index] = node;
+                return true;
+            }
+            return value.sameValueAs(node);
+        } else if (pattern instanceof Node_ANY) {
+            return true;
+        } else if (Functor.isFunctor(pattern)) {
+            if (!Functor.isFunctor(node)) return false;
+            Functor patternF = (Functor) pattern.getLiteralValue();
+            Functor nodeF = (Functor) node.getLiteralValue();
+            if (!patternF.getName().equals(nodeF.getName())) return false;
+            Node[] patternArgs = patternF.getArgs();
+            Node[] nodeArgs = nodeF.getArgs();
+            if (patternArgs.length != nodeArgs.length) return false;
+            for (int i = 0; i < patternArgs.length; i++) {
+                if (!match(patternArgs[i], nodeArgs[i], env)) return false;
+            }
+            return true;
+        } else {
+            return pattern.sameValueAs(node);
+        }
+    }
+    
     /**
      * Score a Node in terms of groundedness - heuristic.
      * Treats a variable as better than a wildcard because it constrains
@@ -611,6 +1057,84 @@ public class FRuleEngine implements FRuleEngineI {
         }
     }
     
+    /**
+     * Rule context used by semi-naive evaluation. Deductions are held back until
+     * the end of the round, each distinct one is only checked against the graph
+     * once per round.
+     */
+    protected static class RoundContext extends BFRuleContext {
+        
+        /** The distinct deductions of the current round */
+        protected Set<Triple> deduced = new HashSet<Triple>();
+        
+        /** Deductions which were not checked against the graph before being added */
+        protected Set<Triple> unchecked = new HashSet<Triple>();
+        
+        /** The last triple which contains found to be absent from the graph */
+        protected Triple checked;
+        
+        /** constructor */
+        RoundContext(ForwardRuleInfGraphI graph) {
+            super(graph);
+        }
+        
+        /**
+         * Return true if the triple is already in the graph or has been deduced
+         * in this round.
+         */
+        @Override
+        public boolean contains(Triple t) {
+            if (deduced.contains(t)) return true;
+            // Most re-derivations are already held directly in the deductions or
+            // raw data, check those before the full data search
+            if (t.isConcrete()) {
+                Graph deductions = graph.getCurrentDeductionsGraph();
+                if (deductions != null && deductions.contains(t)) return true;
+                if (graph.getRawGraph().contains(t)) return true;
+            }
+            if (super.contains(t)) return true;
+            checked = t;
+            return false;
+        }
+        
+        /**
+         * Record a deduction, to be added to the graph at the end of the round.
+         */
+        @Override
+        public void add(Triple t) {
+            if (deduced.add(t)) {
+                super.add(t);
+                if (t != checked) unchecked.add(t);
+            }
+            checked = null;
+        }
+        
+        /**
+         * Add the deductions of the round to the graph.
+         * @return the new triples, which form the delta for the next round
+         */
+        Set<Triple> endRound() {
+            Set<Triple> added = new LinkedHashSet<Triple>();
+            for (Iterator<Triple> i = pending.iterator(); i.hasNext(); ) {
+                Triple t = i.next();
+                // Deductions made by builtins may not have been checked
+                if (!unchecked.contains(t) || !super.contains(t)) {
+                    graph.addDeduction(t);
+                    added.add(t);
+                }
+            }
+            pending.clear();
+            deduced.clear();
+            unchecked.clear();
+            checked = null;
+            for (Iterator<Triple> i = deletesPending.iterator(); i.hasNext(); ) {
+                graph.delete(i.next());
+            }
+            deletesPending.clear();
+            return added;
+        }
+    }
+    
     /**
      * Structure used to wrap up processed rule indexes.
      */
@@ -72,6 +72,17 @@ public interface FRuleEngineI {
      */
     public void setDerivationLogging(boolean recordDerivations);
     
+    /**
+     * Set the profiler which should record rule and builtin statistics,
+     * null to switch profiling off.
+     */
+    public void setProfiler(RuleProfiler profiler);
+    
+    /**
+     * Return the profiler in use, or null if profiling is off.
+     */
+    public RuleProfiler getProfiler();
+    
     /**
      * Access the precomputed internal rule form. Used when precomputing the
      * internal axiom closures.
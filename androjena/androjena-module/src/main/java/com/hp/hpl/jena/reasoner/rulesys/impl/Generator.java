@@ -55,12 +55,18 @@ public class Generator implements LPAgendaEntry, LPInterpreterContext {
     /** Flags whether the generator is live/dead/unknown during completion checking */
     protected LFlag completionState;
     
-    /** The goal the generator is satisfying - just used in debugging */
+    /** The goal the generator is satisfying, used to publish the generator once complete */
     protected TriplePattern goal;
     
     /** True if this generator can produce at most one answer */
     protected boolean isSingleton;
     
+    /** Approximate size in bytes of a complete generator with no results */
+    protected static final int GENERATOR_BYTES = 128;
+    
+    /** Approximate size in bytes of one result triple and its slot in the results list */
+    protected static final int RESULT_BYTES = 48;
+    
 //    /** Distance of generator from top level goal, used in scheduling */
 //    protected int depth = DEFAULT_DEPTH;
 //    
@@ -87,6 +93,14 @@ public class Generator implements LPAgendaEntry, LPInterpreterContext {
         return results.size();
     }
     
+    /**
+     * Return the approximate number of bytes held by this generator's results,
+     * used by table stores which keep to a memory budget.
+     */
+    public long estimatedSize() {
+        return GENERATOR_BYTES + (long)results.size() * RESULT_BYTES;
+    }
+    
     /**
      * Return true if the generator is ready to be scheduled (i.e. it is not
      * known to be complete and not known to be waiting for a dependent generator).
@@ -147,6 +161,7 @@ public class Generator implements LPAgendaEntry, LPInterpreterContext {
      */
     public void setComplete() {
         if (!isComplete()) {
+            LPBRuleEngine engine = interpreter.getEngine();
             interpreter.close();
             interpreter = null;
             resultSet = null;
@@ -161,6 +176,7 @@ public class Generator implements LPAgendaEntry, LPInterpreterContext {
             }
             generatingCPs = null;
             consumingCPs.clear();
+            engine.tableComplete(goal, this);
         }
     }
     
@@ -168,6 +184,9 @@ public class Generator implements LPAgendaEntry, LPInterpreterContext {
      * Add a new client choince point to consume results from this generator.
      */
     public void addConsumer(ConsumerChoicePointFrame ccp) {
+        // A complete generator never notifies its consumers and may be shared 
+        // between evaluators, so it does not track them
+        if (isComplete()) return;
         consumingCPs.add(ccp);
 //        // Update distance from top goal
 //        int newDepth = ccp.context == null ? 1 : ccp.context.getDepth() + 1;
@@ -178,6 +197,7 @@ public class Generator implements LPAgendaEntry, LPInterpreterContext {
      * Remove a terminated consuming choice point from the state set.
      */
     public void removeConsumer(ConsumerChoicePointFrame ccp) {
+        if (isComplete()) return;
         consumingCPs.remove(ccp);
         // We used to set it complete if there were no consumers left.
         // However, a generator might be part of one query, incompletely consumed
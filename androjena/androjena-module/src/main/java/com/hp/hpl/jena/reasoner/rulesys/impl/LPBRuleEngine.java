@@ -16,6 +16,7 @@ import com.hp.hpl.jena.util.iterator.*;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 /**
@@ -48,7 +49,7 @@ public class LPBRuleEngine {
     /** List of engine instances which are still processing queries */
     protected List<LPInterpreter> activeInterpreters = new ArrayList<LPInterpreter>();
     
-    /** Table mapping tabled goals to generators for those goals.
+    /** Table mapping tabled goals to generators for those goals which are still being evaluated.
      *  This is here so that partial goal state can be shared across multiple queries. */
     protected HashMap<TriplePattern, Generator> tabledGoals = new HashMap<TriplePattern, Generator>();
     
@@ -57,9 +58,24 @@ public class LPBRuleEngine {
 //    protected List agenda = new ArrayList();
 //    protected Collection agenda = new HashSet();
     
+    /** Table of completed goals, shared between the per-thread evaluators in concurrent
+     *  tabling mode. Complete generators are immutable so can be consumed by several 
+     *  evaluators at once. */
+    protected volatile LPTableStore completedGoals = new LPUnboundedTableStore();
+    
+    /** The per-thread evaluators used in concurrent tabling mode, null if concurrent tabling is off */
+    protected volatile ThreadLocal<LPBRuleEngine> evaluator;
+    
+    /** All evaluators created for this engine in concurrent tabling mode. Weakly held, so
+     *  the evaluator of a thread which has gone, and has no queries open, can be collected. */
+    protected List<WeakReference<LPBRuleEngine>> evaluators = new ArrayList<WeakReference<LPBRuleEngine>>();
+    
     /** Optional profile of number of time each rule is entered, set to non-null to profile */
     protected HashMap<String, Count> profile;
     
+    /** Profiler recording rule and builtin statistics, null if profiling is off */
+    protected volatile RuleProfiler profiler;
+    
     /** The number of generator cycles to wait before running a completion check.
      *  If set to 0 then checks will be done in the generator each time. */
     public static final int CYCLES_BETWEEN_COMPLETION_CHECK = 3;
@@ -88,6 +104,21 @@ public class LPBRuleEngine {
         ruleStore = new LPRuleStore();
     }
     
+    /**
+     * Constructor. Creates an evaluator for one thread in concurrent tabling
+     * mode. The evaluator shares the rules, inference graph and completed
+     * goal table of its parent but has its own agenda and in-progress tables.
+     * @param parent the engine which owns the evaluator
+     */
+    protected LPBRuleEngine(LPBRuleEngine parent) {
+        infGraph = parent.infGraph;
+        ruleStore = parent.ruleStore;
+        traceOn = parent.traceOn;
+        recordDerivations = parent.recordDerivations;
+        completedGoals = parent.completedGoals;
+        profiler = parent.profiler;
+    }
+    
 //  =======================================================================
 //  Control methods
     
@@ -96,10 +127,13 @@ public class LPBRuleEngine {
      * @param goal the query to be processed
      * @return a closable iterator over the query results
      */
-    public synchronized ExtendedIterator<Triple> find(TriplePattern goal) {
-        LPInterpreter interpreter = new LPInterpreter(this, goal);
-        activeInterpreters.add(interpreter);
-        return WrappedIterator.create( new LPTopGoalIterator(interpreter));
+    public ExtendedIterator<Triple> find(TriplePattern goal) {
+        LPBRuleEngine engine = getEvaluator();
+        synchronized (engine) {
+            LPInterpreter interpreter = new LPInterpreter(engine, goal);
+            engine.activeInterpreters.add(interpreter);
+            return WrappedIterator.create( new LPTopGoalIterator(interpreter));
+        }
     }
     
     /**
@@ -109,6 +143,119 @@ public class LPBRuleEngine {
         checkSafeToUpdate();
         tabledGoals = new HashMap<TriplePattern, Generator>();
         agenda.clear();
+        completedGoals = completedGoals.emptyCopy();
+        if (evaluator != null) {
+            for (Iterator<LPBRuleEngine> i = getEvaluators().iterator(); i.hasNext(); ) {
+                LPBRuleEngine engine = i.next();
+                synchronized (engine) {
+                    engine.reset();
+                    engine.completedGoals = completedGoals;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Switch concurrent tabling on or off. In concurrent tabling mode each
+     * querying thread runs its own evaluator, with its own agenda and its own
+     * tables for goals still being evaluated, so unrelated queries are not
+     * serialized on this engine. Once a tabled goal is complete its generator
+     * is published in a shared table, which every evaluator consults before
+     * starting work on a goal. Only complete generators are shared, so each
+     * consumer sees the full answer set. Two threads which start on the same
+     * goal before either has completed it will both evaluate it.
+     * Any tabled results are cleared.
+     */
+    public synchronized void setConcurrentTabling(boolean concurrent) {
+        if (concurrent == (evaluator != null)) return;
+        if (concurrent) {
+            evaluator = new ThreadLocal<LPBRuleEngine>();
+        } else {
+            halt();
+            evaluator = null;
+            synchronized (evaluators) {
+                evaluators.clear();
+            }
+        }
+        reset();
+    }
+    
+    /**
+     * Return true if concurrent tabling is switched on.
+     */
+    public boolean isConcurrentTabling() {
+        return evaluator != null;
+    }
+    
+    /**
+     * Set the store which holds completed tabled goals, for example an
+     * LPBoundedTableStore to keep the tables within a memory budget. 
+     * Any tabled results are cleared.
+     */
+    public synchronized void setTableStore(LPTableStore store) {
+        reset();
+        completedGoals = store;
+        for (Iterator<LPBRuleEngine> i = getEvaluators().iterator(); i.hasNext(); ) {
+            LPBRuleEngine engine = i.next();
+            synchronized (engine) {
+                engine.completedGoals = store;
+            }
+        }
+    }
+    
+    /**
+     * Return the store which holds completed tabled goals. The store
+     * gives access to the table size and hit, eviction and recompute counts.
+     */
+    public LPTableStore getTableStore() {
+        return completedGoals;
+    }
+    
+    /**
+     * Return the engine which should evaluate queries for the calling thread.
+     * This is the engine itself unless concurrent tabling is on.
+     */
+    protected LPBRuleEngine getEvaluator() {
+        ThreadLocal<LPBRuleEngine> local = evaluator;
+        if (local == null) return this;
+        LPBRuleEngine engine = local.get();
+        if (engine == null) {
+            engine = new LPBRuleEngine(this);
+            local.set(engine);
+            synchronized (evaluators) {
+                purgeEvaluators();
+                evaluators.add(new WeakReference<LPBRuleEngine>(engine));
+            }
+        }
+        return engine;
+    }
+    
+    /**
+     * Return a snapshot of the evaluators created in concurrent tabling mode.
+     */
+    protected List<LPBRuleEngine> getEvaluators() {
+        synchronized (evaluators) {
+            List<LPBRuleEngine> result = new ArrayList<LPBRuleEngine>(evaluators.size());
+            for (Iterator<WeakReference<LPBRuleEngine>> i = evaluators.iterator(); i.hasNext(); ) {
+                LPBRuleEngine engine = i.next().get();
+                if (engine == null) {
+                    i.remove();
+                } else {
+                    result.add(engine);
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Drop the entries for evaluators which have been garbage collected.
+     * Must be called holding the evaluators lock.
+     */
+    private void purgeEvaluators() {
+        for (Iterator<WeakReference<LPBRuleEngine>> i = evaluators.iterator(); i.hasNext(); ) {
+            if (i.next().get() == null) i.remove();
+        }
     }
     
     /**
@@ -159,6 +306,9 @@ public class LPBRuleEngine {
         for (Iterator<LPInterpreter> i = copy.iterator(); i.hasNext(); ) {
             i.next().close();
         }
+        for (Iterator<LPBRuleEngine> i = getEvaluators().iterator(); i.hasNext(); ) {
+            i.next().halt();
+        }
     }
        
     /**
@@ -167,6 +317,9 @@ public class LPBRuleEngine {
      */
     public void setTraceOn(boolean state) {
         traceOn = state;
+        for (Iterator<LPBRuleEngine> i = getEvaluators().iterator(); i.hasNext(); ) {
+            i.next().setTraceOn(state);
+        }
     }
     
     /**
@@ -181,6 +334,9 @@ public class LPBRuleEngine {
      */
     public void setDerivationLogging(boolean recordDerivations) {
         this.recordDerivations = recordDerivations;
+        for (Iterator<LPBRuleEngine> i = getEvaluators().iterator(); i.hasNext(); ) {
+            i.next().setDerivationLogging(recordDerivations);
+        }
     }
     
     /**
@@ -214,6 +370,12 @@ public class LPBRuleEngine {
      * <p>Should be called from within a synchronized block.
      */
     public void checkSafeToUpdate() {
+        for (Iterator<LPBRuleEngine> i = getEvaluators().iterator(); i.hasNext(); ) {
+            LPBRuleEngine engine = i.next();
+            synchronized (engine) {
+                engine.checkSafeToUpdate();
+            }
+        }
         if (!activeInterpreters.isEmpty()) {
             ArrayList<LPInterpreterContext> toClose = new ArrayList<LPInterpreterContext>();
             for (Iterator<LPInterpreter> i = activeInterpreters.iterator(); i.hasNext(); ) {
@@ -248,6 +410,9 @@ public class LPBRuleEngine {
      */
     public synchronized Generator generatorFor(TriplePattern goal, List<RuleClauseCode> clauses) {
         Generator generator = tabledGoals.get(goal);
+        if (generator == null) {
+            generator = completedGoals.get(goal);
+        }
         if (generator == null) {
             LPInterpreter interpreter = new LPInterpreter(this, goal, clauses, false);
             activeInterpreters.add(interpreter);
@@ -265,6 +430,9 @@ public class LPBRuleEngine {
      */
     public synchronized Generator generatorFor(TriplePattern goal) {
         Generator generator = tabledGoals.get(goal);
+        if (generator == null) {
+            generator = completedGoals.get(goal);
+        }
         if (generator == null) {
             LPInterpreter interpreter = new LPInterpreter(this, goal, false);
             activeInterpreters.add(interpreter);
@@ -275,6 +443,20 @@ public class LPBRuleEngine {
         return generator;
     }
     
+    /**
+     * Record that the generator for a tabled goal is complete, moving it to
+     * the table store. In concurrent tabling mode this makes its results
+     * available to all the evaluators. Generators left over from before a reset
+     * are ignored.
+     * <p>Should be called from within a synchronized block.
+     */
+    public void tableComplete(TriplePattern goal, Generator generator) {
+        if (tabledGoals.get(goal) == generator) {
+            tabledGoals.remove(goal);
+            completedGoals.put(goal, generator);
+        }
+    }
+    
     /**
      * Register that a generator or specific generator state (Consumer choice point)
      * is now ready to run.
@@ -343,6 +525,10 @@ public class LPBRuleEngine {
      * Record a rule invocation in the profile count.
      */
     public void incrementProfile(RuleClauseCode clause) {
+        RuleProfiler p = profiler;
+        if (p != null && clause.getRule() != null) {
+            p.getRuleStats(clause.getRule()).activated();
+        }
         if (profile != null) {
             String index = clause.toString();
             Count count = profile.get(index);
@@ -354,6 +540,36 @@ public class LPBRuleEngine {
         }
     }
     
+    /**
+     * Record a successful exit from a rule in the profiler, if there is one.
+     */
+    public void profileExit(RuleClauseCode clause) {
+        RuleProfiler p = profiler;
+        if (p != null && clause != null && clause.getRule() != null) {
+            p.getRuleStats(clause.getRule()).fired();
+        }
+    }
+    
+    /**
+     * Set the profiler which should record rule and builtin statistics,
+     * null to switch profiling off. Per rule times are not recorded since
+     * the evaluation of goals is interleaved, the total time is recorded
+     * against the backward engine.
+     */
+    public void setProfiler(RuleProfiler profiler) {
+        this.profiler = profiler;
+        for (Iterator<LPBRuleEngine> i = getEvaluators().iterator(); i.hasNext(); ) {
+            i.next().setProfiler(profiler);
+        }
+    }
+    
+    /**
+     * Return the profiler in use, or null if profiling is off.
+     */
+    public RuleProfiler getProfiler() {
+        return profiler;
+    }
+    
     /**
      * Reset the profile.
      * @param enable it true then profiling will continue with a new empty profile table,
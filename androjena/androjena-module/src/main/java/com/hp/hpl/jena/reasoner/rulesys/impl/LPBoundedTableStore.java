@@ -0,0 +1,235 @@
+/******************************************************************
+ * File:        LPBoundedTableStore.java
+ * 
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hp.hpl.jena.reasoner.TriplePattern;
+
+/**
+ * Table store for the LPBRuleEngine which keeps the approximate size of
+ * the completed goals it holds within a memory budget. When the budget is
+ * exceeded complete generators are evicted, either least recently used
+ * first (LRU) or least frequently used first (LFU). Evicted goals are 
+ * recomputed by the engine when they are next requested.
+ * <p>
+ * The names of recently evicted goals are remembered so that recomputations
+ * can be counted. LFU eviction scans the table to find the victim so is 
+ * best suited to tables of moderate size.
+ * </p>
+ */
+public class LPBoundedTableStore implements LPTableStore {
+
+    /** Eviction policy - evict the least recently used goal first */
+    public static final int LRU = 0;
+    
+    /** Eviction policy - evict the least frequently used goal first */
+    public static final int LFU = 1;
+    
+    /** The maximum number of evicted goals remembered for counting recomputations */
+    public static final int MAX_EVICTED_GOALS = 10000;
+    
+    /** The memory budget in bytes */
+    protected long budget;
+    
+    /** The eviction policy, LRU or LFU */
+    protected int policy;
+    
+    /** Map from goals to table entries, in least recently used first order */
+    protected LinkedHashMap<TriplePattern, Entry> table = new LinkedHashMap<TriplePattern, Entry>(16, 0.75f, true);
+    
+    /** The most recently evicted goals, oldest first */
+    protected LinkedHashMap<TriplePattern, TriplePattern> evicted = new LinkedHashMap<TriplePattern, TriplePattern>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TriplePattern, TriplePattern> eldest) {
+            return size() > MAX_EVICTED_GOALS;
+        }
+    };
+    
+    /** Approximate number of bytes held by the table */
+    protected long bytes = 0;
+    
+    /** Statistics counters, shared with any copies */
+    protected AtomicLong hits, evictions, recomputes;
+    
+    /**
+     * Constructor.
+     * @param budget the approximate number of bytes the completed goals may occupy
+     * @param policy the eviction policy, LRU or LFU
+     */
+    public LPBoundedTableStore(long budget, int policy) {
+        this(budget, policy, new AtomicLong(), new AtomicLong(), new AtomicLong());
+    }
+    
+    /**
+     * Constructor, used for copies which share the statistics counters.
+     */
+    protected LPBoundedTableStore(long budget, int policy, AtomicLong hits, AtomicLong evictions, AtomicLong recomputes) {
+        if (policy != LRU && policy != LFU) {
+            throw new IllegalArgumentException("Unknown table eviction policy: " + policy);
+        }
+        this.budget = budget;
+        this.policy = policy;
+        this.hits = hits;
+        this.evictions = evictions;
+        this.recomputes = recomputes;
+    }
+    
+    public synchronized Generator get(TriplePattern goal) {
+        Entry entry = table.get(goal);
+        if (entry != null) {
+            entry.uses++;
+            hits.incrementAndGet();
+            return entry.generator;
+        }
+        if (evicted.remove(goal) != null) {
+            recomputes.incrementAndGet();
+        }
+        return null;
+    }
+
+    public synchronized void put(TriplePattern goal, Generator generator) {
+        if (table.containsKey(goal)) return;
+        Entry entry = new Entry(generator);
+        if (entry.bytes > budget) {
+            // Too large to hold at all
+            evict(goal);
+            return;
+        }
+        table.put(goal, entry);
+        bytes += entry.bytes;
+        while (bytes > budget) {
+            TriplePattern victim = selectVictim(goal);
+            if (victim == null) break;
+            evict(victim);
+        }
+    }
+    
+    /**
+     * Choose the goal to evict next. The goal which has just been added
+     * is never chosen, which is safe since it fits in the budget on its own.
+     * @param added the goal which has just been added
+     * @return the goal to evict, or null if there is no candidate
+     */
+    protected TriplePattern selectVictim(TriplePattern added) {
+        TriplePattern victim = null;
+        int victimUses = Integer.MAX_VALUE;
+        for (Iterator<Map.Entry<TriplePattern, Entry>> i = table.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<TriplePattern, Entry> e = i.next();
+            if (e.getKey() == added) continue;
+            if (policy == LRU) return e.getKey();
+            if (e.getValue().uses < victimUses) {
+                victim = e.getKey();
+                victimUses = e.getValue().uses;
+            }
+        }
+        return victim;
+    }
+    
+    /**
+     * Drop a goal from the table.
+     */
+    protected void evict(TriplePattern goal) {
+        Entry entry = table.remove(goal);
+        if (entry != null) bytes -= entry.bytes;
+        evicted.put(goal, goal);
+        evictions.incrementAndGet();
+    }
+
+    public synchronized LPTableStore emptyCopy() {
+        return new LPBoundedTableStore(budget, policy, hits, evictions, recomputes);
+    }
+
+    public synchronized int size() {
+        return table.size();
+    }
+
+    public synchronized long getEstimatedSize() {
+        return bytes;
+    }
+
+    /**
+     * Return the memory budget in bytes.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Return the eviction policy, LRU or LFU.
+     */
+    public int getPolicy() {
+        return policy;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getRecomputeCount() {
+        return recomputes.get();
+    }
+    
+    /**
+     * Table entry recording a complete generator, its size and how often it has been used.
+     */
+    protected static class Entry {
+        /** The complete generator */
+        protected Generator generator;
+        
+        /** Approximate size of the generator's results in bytes */
+        protected long bytes;
+        
+        /** Number of times the entry has been requested */
+        protected int uses = 0;
+        
+        /** Constructor */
+        Entry(Generator generator) {
+            this.generator = generator;
+            this.bytes = generator.estimatedSize();
+        }
+    }
+
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -583,6 +583,7 @@ public class LPInterpreter {
                             pc = envFrame.cpc;
                             ac = envFrame.cac;
                             if (traceOn) logger.info("EXIT " + clause);
+                            engine.profileExit(clause);
                             if (choice != null) choice.noteSuccess();
                             if (recordDerivations && envFrame.getRule() != null) {
                                 if (envFrame instanceof EnvironmentFrameWithDerivation) {
@@ -614,7 +615,11 @@ public class LPInterpreter {
                                 context = bbcontext;
                             }
                             context.setRule(clause.getRule());
-                            if (!builtin.bodyCall(argVars, code[pc++], context)) {
+                            RuleProfiler profiler = engine.getProfiler();
+                            boolean ok = (profiler == null)
+                                ? builtin.bodyCall(argVars, code[pc++], context)
+                                : profiler.bodyCall(builtin, argVars, code[pc++], context);
+                            if (!ok) {
                                 if (traceOn) logger.info("FAIL " + clause + ", due to " + builtin.getName());
                                 continue main;  
                             }
@@ -27,6 +27,9 @@ public class LPRuleStore extends RuleStore {
     /** Flag to indicate whether the rules have been compiled into code objects */
     protected boolean isCompiled = false;
     
+    /** Flag set once compilation has finished, so that concurrent evaluators never see partial tables */
+    protected volatile boolean isCompiledComplete = false;
+    
     /** A map from predicate to a list of RuleClauseCode objects for that predicate.
      *  Uses Node_RuleVariable.WILD for wildcard predicates.
      */ 
@@ -86,8 +89,8 @@ public class LPRuleStore extends RuleStore {
      * @param predicate the predicate node or Node_RuleVariable.WILD for wildcards.
      */
     public List<RuleClauseCode> codeFor(Node predicate) {
-        if (!isCompiled) {
-            compileAll();
+        if (!isCompiledComplete) {
+            ensureCompiled();
         }
         if (predicate.isVariable()) {
             return allRuleClauseCodes;
@@ -151,6 +154,16 @@ public class LPRuleStore extends RuleStore {
         }
     }
     
+    /**
+     * Compile the rules unless this has already been done or is in progress
+     * on the calling thread (compiling a clause can look up the code for its goals).
+     */
+    protected synchronized void ensureCompiled() {
+        if (!isCompiled) {
+            compileAll();
+        }
+    }
+    
     /**
      * Compile all the rules in a table. initially just indexed on predicate but want to 
      * add better indexing for the particular cases of wildcard rules and type rules. 
@@ -239,6 +252,7 @@ public class LPRuleStore extends RuleStore {
             RuleClauseCode code = i.next();
             code.compile(this);
         }
+        isCompiledComplete = true;
     }
     
     /**
@@ -251,6 +265,7 @@ public class LPRuleStore extends RuleStore {
     @Override
     protected void doAddRemoveRule(Rule rule, boolean isAdd) {
         isCompiled = false;
+        isCompiledComplete = false;
         super.doAddRemoveRule(rule, isAdd);
     }
 
@@ -0,0 +1,99 @@
+/******************************************************************
+ * File:        LPTableStore.java
+ * 
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import com.hp.hpl.jena.reasoner.TriplePattern;
+
+/**
+ * Table of completed tabled goals used by the LPBRuleEngine. Generators which
+ * are still being evaluated are held by the engine itself, once a generator
+ * is complete it is handed to the table store. A store may drop complete 
+ * generators at any time (e.g. to keep within a memory budget), in which case
+ * the engine simply recomputes the goal the next time it is requested.
+ * <p>
+ * Implementations must be thread safe, the same store is shared by all the
+ * evaluators of an engine in concurrent tabling mode.
+ * </p>
+ */
+public interface LPTableStore {
+
+    /**
+     * Return the complete generator for the given goal, or null if the goal
+     * has not been completed or has been dropped from the store.
+     */
+    public Generator get(TriplePattern goal);
+    
+    /**
+     * Record the complete generator for a goal. Has no effect if the store
+     * already holds a generator for the goal.
+     */
+    public void put(TriplePattern goal, Generator generator);
+    
+    /**
+     * Return a new, empty store with the same configuration as this one.
+     * Used when the engine is reset, statistics counters are carried over.
+     */
+    public LPTableStore emptyCopy();
+    
+    /**
+     * Return the number of goals currently held in the store.
+     */
+    public int size();
+    
+    /**
+     * Return the approximate number of bytes held by the generators in the store.
+     */
+    public long getEstimatedSize();
+    
+    /**
+     * Return the number of requests which were answered from the store.
+     */
+    public long getHitCount();
+    
+    /**
+     * Return the number of complete goals dropped from the store to keep it in bounds.
+     */
+    public long getEvictionCount();
+    
+    /**
+     * Return the number of requests for goals which had been dropped from
+     * the store and so had to be recomputed.
+     */
+    public long getRecomputeCount();
+    
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -102,6 +102,27 @@ public class LPTopGoalIterator implements ClosableIterator<Triple>, LPInterprete
         }
     }
 
+    /**
+     * Find the next result, recording the time taken if the engine is being profiled.
+     */
+    private void advance() {
+        LPInterpreter interp = interpreter;
+        LPBRuleEngine lpEngine = (interp == null) ? null : interp.getEngine();
+        RuleProfiler profiler = (lpEngine == null) ? null : lpEngine.getProfiler();
+        if (profiler == null) {
+            moveForward();
+            return;
+        }
+        RuleProfiler.EngineStats stats = profiler.getEngineStats(RuleProfiler.BACKWARD_ENGINE);
+        stats.run();
+        long start = System.nanoTime();
+        try {
+            moveForward();
+        } finally {
+            stats.addNanos(System.nanoTime() - start);
+        }
+    }
+
     /** Notify this context that a brach was suspended awaiting futher
      *  results from the given generator. */
     public void notifyBlockedOn(ConsumerChoicePointFrame ccp) {
@@ -182,7 +203,7 @@ public class LPTopGoalIterator implements ClosableIterator<Triple>, LPInterprete
      */
     public boolean hasNext() {
         checkCME();
-        if (!lookaheadValid) moveForward();
+        if (!lookaheadValid) advance();
         return (lookAhead != null);
     }
 
@@ -191,7 +212,7 @@ public class LPTopGoalIterator implements ClosableIterator<Triple>, LPInterprete
      */
     public Triple next() {
         checkCME();
-        if (!lookaheadValid) moveForward();
+        if (!lookaheadValid) advance();
         if (lookAhead == null) {
             throw new NoSuchElementException("Overran end of LP result set");
         }
@@ -0,0 +1,110 @@
+/******************************************************************
+ * File:        LPUnboundedTableStore.java
+ * 
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hp.hpl.jena.reasoner.TriplePattern;
+
+/**
+ * The default table store for the LPBRuleEngine. Keeps every completed goal
+ * until the engine is reset.
+ */
+public class LPUnboundedTableStore implements LPTableStore {
+
+    /** Map from goals to their complete generators */
+    protected ConcurrentHashMap<TriplePattern, Generator> table = new ConcurrentHashMap<TriplePattern, Generator>();
+    
+    /** Approximate number of bytes held by the table */
+    protected AtomicLong bytes = new AtomicLong();
+    
+    /** Number of requests answered from the table, shared with any copies */
+    protected AtomicLong hits;
+    
+    /**
+     * Constructor.
+     */
+    public LPUnboundedTableStore() {
+        this(new AtomicLong());
+    }
+    
+    /**
+     * Constructor, used for copies which share the hit counter.
+     */
+    protected LPUnboundedTableStore(AtomicLong hits) {
+        this.hits = hits;
+    }
+    
+    public Generator get(TriplePattern goal) {
+        Generator generator = table.get(goal);
+        if (generator != null) hits.incrementAndGet();
+        return generator;
+    }
+
+    public void put(TriplePattern goal, Generator generator) {
+        if (table.putIfAbsent(goal, generator) == null) {
+            bytes.addAndGet(generator.estimatedSize());
+        }
+    }
+
+    public LPTableStore emptyCopy() {
+        return new LPUnboundedTableStore(hits);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public long getEstimatedSize() {
+        return bytes.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getEvictionCount() {
+        return 0;
+    }
+
+    public long getRecomputeCount() {
+        return 0;
+    }
+
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -0,0 +1,188 @@
+/******************************************************************
+ * File:        RETECompiledClauseFilter.java
+ * 
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.reasoner.rulesys.*;
+import com.hp.hpl.jena.reasoner.*;
+
+import java.util.*;
+
+/**
+ * A RETE filter node specialized, when the network is built, to a single
+ * triple pattern. The constants to test and the environment slots to bind
+ * are resolved once so matching a triple is a few direct field tests
+ * rather than a walk of the instruction array. Patterns with a functor
+ * valued object are not specialized, {@link #compile} returns an 
+ * interpreted filter for those.
+ */
+public class RETECompiledClauseFilter extends RETEClauseFilter {
+
+    /** The subject value to test, null if the subject is a variable */
+    protected final Node subjectValue;
+    
+    /** The predicate value to test, null if the predicate is a variable */
+    protected final Node predicateValue;
+    
+    /** The object value to test, null if the object is a variable */
+    protected final Node objectValue;
+    
+    /** The environment slot bound to the subject, -1 if the subject is a constant */
+    protected final int subjectSlot;
+    
+    /** The environment slot bound to the predicate, -1 if the predicate is a constant */
+    protected final int predicateSlot;
+    
+    /** The environment slot bound to the object, -1 if the object is a constant */
+    protected final int objectSlot;
+    
+    /** True if the predicate shares its variable with the subject */
+    protected final boolean predicateIsSubject;
+    
+    /** True if the object shares its variable with the subject or the predicate */
+    protected final boolean objectRepeats;
+    
+    /** Size of the binding environment to create */
+    protected final int envLength;
+    
+    /**
+     * Constructor.
+     * @param instructions the equivalent instructions for the interpreted filter
+     * @param args the object arguments referenced from the instructions array
+     * @param clause the triple pattern, whose object must not be a functor
+     * @param envLength the size of binding environment that should be created on successful matches
+     */
+    protected RETECompiledClauseFilter(byte[] instructions, Object[] args, TriplePattern clause, int envLength) {
+        super(instructions, args);
+        Node s = clause.getSubject();
+        Node p = clause.getPredicate();
+        Node o = clause.getObject();
+        subjectValue = s.isVariable() ? null : s;
+        predicateValue = p.isVariable() ? null : p;
+        objectValue = o.isVariable() ? null : o;
+        subjectSlot = slot(s);
+        predicateSlot = slot(p);
+        objectSlot = slot(o);
+        predicateIsSubject = predicateSlot != -1 && predicateSlot == subjectSlot;
+        objectRepeats = objectSlot != -1 && (objectSlot == subjectSlot || objectSlot == predicateSlot);
+        this.envLength = envLength;
+    }
+    
+    /**
+     * Create a filter node from a rule clause. Returns an interpreted 
+     * {@link RETEClauseFilter} if the clause can't be specialized.
+     * @param clause the rule clause
+     * @param envLength the size of binding environment that should be created on successful matches
+     * @param varList a list to which all clause variables will be appended
+     */
+    public static RETEClauseFilter compile(TriplePattern clause, int envLength, List<Node> varList) {
+        RETEClauseFilter interpreted = RETEClauseFilter.compile(clause, envLength, varList);
+        if (Functor.isFunctor(clause.getObject())) {
+            return interpreted;
+        }
+        return new RETECompiledClauseFilter(interpreted.instructions, interpreted.args, clause, envLength);
+    }
+    
+    /**
+     * Return the environment slot of a pattern node, -1 if it is not a variable.
+     */
+    private static int slot(Node n) {
+        return (n instanceof Node_RuleVariable) ? ((Node_RuleVariable)n).getIndex() : -1;
+    }
+    
+    /**
+     * Insert or remove a triple into the network.
+     * @param triple the triple to process.
+     * @param isAdd true if the triple is being added to the working set.
+     */
+    @Override
+    public void fire(Triple triple, boolean isAdd) {
+        Node s = triple.getSubject();
+        Node p = triple.getPredicate();
+        Node o = triple.getObject();
+        if (predicateValue != null && !predicateValue.sameValueAs(p)) return;
+        if (objectValue != null && !objectValue.sameValueAs(o)) return;
+        if (subjectValue != null && !subjectValue.sameValueAs(s)) return;
+        
+        Node[] env = new Node[envLength];
+        if (subjectSlot != -1) {
+            env[subjectSlot] = s;
+        }
+        if (predicateSlot != -1) {
+            if (predicateIsSubject && !s.sameValueAs(p)) return;
+            env[predicateSlot] = p;
+        }
+        if (objectSlot != -1) {
+            if (objectRepeats && !env[objectSlot].sameValueAs(o)) return;
+            env[objectSlot] = o;
+        }
+        continuation.fire(new BindingVector(env), isAdd);
+    }
+    
+    /**
+     * Clone this node in the network.
+     * @param netCopy a map from RETENode to cloned instance
+     * @param context the new context to which the network is being ported
+     */
+    @Override
+    public RETENode clone(Map<RETENode, RETENode> netCopy, RETERuleContext context) {
+        RETECompiledClauseFilter clone = (RETECompiledClauseFilter)netCopy.get(this);
+        if (clone == null) {
+            clone = new RETECompiledClauseFilter(this);
+            clone.setContinuation((RETESinkNode)continuation.clone(netCopy, context));
+            netCopy.put(this, clone);
+        }
+        return clone;
+    }
+    
+    /**
+     * Copy constructor, used for cloning. Does not copy the continuation.
+     */
+    protected RETECompiledClauseFilter(RETECompiledClauseFilter original) {
+        super(original.instructions, original.args);
+        subjectValue = original.subjectValue;
+        predicateValue = original.predicateValue;
+        objectValue = original.objectValue;
+        subjectSlot = original.subjectSlot;
+        predicateSlot = original.predicateSlot;
+        objectSlot = original.objectSlot;
+        predicateIsSubject = original.predicateIsSubject;
+        objectRepeats = original.objectRepeats;
+        envLength = original.envLength;
+    }
+    
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -0,0 +1,194 @@
+/******************************************************************
+ * File:        RETECompiledTerminal.java
+ * 
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.reasoner.rulesys.*;
+import java.util.*;
+
+/**
+ * A RETE terminal whose builtin guards are linked when the network is built.
+ * Each body functor is resolved to its {@link Builtin} once and its arguments
+ * are split into constants and environment slots, so a token reaching the
+ * terminal runs the guards without scanning the rule body, looking up the
+ * builtin registry or walking the arguments to ground them.
+ */
+public class RETECompiledTerminal extends RETETerminal {
+
+    /** The linked guards, in rule body order */
+    protected Guard[] guards;
+    
+    /**
+     * Constructor.
+     * @param rule the rule which this terminal should fire.
+     * @param engine the parent rule engine through which the deductions and recursive network can be reached.
+     * @param graph the wider encompasing infGraph needed to for the RuleContext
+     */
+    public RETECompiledTerminal(Rule rule, RETEEngine engine, ForwardRuleInfGraphI graph) {
+        super(rule, engine, graph);
+        List<Guard> compiled = new ArrayList<Guard>();
+        for (int i = 0; i < rule.bodyLength(); i++) {
+            Object clause = rule.getBodyElement(i);
+            if (clause instanceof Functor) {
+                compiled.add(new Guard((Functor)clause));
+            }
+        }
+        guards = compiled.toArray(new Guard[compiled.size()]);
+    }
+    
+    /**
+     * Constructor. Used internally for cloning.
+     */
+    protected RETECompiledTerminal(RETERuleContext context, Guard[] guards) {
+        super(context);
+        this.guards = guards;
+    }
+    
+    /**
+     * Run the linked guards against a token and, if they pass, request the
+     * rule firing.
+     * @param env a set of variable bindings for the rule being processed. 
+     * @param isAdd distinguishes between add and remove operations.
+     */
+    @Override
+    protected void doFire(BindingVector env, boolean isAdd) {
+        context.setEnv(env);
+        for (int i = 0; i < guards.length; i++) {
+            // Side-effectful guards are only run on adds, as for RETERuleContext.shouldFire
+            if (!guards[i].eval(env, context, isAdd)) return;
+        }
+        context.getEngine().requestRuleFiring(context.getRule(), env, isAdd);
+    }
+    
+    /**
+     * Clone this node in the network.
+     * @param netCopy a map from RETENode to cloned instance
+     * @param contextIn the new context to which the network is being ported
+     */
+    @Override
+    public RETENode clone(Map<RETENode, RETENode> netCopy, RETERuleContext contextIn) {
+        RETECompiledTerminal clone = (RETECompiledTerminal)netCopy.get(this);
+        if (clone == null) {
+            RETERuleContext newContext = new RETERuleContext((ForwardRuleInfGraphI)contextIn.getGraph(), contextIn.getEngine());
+            newContext.setRule(context.getRule());
+            clone = new RETECompiledTerminal(newContext, guards);
+            netCopy.put(this, clone);
+        }
+        return clone;
+    }
+    
+    /**
+     * A body functor linked to its implementation. Immutable so can be 
+     * shared between cloned terminals.
+     */
+    protected static class Guard {
+        
+        /** The original functor, used for undefined builtins */
+        protected final Functor functor;
+        
+        /** The builtin implementing the functor, null if undefined */
+        protected final Builtin implementor;
+        
+        /** The argument nodes, used directly if the matching slot is -1 */
+        protected final Node[] args;
+        
+        /** The environment slot of each variable argument, -1 for other arguments */
+        protected final int[] slots;
+        
+        /** True if any argument is a functor or wildcard which needs grounding */
+        protected final boolean needsGrounding;
+        
+        Guard(Functor functor) {
+            this.functor = functor;
+            this.implementor = functor.getImplementor();
+            this.args = functor.getArgs();
+            this.slots = new int[args.length];
+            boolean grounding = false;
+            for (int i = 0; i < args.length; i++) {
+                Node n = args[i];
+                if (n instanceof Node_RuleVariable) {
+                    slots[i] = ((Node_RuleVariable)n).getIndex();
+                } else {
+                    slots[i] = -1;
+                    if (n instanceof Node_ANY || Functor.isFunctor(n)) grounding = true;
+                }
+            }
+            needsGrounding = grounding;
+        }
+        
+        /**
+         * Evaluate the guard against the given environment.
+         * @param allowUnsafe if false, guards with side effects fail
+         */
+        boolean eval(BindingVector env, RETERuleContext context, boolean allowUnsafe) {
+            if (implementor == null) {
+                // Let the functor report the missing implementation
+                return functor.evalAsBodyClause(context);
+            }
+            if (!allowUnsafe && !implementor.isSafe()) return false;
+            Node[] bound = new Node[args.length];
+            if (needsGrounding) {
+                for (int i = 0; i < args.length; i++) {
+                    bound[i] = env.getGroundVersion(args[i]);
+                }
+            } else {
+                Node[] values = env.getEnvironment();
+                for (int i = 0; i < args.length; i++) {
+                    int slot = slots[i];
+                    if (slot == -1) {
+                        bound[i] = args[i];
+                    } else {
+                        Node value = values[slot];
+                        if (value == null) {
+                            bound[i] = args[i];
+                        } else if (value instanceof Node_RuleVariable) {
+                            bound[i] = env.getGroundVersion(args[i]);
+                        } else {
+                            bound[i] = value;
+                        }
+                    }
+                }
+            }
+            RuleProfiler profiler = context.getEngine().getProfiler();
+            if (profiler != null) {
+                return profiler.bodyCall(implementor, bound, args.length, context);
+            }
+            return implementor.bodyCall(bound, args.length, context);
+        }
+    }
+    
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
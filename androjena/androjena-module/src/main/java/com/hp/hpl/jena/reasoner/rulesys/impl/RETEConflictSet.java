@@ -34,7 +34,8 @@ import com.hp.hpl.jena.reasoner.rulesys.RuleDerivation;
  * propagating all changes between times.
  * <p>
  * Note, implementation is not thread-safe. Would be easy to make it so but 
- * concurrent adds to InfModel are not supported anyway.
+ * concurrent adds to InfModel are not supported anyway. The parallel matching
+ * mode of the RETEEngine uses the {@link ConcurrentRETEConflictSet} variant.
  * 
  * @author <a href="mailto:der@hplb.hpl.hp.com">Dave Reynolds</a>
  * @version $Revision: 1.2 $
@@ -118,8 +119,21 @@ public class RETEConflictSet {
         RETERuleContext context = new RETERuleContext((ForwardRuleInfGraphI)gcontext.getGraph(), gcontext.getEngine());
         context.setEnv(cse.env);
         context.setRule(cse.rule);
-        if (context.shouldStillFire()) {
-            execute(context, cse.isAdd);
+        RuleProfiler profiler = gcontext.getEngine().getProfiler();
+        if (profiler == null) {
+            if (context.shouldStillFire()) {
+                execute(context, cse.isAdd);
+            }
+            return true;
+        }
+        RuleProfiler.RuleStats stats = profiler.getRuleStats(cse.rule);
+        long start = profiler.startTimer();
+        try {
+            if (context.shouldStillFire()) {
+                execute(context, cse.isAdd);
+            }
+        } finally {
+            profiler.stopTimer(stats, start);
         }
         return true;
         
@@ -137,6 +151,10 @@ public class RETEConflictSet {
         }
         RETEEngine engine = context.getEngine();
         engine.incRuleCount();
+        RuleProfiler profiler = engine.getProfiler();
+        if (profiler != null) {
+            profiler.getRuleStats(rule).fired();
+        }
         List<Triple> matchList = null;
         if (infGraph.shouldLogDerivations() && isAdd) {
             // Create derivation record
@@ -176,7 +194,11 @@ public class RETEConflictSet {
                 Functor f = (Functor)hClause;
                 Builtin imp = f.getImplementor();
                 if (imp != null) {
-                    imp.headAction(f.getBoundArgs(env), f.getArgLength(), context);
+                    if (profiler != null) {
+                        profiler.headAction(imp, f.getBoundArgs(env), f.getArgLength(), context);
+                    } else {
+                        imp.headAction(f.getBoundArgs(env), f.getArgLength(), context);
+                    }
                 } else {
                     throw new ReasonerException("Invoking undefined Functor " + f.getName() +" in " + rule.toShortString());
                 }
@@ -196,7 +218,7 @@ public class RETEConflictSet {
     }
         
     // Inner class representing a conflict set entry 
-    private static class CSEntry {
+    protected static class CSEntry {
         protected Rule rule;
         protected BindingEnvironment env;
         protected boolean isAdd;
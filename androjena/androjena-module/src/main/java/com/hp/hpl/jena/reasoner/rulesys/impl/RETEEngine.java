@@ -11,9 +11,15 @@ package com.hp.hpl.jena.reasoner.rulesys.impl;
 
 import com.hp.hpl.jena.reasoner.*;
 import com.hp.hpl.jena.reasoner.rulesys.*;
+import com.hp.hpl.jena.reasoner.rulesys.builtins.*;
 import com.hp.hpl.jena.graph.*;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import com.hp.hpl.jena.util.OneToManyMap;
 import com.hp.hpl.jena.util.PrintUtil;
@@ -46,6 +52,15 @@ public class RETEEngine implements FRuleEngineI {
     /** Queue of newly deleted triples waiting to be processed */
     protected List<Triple> deletesPending = new ArrayList<Triple>();
     
+    /** Deductions removed during an overdelete, null if no overdelete is in progress */
+    protected Set<Triple> deletionLog;
+    
+    /** Used to stop an overdelete at deductions which are still derivable from asserted triples */
+    protected DRedMaintainer deletionMaintainer;
+    
+    /** Deductions which survive an overdelete, may be null */
+    protected Graph preservedDeductions;
+    
     /** The conflict set of rules waiting to fire */
     protected RETEConflictSet conflictSet;
     
@@ -67,6 +82,37 @@ public class RETEEngine implements FRuleEngineI {
     /** True if all the rules are monotonic, so we short circuit the conflict set processing */
     boolean isMonotonic = true;
     
+    /** Number of partitions of the network to match in parallel, 1 means sequential matching */
+    protected int parallelism = 1;
+    
+    /** True if the network should be built from compiled filter and terminal nodes */
+    protected boolean compiledMatching = false;
+    
+    /** Profiler recording rule, join and builtin statistics, null if profiling is off */
+    protected RuleProfiler profiler;
+    
+    /** The clause index split into partitions with no shared network nodes, built on demand */
+    protected List<OneToManyMap<Node, RETENode>> partitions;
+    
+    /** Rounds with fewer pending triples than this are matched on the calling thread */
+    protected static final int PARALLEL_BATCH_MIN = 64;
+    
+    /** 
+     * Body builtins which only test or compute from their arguments. Any other
+     * builtin may read the deductions graph (like noValue) or have side effects
+     * (like print), and so gives different results when run on a matching worker,
+     * before the firings of the round have been executed, than in sequential mode.
+     */
+    protected static final Set<Class<?>> PURE_BUILTINS = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            AddOne.class, Bound.class, Difference.class, Equal.class, GE.class, GreaterThan.class,
+            IsBNode.class, IsDType.class, IsFunctor.class, IsLiteral.class, LE.class, LessThan.class,
+            Max.class, Min.class, NotBNode.class, NotDType.class, NotEqual.class, NotFunctor.class,
+            NotLiteral.class, Now.class, Product.class, Quotient.class, Regex.class, StrConcat.class,
+            Sum.class, Unbound.class, UriConcat.class));
+    
+    /** Worker threads shared by all engines running in parallel mode */
+    private static ExecutorService workerPool;
+    
     protected static Logger logger = LoggerFactory.getLogger(FRuleEngine.class);
     
 //  =======================================================================
@@ -126,7 +172,11 @@ public class RETEEngine implements FRuleEngineI {
      * raw data graph but may include additional deductions made by preprocessing hooks
      */
     public void fastInit(Finder inserts) {
-        conflictSet = new RETEConflictSet(new RETERuleContext(infGraph, this), isMonotonic);
+        if (parallelism > 1 && canMatchInParallel()) {
+            conflictSet = new ConcurrentRETEConflictSet(new RETERuleContext(infGraph, this), isMonotonic);
+        } else {
+            conflictSet = new RETEConflictSet(new RETERuleContext(infGraph, this), isMonotonic);
+        }
         // Below is used during testing to ensure that all ruleset work (if less efficiently) if marked as non-monotonic
 //        conflictSet = new RETEConflictSet(new RETERuleContext(infGraph, this), false);
         findAndProcessActions();
@@ -170,6 +220,35 @@ public class RETEEngine implements FRuleEngineI {
         return true;
     }
     
+    /**
+     * Remove one triple from the data graph, cascading the removal through the
+     * network to every deduction which had a derivation using it. This is the
+     * overdelete step of incremental maintenance, the caller is responsible
+     * for rederiving any removed deductions which have alternative derivations.
+     * The cascade stops at any deduction which the maintainer can derive from
+     * asserted triples and preserved deductions alone.
+     * @param t the data triple, already removed from the data graph
+     * @param maintainer the incremental delete support for the graph
+     * @param preserved deductions which survive any delete, may be null
+     * @return the deductions which were removed
+     * @see DRedMaintainer
+     */
+    public synchronized Set<Triple> overdelete(Triple t, DRedMaintainer maintainer, Graph preserved) {
+        Set<Triple> removed = new LinkedHashSet<Triple>();
+        deletionLog = removed;
+        deletionMaintainer = maintainer;
+        preservedDeductions = preserved;
+        try {
+            deleteTriple(t, false);
+            runAll();
+        } finally {
+            deletionLog = null;
+            deletionMaintainer = null;
+            preservedDeductions = null;
+        }
+        return removed;
+    }
+    
     /**
      * Return the number of rules fired since this rule engine instance
      * was created and initialized
@@ -178,6 +257,88 @@ public class RETEEngine implements FRuleEngineI {
         return nRulesFired;
     }
     
+    /**
+     * Return all the join queues in the compiled RETE network. Used to gather
+     * join performance statistics.
+     */
+    public List<RETEQueue> getJoinQueues() {
+        List<RETEQueue> queues = new ArrayList<RETEQueue>();
+        Set<RETENode> seen = new HashSet<RETENode>();
+        for (Iterator<RETENode> i = clauseIndex.values().iterator(); i.hasNext(); ) {
+            RETENode node = ((RETEClauseFilter)i.next()).continuation;
+            while (node instanceof RETEQueue && seen.add(node)) {
+                RETEQueue queue = (RETEQueue)node;
+                queues.add(queue);
+                node = queue.getContinuation();
+            }
+        }
+        return queues;
+    }
+    
+    /**
+     * Set the number of partitions of the RETE network which should be matched
+     * in parallel. Values above 1 enable parallel matching: the pending triples are
+     * processed in rounds, each partition (a set of rules sharing no network nodes)
+     * is matched against the whole round by a thread of its own and the resulting 
+     * rule firings are then executed, as a batch, on the calling thread. One partition
+     * is matched on the calling thread, the others by a worker pool which is shared
+     * by all engines and has a thread per processor, so values beyond the number of
+     * processors add partitions but not threads. The closure
+     * computed is the same as in sequential mode: rule sets which are non-monotonic,
+     * or which use body builtins other than simple tests and calculations, are 
+     * always matched sequentially. Must be set before the engine is initialized.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism < 1 ? 1 : parallelism;
+        partitions = null;
+    }
+    
+    /**
+     * Return the number of partitions matched in parallel, 1 if parallel
+     * matching is disabled.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+    
+    /**
+     * Set to true to build the network from compiled nodes. The clause filters
+     * are then specialized to their triple pattern and the rule terminals link
+     * their builtin guards once, rather than interpreting the clause instructions
+     * and looking up the builtins for each token. The closure is the same either
+     * way. Must be set before the engine is initialized.
+     * @see RETECompiledClauseFilter
+     * @see RETECompiledTerminal
+     */
+    public void setCompiledMatching(boolean compiled) {
+        this.compiledMatching = compiled;
+    }
+    
+    /**
+     * Return true if the network is built from compiled nodes.
+     */
+    public boolean isCompiledMatching() {
+        return compiledMatching;
+    }
+    
+    /**
+     * Set the profiler which should record the rule activations, join node 
+     * and builtin statistics of this engine. Null switches profiling off.
+     */
+    public void setProfiler(RuleProfiler profiler) {
+        if (this.profiler != null) this.profiler.removeEngine(this);
+        this.profiler = profiler;
+        if (profiler != null) profiler.addEngine(this);
+    }
+    
+    /**
+     * Return the profiler recording this engine's statistics, or null
+     * if profiling is off.
+     */
+    public RuleProfiler getProfiler() {
+        return profiler;
+    }
+    
     /**
      * Return true if the internal engine state means that tracing is worthwhile.
      * It will return false during the axiom bootstrap phase.
@@ -215,6 +376,7 @@ public class RETEEngine implements FRuleEngineI {
         RETERuleContext context = new RETERuleContext(infGraph, this);
         Map<RETENode, RETENode> netCopy = new HashMap<RETENode, RETENode>();
         clauseIndex = new OneToManyMap<Node, RETENode>();
+        partitions = null;
         for (Iterator<Map.Entry<Node, RETENode>> i = rs.clauseIndex.entrySet().iterator(); i.hasNext(); ) {
             Map.Entry<Node, RETENode> entry = i.next();
             clauseIndex.put( entry.getKey(), entry.getValue().clone( netCopy, context ) );
@@ -240,6 +402,7 @@ public class RETEEngine implements FRuleEngineI {
         clauseIndex = new OneToManyMap<Node, RETENode>();
         predicatesUsed = new HashSet<Node>();
         wildcardRule = false;
+        partitions = null;
             
         for (Iterator<Rule> it = rules.iterator(); it.hasNext(); ) {
             Rule rule = it.next();
@@ -254,7 +417,9 @@ public class RETEEngine implements FRuleEngineI {
                 if (clause instanceof TriplePattern) {
                     // Create the filter node for this pattern
                     ArrayList<Node> clauseVars = new ArrayList<Node>(numVars);
-                    RETEClauseFilter clauseNode = RETEClauseFilter.compile((TriplePattern)clause, numVars, clauseVars);
+                    RETEClauseFilter clauseNode = compiledMatching
+                        ? RETECompiledClauseFilter.compile((TriplePattern)clause, numVars, clauseVars)
+                        : RETEClauseFilter.compile((TriplePattern)clause, numVars, clauseVars);
                     Node predicate = ((TriplePattern)clause).getPredicate();
                     if (predicate.isVariable()) {
                         clauseIndex.put(Node.ANY, clauseNode);
@@ -283,6 +448,8 @@ public class RETEEngine implements FRuleEngineI {
                         RETEQueue rightQ = new RETEQueue(matchIndices);
                         leftQ.setSibling(rightQ);
                         rightQ.setSibling(leftQ);
+                        leftQ.setLabel("join " + i + " left");
+                        rightQ.setLabel("join " + i + " right");
                         clauseNode.setContinuation(rightQ);
                         prior.setContinuation(leftQ);
                         prior = leftQ;
@@ -308,6 +475,9 @@ public class RETEEngine implements FRuleEngineI {
      * approach.
      */
     protected RETETerminal createTerminal(Rule rule) {
+        if (compiledMatching) {
+            return new RETECompiledTerminal(rule, this, infGraph);
+        }
         return new RETETerminal(rule, this, infGraph);
     }
     
@@ -337,6 +507,11 @@ public class RETEEngine implements FRuleEngineI {
      * @param deduction true if the remove has been generated by the rules 
      */
     public synchronized void deleteTriple(Triple triple, boolean deduction) {
+        if (deduction && deletionMaintainer != null 
+                && deletionMaintainer.hasGroundedDerivation(triple, preservedDeductions, null)) {
+            // Overdelete in progress and this deduction doesn't depend on the deleted triple
+            return;
+        }
         addsPending.remove(triple);
         deletesPending.add(triple);
         if (deduction) {
@@ -348,6 +523,8 @@ public class RETEEngine implements FRuleEngineI {
                 // Built in a graph which can't delete this triple
                 // so block further processing of this delete to avoid loops
                 deletesPending.remove(triple);
+            } else if (deletionLog != null) {
+                deletionLog.add(triple);
             }
         }
     }
@@ -384,11 +561,44 @@ public class RETEEngine implements FRuleEngineI {
         return null;
     }
         
+    /**
+     * Remove all the pending add triples.
+     * @return the triples or null if there are none left.
+     */
+    protected synchronized List<Triple> nextAddBatch() {
+        if (addsPending.isEmpty()) return null;
+        List<Triple> batch = addsPending;
+        addsPending = new ArrayList<Triple>();
+        return batch;
+    }
+        
     /**
      * Process the queue of pending insert/deletes until the queues are empty.
      * Public to simplify unit tests - not normally called directly.
      */
     public void runAll() {
+        if (profiler == null) {
+            doRunAll();
+            return;
+        }
+        RuleProfiler.EngineStats stats = profiler.getEngineStats(RuleProfiler.RETE_ENGINE);
+        stats.run();
+        long start = System.nanoTime();
+        try {
+            doRunAll();
+        } finally {
+            stats.addNanos(System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * Process the pending insert/deletes, sequentially or in parallel.
+     */
+    protected void doRunAll() {
+        if (conflictSet instanceof ConcurrentRETEConflictSet) {
+            runAllParallel((ConcurrentRETEConflictSet)conflictSet);
+            return;
+        }
         while(true) {
             boolean isAdd = false;
             Triple next = nextDeleteTriple();
@@ -406,15 +616,204 @@ public class RETEEngine implements FRuleEngineI {
         }
     }
     
+    /**
+     * Parallel version of runAll. Deletes are injected one at a time, pending
+     * adds are drained as a batch and matched by the partition workers. The rule
+     * firings collected by the conflict set are executed between rounds.
+     */
+    protected void runAllParallel(ConcurrentRETEConflictSet cs) {
+        while(true) {
+            Triple next = nextDeleteTriple();
+            if (next != null) {
+                inject(next, false);
+                cs.flush();
+                continue;
+            }
+            List<Triple> batch = nextAddBatch();
+            if (batch == null) {
+                // Nothing more to inject, if this is a non-mon rule set now process one rule from the conflict set
+                if (cs.isEmpty()) return;   // Finished
+                cs.fireOne();
+            } else {
+                injectBatch(batch);
+                cs.flush();
+            }
+        }
+    }
+    
+    /**
+     * Inject a batch of added triples into the RETE network, matching 
+     * each network partition on a separate thread: the calling thread takes
+     * one partition and the others are handed to the shared worker pool, so
+     * a round uses at most <code>parallelism</code> threads.
+     */
+    protected void injectBatch(final List<Triple> batch) {
+        if (batch.size() < PARALLEL_BATCH_MIN) {
+            for (Iterator<Triple> i = batch.iterator(); i.hasNext(); ) {
+                inject(i.next(), true);
+            }
+            return;
+        }
+        List<OneToManyMap<Node, RETENode>> parts = getPartitions();
+        List<Future<?>> results = new ArrayList<Future<?>>();
+        for (Iterator<OneToManyMap<Node, RETENode>> p = parts.subList(1, parts.size()).iterator(); p.hasNext(); ) {
+            final OneToManyMap<Node, RETENode> partition = p.next();
+            if (partition.isEmpty()) continue;
+            results.add( getWorkerPool().submit(new Runnable() {
+                public void run() {
+                    injectAll(partition, batch);
+                }
+            }) );
+        }
+        try {
+            injectAll(parts.get(0), batch);
+        } finally {
+            awaitAll(results);
+        }
+    }
+    
+    /**
+     * Inject a batch of added triples into one partition of the network.
+     */
+    private void injectAll(OneToManyMap<Node, RETENode> partition, List<Triple> batch) {
+        for (Iterator<Triple> i = batch.iterator(); i.hasNext(); ) {
+            inject(partition, i.next(), true);
+        }
+    }
+    
+    /**
+     * Wait for the partition workers of a round to finish, rethrowing 
+     * the first failure.
+     */
+    private static void awaitAll(List<Future<?>> results) {
+        for (Iterator<Future<?>> i = results.iterator(); i.hasNext(); ) {
+            try {
+                i.next().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ReasonerException("Interrupted during parallel rule matching", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                throw new ReasonerException("Failure during parallel rule matching", cause);
+            }
+        }
+    }
+    
+    /**
+     * Return true if matching the rules in parallel gives the same closure as
+     * matching them sequentially. Rule firings are only executed once a matching
+     * round is complete, so the rules must be monotonic and their body builtins
+     * must not depend on the deductions made in the round (see PURE_BUILTINS).
+     */
+    protected boolean canMatchInParallel() {
+        if (!isMonotonic) return false;
+        Set<RETENode> seen = new HashSet<RETENode>();
+        for (Iterator<RETENode> i = clauseIndex.values().iterator(); i.hasNext(); ) {
+            RETENode terminal = terminalOf(i.next());
+            if (!seen.add(terminal) || !(terminal instanceof RETETerminal)) continue;
+            Rule rule = ((RETETerminal)terminal).context.getRule();
+            for (int j = 0; j < rule.bodyLength(); j++) {
+                ClauseEntry clause = rule.getBodyElement(j);
+                if (clause instanceof Functor) {
+                    Builtin builtin = ((Functor)clause).getImplementor();
+                    if (builtin == null || !PURE_BUILTINS.contains(builtin.getClass())) return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Return the node at the end of the join chain which starts at the given 
+     * clause filter, normally the terminal of its rule.
+     */
+    private static RETENode terminalOf(RETENode filter) {
+        RETENode node = ((RETEClauseFilter)filter).continuation;
+        while (node instanceof RETEQueue) {
+            node = ((RETEQueue)node).getContinuation();
+        }
+        return node;
+    }
+    
+    /**
+     * Return the clause index split into partitions which can be matched
+     * independently. The network for each rule is private to that rule so
+     * all the clauses of a rule are kept in the same partition.
+     */
+    protected synchronized List<OneToManyMap<Node, RETENode>> getPartitions() {
+        if (partitions != null) return partitions;
+        // Group the clause filters by the terminal node of their rule
+        Map<RETENode, List<Map.Entry<Node, RETENode>>> groups = new LinkedHashMap<RETENode, List<Map.Entry<Node, RETENode>>>();
+        for (Iterator<Map.Entry<Node, RETENode>> i = clauseIndex.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry<Node, RETENode> entry = i.next();
+            RETENode node = terminalOf(entry.getValue());
+            List<Map.Entry<Node, RETENode>> group = groups.get(node);
+            if (group == null) {
+                group = new ArrayList<Map.Entry<Node, RETENode>>();
+                groups.put(node, group);
+            }
+            group.add(entry);
+        }
+        // Assign each group to the currently smallest partition
+        List<OneToManyMap<Node, RETENode>> parts = new ArrayList<OneToManyMap<Node, RETENode>>(parallelism);
+        int[] sizes = new int[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            parts.add(new OneToManyMap<Node, RETENode>());
+        }
+        for (Iterator<List<Map.Entry<Node, RETENode>>> i = groups.values().iterator(); i.hasNext(); ) {
+            List<Map.Entry<Node, RETENode>> group = i.next();
+            int smallest = 0;
+            for (int j = 1; j < parallelism; j++) {
+                if (sizes[j] < sizes[smallest]) smallest = j;
+            }
+            for (Iterator<Map.Entry<Node, RETENode>> j = group.iterator(); j.hasNext(); ) {
+                Map.Entry<Node, RETENode> entry = j.next();
+                parts.get(smallest).put(entry.getKey(), entry.getValue());
+            }
+            sizes[smallest] += group.size();
+        }
+        partitions = parts;
+        return partitions;
+    }
+    
+    /**
+     * Return the worker pool used for parallel matching, creating it if necessary.
+     * The pool is shared by all engines in the JVM and has one thread per 
+     * processor; the parallelism of an engine only sets how many partitions its
+     * rounds are split into, and so how many of those threads (less the calling
+     * thread) a round can occupy.
+     */
+    protected static synchronized ExecutorService getWorkerPool() {
+        if (workerPool == null) {
+            workerPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private int count = 0;
+                public synchronized Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "RETEEngine-worker-" + (++count));
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return workerPool;
+    }
+    
     /**
      * Inject a single triple into the RETE network
      */
     private void inject(Triple t, boolean isAdd) {
+        inject(clauseIndex, t, isAdd);
+    }
+    
+    /**
+     * Inject a single triple into the part of the RETE network reached from the given clause index
+     */
+    private void inject(OneToManyMap<Node, RETENode> index, Triple t, boolean isAdd) {
         if (infGraph.shouldTrace()) {
             logger.debug((isAdd ? "Inserting" : "Deleting") + " triple: " + PrintUtil.print(t));
         }
-        Iterator<RETENode> i1 = clauseIndex.getAll(t.getPredicate());
-        Iterator<RETENode> i2 = clauseIndex.getAll(Node.ANY);
+        Iterator<RETENode> i1 = index.getAll(t.getPredicate());
+        Iterator<RETENode> i2 = index.getAll(Node.ANY);
         Iterator<RETENode> i = new ConcatenatedIterator<RETENode>(i1, i2);
         while (i.hasNext()) {
             RETEClauseFilter cf = (RETEClauseFilter) i.next();
@@ -483,7 +882,11 @@ public class RETEEngine implements FRuleEngineI {
                         if (imp != null) {
                             tempContext.setRule(r);
                             tempContext.setEnv(new BindingVector( r.getNumVars() ));
-                            imp.headAction(f.getArgs(), f.getArgLength(), tempContext);
+                            if (profiler != null) {
+                                profiler.headAction(imp, f.getArgs(), f.getArgLength(), tempContext);
+                            } else {
+                                imp.headAction(f.getArgs(), f.getArgLength(), tempContext);
+                            }
                         } else {
                             throw new ReasonerException("Invoking undefined Functor " + f.getName() +" in " + r.toShortString());
                         }
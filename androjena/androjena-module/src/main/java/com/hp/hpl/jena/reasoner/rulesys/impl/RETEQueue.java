@@ -26,6 +26,9 @@ public class RETEQueue implements RETESinkNode, RETESourceNode {
     /** A multi-set of partially bound envionments */
     protected HashMap<BindingVector, Count> queue = new HashMap<BindingVector, Count>();
     
+    /** Index from the values of the join variables to the environments in the queue which carry them */
+    protected HashMap<JoinKey, Set<BindingVector>> index = new HashMap<JoinKey, Set<BindingVector>>();
+    
     /** A set of variable indices which should match between the two inputs */
     protected byte[] matchIndices;
     
@@ -35,6 +38,18 @@ public class RETEQueue implements RETESinkNode, RETESourceNode {
     /** The node that results should be passed on to */
     protected RETESinkNode continuation;
     
+    /** performance stats - number of tokens which have arrived at this queue */
+    long nTokens = 0;
+    
+    /** performance stats - number of sibling entries compared against arriving tokens */
+    long nProbes = 0;
+    
+    /** performance stats - number of joined tokens passed on to the continuation */
+    long nMatches = 0;
+    
+    /** Description of this node's position in the rule network, used when profiling */
+    protected String label;
+    
     /** 
      * Constructor. The queue is not usable until it has been bound
      * to a sibling and a continuation node.
@@ -78,12 +93,14 @@ public class RETEQueue implements RETESinkNode, RETESourceNode {
      * @param isAdd distinguishes between add and remove operations.
      */
     public void fire(BindingVector env, boolean isAdd) {
+        nTokens++;
         // Store the new token in this store
         Count count = queue.get(env);
         if (count == null) {
             // no entry yet
             if (!isAdd) return;
             queue.put(env, new Count(1));
+            addToIndex(env);
         } else {
             if (isAdd) {
                 count.inc();
@@ -91,14 +108,24 @@ public class RETEQueue implements RETESinkNode, RETESourceNode {
                 count.dec();
                 if (count.getCount() == 0) {
                     queue.remove(env);
+                    removeFromIndex(env);
                 }
             }
         }
         
-        // Cross match new token against the entries in the sibling queue
-        for (Iterator<BindingVector> i = sibling.queue.keySet().iterator(); i.hasNext(); ) {
+        // Cross match new token against the entries in the sibling queue,
+        // the index restricts this to entries which share the join values
+        Collection<BindingVector> candidates;
+        if (Arrays.equals(matchIndices, sibling.matchIndices)) {
+            candidates = sibling.index.get(new JoinKey(env, matchIndices));
+            if (candidates == null) return;
+        } else {
+            candidates = sibling.queue.keySet();
+        }
+        Node[] envNodes = env.getEnvironment();
+        for (Iterator<BindingVector> i = candidates.iterator(); i.hasNext(); ) {
             Node[] candidate = i.next().getEnvironment();
-            Node[] envNodes = env.getEnvironment();
+            nProbes++;
             boolean matchOK = true;
             for (int j = 0; j < matchIndices.length; j++) {
                 int index = matchIndices[j];
@@ -116,10 +143,143 @@ public class RETEQueue implements RETESinkNode, RETESourceNode {
                 }
                 BindingVector newEnv = new BindingVector(newNodes);
                 // Fire the successor processing
+                nMatches++;
                 continuation.fire(newEnv, isAdd);
             }
         }
     }
+    
+    /**
+     * Record a newly stored environment in the join index.
+     */
+    protected void addToIndex(BindingVector env) {
+        JoinKey key = new JoinKey(env, matchIndices);
+        Set<BindingVector> bucket = index.get(key);
+        if (bucket == null) {
+            bucket = new LinkedHashSet<BindingVector>(4);
+            index.put(key, bucket);
+        }
+        bucket.add(env);
+    }
+    
+    /**
+     * Remove an environment, which has been dropped from the queue, from the join index.
+     */
+    protected void removeFromIndex(BindingVector env) {
+        JoinKey key = new JoinKey(env, matchIndices);
+        Set<BindingVector> bucket = index.get(key);
+        if (bucket != null) {
+            bucket.remove(env);
+            if (bucket.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+    
+    /**
+     * Return the number of tokens which have been fired into this queue.
+     */
+    public long getTokenCount() {
+        return nTokens;
+    }
+    
+    /**
+     * Return the number of sibling entries which have been compared against
+     * incoming tokens. With the join index in place this is close to the
+     * number of successful joins rather than the product of the queue sizes.
+     */
+    public long getProbeCount() {
+        return nProbes;
+    }
+    
+    /**
+     * Return the number of joined tokens which have been passed on to the continuation.
+     */
+    public long getMatchCount() {
+        return nMatches;
+    }
+    
+    /**
+     * Clear the token, probe and match counts.
+     */
+    public void resetCounts() {
+        nTokens = 0;
+        nProbes = 0;
+        nMatches = 0;
+    }
+    
+    /**
+     * Return the number of distinct environments held in this queue.
+     */
+    public int size() {
+        return queue.size();
+    }
+    
+    /**
+     * Set the description of this node's position in the rule network.
+     */
+    public void setLabel(String label) {
+        this.label = label;
+    }
+    
+    /**
+     * Return the description of this node's position in the rule network.
+     */
+    public String getLabel() {
+        return label;
+    }
+    
+    /**
+     * Return the sibling queue, which forms the other half of the join node.
+     */
+    public RETEQueue getSibling() {
+        return sibling;
+    }
+    
+    /**
+     * Return the node to which join results are passed on.
+     */
+    public RETESinkNode getContinuation() {
+        return continuation;
+    }
+
+    /**
+     * Inner class used as the join index key. It is built from the indexing 
+     * values of the join variables, which are consistent with sameValueAs, so 
+     * that value-equal literals land in the same bucket. Candidates in a bucket
+     * are still checked with sameValueAs by the caller.
+     */
+    protected static class JoinKey {
+        /** the indexing values of the join variables */
+        final Object[] values;
+        
+        /** cached hash code */
+        final int hash;
+        
+        /** Constructor */
+        JoinKey(BindingVector env, byte[] matchIndices) {
+            Node[] nodes = env.getEnvironment();
+            values = new Object[matchIndices.length];
+            int h = 0;
+            for (int i = 0; i < matchIndices.length; i++) {
+                Node n = nodes[matchIndices[i]];
+                Object v = (n == null) ? null : n.getIndexingValue();
+                values[i] = v;
+                h = (h << 1) ^ (v == null ? 0x537c : v.hashCode());
+            }
+            hash = h;
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof JoinKey && Arrays.equals(values, ((JoinKey)o).values);
+        }
+    }
 
     /**
      * Inner class used to represent an updatable count.
@@ -162,10 +322,15 @@ public class RETEQueue implements RETESinkNode, RETESourceNode {
         RETEQueue clone = (RETEQueue)netCopy.get(this);
         if (clone == null) {
             clone = new RETEQueue(matchIndices);
+            clone.label = label;
             netCopy.put(this, clone);
             clone.setSibling((RETEQueue)sibling.clone(netCopy, context));
             clone.setContinuation((RETESinkNode)continuation.clone(netCopy, context));
-            clone.queue.putAll(queue);
+            for (Iterator<Map.Entry<BindingVector, Count>> i = queue.entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry<BindingVector, Count> entry = i.next();
+                clone.queue.put(entry.getKey(), new Count(entry.getValue().getCount()));
+                clone.addToIndex(entry.getKey());
+            }
         }
         return clone;
     }
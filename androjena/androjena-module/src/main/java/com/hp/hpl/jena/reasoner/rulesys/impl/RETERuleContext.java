@@ -147,6 +147,8 @@ public class RETERuleContext implements RuleContext {
      * Check whether the rule should fire in this context.
      */
     public boolean shouldFire(boolean allowUnsafe) {
+        RuleProfiler profiler = engine.getProfiler();
+        if (profiler != null) return shouldFire(allowUnsafe, profiler);
         // Check any non-pattern clauses 
         for (int i = 0; i < rule.bodyLength(); i++) {
             Object clause = rule.getBodyElement(i);
@@ -169,6 +171,22 @@ public class RETERuleContext implements RuleContext {
         return true;
     }
     
+    /**
+     * Version of shouldFire which records the builtin calls in the given profiler.
+     */
+    private boolean shouldFire(boolean allowUnsafe, RuleProfiler profiler) {
+        for (int i = 0; i < rule.bodyLength(); i++) {
+            Object clause = rule.getBodyElement(i);
+            if (clause instanceof Functor) {
+                boolean ok = allowUnsafe 
+                    ? profiler.evalAsBodyClause((Functor)clause, this)
+                    : profiler.safeEvalAsBodyClause((Functor)clause, this);
+                if (!ok) return false;
+            }
+        }
+        return true;
+    }
+    
     /**
      * Check if a rule from the conflict set is still OK to fire.
      * Just checks the non-monotonic guards such as noValue.
@@ -180,7 +198,11 @@ public class RETERuleContext implements RuleContext {
             if (clause instanceof Functor) {
                 Builtin builtin = ((Functor)clause).getImplementor();
                 if (builtin != null && !builtin.isMonotonic()) {
-                    if (!((Functor)clause).evalAsBodyClause(this)) {
+                    RuleProfiler profiler = engine.getProfiler();
+                    boolean ok = (profiler == null)
+                        ? ((Functor)clause).evalAsBodyClause(this)
+                        : profiler.evalAsBodyClause((Functor)clause, this);
+                    if (!ok) {
                         return false;
                     }
                 }
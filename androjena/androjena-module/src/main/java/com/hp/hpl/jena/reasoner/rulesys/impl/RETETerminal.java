@@ -26,6 +26,9 @@ public class RETETerminal implements RETESinkNode {
     /** Context containing the specific rule and parent graph */
     protected RETERuleContext context;
     
+    /** Profile record for the rule, cached from the engine's profiler */
+    protected RuleProfiler.RuleStats stats;
+    
     protected static Logger logger = LoggerFactory.getLogger(FRuleEngine.class);
     
     /**
@@ -64,6 +67,32 @@ public class RETETerminal implements RETESinkNode {
      * @param isAdd distinguishes between add and remove operations.
      */
     public void fire(BindingVector env, boolean isAdd) {
+        RuleProfiler profiler = context.getEngine().getProfiler();
+        if (profiler == null) {
+            doFire(env, isAdd);
+            return;
+        }
+        RuleProfiler.RuleStats ruleStats = stats;
+        if (ruleStats == null || ruleStats.getProfiler() != profiler) {
+            ruleStats = profiler.getRuleStats(context.getRule());
+            stats = ruleStats;
+        }
+        ruleStats.activated();
+        long start = profiler.startTimer();
+        try {
+            doFire(env, isAdd);
+        } finally {
+            profiler.stopTimer(ruleStats, start);
+        }
+    }
+    
+    /**
+     * Run the guard clauses against a token and, if they pass, request the
+     * rule firing.
+     * @param env a set of variable bindings for the rule being processed. 
+     * @param isAdd distinguishes between add and remove operations.
+     */
+    protected void doFire(BindingVector env, boolean isAdd) {
         Rule rule = context.getRule();
         context.setEnv(env);
         
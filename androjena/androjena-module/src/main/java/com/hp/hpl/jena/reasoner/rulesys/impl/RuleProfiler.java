@@ -0,0 +1,707 @@
+/******************************************************************
+ * File:        RuleProfiler.java
+ *
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.reasoner.rulesys.Builtin;
+import com.hp.hpl.jena.reasoner.rulesys.Functor;
+import com.hp.hpl.jena.reasoner.rulesys.Rule;
+import com.hp.hpl.jena.reasoner.rulesys.RuleContext;
+import com.hp.hpl.jena.shared.JenaException;
+
+/**
+ * Collects performance metrics from the rule engines: per rule activation
+ * and firing counts, per RETE join node token counts, per builtin call counts
+ * and the time spent in each of these.
+ * <p>
+ * The counters are always maintained but timings are sampled: only one in
+ * every <code>sampleInterval</code> timed events (across all rules and builtins)
+ * reads the clock and its elapsed time is scaled up by the interval. This keeps
+ * the overhead low enough to leave profiling enabled in production while giving
+ * unbiased estimates of the cumulative time. A sample interval of 1 times
+ * every event. The RETE join counts are kept by the {@link RETEQueue}s themselves
+ * and are only gathered when a snapshot is taken.
+ * </p>
+ * <p>
+ * A profiler is attached to an inference graph, and so to its engines, with
+ * setProfiler or by the GenericRuleReasoner "profiling" parameter. It may be
+ * shared between several graphs. A snapshot of the current figures can be
+ * exported as JSON using {@link #toJSON()}.
+ * </p>
+ */
+public class RuleProfiler {
+
+    /** The default number of timed events per timing sample */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 32;
+
+    /** Name of the engine statistics for the RETE forward engine */
+    public static final String RETE_ENGINE = "rete";
+
+    /** Name of the engine statistics for the basic forward engine */
+    public static final String FORWARD_ENGINE = "forward";
+
+    /** Name of the engine statistics for the LP backward engine */
+    public static final String BACKWARD_ENGINE = "backward";
+
+    /** Number of timed events per sample, a power of two */
+    protected final int sampleInterval;
+
+    /** Mask used to pick out the sampled events */
+    protected final int sampleMask;
+
+    /** Count of timed events used to pick samples. Updated without synchronization,
+     *  lost updates just perturb the sampling slightly. */
+    protected int tick = 0;
+
+    /** Time at which profiling started or was last reset */
+    protected volatile long startTime = System.currentTimeMillis();
+
+    /** Statistics for each rule */
+    protected final ConcurrentHashMap<Rule, RuleStats> rules = new ConcurrentHashMap<Rule, RuleStats>();
+
+    /** Statistics for each builtin, indexed by builtin name */
+    protected final ConcurrentHashMap<String, BuiltinStats> builtins = new ConcurrentHashMap<String, BuiltinStats>();
+
+    /** Statistics for each engine type */
+    protected final ConcurrentHashMap<String, EngineStats> engines = new ConcurrentHashMap<String, EngineStats>();
+
+    /** The RETE engines whose join nodes are reported */
+    protected final List<RETEEngine> reteEngines = new CopyOnWriteArrayList<RETEEngine>();
+
+    /**
+     * Constructor. Creates a profiler using the default sample interval.
+     */
+    public RuleProfiler() {
+        this(DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     * @param sampleInterval the number of timed events per timing sample, rounded
+     * up to a power of two. 1 times every event.
+     */
+    public RuleProfiler(int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new JenaException("Profiler sample interval must be positive: " + sampleInterval);
+        }
+        int interval = 1;
+        while (interval < sampleInterval) interval <<= 1;
+        this.sampleInterval = interval;
+        this.sampleMask = interval - 1;
+    }
+
+    /**
+     * Return the number of timed events per timing sample.
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+//  =======================================================================
+//  Recording support, used by the engines
+
+    /**
+     * Start timing an event.
+     * @return the start time if this event is sampled, otherwise 0
+     */
+    public long startTimer() {
+        if ((++tick & sampleMask) != 0) return 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Finish timing an event started by {@link #startTimer()}, charging the
+     * scaled up elapsed time to the given statistics if the event was sampled.
+     */
+    public void stopTimer(Stats stats, long start) {
+        if (start != 0) {
+            stats.nanos.addAndGet((System.nanoTime() - start) * sampleInterval);
+        }
+    }
+
+    /**
+     * Return the statistics record for a rule, creating it if necessary.
+     */
+    public RuleStats getRuleStats(Rule rule) {
+        RuleStats stats = rules.get(rule);
+        if (stats == null) {
+            RuleStats newStats = new RuleStats(this, rule);
+            stats = rules.putIfAbsent(rule, newStats);
+            if (stats == null) stats = newStats;
+        }
+        return stats;
+    }
+
+    /**
+     * Return the statistics record for a builtin, creating it if necessary.
+     */
+    public BuiltinStats getBuiltinStats(Builtin builtin) {
+        String name = builtin.getName();
+        BuiltinStats stats = builtins.get(name);
+        if (stats == null) {
+            BuiltinStats newStats = new BuiltinStats(name);
+            stats = builtins.putIfAbsent(name, newStats);
+            if (stats == null) stats = newStats;
+        }
+        return stats;
+    }
+
+    /**
+     * Return the statistics record for an engine type, creating it if necessary.
+     */
+    public EngineStats getEngineStats(String engine) {
+        EngineStats stats = engines.get(engine);
+        if (stats == null) {
+            EngineStats newStats = new EngineStats(engine);
+            stats = engines.putIfAbsent(engine, newStats);
+            if (stats == null) stats = newStats;
+        }
+        return stats;
+    }
+
+    /**
+     * Register a RETE engine whose join nodes should be included in the profile.
+     */
+    public void addEngine(RETEEngine engine) {
+        if (!reteEngines.contains(engine)) reteEngines.add(engine);
+    }
+
+    /**
+     * Stop reporting the join nodes of a RETE engine.
+     */
+    public void removeEngine(RETEEngine engine) {
+        reteEngines.remove(engine);
+    }
+
+    /**
+     * Evaluate a functor as a rule body clause, recording the builtin call.
+     * @see Functor#evalAsBodyClause(RuleContext)
+     */
+    public boolean evalAsBodyClause(Functor f, RuleContext context) {
+        Builtin imp = f.getImplementor();
+        if (imp == null) return f.evalAsBodyClause(context);
+        BuiltinStats stats = getBuiltinStats(imp);
+        long start = startTimer();
+        boolean result = f.evalAsBodyClause(context);
+        stats.record(result);
+        stopTimer(stats, start);
+        return result;
+    }
+
+    /**
+     * Evaluate a functor as a rule body clause, if it is side-effect-free,
+     * recording the builtin call.
+     * @see Functor#safeEvalAsBodyClause(RuleContext)
+     */
+    public boolean safeEvalAsBodyClause(Functor f, RuleContext context) {
+        Builtin imp = f.getImplementor();
+        if (imp == null || !imp.isSafe()) return f.safeEvalAsBodyClause(context);
+        return evalAsBodyClause(f, context);
+    }
+
+    /**
+     * Call a builtin as a rule body clause, recording the call.
+     * @see Builtin#bodyCall(Node[], int, RuleContext)
+     */
+    public boolean bodyCall(Builtin builtin, Node[] args, int length, RuleContext context) {
+        BuiltinStats stats = getBuiltinStats(builtin);
+        long start = startTimer();
+        boolean result = builtin.bodyCall(args, length, context);
+        stats.record(result);
+        stopTimer(stats, start);
+        return result;
+    }
+
+    /**
+     * Call a builtin as a rule head action, recording the call.
+     * @see Builtin#headAction(Node[], int, RuleContext)
+     */
+    public void headAction(Builtin builtin, Node[] args, int length, RuleContext context) {
+        BuiltinStats stats = getBuiltinStats(builtin);
+        long start = startTimer();
+        builtin.headAction(args, length, context);
+        stats.record(true);
+        stopTimer(stats, start);
+    }
+
+//  =======================================================================
+//  Access to the collected statistics
+
+    /**
+     * Return the statistics of all rules seen so far, most expensive first.
+     */
+    public List<RuleStats> listRuleStats() {
+        List<RuleStats> result = new ArrayList<RuleStats>(rules.values());
+        Collections.sort(result, new Comparator<RuleStats>() {
+            public int compare(RuleStats a, RuleStats b) {
+                long ta = a.getNanos(), tb = b.getNanos();
+                if (ta != tb) return ta > tb ? -1 : 1;
+                long fa = a.getActivations(), fb = b.getActivations();
+                return fa > fb ? -1 : (fa == fb ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Return the statistics of all builtins called so far, most expensive first.
+     */
+    public List<BuiltinStats> listBuiltinStats() {
+        List<BuiltinStats> result = new ArrayList<BuiltinStats>(builtins.values());
+        Collections.sort(result, new Comparator<BuiltinStats>() {
+            public int compare(BuiltinStats a, BuiltinStats b) {
+                long ta = a.getNanos(), tb = b.getNanos();
+                if (ta != tb) return ta > tb ? -1 : 1;
+                return a.getName().compareTo(b.getName());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Return the statistics of the engines used so far.
+     */
+    public List<EngineStats> listEngineStats() {
+        return new ArrayList<EngineStats>(engines.values());
+    }
+
+    /**
+     * Return a snapshot of the token counts of all join nodes in the registered
+     * RETE engines, busiest first.
+     */
+    public List<JoinStats> listJoinStats() {
+        List<JoinStats> result = new ArrayList<JoinStats>();
+        for (Iterator<RETEEngine> i = reteEngines.iterator(); i.hasNext(); ) {
+            RETEEngine engine = i.next();
+            if (engine.clauseIndex == null) continue;
+            Set<RETENode> seen = new HashSet<RETENode>();
+            for (Iterator<RETENode> j = engine.clauseIndex.values().iterator(); j.hasNext(); ) {
+                // Collect the queues along this chain, the terminal tells us which rule they belong to
+                List<RETEQueue> chain = new ArrayList<RETEQueue>();
+                RETENode node = ((RETEClauseFilter)j.next()).continuation;
+                while (node instanceof RETEQueue) {
+                    chain.add((RETEQueue)node);
+                    node = ((RETEQueue)node).getContinuation();
+                }
+                Rule rule = (node instanceof RETETerminal) ? ((RETETerminal)node).context.getRule() : null;
+                for (Iterator<RETEQueue> k = chain.iterator(); k.hasNext(); ) {
+                    RETEQueue queue = k.next();
+                    if (seen.add(queue)) result.add(new JoinStats(rule, queue));
+                }
+            }
+        }
+        Collections.sort(result, new Comparator<JoinStats>() {
+            public int compare(JoinStats a, JoinStats b) {
+                long pa = a.getProbes(), pb = b.getProbes();
+                if (pa != pb) return pa > pb ? -1 : 1;
+                long ta = a.getTokensIn(), tb = b.getTokensIn();
+                return ta > tb ? -1 : (ta == tb ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Clear all the statistics collected so far, including the counts held
+     * by the join nodes of the registered RETE engines.
+     */
+    public synchronized void reset() {
+        rules.clear();
+        builtins.clear();
+        engines.clear();
+        for (Iterator<RETEEngine> i = reteEngines.iterator(); i.hasNext(); ) {
+            RETEEngine engine = i.next();
+            if (engine.clauseIndex == null) continue;
+            for (Iterator<RETEQueue> j = engine.getJoinQueues().iterator(); j.hasNext(); ) {
+                j.next().resetCounts();
+            }
+        }
+        startTime = System.currentTimeMillis();
+    }
+
+//  =======================================================================
+//  JSON export
+
+    /**
+     * Return a snapshot of the profile as a JSON object.
+     */
+    public String toJSON() {
+        StringWriter out = new StringWriter();
+        try {
+            writeJSON(out);
+        } catch (IOException e) {
+            // Can't happen for a StringWriter
+            throw new JenaException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write a snapshot of the profile as a JSON object. Times are in milliseconds,
+     * the rule, builtin and engine times are estimates from the sampled timings.
+     */
+    public void writeJSON(Writer out) throws IOException {
+        out.write("{\n");
+        out.write("  \"sampleInterval\": " + sampleInterval + ",\n");
+        out.write("  \"elapsedMillis\": " + (System.currentTimeMillis() - startTime) + ",\n");
+
+        out.write("  \"engines\": [");
+        boolean first = true;
+        for (Iterator<EngineStats> i = listEngineStats().iterator(); i.hasNext(); ) {
+            EngineStats s = i.next();
+            out.write(first ? "\n" : ",\n");
+            first = false;
+            out.write("    {\"engine\": " + quote(s.getName())
+                    + ", \"runs\": " + s.getRuns()
+                    + ", \"millis\": " + millis(s.getNanos()) + "}");
+        }
+        out.write(first ? "],\n" : "\n  ],\n");
+
+        out.write("  \"rules\": [");
+        first = true;
+        for (Iterator<RuleStats> i = listRuleStats().iterator(); i.hasNext(); ) {
+            RuleStats s = i.next();
+            out.write(first ? "\n" : ",\n");
+            first = false;
+            out.write("    {\"rule\": " + quote(ruleLabel(s.getRule()))
+                    + ", \"activations\": " + s.getActivations()
+                    + ", \"firings\": " + s.getFirings()
+                    + ", \"millis\": " + millis(s.getNanos()) + "}");
+        }
+        out.write(first ? "],\n" : "\n  ],\n");
+
+        out.write("  \"joins\": [");
+        first = true;
+        for (Iterator<JoinStats> i = listJoinStats().iterator(); i.hasNext(); ) {
+            JoinStats s = i.next();
+            out.write(first ? "\n" : ",\n");
+            first = false;
+            out.write("    {\"rule\": " + quote(ruleLabel(s.getRule()))
+                    + ", \"node\": " + quote(s.getLabel())
+                    + ", \"tokensIn\": " + s.getTokensIn()
+                    + ", \"probes\": " + s.getProbes()
+                    + ", \"tokensOut\": " + s.getTokensOut()
+                    + ", \"size\": " + s.getSize() + "}");
+        }
+        out.write(first ? "],\n" : "\n  ],\n");
+
+        out.write("  \"builtins\": [");
+        first = true;
+        for (Iterator<BuiltinStats> i = listBuiltinStats().iterator(); i.hasNext(); ) {
+            BuiltinStats s = i.next();
+            out.write(first ? "\n" : ",\n");
+            first = false;
+            out.write("    {\"builtin\": " + quote(s.getName())
+                    + ", \"calls\": " + s.getCalls()
+                    + ", \"failures\": " + s.getFailures()
+                    + ", \"millis\": " + millis(s.getNanos()) + "}");
+        }
+        out.write(first ? "]\n" : "\n  ]\n");
+        out.write("}\n");
+        out.flush();
+    }
+
+    /**
+     * Return the name of a rule, or its short printed form if it is unnamed.
+     */
+    protected static String ruleLabel(Rule rule) {
+        if (rule == null) return "";
+        String name = rule.getName();
+        return (name != null) ? name : rule.toShortString();
+    }
+
+    /**
+     * Format a nanosecond time as milliseconds, to microsecond precision.
+     */
+    protected static String millis(long nanos) {
+        long micros = nanos / 1000;
+        StringBuffer buff = new StringBuffer();
+        buff.append(micros / 1000);
+        buff.append('.');
+        String frac = Long.toString(micros % 1000);
+        for (int i = frac.length(); i < 3; i++) buff.append('0');
+        buff.append(frac);
+        return buff.toString();
+    }
+
+    /**
+     * Quote a string as a JSON string literal.
+     */
+    protected static String quote(String s) {
+        StringBuffer buff = new StringBuffer(s.length() + 2);
+        buff.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  buff.append("\\\""); break;
+                case '\\': buff.append("\\\\"); break;
+                case '\n': buff.append("\\n"); break;
+                case '\r': buff.append("\\r"); break;
+                case '\t': buff.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        String hex = Integer.toHexString(c);
+                        buff.append("\\u");
+                        for (int j = hex.length(); j < 4; j++) buff.append('0');
+                        buff.append(hex);
+                    } else {
+                        buff.append(c);
+                    }
+            }
+        }
+        buff.append('"');
+        return buff.toString();
+    }
+
+//  =======================================================================
+//  Statistics records
+
+    /**
+     * Base class for the statistics records, holds the estimated cumulative time.
+     */
+    public static class Stats {
+        /** Estimated total time in nanoseconds */
+        protected final AtomicLong nanos = new AtomicLong();
+
+        /** Return the estimated total time, in nanoseconds */
+        public long getNanos() {
+            return nanos.get();
+        }
+
+        /** Add an exactly measured time, in nanoseconds */
+        public void addNanos(long time) {
+            nanos.addAndGet(time);
+        }
+    }
+
+    /**
+     * Statistics for a single rule. An activation is an attempt to
+     * complete a match of the rule: a token reaching the RETE terminal, a
+     * triple matching one of the clauses of a forward rule or a call of a
+     * backward rule. A firing is a complete match: execution of the rule
+     * head or a backward rule returning a result.
+     */
+    public static class RuleStats extends Stats {
+        /** The profiler which owns this record */
+        protected final RuleProfiler profiler;
+
+        /** The rule being profiled */
+        protected final Rule rule;
+
+        /** Number of activations */
+        protected final AtomicLong activations = new AtomicLong();
+
+        /** Number of firings */
+        protected final AtomicLong firings = new AtomicLong();
+
+        RuleStats(RuleProfiler profiler, Rule rule) {
+            this.profiler = profiler;
+            this.rule = rule;
+        }
+
+        /** Return the profiler which owns this record */
+        public RuleProfiler getProfiler() {
+            return profiler;
+        }
+
+        /** Return the rule */
+        public Rule getRule() {
+            return rule;
+        }
+
+        /** Return the number of activations */
+        public long getActivations() {
+            return activations.get();
+        }
+
+        /** Return the number of firings */
+        public long getFirings() {
+            return firings.get();
+        }
+
+        /** Record an activation */
+        public void activated() {
+            activations.incrementAndGet();
+        }
+
+        /** Record a firing */
+        public void fired() {
+            firings.incrementAndGet();
+        }
+    }
+
+    /**
+     * Statistics for a builtin, accumulated over all rules which call it.
+     */
+    public static class BuiltinStats extends Stats {
+        /** The builtin name */
+        protected final String name;
+
+        /** Number of calls */
+        protected final AtomicLong calls = new AtomicLong();
+
+        /** Number of body calls which failed */
+        protected final AtomicLong failures = new AtomicLong();
+
+        BuiltinStats(String name) {
+            this.name = name;
+        }
+
+        /** Return the builtin name */
+        public String getName() {
+            return name;
+        }
+
+        /** Return the number of calls */
+        public long getCalls() {
+            return calls.get();
+        }
+
+        /** Return the number of body calls which failed */
+        public long getFailures() {
+            return failures.get();
+        }
+
+        /** Record a call and its result */
+        public void record(boolean succeeded) {
+            calls.incrementAndGet();
+            if (!succeeded) failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * Statistics for an engine type. For the forward engines a run is the
+     * processing of one batch of additions or deletions and the time is
+     * measured exactly. For the backward engine a run is the search for one
+     * query result and the time is sampled.
+     */
+    public static class EngineStats extends Stats {
+        /** The engine type */
+        protected final String name;
+
+        /** Number of runs */
+        protected final AtomicLong runs = new AtomicLong();
+
+        EngineStats(String name) {
+            this.name = name;
+        }
+
+        /** Return the engine type */
+        public String getName() {
+            return name;
+        }
+
+        /** Return the number of runs */
+        public long getRuns() {
+            return runs.get();
+        }
+
+        /** Record a run */
+        public void run() {
+            runs.incrementAndGet();
+        }
+    }
+
+    /**
+     * Snapshot of the counts for one side of a RETE join node.
+     */
+    public static class JoinStats {
+        /** The rule whose network contains the join */
+        protected final Rule rule;
+
+        /** Description of the join node within the rule network */
+        protected final String label;
+
+        /** Counts at the time of the snapshot */
+        protected final long tokensIn, probes, tokensOut, size;
+
+        JoinStats(Rule rule, RETEQueue queue) {
+            this.rule = rule;
+            this.label = queue.getLabel();
+            this.tokensIn = queue.getTokenCount();
+            this.probes = queue.getProbeCount();
+            this.tokensOut = queue.getMatchCount();
+            this.size = queue.size();
+        }
+
+        /** Return the rule whose network contains the join */
+        public Rule getRule() {
+            return rule;
+        }
+
+        /** Return a description of the join node, such as "join 2 left" */
+        public String getLabel() {
+            return label;
+        }
+
+        /** Return the number of tokens which arrived at this side of the join */
+        public long getTokensIn() {
+            return tokensIn;
+        }
+
+        /** Return the number of sibling entries compared against arriving tokens */
+        public long getProbes() {
+            return probes;
+        }
+
+        /** Return the number of joined tokens passed on */
+        public long getTokensOut() {
+            return tokensOut;
+        }
+
+        /** Return the number of distinct tokens held */
+        public long getSize() {
+            return size;
+        }
+    }
+
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
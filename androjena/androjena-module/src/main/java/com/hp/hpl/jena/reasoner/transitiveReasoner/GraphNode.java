@@ -26,7 +26,13 @@ class GraphNode {
 	
 	/** An optional cache of the triples that represent succClosed */
 	protected List<Triple> succClosedTriples;
-	
+
+	/** The position of this node in the IntervalIndex order, or -1 if not labelled */
+	protected int label = -1;
+
+	/** Sorted [low, high] label pairs covering all nodes which reach this one, maintained by IntervalIndex */
+	protected int[] intervals;
+
 	/** 
 	     Plain Siblings for simple nodes. For the lead node in a SCC will be a Leader
 	     with components containing all the nodes in the SCC. For non-lead nodes 
@@ -248,12 +254,22 @@ class GraphNode {
 	 * node to the target node.
 	 */
 	public void propagateAdd(GraphNode target) {
+		propagateAdd(target, null);
+	}
+	
+	/**
+	 * Propagate the results of adding a link from this
+	 * node to the target node, noting each node whose closure
+	 * was extended in the given collection (if not null).
+	 */
+	public void propagateAdd(GraphNode target, final Collection<GraphNode> updated) {
         Set<GraphNode> sc = new HashSet<GraphNode>(target.succClosed);
         sc.add(target); 
 		visitPredecessors(new Visitor<Set<GraphNode>, GraphNode>() {
 			public List<GraphNode> visit(GraphNode node, GraphNode processing, Set<GraphNode> sc, GraphNode target) {
 				// Add closure
 				node.succClosed.addAll( sc );
+				if (updated != null) updated.add( node );
 				// Scan for redundant links
                 List<GraphNode> kill = null;
 				for (Iterator<GraphNode> i = node.succ.iterator(); i.hasNext();) {
@@ -279,9 +295,10 @@ class GraphNode {
 	 * node as lead.
 	 */
 	public void propagateSCC() {
+		// Scan predecessors not including ourselves, the visitor is only applied
+		// to the predecessors of each node reached, so this node must not be 
+		// marked as seen up front or the scan stops before it starts
 		Set<GraphNode> visited = new HashSet<GraphNode>();
-		visited.add(this);
-		// Scan predecessors not including ourselves
 		doVisitPredecessors(new Visitor<Set<GraphNode>, Object>() {
 			public List<GraphNode> visit(GraphNode node, GraphNode processing, Set<GraphNode> sc, Object ignored ) {
 				// Add closure
@@ -0,0 +1,434 @@
+/******************************************************************
+ * File:        IntervalIndex.java
+ *
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.transitiveReasoner;
+
+import java.util.*;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.util.iterator.*;
+
+/**
+ * Interval labelling of the lead nodes of a TransitiveGraphCache, after
+ * Agrawal, Borgida and Jagadish (1989).
+ * <p>
+ * Each lead node is given a label, its position in a post-order walk of
+ * a spanning forest of the reduced graph taken from the top (nodes with no
+ * successors) downwards. A node additionally carries a sorted list of
+ * coalesced label intervals which covers every node that can reach it. For
+ * tree shaped parts of the graph this is the single interval spanned by the
+ * node's subtree, nodes with multiple parents just contribute additional
+ * intervals to their other ancestors. Membership of the closed relation is
+ * then a test of one label against (almost always) one interval and the
+ * predecessor closure is a scan over a contiguous range of the label order.
+ * </p><p>
+ * Additions are handled incrementally by merging the labels of the nodes
+ * whose closure was extended into the new supernode and its closed
+ * successors. Newly seen
+ * nodes are labelled at the end of the order, so long runs of additions
+ * fragment the intervals; once that gets out of hand the cache throws the
+ * index away and relabels from scratch on the next query.
+ * </p>
+ */
+class IntervalIndex {
+
+    /** Labelled nodes in label order, entries which are no longer lead nodes are skipped */
+    protected ArrayList<GraphNode> order;
+
+    /** Total number of intervals held over all labelled nodes */
+    protected int intervalCount = 0;
+
+    /** Set false if the index has met a node it cannot label */
+    protected boolean valid = true;
+
+    /**
+     * Constructor. Labels all the lead nodes in the given collection.
+     */
+    IntervalIndex(Collection<GraphNode> nodes) {
+        order = new ArrayList<GraphNode>(nodes.size());
+        for (Iterator<GraphNode> i = nodes.iterator(); i.hasNext(); ) {
+            GraphNode n = i.next();
+            n.label = -1;
+            n.intervals = null;
+        }
+        // Start from the roots first so the spanning forest is as tree shaped as possible
+        for (Iterator<GraphNode> i = nodes.iterator(); i.hasNext(); ) {
+            GraphNode n = i.next();
+            if (n.leadNode() == n && n.label == -1 && n.succ.isEmpty()) {
+                labelFrom(n);
+            }
+        }
+        for (Iterator<GraphNode> i = nodes.iterator(); i.hasNext(); ) {
+            GraphNode n = i.next();
+            if (n.leadNode() == n && n.label == -1) {
+                labelFrom(n);
+            }
+        }
+        computeIntervals(null);
+    }
+
+    /**
+     * Post-order walk down the predecessor links of the given root, labelling
+     * each node as it is finished, so that each subtree of the spanning forest
+     * gets a contiguous run of labels. The walk is done with an explicit stack
+     * since long subclass chains would otherwise exhaust the java stack.
+     */
+    private void labelFrom(GraphNode root) {
+        ArrayList<GraphNode> nodeStack = new ArrayList<GraphNode>();
+        ArrayList<Iterator<GraphNode>> iteratorStack = new ArrayList<Iterator<GraphNode>>();
+        root.label = -2;
+        nodeStack.add(root);
+        iteratorStack.add(root.pred.iterator());
+        while (!nodeStack.isEmpty()) {
+            int top = nodeStack.size() - 1;
+            Iterator<GraphNode> it = iteratorStack.get(top);
+            if (it.hasNext()) {
+                GraphNode child = it.next().leadNode();
+                if (child.label == -1) {
+                    child.label = -2;
+                    nodeStack.add(child);
+                    iteratorStack.add(child.pred.iterator());
+                }
+            } else {
+                GraphNode node = nodeStack.remove(top);
+                iteratorStack.remove(top);
+                node.label = order.size();
+                order.add(node);
+            }
+        }
+    }
+
+    /**
+     * Compute the intervals of the given lead nodes (or all labelled nodes if
+     * targets is null) from the closed successor sets of every labelled node.
+     * Uses the closed successors rather than the direct links so that the
+     * index agrees exactly with GraphNode.pathTo.
+     */
+    private void computeIntervals(Set<GraphNode> targets) {
+        int size = order.size();
+        int[] counts = new int[size];
+        for (int pass = 0; pass < 2; pass++) {
+            int[][] members = null;
+            if (pass == 1) {
+                members = new int[size][];
+                for (int i = 0; i < size; i++) {
+                    if (counts[i] > 0) members[i] = new int[counts[i]];
+                    counts[i] = 0;
+                }
+            }
+            for (int l = 0; l < size; l++) {
+                GraphNode n = order.get(l);
+                if (n.leadNode() != n) continue;
+                note(n, l, targets, counts, members);
+                for (Iterator<GraphNode> i = n.succClosed.iterator(); i.hasNext(); ) {
+                    note(i.next(), l, targets, counts, members);
+                }
+            }
+            if (pass == 1) {
+                for (int i = 0; i < size; i++) {
+                    if (members[i] != null) setIntervals(order.get(i), coalesce(members[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Record that the node labelled l reaches the node a.
+     */
+    private void note(GraphNode a, int l, Set<GraphNode> targets, int[] counts, int[][] members) {
+        int al = a.label;
+        if (al < 0 || (targets != null && !targets.contains(a))) return;
+        if (members != null) members[al][counts[al]] = l;
+        counts[al]++;
+    }
+
+    /**
+     * Turn an unsorted array of labels into a sorted, coalesced interval list.
+     */
+    private static int[] coalesce(int[] labels) {
+        Arrays.sort(labels);
+        int[] result = new int[2 * labels.length];
+        int n = 0;
+        for (int i = 0; i < labels.length; i++) {
+            int l = labels[i];
+            if (n > 0 && l <= result[n - 1] + 1) {
+                result[n - 1] = l;
+            } else {
+                result[n++] = l;
+                result[n++] = l;
+            }
+        }
+        int[] trimmed = new int[n];
+        System.arraycopy(result, 0, trimmed, 0, n);
+        return trimmed;
+    }
+
+    /**
+     * Label a newly created node at the end of the current order.
+     */
+    void label(GraphNode node) {
+        node.label = order.size();
+        order.add(node);
+        setIntervals(node, new int[] {node.label, node.label});
+    }
+
+    /**
+     * Record that a link to the lead node end has just been added and that
+     * the given nodes have had end and its closed successors added to their
+     * own closed successors.
+     */
+    void addLink(Collection<GraphNode> updated, GraphNode end) {
+        int[] labels = new int[updated.size()];
+        int n = 0;
+        for (Iterator<GraphNode> i = updated.iterator(); i.hasNext(); ) {
+            int l = i.next().label;
+            if (l < 0) {
+                valid = false;
+                return;
+            }
+            labels[n++] = l;
+        }
+        int[] add = coalesce(labels);
+        extend(end, add);
+        for (Iterator<GraphNode> i = end.succClosed.iterator(); i.hasNext(); ) {
+            extend(i.next(), add);
+        }
+    }
+
+    /**
+     * Merge the given intervals into those of the given node.
+     */
+    private void extend(GraphNode node, int[] add) {
+        if (node.intervals == null) {
+            valid = false;
+        } else if (!covers(node.intervals, add)) {
+            setIntervals(node, merge(node.intervals, add));
+        }
+    }
+
+    /**
+     * Recompute the intervals of a set of nodes from scratch. Used after SCC
+     * merges and deletes, where the set of nodes reaching the changed nodes
+     * may shrink. The dirty set must include all changed nodes and all their
+     * closed successors. This costs a scan over the whole closure but these
+     * cases are rare compared to additions.
+     */
+    void relabel(Set<GraphNode> dirty) {
+        for (Iterator<GraphNode> i = dirty.iterator(); i.hasNext(); ) {
+            GraphNode n = i.next();
+            if (n.leadNode() == n && n.label < 0) {
+                valid = false;
+                return;
+            }
+        }
+        computeIntervals(dirty);
+    }
+
+    /**
+     * Return true if the index is still usable. It becomes unusable if it has met
+     * structure it could not label or if incremental additions have fragmented
+     * the intervals to the point where relabelling would pay for itself.
+     */
+    boolean isUsable() {
+        return valid && intervalCount <= 4 * order.size() + 256;
+    }
+
+    /**
+     * Return true if there is a path from the lead node from to the lead node to.
+     */
+    boolean reaches(GraphNode from, GraphNode to) {
+        int[] iv = to.intervals;
+        int l = from.label;
+        if (iv == null || l < 0) return from.pathTo(to);
+        if (iv.length == 2) return iv[0] <= l && l <= iv[1];
+        int lo = 0, hi = iv.length / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (l < iv[2 * mid]) {
+                hi = mid - 1;
+            } else if (l > iv[2 * mid + 1]) {
+                lo = mid + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return an iterator over the triples (x, predicate, root) for all x
+     * which reach the given lead node, including the reflexive case.
+     */
+    ExtendedIterator<Triple> listPredecessorTriples(GraphNode lead, Node root, Node predicate) {
+        return new IntervalWalker(order, lead.intervals, root, predicate);
+    }
+
+    private void setIntervals(GraphNode node, int[] iv) {
+        if (node.intervals != null) intervalCount -= node.intervals.length / 2;
+        node.intervals = iv;
+        intervalCount += iv.length / 2;
+    }
+
+    /**
+     * Return true if every interval in b is contained in some interval of a.
+     */
+    static boolean covers(int[] a, int[] b) {
+        int i = 0;
+        for (int j = 0; j < b.length; j += 2) {
+            while (i < a.length && a[i + 1] < b[j + 1]) i += 2;
+            if (i == a.length || a[i] > b[j]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Union of two sorted, coalesced interval lists.
+     */
+    static int[] merge(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int n = 0, i = 0, j = 0;
+        while (i < a.length || j < b.length) {
+            int lo, hi;
+            if (j == b.length || (i < a.length && a[i] <= b[j])) {
+                lo = a[i]; hi = a[i + 1]; i += 2;
+            } else {
+                lo = b[j]; hi = b[j + 1]; j += 2;
+            }
+            if (n > 0 && lo <= result[n - 1] + 1) {
+                if (hi > result[n - 1]) result[n - 1] = hi;
+            } else {
+                result[n++] = lo;
+                result[n++] = hi;
+            }
+        }
+        if (n == result.length) return result;
+        int[] trimmed = new int[n];
+        System.arraycopy(result, 0, trimmed, 0, n);
+        return trimmed;
+    }
+
+    /**
+     * Iterator which scans the label ranges of a node's intervals, returning
+     * a triple for each predecessor and each alias of a predecessor.
+     */
+    static class IntervalWalker extends NiceIterator<Triple> implements ExtendedIterator<Triple> {
+
+        /** The label order being scanned */
+        ArrayList<GraphNode> order;
+
+        /** The intervals to scan */
+        int[] intervals;
+
+        /** Index of the interval being scanned */
+        int interval = 0;
+
+        /** Next label to scan */
+        int position;
+
+        /** The root node for reconstructing triples */
+        Node root;
+
+        /** The predicate for reconstructing triples */
+        Node predicate;
+
+        /** Iterator over the aliases of the current predecessor being output */
+        Iterator<GraphNode> aliasIterator = null;
+
+        /** The next value to be returned */
+        Triple next;
+
+        IntervalWalker(ArrayList<GraphNode> order, int[] intervals, Node root, Node predicate) {
+            this.order = order;
+            this.intervals = intervals;
+            this.root = root;
+            this.predicate = predicate;
+            position = intervals.length == 0 ? 0 : intervals[0];
+            next = new Triple(root, predicate, root);   // implicit reflexive case
+        }
+
+        /** Iterator interface - test if more values available */
+        @Override public boolean hasNext() {
+            return next != null;
+        }
+
+        /** Iterator interface - get next value */
+        @Override public Triple next() {
+            if (next == null) throw new NoSuchElementException();
+            Triple toReturn = next;
+            walkOne();
+            return toReturn;
+        }
+
+        /**
+         * Walk one step
+         */
+        protected void walkOne() {
+            while (true) {
+                if (aliasIterator != null) {
+                    while (aliasIterator.hasNext()) {
+                        Node n = aliasIterator.next().rdfNode;
+                        if (!n.equals(root)) {
+                            next = new Triple(n, predicate, root);
+                            return;
+                        }
+                    }
+                    aliasIterator = null;
+                }
+                if (interval >= intervals.length) {
+                    next = null;
+                    return;
+                }
+                if (position > intervals[interval + 1]) {
+                    interval += 2;
+                    if (interval < intervals.length) position = intervals[interval];
+                    continue;
+                }
+                GraphNode node = order.get(position++);
+                if (node.leadNode() != node) continue;     // absorbed into an SCC since labelling
+                Iterator<GraphNode> aliases = node.siblingIterator();
+                if (aliases.hasNext()) {
+                    aliasIterator = aliases;
+                } else if (!node.rdfNode.equals(root)) {
+                    next = new Triple(node.rdfNode, predicate, root);
+                    return;
+                }
+            }
+        }
+
+    } // End of IntervalWalker inner class
+
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
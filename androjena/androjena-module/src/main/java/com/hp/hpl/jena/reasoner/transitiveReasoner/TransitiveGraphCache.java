@@ -35,11 +35,14 @@ import java.util.*;
  * incrementally but some deletes (those that break strongly connected components)
  * will trigger a fresh rebuild.
  * </p><p>
- * TODO Combine this with interval indexes (Agrawal, Borigda and Jagadish 1989) 
- * for storing the closure of the predecessor relationship. Typical graphs
- * will be nearly tree shaped so the successor closure is modest (L^2 where
+ * The closure of the predecessor relationship is handled by an interval
+ * index (Agrawal, Borgida and Jagadish 1989), see {@link IntervalIndex}. Typical
+ * graphs will be nearly tree shaped so the successor closure is modest (L^2 where
  * L is the depth of the tree branch) but the predecessor closure would be 
- * expensive. The interval index would handle predecessor closure nicely.
+ * expensive to store. The interval labels make closed membership tests a
+ * constant time check and predecessor listing a scan over a range of
+ * labels. The index is built on the first query which needs it and is then
+ * maintained incrementally as relations are added and removed.
  * </p>
  * @author <a href="mailto:der@hplb.hpl.hp.com">Dave Reynolds</a>
  * @version $Revision: 1.1 $
@@ -72,6 +75,9 @@ public class TransitiveGraphCache implements Finder {
 	 * because some information is lost in the SCC process */ 
 	protected Set<Triple> originalTriples = new HashSet<Triple>();
 	
+	/** Interval labelling of the closed predecessor relation, null until first needed */
+	protected IntervalIndex intervalIndex;
+	
     /**
      * Inner class used to represent vistors than can be applied to each
      * node in a graph walk. 
@@ -363,10 +369,25 @@ public class TransitiveGraphCache implements Finder {
             startN.makeLeadNodeFor(members);
             // Now propagate the closure in the normalized graph
             startN.propagateSCC();
+            if (intervalIndex != null) {
+                // The new component and everything above it can be reached from more places,
+                // what reaches the ancestors of the component is unchanged. The ancestors'
+                // closed successors, from which the labels are computed, were brought up
+                // to date by propagateSCC
+                Set<GraphNode> dirty = new HashSet<GraphNode>(startN.succClosed);
+                dirty.add(startN);
+                intervalIndex.relabel(dirty);
+            }
         } else {
 	    	// Walk all predecessors of start retracting redundant direct links
 	    	// and adding missing closed links
-	        startN.propagateAdd(endN);
+	        if (intervalIndex == null) {
+	            startN.propagateAdd(endN);
+	        } else {
+	            List<GraphNode> updated = new ArrayList<GraphNode>();
+	            startN.propagateAdd(endN, updated);
+	            intervalIndex.addLink(updated, endN);
+	        }
 	        startN.assertLinkTo(endN);
         }
         
@@ -423,6 +444,20 @@ public class TransitiveGraphCache implements Finder {
     		}
     	}
     	
+    	// Note the nodes whose labels the delete can change and hold off
+    	// incremental label maintenance until the links are reinserted
+    	IntervalIndex saved = intervalIndex;
+    	Set<GraphNode> affected = null;
+    	if (saved != null) {
+    		intervalIndex = null;
+    		affected = new HashSet<GraphNode>();
+    		for (Iterator<GraphNode> i = pKernel.iterator(); i.hasNext(); ) {
+    			GraphNode n = i.next();
+    			affected.add(n);
+    			affected.addAll(n.succClosed);
+    		}
+    	}
+    	
     	// Cut the pKernel away from the finge of nodes that it connects to
     	for (Iterator<GraphNode> i = pKernel.iterator(); i.hasNext(); ) {
     		GraphNode n = i.next();
@@ -449,6 +484,17 @@ public class TransitiveGraphCache implements Finder {
     			addRelation(t);
     		}
     	}
+    	
+    	// Relabel the kernel and everything it reaches before or after the delete
+    	if (saved != null) {
+    		for (Iterator<GraphNode> i = pKernel.iterator(); i.hasNext(); ) {
+    			GraphNode n = i.next();
+    			affected.add(n.leadNode());
+    			affected.addAll(n.leadNode().succClosed);
+    		}
+    		saved.relabel(affected);
+    		intervalIndex = saved;
+    	}
     }
     
     /**
@@ -557,6 +603,9 @@ public class TransitiveGraphCache implements Finder {
                     // list all backwards from o
                     GraphNode gn_o = nodeMap.get(o);
                     if (gn_o == null) return NullIterator.instance();
+                    if (closed) {
+                        return intervalIndex().listPredecessorTriples(gn_o.leadNode(), o, closedPredicate);
+                    }
                     return gn_o.listPredecessorTriples(closed, this);
                 }
             } else {
@@ -571,7 +620,7 @@ public class TransitiveGraphCache implements Finder {
                     gn_s = gn_s.leadNode();
                     if (gn_o == null) return NullIterator.instance();
                     gn_o = gn_o.leadNode();
-                    if ( closed ? gn_s.pathTo(gn_o) : gn_s.directPathTo(gn_o) ) {
+                    if ( closed ? intervalIndex().reaches(gn_s, gn_o) : gn_s.directPathTo(gn_o) ) {
                         return new SingletonIterator<Triple>(new Triple(s, pred, o));
                     } else {
                         return NullIterator.instance();
@@ -604,6 +653,7 @@ public class TransitiveGraphCache implements Finder {
      */
     public void clear() {
         nodeMap.clear();
+        intervalIndex = null;
     }
 	
     /**
@@ -647,12 +697,24 @@ public class TransitiveGraphCache implements Finder {
         if (gn == null) {
             gn = new GraphNode(n);
             nodeMap.put(n, gn);
+            if (intervalIndex != null) intervalIndex.label(gn);
             return gn;
         } else {
             return gn.leadNode();
         }
     }
     
+    /**
+     * Return the interval index over the current graph, (re)building it
+     * if it has not been built yet or has become too fragmented.
+     */
+    private synchronized IntervalIndex intervalIndex() {
+        if (intervalIndex == null || !intervalIndex.isUsable()) {
+            intervalIndex = new IntervalIndex(nodeMap.values());
+        }
+        return intervalIndex;
+    }
+    
 }
 
 
@@ -0,0 +1,203 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.shared;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock implementation for read-mostly use: many threads reading one model,
+ * with occasional writers.  It has the same policy as {@link LockMRSW}
+ * (multiple readers, single writer; nested critical sections; lock promotion
+ * is detected as an error) but no shared bookkeeping on the read path.
+ * <ul>
+ *   <li>Each thread's nesting counts are kept in a {@link ThreadLocal},
+ *   not in a map shared by all threads.</li>
+ *   <li>Readers announce themselves by incrementing one of a number of
+ *   striped counters (chosen per thread), so readers on different
+ *   processors do not write to the same cache line.</li>
+ *   <li>A writer takes the writer mutex, raises the writing flag and then
+ *   waits for all the reader counters to drain.  A reader that sees the
+ *   flag backs out and waits on the writer mutex, so writers are not
+ *   starved by a steady stream of readers.</li>
+ * </ul>
+ * The cost is paid by writers, which must look at every stripe, and in
+ * memory (a few KB per lock), so use this for shared, heavily read models.
+ * Select it per model with <code>ModelCom.setLock</code>.
+ */
+
+public class LockReadMostly implements Lock
+{
+    // Ints per stripe: keeps each counter on its own 64 byte cache line.
+    private static final int PAD = 16 ;
+    // Spins by a waiting writer before it starts parking.
+    private static final int SPINS = 100 ;
+    private static final long PARK_NANOS = 50*1000 ;
+
+    private final int stripes ;
+    private final AtomicIntegerArray readers ;
+    private final ReentrantLock writerMutex = new ReentrantLock() ;
+    private volatile boolean writing = false ;
+
+    private final ThreadLocal<LockState> threadState = new ThreadLocal<LockState>() {
+        @Override protected LockState initialValue() { return new LockState(stripe(Thread.currentThread())) ; }
+    } ;
+
+    public LockReadMostly()
+    {
+        int n = 1 ;
+        while ( n < 2*Runtime.getRuntime().availableProcessors() && n < 64 )
+            n = n*2 ;
+        stripes = n ;
+        readers = new AtomicIntegerArray(stripes*PAD) ;
+    }
+
+    /** Application controlled locking - enter a critical section.
+     *  Locking is reentrant so an application can have nested critical sections.
+     *  @see LockMRSW#enterCriticalSection
+     */
+    public void enterCriticalSection(boolean readLockRequested)
+    {
+        LockState state = threadState.get() ;
+
+        // Read lock held, no write lock: an attempted lock promotion.
+        if ( state.readLocks > 0 && state.writeLocks == 0 && !readLockRequested )
+        {
+            // Count it so that a later leaveCriticalSection keeps the counters aligned.
+            state.readLocks++ ;
+            throw new JenaException("enterCriticalSection: Write lock request while holding read lock - potential deadlock"+report(state));
+        }
+
+        // Trying to get a read lock after a write lock - get a write lock instead.
+        if ( state.writeLocks > 0 && readLockRequested )
+            readLockRequested = false ;
+
+        if ( readLockRequested )
+        {
+            if ( state.readLocks == 0 )
+                readLock(state.slot) ;
+            state.readLocks++ ;
+        }
+        else
+        {
+            if ( state.writeLocks == 0 )
+                writeLock() ;
+            state.writeLocks++ ;
+        }
+    }
+
+    /** Application controlled locking - leave a critical section.
+     *  @see #enterCriticalSection
+     */
+    public void leaveCriticalSection()
+    {
+        LockState state = threadState.get() ;
+
+        if ( state.readLocks > 0 )
+        {
+            state.readLocks-- ;
+            if ( state.readLocks == 0 )
+                readers.decrementAndGet(state.slot) ;
+            return ;
+        }
+
+        if ( state.writeLocks > 0 )
+        {
+            state.writeLocks-- ;
+            if ( state.writeLocks == 0 )
+            {
+                writing = false ;
+                writerMutex.unlock() ;
+            }
+            return ;
+        }
+
+        throw new JenaException("leaveCriticalSection: No lock held ("+Thread.currentThread().getName()+") "+report(state)) ;
+    }
+
+    private void readLock(int slot)
+    {
+        for ( ;; )
+        {
+            // Announce, then check for a writer: the writer raises the flag,
+            // then checks for readers, so one or the other sees the conflict.
+            readers.incrementAndGet(slot) ;
+            if ( ! writing )
+                return ;
+            readers.decrementAndGet(slot) ;
+            // Wait for the writer to finish.
+            writerMutex.lock() ;
+            writerMutex.unlock() ;
+        }
+    }
+
+    private void writeLock()
+    {
+        writerMutex.lock() ;
+        writing = true ;
+        for ( int i = 0 ; i < stripes ; i++ )
+        {
+            int slot = i*PAD ;
+            for ( int spins = 0 ; readers.get(slot) != 0 ; spins++ )
+            {
+                if ( spins < SPINS )
+                    Thread.yield() ;
+                else
+                    LockSupport.parkNanos(PARK_NANOS) ;
+            }
+        }
+    }
+
+    private int stripe(Thread thread)
+    {
+        long h = thread.getId() * 0x9E3779B97F4A7C15L ;
+        return (int)(h >>> 40) % stripes * PAD ;
+    }
+
+    private static String report(LockState state)
+    {
+        return "Thread R/W: "+state.readLocks+"/"+state.writeLocks+" (thread: "+Thread.currentThread().getName()+")" ;
+    }
+
+    // Per thread (and per lock) nesting counts. Only the owning thread touches these.
+    private static class LockState
+    {
+        int readLocks = 0 ;
+        int writeLocks = 0 ;
+        final int slot ;
+
+        LockState(int slot) { this.slot = slot ; }
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
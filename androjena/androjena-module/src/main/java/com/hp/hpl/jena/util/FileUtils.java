@@ -22,6 +22,7 @@ public class FileUtils
     public static final String langNTriple      = "N-TRIPLE" ;
     public static final String langN3           = "N3" ;
     public static final String langTurtle       = "TURTLE" ;
+    public static final String langBinary       = "RDF/BINARY" ;
     // Non-standard
     public static final String langBDB          = "RDF/BDB" ;
     public static final String langSQL          = "RDF/SQL" ;
@@ -78,6 +79,7 @@ public class FileUtils
      * <li> If the URI of the model starts jdbc: it is assumed to be an RDB model</li>
      * <li> If the URI ends ".rdf", it is assumed to be RDF/XML</li>
      * <li> If the URI end .nt, it is assumed to be N-Triples</li>
+     * <li> If the URI end .rdfb, it is assumed to be a binary RDF snapshot</li>
      * <li> If the URI end .bdb, it is assumed to be BerkeleyDB model [suppressed at present]</li>
      * </ul>
      * @param name    URL to base the guess on
@@ -96,6 +98,7 @@ public class FileUtils
         if (suffix.equals( "ttl" ))  return langTurtle ;
         if (suffix.equals( "rdf" ))  return langXML;
         if (suffix.equals( "owl" ))  return langXML;
+        if (suffix.equals( "rdfb" )) return langBinary;
         return otherwise; 
     }    
    
@@ -94,6 +94,42 @@ public class ReasonerVocabulary {
      *  in the generic rule engine. Default is filtering on. */
     public static final Property PROPenableFunctorFiltering = ruleReasonerProperty( "enableFunctorFiltering" );
     
+    /** Property used to set the number of worker partitions used by the forward RETE
+     *  engine to match pending triples in parallel. Default is 1, i.e. sequential matching. */
+    public static final Property PROPruleParallelism = ruleReasonerProperty( "ruleParallelism" );
+    
+    /** Property used to switch the forward RETE engine to building its network from
+     *  compiled, pre-linked nodes rather than interpreted ones. Default is false. */
+    public static final Property PROPcompiledMatching = ruleReasonerProperty( "compiledMatching" );
+    
+    /** Property used to switch the basic (non-RETE) forward engine to set-at-a-time,
+     *  semi-naive evaluation of additions. Default is false. */
+    public static final Property PROPsemiNaive = ruleReasonerProperty( "semiNaive" );
+    
+    /** Property used to hold forward deductions in a dictionary-encoded graph, which
+     *  uses less memory than the default GraphMem. Default is false. */
+    public static final Property PROPencodedDeductions = ruleReasonerProperty( "encodedDeductions" );
+    
+    /** Property used to switch on/off collection of rule, join and builtin
+     *  statistics (see RuleProfiler) in the forward and backward rule engines. */
+    public static final Property PROPprofiling = ruleReasonerProperty( "profiling" );
+    
+    /** Property used to switch on/off concurrent tabling in the backward rule engine, 
+     *  which lets backward queries from different threads run in parallel. */
+    public static final Property PROPenableConcurrentTabling = ruleReasonerProperty( "enableConcurrentTabling" );
+    
+    /** Property used to bound the approximate memory, in bytes, used by completed tabled goals 
+     *  in the backward rule engine. Zero or less means no bound. */
+    public static final Property PROPtableMemoryBudget = ruleReasonerProperty( "tableMemoryBudget" );
+    
+    /** Property used to choose how completed tabled goals are evicted once the table memory 
+     *  budget is reached, either "lru" or "lfu". */
+    public static final Property PROPtableEvictionPolicy = ruleReasonerProperty( "tableEvictionPolicy" );
+    
+    /** Property used to switch on/off incremental (delete and rederive) processing of 
+     *  deletes in the forward rule engines, instead of recomputing the closure. */
+    public static final Property PROPenableIncrementalDeletes = ruleReasonerProperty( "enableIncrementalDeletes" );
+    
     /** Constant for PROPsetRDFSLevel - default behaviour */
     public static final String RDFS_DEFAULT = RDFSRuleReasoner.DEFAULT_RULES;
     
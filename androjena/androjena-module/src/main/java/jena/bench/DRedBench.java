@@ -0,0 +1,152 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.InfModel;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.reasoner.rulesys.BasicForwardRuleInfGraph;
+import com.hp.hpl.jena.reasoner.rulesys.GenericRuleReasoner;
+import com.hp.hpl.jena.reasoner.rulesys.Rule;
+import com.hp.hpl.jena.reasoner.rulesys.impl.DRedMaintainer;
+import com.hp.hpl.jena.util.FileManager;
+
+/**
+ * Benchmark for incremental deletes in the forward rule engines. Computes the
+ * closure of a rule set (normally the OWL2 RL rules in owl2rl.jena) over an
+ * ontology plus instance data, deletes a random sample of the data triples
+ * with incremental deletes enabled and compares the cost with rebuilding the
+ * closure from scratch over the reduced data. Reports the number of overdeleted
+ * and rederived triples and checks that both routes give the same closure.
+ *
+ * <pre>java jena.bench.DRedBench rules data [lang [extraData [percent [mode]]]]</pre>
+ * 
+ * where mode is one of forward, forwardRETE (the default) or hybrid.
+ */
+public class DRedBench
+{
+    public static void main(String[] args)
+    {
+        if ( args.length < 2 )
+        {
+            System.err.println("Usage: DRedBench rules data [lang [extraData [percent [mode]]]]") ;
+            System.exit(1) ;
+        }
+        String rulesFile = args[0] ;
+        String dataFile = args[1] ;
+        String lang = args.length > 2 ? args[2] : "N3" ;
+        String extraFile = args.length > 3 && ! args[3].equals("-") ? args[3] : null ;
+        double percent = args.length > 4 ? Double.parseDouble(args[4]) : 1.0 ;
+        GenericRuleReasoner.RuleMode mode = GenericRuleReasoner.FORWARD_RETE ;
+        if ( args.length > 5 )
+        {
+            if ( args[5].equals("forward") ) mode = GenericRuleReasoner.FORWARD ;
+            else if ( args[5].equals("hybrid") ) mode = GenericRuleReasoner.HYBRID ;
+        }
+
+        List<Rule> rules = Rule.rulesFromURL(rulesFile) ;
+        Model data = ModelFactory.createDefaultModel() ;
+        if ( extraFile != null )
+            FileManager.get().readModel(data, extraFile) ;
+        FileManager.get().readModel(data, dataFile, lang) ;
+
+        // Choose the triples to delete
+        List<Triple> all = new ArrayList<Triple>() ;
+        for ( Iterator<Triple> i = data.getGraph().find(null, null, null) ; i.hasNext() ; )
+            all.add(i.next()) ;
+        Random random = new Random(42) ;
+        int n = Math.max(1, (int)(all.size() * percent / 100)) ;
+        List<Triple> deletes = new ArrayList<Triple>(n) ;
+        for ( int i = 0 ; i < n ; i++ )
+            deletes.add(all.remove(random.nextInt(all.size()))) ;
+
+        // Incremental route
+        GenericRuleReasoner reasoner = new GenericRuleReasoner(rules) ;
+        reasoner.setMode(mode) ;
+        reasoner.setIncrementalDeletes(true) ;
+        Model working = ModelFactory.createDefaultModel() ;
+        working.add(data) ;
+        InfModel inf = ModelFactory.createInfModel(reasoner, working) ;
+        long start = System.nanoTime() ;
+        inf.prepare() ;
+        double prepareSecs = (System.nanoTime() - start) / 1e9 ;
+        System.out.printf("closure: %d triples in %.3fs%n", inf.size(), prepareSecs) ;
+        
+        Graph graph = inf.getGraph() ;
+        start = System.nanoTime() ;
+        for ( Iterator<Triple> i = deletes.iterator() ; i.hasNext() ; )
+            graph.delete(i.next()) ;
+        long incrementalSize = inf.size() ;
+        double incrementalSecs = (System.nanoTime() - start) / 1e9 ;
+        DRedMaintainer dred = ((BasicForwardRuleInfGraph)graph).getDeletionMaintainer() ;
+        if ( dred == null )
+            System.out.println("rule set can't be maintained incrementally, deletes recomputed the closure") ;
+        else
+            System.out.printf("incremental: %d deletes, %d overdeleted, %d rederived%n",
+                              dred.getDeleteCount(), dred.getOverdeletedCount(), dred.getRederivedCount()) ;
+        System.out.printf("incremental: %d triples in %.3fs%n", incrementalSize, incrementalSecs) ;
+
+        // Rebuild route
+        GenericRuleReasoner rebuildReasoner = new GenericRuleReasoner(rules) ;
+        rebuildReasoner.setMode(mode) ;
+        Model reduced = ModelFactory.createDefaultModel() ;
+        reduced.add(data) ;
+        for ( Iterator<Triple> i = deletes.iterator() ; i.hasNext() ; )
+            reduced.getGraph().delete(i.next()) ;
+        InfModel rebuilt = ModelFactory.createInfModel(rebuildReasoner, reduced) ;
+        start = System.nanoTime() ;
+        rebuilt.prepare() ;
+        long rebuiltSize = rebuilt.size() ;
+        double rebuildSecs = (System.nanoTime() - start) / 1e9 ;
+        System.out.printf("rebuild:     %d triples in %.3fs%n", rebuiltSize, rebuildSecs) ;
+        
+        boolean same = incrementalSize == rebuiltSize ;
+        for ( Iterator<Triple> i = rebuilt.getGraph().find(null, null, null) ; same && i.hasNext() ; )
+        {
+            Triple t = i.next() ;
+            if ( t.getSubject().isBlank() || t.getObject().isBlank() )
+                continue ;
+            same = graph.contains(t) ;
+        }
+        System.out.printf("closures match: %s, speedup %.1fx%n", same, rebuildSecs / incrementalSecs) ;
+    }
+}
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
@@ -0,0 +1,152 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.mem.GraphMem;
+import com.hp.hpl.jena.mem.encoded.GraphMemCompact;
+import com.hp.hpl.jena.mem.faster.GraphMemFaster;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.FileManager;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Benchmark comparing the memory use and throughput of GraphMem, GraphMemFaster
+ * and GraphMemCompact. Loads a data file into each graph in turn and reports the
+ * heap retained per triple, the load rate, and the rate of finds by subject,
+ * by predicate and object, and of contains tests, for a random sample of the
+ * data's triples. The triples are read once beforehand so that the node objects 
+ * themselves are not counted against any of the graphs.
+ *
+ * <pre>java jena.bench.GraphMemBench data [lang [iterations]]</pre>
+ */
+public class GraphMemBench
+{
+    private static final int SAMPLE = 100000 ;
+
+    public static void main(String[] args)
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println("Usage: GraphMemBench data [lang [iterations]]") ;
+            System.exit(1) ;
+        }
+        String lang = args.length > 1 ? args[1] : "N-TRIPLE" ;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3 ;
+        Model data = ModelFactory.createDefaultModel() ;
+        FileManager.get().readModel(data, args[0], lang) ;
+        List<Triple> triples = new ArrayList<Triple>(data.getGraph().find(Node.ANY, Node.ANY, Node.ANY).toList()) ;
+        data.close() ;
+        data = null ;
+        Random random = new Random(1) ;
+        Triple[] sample = new Triple[Math.min(SAMPLE, triples.size())] ;
+        for ( int i = 0 ; i < sample.length ; i++ )
+            sample[i] = triples.get(random.nextInt(triples.size())) ;
+        System.out.println("triples: " + triples.size()) ;
+
+        for ( int i = 0 ; i < iterations ; i++ )
+        {
+            run("GraphMem", new GraphMem(), triples, sample) ;
+            run("GraphMemFaster", new GraphMemFaster(), triples, sample) ;
+            run("GraphMemCompact", new GraphMemCompact(), triples, sample) ;
+        }
+    }
+
+    private static void run(String name, Graph graph, List<Triple> triples, Triple[] sample)
+    {
+        long before = usedMemory() ;
+        long start = System.nanoTime() ;
+        for ( Triple t : triples )
+            graph.add(t) ;
+        if ( graph instanceof GraphMemCompact )
+            ((GraphMemCompact)graph).compact() ;
+        long loadTime = System.nanoTime() - start ;
+        long memory = usedMemory() - before ;
+
+        start = System.nanoTime() ;
+        long found = 0 ;
+        for ( Triple t : sample )
+            found += count(graph.find(t.getSubject(), Node.ANY, Node.ANY)) ;
+        long bySubject = System.nanoTime() - start ;
+
+        start = System.nanoTime() ;
+        for ( Triple t : sample )
+            found += count(graph.find(Node.ANY, t.getPredicate(), t.getObject())) ;
+        long byPredicateObject = System.nanoTime() - start ;
+
+        start = System.nanoTime() ;
+        for ( Triple t : sample )
+            if ( graph.contains(t) )
+                found++ ;
+        long contains = System.nanoTime() - start ;
+
+        System.out.printf("%-16s %6.1f bytes/triple, load %9.0f triples/s, find S?? %8.0f/s, find ?PO %8.0f/s, contains %8.0f/s (%d)%n",
+                          name, (double)memory / triples.size(), rate(triples.size(), loadTime),
+                          rate(sample.length, bySubject), rate(sample.length, byPredicateObject), 
+                          rate(sample.length, contains), found) ;
+        graph.close() ;
+    }
+
+    private static long count(ExtendedIterator<Triple> it)
+    {
+        long n = 0 ;
+        while ( it.hasNext() )
+        {
+            it.next() ;
+            n++ ;
+        }
+        return n ;
+    }
+
+    private static double rate(long n, long nanos)
+    {
+        return n / (nanos / 1e9) ;
+    }
+
+    private static long usedMemory()
+    {
+        Runtime rt = Runtime.getRuntime() ;
+        for ( int i = 0 ; i < 3 ; i++ )
+            System.gc() ;
+        return rt.totalMemory() - rt.freeMemory() ;
+    }
+}
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
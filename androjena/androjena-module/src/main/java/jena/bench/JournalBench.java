@@ -0,0 +1,134 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.TransactionHandler;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.impl.FileGraph;
+import com.hp.hpl.jena.graph.impl.JournaledFileGraph;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.FileUtils;
+
+/**
+ * Commit cost of FileGraph, which rewrites its file on every commit, against
+ * JournaledFileGraph, which appends the changes to its journal. Each graph 
+ * is loaded with the data and then runs small transactions (adding and
+ * deleting a few triples); reports the mean time of a commit and, for the
+ * journal, of reopening the graph (reading the snapshot and replaying).
+ *
+ * <pre>java jena.bench.JournalBench data [lang [transactions [changes]]]</pre>
+ */
+public class JournalBench
+{
+    public static void main(String[] args) throws IOException
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println("Usage: JournalBench data [lang [transactions [changes]]]") ;
+            System.exit(1) ;
+        }
+        String lang = args.length > 1 ? args[1] : FileUtils.guessLang(args[0]) ;
+        int transactions = args.length > 2 ? Integer.parseInt(args[2]) : 20 ;
+        int changes = args.length > 3 ? Integer.parseInt(args[3]) : 10 ;
+
+        File file = File.createTempFile("journalbench", ".rdfb") ;
+        try {
+            FileGraph plain = new FileGraph(file, true, false) ;
+            load(plain, args[0], lang) ;
+            System.out.printf("%d triples, %d transactions of %d changes%n", plain.size(), transactions, changes) ;
+            report("FileGraph", run(plain, transactions, changes), transactions) ;
+            plain.close() ;
+
+            JournaledFileGraph journaled = new JournaledFileGraph(file, true, false) ;
+            load(journaled, args[0], lang) ;
+            journaled.compact() ;
+            report("Journaled", run(journaled, transactions, changes), transactions) ;
+            journaled.getJournal().sync() ;
+            long start = System.nanoTime() ;
+            JournaledFileGraph reopened = new JournaledFileGraph(file, false, true) ;
+            System.out.printf("%-10s reopen %8.2f ms, %d triples, journal %d bytes%n", "Journaled",
+                              (System.nanoTime() - start) / 1e6, reopened.size(), reopened.getJournal().length()) ;
+            reopened.close() ;
+            reopened.delete() ;
+        } finally {
+            file.delete() ;
+        }
+    }
+
+    private static long run(Graph graph, int transactions, int changes)
+    {
+        TransactionHandler th = graph.getTransactionHandler() ;
+        long total = 0 ;
+        for ( int i = 0 ; i < transactions ; i++ )
+        {
+            th.begin() ;
+            for ( int j = 0 ; j < changes ; j++ )
+                graph.add(triple(i, j)) ;
+            if ( i > 0 )
+                graph.delete(triple(i - 1, 0)) ;
+            long start = System.nanoTime() ;
+            th.commit() ;
+            total += System.nanoTime() - start ;
+        }
+        return total ;
+    }
+
+    private static Triple triple(int i, int j)
+    {
+        return Triple.create(Node.createURI("http://example.org/bench/s" + i),
+                             Node.createURI("http://example.org/bench/p"),
+                             Node.createLiteral("change " + j)) ;
+    }
+
+    private static void report(String name, long nanos, int transactions)
+    {
+        System.out.printf("%-10s commit %8.2f ms%n", name, nanos / 1e6 / transactions) ;
+    }
+
+    private static void load(Graph graph, String filename, String lang) throws IOException
+    {
+        InputStream in = new FileInputStream(filename) ;
+        try { ModelFactory.createModelForGraph(graph).read(in, "", lang) ; }
+        finally { in.close() ; }
+    }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
@@ -0,0 +1,138 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.impl.ModelCom;
+import com.hp.hpl.jena.shared.Lock;
+import com.hp.hpl.jena.shared.LockMRSW;
+import com.hp.hpl.jena.shared.LockReadMostly;
+
+/**
+ * Lock contention benchmark: 1 to 64 reader threads run short read critical
+ * sections (a <code>contains</code> test) on one shared model, while a writer
+ * adds and removes a statement every few milliseconds.  Reports reads per
+ * second for LockMRSW and LockReadMostly.
+ *
+ * <pre>java jena.bench.LockBench [seconds [writeIntervalMillis [maxReaders]]]</pre>
+ */
+public class LockBench
+{
+    private static final String NS = "http://example.org/bench/" ;
+
+    public static void main(String[] args) throws InterruptedException
+    {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1 ;
+        int writeInterval = args.length > 1 ? Integer.parseInt(args[1]) : 5 ;
+        int maxReaders = args.length > 2 ? Integer.parseInt(args[2]) : 64 ;
+
+        System.out.printf("%-8s %14s %14s%n", "readers", "LockMRSW", "LockReadMostly") ;
+        for ( int readers = 1 ; readers <= maxReaders ; readers *= 2 )
+        {
+            double mrsw = run(new LockMRSW(), readers, seconds, writeInterval) ;
+            double mostly = run(new LockReadMostly(), readers, seconds, writeInterval) ;
+            System.out.printf("%-8d %12.0f/s %12.0f/s%n", readers, mrsw, mostly) ;
+        }
+    }
+
+    private static double run(Lock lock, int readers, double seconds, final int writeInterval)
+        throws InterruptedException
+    {
+        final Model model = ModelFactory.createDefaultModel() ;
+        ((ModelCom)model).setLock(lock) ;
+        final Property p = model.createProperty(NS, "p") ;
+        for ( int i = 0 ; i < 1000 ; i++ )
+            model.add(model.createResource(NS+"s"+i), p, "value "+i) ;
+        final Resource s = model.createResource(NS+"s1") ;
+        final Resource w = model.createResource(NS+"written") ;
+
+        final AtomicLong reads = new AtomicLong() ;
+        final CountDownLatch start = new CountDownLatch(1) ;
+        final long[] end = new long[1] ;
+        Thread[] threads = new Thread[readers+1] ;
+        for ( int i = 0 ; i < readers ; i++ )
+        {
+            threads[i] = new Thread() {
+                @Override public void run()
+                {
+                    await(start) ;
+                    long n = 0 ;
+                    while ( System.nanoTime() < end[0] )
+                    {
+                        model.enterCriticalSection(Lock.READ) ;
+                        try { model.contains(s, p) ; }
+                        finally { model.leaveCriticalSection() ; }
+                        n++ ;
+                    }
+                    reads.addAndGet(n) ;
+                }} ;
+        }
+        threads[readers] = new Thread() {
+            @Override public void run()
+            {
+                await(start) ;
+                for ( int i = 0 ; System.nanoTime() < end[0] ; i++ )
+                {
+                    model.enterCriticalSection(Lock.WRITE) ;
+                    try {
+                        if ( i % 2 == 0 ) model.add(w, p, "x") ;
+                        else model.remove(w, p, model.createLiteral("x")) ;
+                    } finally { model.leaveCriticalSection() ; }
+                    try { Thread.sleep(writeInterval) ; } catch (InterruptedException ex) { return ; }
+                }
+            }} ;
+
+        for ( Thread t : threads )
+            t.start() ;
+        long startTime = System.nanoTime() ;
+        end[0] = startTime + (long)(seconds*1e9) ;
+        start.countDown() ;
+        for ( Thread t : threads )
+            t.join() ;
+        return reads.get() / ((System.nanoTime() - startTime) / 1e9) ;
+    }
+
+    private static void await(CountDownLatch latch)
+    {
+        try { latch.await() ; } catch (InterruptedException ex) { Thread.currentThread().interrupt() ; }
+    }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
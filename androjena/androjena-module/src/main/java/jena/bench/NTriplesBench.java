@@ -0,0 +1,156 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.n3.ntriples.ParserNTriples;
+import com.hp.hpl.jena.n3.ntriples.TripleSink;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFReader;
+import com.hp.hpl.jena.rdf.model.impl.RDFReaderFImpl;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NullIterator;
+
+/**
+ * Throughput benchmark for N-Triples parsing. Reads a file into memory and
+ * then parses it repeatedly with the old character at a time NTripleReader,
+ * with the block based NTriplesReader, and with ParserNTriples delivering
+ * straight to a sink. The readers add to a graph which just counts the
+ * triples, so graph indexing is not measured. Reports the best MB/s and
+ * triples/s of each.
+ *
+ * <pre>java jena.bench.NTriplesBench data [iterations]</pre>
+ */
+public class NTriplesBench
+{
+    private static final String OLD_LANG = "N-TRIPLE-OLD" ;
+
+    public static void main(String[] args) throws IOException
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println("Usage: NTriplesBench data [iterations]") ;
+            System.exit(1) ;
+        }
+        byte[] data = readAll(args[0]) ;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5 ;
+        RDFReaderFImpl.setBaseReaderClassName(OLD_LANG, "com.hp.hpl.jena.rdf.model.impl.NTripleReader") ;
+
+        long oldBest = Long.MAX_VALUE, newBest = Long.MAX_VALUE, sinkBest = Long.MAX_VALUE ;
+        long triples = 0 ;
+        for ( int i = 0 ; i < iterations ; i++ )
+        {
+            long start = System.nanoTime() ;
+            long n = readerParse(data, OLD_LANG) ;
+            oldBest = Math.min(oldBest, System.nanoTime() - start) ;
+
+            start = System.nanoTime() ;
+            triples = readerParse(data, "N-TRIPLE") ;
+            newBest = Math.min(newBest, System.nanoTime() - start) ;
+
+            start = System.nanoTime() ;
+            long m = sinkParse(data) ;
+            sinkBest = Math.min(sinkBest, System.nanoTime() - start) ;
+            if ( n != triples || m != triples )
+                System.out.println("triple counts differ: " + n + " " + triples + " " + m) ;
+        }
+        System.out.printf("%d bytes, %d triples%n", data.length, triples) ;
+        report("NTripleReader", data.length, triples, oldBest) ;
+        report("NTriplesReader", data.length, triples, newBest) ;
+        report("ParserNTriples", data.length, triples, sinkBest) ;
+    }
+
+    private static void report(String name, long bytes, long triples, long nanos)
+    {
+        double seconds = nanos / 1e9 ;
+        System.out.printf("%-15s %8.1f MB/s %10.0f triples/s%n", name, bytes / seconds / (1024 * 1024), triples / seconds) ;
+    }
+
+    private static long readerParse(byte[] data, String lang)
+    {
+        CountingGraph graph = new CountingGraph() ;
+        Model m = ModelFactory.createModelForGraph(graph) ;
+        RDFReader reader = m.getReader(lang) ;
+        reader.read(m, new ByteArrayInputStream(data), null) ;
+        return graph.count ;
+    }
+
+    private static long sinkParse(byte[] data)
+    {
+        final long[] count = new long[1] ;
+        TripleSink sink = new TripleSink() {
+            public void triples(Triple[] triples) { count[0] += triples.length ; }
+        } ;
+        new ParserNTriples(sink).parse(new ByteArrayInputStream(data), null) ;
+        return count[0] ;
+    }
+
+    private static byte[] readAll(String filename) throws IOException
+    {
+        InputStream in = new FileInputStream(filename) ;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream() ;
+            byte[] buffer = new byte[65536] ;
+            for ( int n ; (n = in.read(buffer)) > 0 ; )
+                out.write(buffer, 0, n) ;
+            return out.toByteArray() ;
+        } finally {
+            in.close() ;
+        }
+    }
+
+    /** A graph which discards the triples added to it, counting them */
+    private static class CountingGraph extends GraphBase
+    {
+        long count = 0 ;
+
+        @Override
+        public void performAdd(Triple t)
+        { count++ ; }
+
+        @Override
+        protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m)
+        { return NullIterator.instance() ; }
+    }
+}
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
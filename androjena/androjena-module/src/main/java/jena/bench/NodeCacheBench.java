@@ -0,0 +1,168 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeCache;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NullIterator;
+
+/**
+ * Benchmark for node creation under concurrent parsing. Each of 1, 2, 4 ... up to
+ * the given number of threads parses its own copy of an N-Triples file into a
+ * graph which just counts the triples, so the run is dominated by the parser
+ * and Node.create. Reports the aggregate parse rate for each number of threads
+ * along with the node cache hit, miss and eviction counts, which should scale
+ * with the number of cores since node creation takes no lock.
+ *
+ * <pre>java jena.bench.NodeCacheBench data [threads [iterations]]</pre>
+ * 
+ * where threads defaults to the number of available processors. The cache size
+ * can be set with -Djena.nodecache.size.
+ */
+public class NodeCacheBench
+{
+    public static void main(String[] args) throws Exception
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println("Usage: NodeCacheBench data [threads [iterations]]") ;
+            System.exit(1) ;
+        }
+        final byte[] data = readAll(args[0]) ;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() ;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 3 ;
+        NodeCache cache = Node.getCache() ;
+        System.out.println("cache capacity: " + cache.capacity()) ;
+
+        // Warm up the parser on one thread
+        parse(data, 1) ;
+        double base = 0 ;
+        for ( int threads = 1 ; ; threads = Math.min(threads * 2, maxThreads) )
+        {
+            long best = Long.MAX_VALUE ;
+            long triples = 0 ;
+            cache.resetCounts() ;
+            for ( int i = 0 ; i < iterations ; i++ )
+            {
+                long start = System.nanoTime() ;
+                triples = parse(data, threads) ;
+                best = Math.min(best, System.nanoTime() - start) ;
+            }
+            double rate = triples / (best / 1e9) ;
+            if ( threads == 1 )
+                base = rate ;
+            long hits = cache.getHits(), misses = cache.getMisses() ;
+            System.out.printf("threads %d: %.0f triples/s, scaling %.2fx, hit rate %.1f%%, evictions %d%n",
+                              threads, rate, rate / base, 100.0 * hits / Math.max(1, hits + misses), cache.getEvictions()) ;
+            if ( threads == maxThreads )
+                break ;
+        }
+    }
+
+    /** Parse the data once on each of the given number of threads and answer the total number of triples */
+    private static long parse(final byte[] data, int threads) throws InterruptedException
+    {
+        final CountDownLatch start = new CountDownLatch(1) ;
+        final CountDownLatch done = new CountDownLatch(threads) ;
+        final CountingGraph[] graphs = new CountingGraph[threads] ;
+        for ( int t = 0 ; t < threads ; t++ )
+        {
+            final CountingGraph graph = graphs[t] = new CountingGraph() ;
+            Thread thread = new Thread() {
+                @Override
+                public void run()
+                {
+                    try {
+                        start.await() ;
+                        Model m = ModelFactory.createModelForGraph(graph) ;
+                        m.read(new ByteArrayInputStream(data), null, "N-TRIPLE") ;
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt() ;
+                    } finally {
+                        done.countDown() ;
+                    }
+                }
+            } ;
+            thread.start() ;
+        }
+        start.countDown() ;
+        done.await() ;
+        long total = 0 ;
+        for ( CountingGraph g : graphs )
+            total += g.count ;
+        return total ;
+    }
+
+    private static byte[] readAll(String filename) throws IOException
+    {
+        InputStream in = new FileInputStream(filename) ;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream() ;
+            byte[] buffer = new byte[65536] ;
+            for ( int n ; (n = in.read(buffer)) > 0 ; )
+                out.write(buffer, 0, n) ;
+            return out.toByteArray() ;
+        } finally {
+            in.close() ;
+        }
+    }
+
+    /** A graph which discards the triples added to it, counting them */
+    private static class CountingGraph extends GraphBase
+    {
+        long count = 0 ;
+
+        @Override
+        public void performAdd(Triple t)
+        { count++ ; }
+
+        @Override
+        protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m)
+        { return NullIterator.instance() ; }
+    }
+}
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
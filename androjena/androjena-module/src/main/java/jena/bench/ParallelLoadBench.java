@@ -0,0 +1,116 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.mem.faster.GraphMemFaster;
+import com.hp.hpl.jena.n3.ntriples.ParallelNTriplesLoader;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+
+/**
+ * Load throughput of ParallelNTriplesLoader against the number of threads.
+ * Loads an N-Triples file into a fresh GraphMemFaster with the ordinary
+ * N-TRIPLE reader, then with the parallel loader using 1, 2, 4 ... up to
+ * the given number of threads, and reports the best triples/s and MB/s of 
+ * each. The file should be big enough to split into several chunks (the
+ * minimum chunk is ParallelNTriplesLoader.MIN_CHUNK_SIZE bytes).
+ *
+ * <pre>java jena.bench.ParallelLoadBench data [maxThreads [iterations]]</pre>
+ */
+public class ParallelLoadBench
+{
+    public static void main(String[] args) throws IOException
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println("Usage: ParallelLoadBench data [maxThreads [iterations]]") ;
+            System.exit(1) ;
+        }
+        File file = new File(args[0]) ;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors() ;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5 ;
+        System.out.printf("%d bytes, %d processors%n", file.length(), Runtime.getRuntime().availableProcessors()) ;
+
+        long best = Long.MAX_VALUE, triples = 0 ;
+        for ( int i = 0 ; i < iterations ; i++ )
+        {
+            Graph graph = new GraphMemFaster() ;
+            long start = System.nanoTime() ;
+            readSerially(graph, file) ;
+            best = Math.min(best, System.nanoTime() - start) ;
+            triples = graph.size() ;
+        }
+        report("reader", file.length(), triples, best) ;
+
+        for ( int threads = 1 ; threads <= maxThreads ; threads *= 2 )
+        {
+            ParallelNTriplesLoader loader = new ParallelNTriplesLoader(threads) ;
+            best = Long.MAX_VALUE ;
+            for ( int i = 0 ; i < iterations ; i++ )
+            {
+                Graph graph = new GraphMemFaster() ;
+                long start = System.nanoTime() ;
+                loader.load(graph, file) ;
+                best = Math.min(best, System.nanoTime() - start) ;
+                if ( graph.size() != triples )
+                    System.out.println("graph sizes differ: " + graph.size() + " " + triples) ;
+            }
+            report(threads + " threads", file.length(), triples, best) ;
+            if ( threads < maxThreads && threads * 2 > maxThreads )
+                threads = maxThreads / 2 ;
+        }
+    }
+
+    private static void readSerially(Graph graph, File file) throws IOException
+    {
+        Model m = ModelFactory.createModelForGraph(graph) ;
+        InputStream in = new FileInputStream(file) ;
+        try { m.read(in, null, "N-TRIPLE") ; }
+        finally { in.close() ; }
+    }
+
+    private static void report(String name, long bytes, long triples, long nanos)
+    {
+        double seconds = nanos / 1e9 ;
+        System.out.printf("%-11s %8.1f MB/s %10.0f triples/s%n", name, bytes / seconds / (1024 * 1024), triples / seconds) ;
+    }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
@@ -0,0 +1,124 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.InfModel;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.reasoner.rulesys.GenericRuleReasoner;
+import com.hp.hpl.jena.reasoner.rulesys.Rule;
+import com.hp.hpl.jena.util.FileManager;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Benchmark comparing the interpreted and compiled RETE networks. Runs the
+ * forward closure of a rule set (normally the OWL2 RL rules in owl2rl.jena) over
+ * an ontology, alternating between the two network forms, then checks that
+ * both computed the same closure.
+ *
+ * <pre>java jena.bench.RETECompileBench rules data [lang [extraData [iterations]]]</pre>
+ */
+public class RETECompileBench
+{
+    public static void main(String[] args)
+    {
+        if ( args.length < 2 )
+        {
+            System.err.println("Usage: RETECompileBench rules data [lang [extraData [iterations]]]") ;
+            System.exit(1) ;
+        }
+        String rulesFile = args[0] ;
+        String dataFile = args[1] ;
+        String lang = args.length > 2 ? args[2] : "N3" ;
+        String extraFile = args.length > 3 ? args[3] : null ;
+        int iterations = args.length > 4 ? Integer.parseInt(args[4]) : 5 ;
+
+        List<Rule> rules = Rule.rulesFromURL(rulesFile) ;
+        Model data = ModelFactory.createDefaultModel() ;
+        if ( extraFile != null )
+            FileManager.get().readModel(data, extraFile) ;
+        FileManager.get().readModel(data, dataFile, lang) ;
+
+        long interpreted = Long.MAX_VALUE ;
+        long compiled = Long.MAX_VALUE ;
+        InfModel lastInterpreted = null ;
+        InfModel lastCompiled = null ;
+        for ( int i = 0 ; i < iterations ; i++ )
+        {
+            lastInterpreted = closure(rules, data, false) ;
+            interpreted = Math.min(interpreted, elapsed) ;
+            lastCompiled = closure(rules, data, true) ;
+            compiled = Math.min(compiled, elapsed) ;
+            System.out.printf("run %d: interpreted %.3fs, compiled %.3fs%n", i, interpreted / 1e9, compiled / 1e9) ;
+        }
+        System.out.printf("best:  interpreted %.3fs, compiled %.3fs, speedup %.2fx%n",
+                          interpreted / 1e9, compiled / 1e9, (double)interpreted / compiled) ;
+        System.out.println("closures match: " + sameTriples(lastInterpreted.getGraph(), lastCompiled.getGraph())) ;
+    }
+
+    /** Time taken by the last call to closure */
+    private static long elapsed ;
+
+    private static InfModel closure(List<Rule> rules, Model data, boolean compiled)
+    {
+        GenericRuleReasoner reasoner = new GenericRuleReasoner(rules) ;
+        reasoner.setMode(GenericRuleReasoner.FORWARD_RETE) ;
+        reasoner.setCompiledMatching(compiled) ;
+        InfModel inf = ModelFactory.createInfModel(reasoner, data) ;
+        long start = System.nanoTime() ;
+        inf.prepare() ;
+        elapsed = System.nanoTime() - start ;
+        return inf ;
+    }
+
+    private static boolean sameTriples(Graph g1, Graph g2)
+    {
+        if ( g1.size() != g2.size() )
+            return false ;
+        for ( ExtendedIterator<Triple> i = g1.find(null, null, null) ; i.hasNext() ; )
+        {
+            if ( ! g2.contains(i.next()) )
+            {
+                i.close() ;
+                return false ;
+            }
+        }
+        return true ;
+    }
+}
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
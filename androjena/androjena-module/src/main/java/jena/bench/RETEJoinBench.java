@@ -0,0 +1,118 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.util.Iterator;
+import java.util.List;
+
+import com.hp.hpl.jena.rdf.model.InfModel;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.reasoner.rulesys.BasicForwardRuleInfGraph;
+import com.hp.hpl.jena.reasoner.rulesys.GenericRuleReasoner;
+import com.hp.hpl.jena.reasoner.rulesys.Rule;
+import com.hp.hpl.jena.reasoner.rulesys.impl.RETEEngine;
+import com.hp.hpl.jena.reasoner.rulesys.impl.RETEQueue;
+import com.hp.hpl.jena.util.FileManager;
+
+/**
+ * Benchmark for the RETE join nodes. Runs the forward closure of a rule set
+ * (normally the OWL2 RL rules in owl2rl.jena) over an ontology (normally pizza.owl)
+ * using the GenericRuleReasoner in forward RETE mode and reports the token
+ * throughput and the number of join probes made by each join node.
+ *
+ * <pre>java jena.bench.RETEJoinBench rules data [lang [extraData [iterations]]]</pre>
+ */
+public class RETEJoinBench
+{
+    public static void main(String[] args)
+    {
+        if ( args.length < 2 )
+        {
+            System.err.println("Usage: RETEJoinBench rules data [lang [extraData [iterations]]]") ;
+            System.exit(1) ;
+        }
+        String rulesFile = args[0] ;
+        String dataFile = args[1] ;
+        String lang = args.length > 2 ? args[2] : "N3" ;
+        String extraFile = args.length > 3 ? args[3] : null ;
+        int iterations = args.length > 4 ? Integer.parseInt(args[4]) : 5 ;
+
+        List<Rule> rules = Rule.rulesFromURL(rulesFile) ;
+        Model data = ModelFactory.createDefaultModel() ;
+        if ( extraFile != null )
+            FileManager.get().readModel(data, extraFile) ;
+        FileManager.get().readModel(data, dataFile, lang) ;
+
+        for ( int i = 0 ; i < iterations ; i++ )
+            runOnce(rules, data, i == iterations-1) ;
+    }
+
+    private static void runOnce(List<Rule> rules, Model data, boolean report)
+    {
+        GenericRuleReasoner reasoner = new GenericRuleReasoner(rules) ;
+        reasoner.setMode(GenericRuleReasoner.FORWARD_RETE) ;
+        InfModel inf = ModelFactory.createInfModel(reasoner, data) ;
+
+        long start = System.nanoTime() ;
+        inf.prepare() ;
+        long elapsed = System.nanoTime() - start ;
+
+        BasicForwardRuleInfGraph graph = (BasicForwardRuleInfGraph)inf.getGraph() ;
+        List<RETEQueue> queues = ((RETEEngine)graph.getEngine()).getJoinQueues() ;
+        long tokens = 0 ;
+        long probes = 0 ;
+        for ( Iterator<RETEQueue> i = queues.iterator() ; i.hasNext() ; )
+        {
+            RETEQueue q = i.next() ;
+            tokens += q.getTokenCount() ;
+            probes += q.getProbeCount() ;
+        }
+        double secs = elapsed / 1e9 ;
+        System.out.printf("closure: %d triples, %d rules fired, %.3fs, %.0f tokens/s, %d probes over %d queues%n",
+                          inf.size(), graph.getNRulesFired(), secs, tokens / secs, probes, queues.size()) ;
+        if ( ! report )
+            return ;
+        int n = 0 ;
+        for ( Iterator<RETEQueue> i = queues.iterator() ; i.hasNext() ; n++ )
+        {
+            RETEQueue q = i.next() ;
+            if ( q.getTokenCount() == 0 )
+                continue ;
+            System.out.printf("  queue %4d: %10d tokens %12d probes %8.2f probes/token%n",
+                              n, q.getTokenCount(), q.getProbeCount(),
+                              (double)q.getProbeCount() / q.getTokenCount()) ;
+        }
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
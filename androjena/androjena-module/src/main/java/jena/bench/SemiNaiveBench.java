@@ -0,0 +1,149 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.InfModel;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.reasoner.rulesys.FBRuleInfGraph;
+import com.hp.hpl.jena.reasoner.rulesys.GenericRuleReasoner;
+import com.hp.hpl.jena.reasoner.rulesys.Rule;
+import com.hp.hpl.jena.util.FileManager;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Benchmark comparing tuple-at-a-time and semi-naive evaluation in the basic
+ * forward engine. Computes the forward closure of a rule set over a data file,
+ * alternating between the two evaluation modes, after a number of warmup runs
+ * which are not measured. Reports the best and mean time of the measured runs
+ * and checks that both modes computed the same set of deductions.
+ * Normally run with the RDFS (etc/rdfs-fb-tgc-noresource.rules) and
+ * OWL mini (etc/owl-fb-mini.rules) rule sets.
+ *
+ * <pre>java jena.bench.SemiNaiveBench rules data [lang [iterations [warmup [mode]]]]</pre>
+ * 
+ * where mode is one of forward or hybrid (the default). Hybrid runs use the
+ * non-RETE forward engine.
+ */
+public class SemiNaiveBench
+{
+    public static void main(String[] args)
+    {
+        if ( args.length < 2 )
+        {
+            System.err.println("Usage: SemiNaiveBench rules data [lang [iterations [warmup [mode]]]]") ;
+            System.exit(1) ;
+        }
+        String rulesFile = args[0] ;
+        String dataFile = args[1] ;
+        String lang = args.length > 2 ? args[2] : "N3" ;
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 5 ;
+        int warmup = args.length > 4 ? Integer.parseInt(args[4]) : 2 ;
+        String mode = args.length > 5 ? args[5] : "hybrid" ;
+        GenericRuleReasoner.RuleMode ruleMode = mode.equals("forward") ? GenericRuleReasoner.FORWARD : GenericRuleReasoner.HYBRID ;
+        FBRuleInfGraph.useRETE = false ;
+
+        List<Rule> rules = Rule.rulesFromURL(rulesFile) ;
+        Model data = ModelFactory.createDefaultModel() ;
+        FileManager.get().readModel(data, dataFile, lang) ;
+
+        for ( int i = 0 ; i < warmup ; i++ )
+        {
+            closure(rules, data, ruleMode, false) ;
+            closure(rules, data, ruleMode, true) ;
+            System.out.printf("warmup %d: tuple %.3fs, semi-naive %.3fs%n", i, tupleTime / 1e9, elapsed / 1e9) ;
+        }
+
+        long tupleBest = Long.MAX_VALUE, tupleTotal = 0 ;
+        long semiBest = Long.MAX_VALUE, semiTotal = 0 ;
+        InfModel lastTuple = null ;
+        InfModel lastSemi = null ;
+        for ( int i = 0 ; i < iterations ; i++ )
+        {
+            lastTuple = closure(rules, data, ruleMode, false) ;
+            tupleBest = Math.min(tupleBest, elapsed) ;
+            tupleTotal += elapsed ;
+            lastSemi = closure(rules, data, ruleMode, true) ;
+            semiBest = Math.min(semiBest, elapsed) ;
+            semiTotal += elapsed ;
+            System.out.printf("run %d: tuple %.3fs, semi-naive %.3fs%n", i, tupleTime / 1e9, elapsed / 1e9) ;
+        }
+        System.out.printf("best:  tuple %.3fs, semi-naive %.3fs, speedup %.2fx%n",
+                          tupleBest / 1e9, semiBest / 1e9, (double)tupleBest / semiBest) ;
+        System.out.printf("mean:  tuple %.3fs, semi-naive %.3fs, speedup %.2fx%n",
+                          tupleTotal / 1e9 / iterations, semiTotal / 1e9 / iterations, (double)tupleTotal / semiTotal) ;
+        System.out.println("deductions: " + lastSemi.getDeductionsModel().size()) ;
+        System.out.println("closures match: " + sameTriples(lastTuple.getDeductionsModel().getGraph(), lastSemi.getDeductionsModel().getGraph())) ;
+    }
+
+    /** Time taken by the last call to closure */
+    private static long elapsed ;
+
+    /** Time taken by the last tuple-at-a-time call to closure */
+    private static long tupleTime ;
+
+    private static InfModel closure(List<Rule> rules, Model data, GenericRuleReasoner.RuleMode mode, boolean semiNaive)
+    {
+        GenericRuleReasoner reasoner = new GenericRuleReasoner(rules) ;
+        reasoner.setMode(mode) ;
+        reasoner.setSemiNaive(semiNaive) ;
+        InfModel inf = ModelFactory.createInfModel(reasoner, data) ;
+        long start = System.nanoTime() ;
+        inf.prepare() ;
+        elapsed = System.nanoTime() - start ;
+        if ( ! semiNaive )
+            tupleTime = elapsed ;
+        return inf ;
+    }
+
+    private static boolean sameTriples(Graph g1, Graph g2)
+    {
+        if ( g1.size() != g2.size() )
+            return false ;
+        for ( ExtendedIterator<Triple> i = g1.find(null, null, null) ; i.hasNext() ; )
+        {
+            if ( ! g2.contains(i.next()) )
+            {
+                i.close() ;
+                return false ;
+            }
+        }
+        return true ;
+    }
+}
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
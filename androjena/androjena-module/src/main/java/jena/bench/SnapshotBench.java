@@ -0,0 +1,109 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.hp.hpl.jena.mem.faster.GraphMemFaster;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.util.FileUtils;
+
+/**
+ * Save and load times of a model as N-Triples, RDF/XML and a binary RDF
+ * snapshot (RDF/BINARY). The data is read once, then for each language it
+ * is written to a temporary file and read back into a fresh GraphMemFaster
+ * model, reporting the file size and the best save and load times.
+ *
+ * <pre>java jena.bench.SnapshotBench data [lang [iterations]]</pre>
+ */
+public class SnapshotBench
+{
+    private static final String[] LANGS = { FileUtils.langNTriple, FileUtils.langXML, FileUtils.langBinary } ;
+
+    public static void main(String[] args) throws IOException
+    {
+        if ( args.length < 1 )
+        {
+            System.err.println("Usage: SnapshotBench data [lang [iterations]]") ;
+            System.exit(1) ;
+        }
+        String lang = args.length > 1 ? args[1] : FileUtils.guessLang(args[0]) ;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 5 ;
+        Model data = ModelFactory.createModelForGraph(new GraphMemFaster()) ;
+        read(data, new File(args[0]), lang) ;
+        System.out.printf("%d triples%n", data.size()) ;
+
+        for ( String l : LANGS )
+        {
+            File file = File.createTempFile("snapshot", ".data") ;
+            try {
+                long save = Long.MAX_VALUE, load = Long.MAX_VALUE ;
+                for ( int i = 0 ; i < iterations ; i++ )
+                {
+                    long start = System.nanoTime() ;
+                    OutputStream out = new FileOutputStream(file) ;
+                    try { data.write(out, l) ; }
+                    finally { out.close() ; }
+                    save = Math.min(save, System.nanoTime() - start) ;
+
+                    Model m = ModelFactory.createModelForGraph(new GraphMemFaster()) ;
+                    start = System.nanoTime() ;
+                    read(m, file, l) ;
+                    load = Math.min(load, System.nanoTime() - start) ;
+                    if ( m.size() != data.size() )
+                        System.out.println("sizes differ: " + m.size() + " " + data.size()) ;
+                }
+                System.out.printf("%-10s %10d bytes  save %8.1f ms  load %8.1f ms  %10.0f triples/s%n",
+                                  l, file.length(), save / 1e6, load / 1e6, data.size() / (load / 1e9)) ;
+            } finally {
+                file.delete() ;
+            }
+        }
+    }
+
+    private static void read(Model m, File file, String lang) throws IOException
+    {
+        InputStream in = new FileInputStream(file) ;
+        try { m.read(in, "", lang) ; }
+        finally { in.close() ; }
+    }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
@@ -0,0 +1,164 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import java.io.InputStream;
+
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.graph.TripleMatch;
+import com.hp.hpl.jena.graph.impl.GraphBase;
+import com.hp.hpl.jena.n3.ntriples.TripleSink;
+import com.hp.hpl.jena.n3.turtle.ParserTurtle;
+import com.hp.hpl.jena.n3.turtle.TurtleEventBatcher;
+import com.hp.hpl.jena.n3.turtle.TurtlePushParser;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import com.hp.hpl.jena.util.iterator.NullIterator;
+
+/**
+ * Compares ParserTurtle with the streaming TurtlePushParser on generated
+ * Turtle of any size (multi-GB input costs no disk: it is generated as it
+ * is read). Every record uses two fresh bNode labels, so ParserTurtle's
+ * label map grows with the input. Triples are counted and discarded. 
+ * Reports MB/s and triples/s, and the heap in use (after a GC) when the 
+ * end of the input is reached, while the parser still holds its state.
+ *
+ * <pre>java jena.bench.TurtleStreamBench [megabytes]</pre>
+ */
+public class TurtleStreamBench
+{
+    public static void main(String[] args)
+    {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 256 ;
+        long bytes = megabytes * 1024 * 1024 ;
+        System.out.printf("%d MB of generated Turtle%n", megabytes) ;
+
+        GeneratedTurtle in = new GeneratedTurtle(bytes) ;
+        CountingGraph graph = new CountingGraph() ;
+        long start = System.nanoTime() ;
+        new ParserTurtle().parse(graph, "http://example.org/", in) ;
+        report("ParserTurtle", in.bytesRead, graph.count, System.nanoTime() - start, in.heapAtEnd) ;
+
+        in = new GeneratedTurtle(bytes) ;
+        final long[] count = new long[1] ;
+        TurtleEventBatcher batcher = new TurtleEventBatcher(new TripleSink() {
+            public void triples(Triple[] triples) { count[0] += triples.length ; }
+        }, null) ;
+        start = System.nanoTime() ;
+        TurtlePushParser.parse(in, batcher, "http://example.org/") ;
+        batcher.flush() ;
+        report("TurtlePush", in.bytesRead, count[0], System.nanoTime() - start, in.heapAtEnd) ;
+    }
+
+    private static void report(String name, long bytes, long triples, long nanos, long heap)
+    {
+        double seconds = nanos / 1e9 ;
+        System.out.printf("%-13s %10d triples %8.1f MB/s %10.0f triples/s %8.1f MB heap at end%n",
+                          name, triples, bytes / seconds / (1024 * 1024), triples / seconds, heap / (1024.0 * 1024)) ;
+    }
+
+    private static long usedHeap()
+    {
+        Runtime rt = Runtime.getRuntime() ;
+        for ( int i = 0 ; i < 3 ; i++ )
+            System.gc() ;
+        return rt.totalMemory() - rt.freeMemory() ;
+    }
+
+    /** Generates Turtle records until at least the given number of bytes */
+    private static class GeneratedTurtle extends InputStream
+    {
+        private final long limit ;
+        private long bytesRead = 0 ;
+        private long record = 0 ;
+        private byte[] current = ("@prefix ex: <http://example.org/ns#> .\n").getBytes() ;
+        private int pos = 0 ;
+        private long heapAtEnd = -1 ;
+
+        GeneratedTurtle(long limit) { this.limit = limit ; }
+
+        @Override
+        public int read()
+        {
+            byte[] b = new byte[1] ;
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF ;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if ( pos == current.length && ! nextRecord() )
+                return -1 ;
+            int n = Math.min(len, current.length - pos) ;
+            System.arraycopy(current, pos, b, off, n) ;
+            pos += n ;
+            bytesRead += n ;
+            return n ;
+        }
+
+        private boolean nextRecord()
+        {
+            if ( bytesRead >= limit )
+            {
+                if ( heapAtEnd < 0 )
+                    heapAtEnd = usedHeap() ;
+                return false ;
+            }
+            long r = record++ ;
+            StringBuilder sb = new StringBuilder(200) ;
+            sb.append("ex:s").append(r).append(" a ex:Thing ; ex:name \"Thing number ").append(r)
+              .append("\"@en ;\n    ex:part _:p").append(r).append(" .\n") ;
+            sb.append("_:p").append(r).append(" ex:value ").append(r % 1000)
+              .append(" ; ex:next _:p").append(r + 1).append(" .\n") ;
+            current = sb.toString().getBytes() ;
+            pos = 0 ;
+            return true ;
+        }
+    }
+
+    /** A graph which discards the triples added to it, counting them */
+    private static class CountingGraph extends GraphBase
+    {
+        long count = 0 ;
+
+        @Override
+        public void performAdd(Triple t)
+        { count++ ; }
+
+        @Override
+        protected ExtendedIterator<Triple> graphBaseFind(TripleMatch m)
+        { return NullIterator.instance() ; }
+    }
+}
+
+
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
@@ -0,0 +1,127 @@
+/*
+  (c) Copyright 2009 Hewlett-Packard Development Company, LP
+  [See end of file]
+*/
+
+package com.hp.hpl.jena.graph.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.*;
+
+public class TestJournaledFileGraph
+    {
+    protected File file;
+    
+    @Before public void setUp() throws Exception
+        {
+        file = File.createTempFile( "journaled", ".rdfb" );
+        file.delete();
+        }
+    
+    @After public void tearDown()
+        {
+        file.delete();
+        JournaledFileGraph.journalFile( file ).delete();
+        }
+    
+    protected static Triple triple( String o )
+        { return Triple.create( Node.createURI( "eh:/s" ), Node.createURI( "eh:/p" ), Node.createURI( "eh:/" + o ) ); }
+    
+    @Test public void testCommittedChangesSurviveACrash()
+        {
+        JournaledFileGraph g = new JournaledFileGraph( file, true, true );
+        g.add( triple( "a" ) );
+        g.getTransactionHandler().begin();
+        g.add( triple( "b" ) );
+        g.getTransactionHandler().commit();
+        JournaledFileGraph h = new JournaledFileGraph( file, false, true );
+        assertEquals( 2, h.size() );
+        assertTrue( h.contains( triple( "a" ) ) );
+        assertTrue( h.contains( triple( "b" ) ) );
+        h.close();
+        }
+    
+    @Test public void testAppendAfterCrashInsideTransaction()
+        {
+        JournaledFileGraph g = new JournaledFileGraph( file, true, true );
+        g.add( triple( "a" ) );
+        g.getTransactionHandler().begin();
+        g.add( triple( "x" ) );
+        g.getJournal().sync();
+        JournaledFileGraph h = new JournaledFileGraph( file, false, true );
+        assertEquals( 1, h.size() );
+        h.add( triple( "c" ) );
+        h.close();
+        JournaledFileGraph k = new JournaledFileGraph( file, false, true );
+        assertEquals( 2, k.size() );
+        assertTrue( k.contains( triple( "a" ) ) );
+        assertTrue( k.contains( triple( "c" ) ) );
+        assertFalse( k.contains( triple( "x" ) ) );
+        k.close();
+        }
+    
+    @Test public void testAbortedTransactionIsNotReplayed()
+        {
+        JournaledFileGraph g = new JournaledFileGraph( file, true, true );
+        g.add( triple( "a" ) );
+        g.getTransactionHandler().begin();
+        g.add( triple( "x" ) );
+        g.getTransactionHandler().abort();
+        g.add( triple( "c" ) );
+        g.close();
+        JournaledFileGraph h = new JournaledFileGraph( file, false, true );
+        assertEquals( 2, h.size() );
+        assertFalse( h.contains( triple( "x" ) ) );
+        h.close();
+        }
+    
+    @Test public void testCompactedGraphReopens()
+        {
+        JournaledFileGraph g = new JournaledFileGraph( file, true, true );
+        for (int i = 0; i < 100; i += 1) g.add( triple( "o" + i ) );
+        g.compact();
+        assertEquals( 0, g.getJournal().length() );
+        g.add( triple( "last" ) );
+        g.close();
+        JournaledFileGraph h = new JournaledFileGraph( file, false, true );
+        assertEquals( 101, h.size() );
+        h.close();
+        }
+    }
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
@@ -0,0 +1,84 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.n3.ntriples;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+public class TestNTriplesReader
+{
+    static final String oneLine = 
+        "<http://example/s> <http://example/p> <http://example/o> ." +
+        "<http://example/s> <http://example/p> \"lit\"@en .   <http://example/s> <http://example/q> _:b1 ." +
+        "_:b1 <http://example/p> \"1\"^^<http://www.w3.org/2001/XMLSchema#integer>.\t_:b1 <http://example/q> _:b2.<http://example/s> <http://example/r> _:b1 . # comment\n" ;
+
+    private static Model read(String lang, String text)
+    {
+        Model model = ModelFactory.createDefaultModel() ;
+        model.read(new StringReader(text), null, lang) ;
+        return model ;
+    }
+    
+    @Test public void severalTriplesOnOneLine()
+    {
+        Model model = read("N-TRIPLES", oneLine) ;
+        assertEquals(6, model.size()) ;
+        Resource s = model.createResource("http://example/s") ;
+        assertTrue(model.contains(s, model.createProperty("http://example/p"), "lit", "en")) ;
+        Resource b1 = model.getRequiredProperty(s, model.createProperty("http://example/q")).getResource() ;
+        assertTrue(b1.isAnon()) ;
+        assertTrue(model.contains(s, model.createProperty("http://example/r"), b1)) ;
+        assertTrue(b1.getRequiredProperty(model.createProperty("http://example/q")).getResource().isAnon()) ;
+    }
+    
+    @Test public void severalTriplesOnOneLine_NTriple()
+    {
+        Model model = read("N-TRIPLE", oneLine) ;
+        assertEquals(6, model.size()) ;
+    }
+    
+    @Test public void oneTriplePerLine()
+    {
+        String text = oneLine.replace(" .", " .\n").replace(".<", ".\n<").replace(".\t", ".\n") ;
+        assertTrue(read("N-TRIPLES", text).isIsomorphicWith(read("N-TRIPLES", oneLine))) ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
@@ -0,0 +1,117 @@
+/******************************************************************
+ * File:        TestRETEParallel.java
+ * 
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.rulesys.impl;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.mem.GraphMem;
+import com.hp.hpl.jena.reasoner.InfGraph;
+import com.hp.hpl.jena.reasoner.rulesys.GenericRuleReasoner;
+import com.hp.hpl.jena.reasoner.rulesys.Rule;
+
+/**
+ * Check that the parallel matching mode of the RETE engine computes the
+ * same closure as sequential matching.
+ */
+public class TestRETEParallel {
+    
+    static final String NS = "http://example/";
+    
+    /** A ring of p links with some q links, enough to give parallel sized rounds */
+    private static Graph data(int n) {
+        Graph g = new GraphMem();
+        Node p = Node.createURI(NS + "p"), q = Node.createURI(NS + "q");
+        for (int i = 0; i < n; i++) {
+            Node a = Node.createURI(NS + "n" + i), b = Node.createURI(NS + "n" + ((i + 1) % n));
+            g.add(new Triple(a, p, b));
+            if (i % 3 == 0) g.add(new Triple(a, q, Node.createLiteral("" + i)));
+        }
+        return g;
+    }
+    
+    private static Graph closure(String rules, Graph data, int parallelism) {
+        List<Rule> ruleList = Rule.parseRules(rules);
+        GenericRuleReasoner reasoner = new GenericRuleReasoner(ruleList);
+        reasoner.setMode(GenericRuleReasoner.FORWARD_RETE);
+        reasoner.setRuleParallelism(parallelism);
+        InfGraph inf = reasoner.bind(data);
+        inf.prepare();
+        return inf.getDeductionsGraph();
+    }
+    
+    private static void assertSameClosure(String rules, Graph data) {
+        Graph sequential = closure(rules, data, 1);
+        Graph parallel = closure(rules, data, 4);
+        assertEquals(sequential.size(), parallel.size());
+        assertTrue(sequential.isIsomorphicWith(parallel));
+    }
+    
+    @Test public void pureRules() {
+        String rules = 
+            "[r1: (?a <" + NS + "p> ?b) -> (?a <" + NS + "r> ?b)]" +
+            "[r2: (?a <" + NS + "r> ?b) (?b <" + NS + "p> ?c) notEqual(?a, ?c) -> (?a <" + NS + "s> ?c)]" +
+            "[r3: (?a <" + NS + "q> ?v) (?a <" + NS + "p> ?b) -> (?b <" + NS + "q> ?v)]";
+        assertSameClosure(rules, data(500));
+    }
+    
+    @Test public void noValueRules() {
+        String rules = 
+            "[r1: (?a <" + NS + "p> ?b) -> (?a <" + NS + "q> ?b)]" +
+            "[r2: (?a <" + NS + "p> ?b) noValue(?a <" + NS + "q> ?b) -> (?a <" + NS + "r> ?b)]";
+        Graph data = data(2000);
+        assertSameClosure(rules, data);
+        Graph parallel = closure(rules, data, 4);
+        assertFalse(parallel.contains(Node.ANY, Node.createURI(NS + "r"), Node.ANY));
+    }
+    
+    @Test public void canMatchInParallel() {
+        List<Rule> testing = Rule.parseRules("[r: (?a <" + NS + "p> ?b) notEqual(?a, ?b) -> (?a <" + NS + "r> ?b)]");
+        RETEEngine pure = new RETEEngine(null, testing);
+        pure.compile(testing, false);
+        assertTrue(pure.canMatchInParallel());
+        List<Rule> printing = Rule.parseRules("[r: (?a <" + NS + "p> ?b) print(?a) -> (?a <" + NS + "r> ?b)]");
+        RETEEngine impure = new RETEEngine(null, printing);
+        impure.compile(printing, false);
+        assertFalse(impure.canMatchInParallel());
+    }
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -0,0 +1,166 @@
+/******************************************************************
+ * File:        TestTransitiveGraphCache.java
+ *
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * [See end of file]
+ *****************************************************************/
+
+package com.hp.hpl.jena.reasoner.transitiveReasoner;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.*;
+import com.hp.hpl.jena.reasoner.TriplePattern;
+
+/**
+ * Check the closed relation of a TransitiveGraphCache, and so its interval
+ * index, against breadth first reachability as links which close cycles 
+ * are added.
+ */
+public class TestTransitiveGraphCache {
+    
+    static final Node direct = Node.createURI("eh:/direct");
+    static final Node closed = Node.createURI("eh:/closed");
+    
+    private static Node node(int i) {
+        return Node.createURI("eh:/n" + i);
+    }
+    
+    /** The nodes reachable from each node over the given links, by breadth first search */
+    private static boolean[][] reachability(int n, List<int[]> links) {
+        List<List<Integer>> succ = new ArrayList<List<Integer>>();
+        for (int i = 0; i < n; i++) succ.add(new ArrayList<Integer>());
+        for (Iterator<int[]> i = links.iterator(); i.hasNext(); ) {
+            int[] link = i.next();
+            succ.get(link[0]).add(Integer.valueOf(link[1]));
+        }
+        boolean[][] reach = new boolean[n][n];
+        for (int s = 0; s < n; s++) {
+            LinkedList<Integer> queue = new LinkedList<Integer>();
+            reach[s][s] = true;
+            queue.add(Integer.valueOf(s));
+            while (!queue.isEmpty()) {
+                for (Iterator<Integer> i = succ.get(queue.removeFirst().intValue()).iterator(); i.hasNext(); ) {
+                    int t = i.next().intValue();
+                    if (!reach[s][t]) {
+                        reach[s][t] = true;
+                        queue.add(Integer.valueOf(t));
+                    }
+                }
+            }
+        }
+        return reach;
+    }
+    
+    private static Set<Node> subjects(Iterator<Triple> i) {
+        Set<Node> result = new HashSet<Node>();
+        while (i.hasNext()) result.add(i.next().getSubject());
+        return result;
+    }
+    
+    private static Set<Node> objects(Iterator<Triple> i) {
+        Set<Node> result = new HashSet<Node>();
+        while (i.hasNext()) result.add(i.next().getObject());
+        return result;
+    }
+    
+    /** Check every closed query on the cache against the reachability of the links */
+    private static void check(TransitiveGraphCache cache, int n, List<int[]> links) {
+        boolean[][] reach = reachability(n, links);
+        boolean[] known = new boolean[n];
+        for (Iterator<int[]> i = links.iterator(); i.hasNext(); ) {
+            int[] link = i.next();
+            if (link[0] != link[1]) known[link[0]] = known[link[1]] = true;
+        }
+        for (int o = 0; o < n; o++) {
+            if (!known[o]) continue;
+            Set<Node> preds = new HashSet<Node>(), succs = new HashSet<Node>();
+            for (int s = 0; s < n; s++) {
+                if (!known[s]) continue;
+                if (reach[s][o]) preds.add(node(s));
+                if (reach[o][s]) succs.add(node(s));
+                assertEquals(node(s) + " reaches " + node(o), reach[s][o], 
+                        cache.contains(new TriplePattern(node(s), closed, node(o))));
+            }
+            assertEquals("predecessors of " + node(o), preds, subjects(cache.find(new TriplePattern(null, closed, node(o)))));
+            assertEquals("successors of " + node(o), succs, objects(cache.find(new TriplePattern(node(o), closed, null))));
+        }
+    }
+    
+    private static void add(TransitiveGraphCache cache, List<int[]> links, int s, int o) {
+        links.add(new int[] {s, o});
+        cache.addRelation(new Triple(node(s), closed, node(o)));
+    }
+    
+    @Test public void cycleClosedAfterIndexBuilt() {
+        TransitiveGraphCache cache = new TransitiveGraphCache(direct, closed);
+        List<int[]> links = new ArrayList<int[]>();
+        add(cache, links, 0, 1);
+        check(cache, 14, links);
+        int[][] more = {{1, 10}, {12, 8}, {11, 8}, {9, 5}, {2, 13}, {8, 10}, {11, 4}, {2, 0}, {6, 11}, {13, 11}, {8, 2}};
+        for (int i = 0; i < more.length; i++) {
+            add(cache, links, more[i][0], more[i][1]);
+        }
+        check(cache, 14, links);
+    }
+    
+    @Test public void cycleJoinsAncestors() {
+        TransitiveGraphCache cache = new TransitiveGraphCache(direct, closed);
+        List<int[]> links = new ArrayList<int[]>();
+        int[][] all = {{11, 6}, {14, 3}, {8, 11}, {11, 3}, {3, 8}};
+        for (int i = 0; i < all.length; i++) {
+            add(cache, links, all[i][0], all[i][1]);
+        }
+        check(cache, 15, links);
+    }
+    
+    @Test public void randomCyclicAdds() {
+        Random random = new Random(20091);
+        for (int round = 0; round < 200; round++) {
+            int n = 4 + random.nextInt(20);
+            TransitiveGraphCache cache = new TransitiveGraphCache(direct, closed);
+            List<int[]> links = new ArrayList<int[]>();
+            int count = 1 + random.nextInt(3 * n);
+            for (int i = 0; i < count; i++) {
+                add(cache, links, random.nextInt(n), random.nextInt(n));
+                // Query part way through too, so the index is built and then maintained
+                if (random.nextInt(4) == 0) check(cache, n, links);
+            }
+            check(cache, n, links);
+        }
+    }
+}
+
+/*
+    (c) Copyright 2009 Hewlett-Packard Development Company, LP
+    All rights reserved.
+
+    Redistribution and use in source and binary forms, with or without
+    modification, are permitted provided that the following conditions
+    are met:
+
+    1. Redistributions of source code must retain the above copyright
+       notice, this list of conditions and the following disclaimer.
+
+    2. Redistributions in binary form must reproduce the above copyright
+       notice, this list of conditions and the following disclaimer in the
+       documentation and/or other materials provided with the distribution.
+
+    3. The name of the author may not be used to endorse or promote products
+       derived from this software without specific prior written permission.
+
+    THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+    IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+    OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+    IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+    INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+    NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+    DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+    THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+    (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+    THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
\ No newline at end of file
@@ -193,6 +193,13 @@ public class ARQ
      */  
     public static final Symbol optFilterDisjunction = ARQConstants.allocSymbol("optFilterDisjunction") ;
     
+    /** 
+     *  Context key controlling whether the standard optimizer turns
+     *  ORDER BY + LIMIT (possibly with DISTINCT) into a top-N operation
+     *  that does not sort all the solutions.
+     */  
+    public static final Symbol optTopNSorting = ARQConstants.allocSymbol("optTopNSorting") ;
+
     /** 
      *  Context key controlling whether the main query engine 
      *  
@@ -220,6 +227,18 @@ public class ARQ
      */
     public static final Symbol generateToList = ARQConstants.allocSymbol("generateToList") ;
 
+    /**
+     * The number of bindings an operation that must see all its input before
+     * producing results (e.g. ORDER BY) keeps in memory before spilling to
+     * temporary files.  For GROUP BY, it is the number of groups kept in memory.
+     * A number, or a string of one.
+     * Default is {@link #spillToDiskThresholdDefault}.
+     */
+    public static final Symbol spillToDiskThreshold = ARQConstants.allocSymbol("spillToDiskThreshold") ;
+
+    /** Default for {@link #spillToDiskThreshold} */
+    public static final long spillToDiskThresholdDefault = 100000 ;
+
     /** Set global strict mode */
     public static void setStrictMode() { setStrictMode(ARQ.getContext()) ; }
     
@@ -313,6 +313,18 @@ public class OpAsQuery
             opSlice.getSubOp().visit(this) ;
         }
 
+        public void visit(OpTopN opTop)
+        {
+            // Any slice above has already set the limit and offset.
+            if ( ! query.hasLimit() )
+                query.setLimit(opTop.getLimit()) ;
+            if ( opTop.isDistinct() )
+                query.setDistinct(true) ;
+            for ( SortCondition sc : opTop.getConditions() )
+                query.addOrderBy(sc);
+            opTop.getSubOp().visit(this) ;
+        }
+
         public void visit(OpGroupAgg opGroupAgg)
         { throw new ARQNotImplemented("OpGroupAgg") ; }
         
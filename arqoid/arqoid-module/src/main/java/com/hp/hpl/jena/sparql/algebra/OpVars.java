@@ -170,6 +170,17 @@ public class OpVars
                 acc.addAll(x) ;
             }
         }
+
+        @Override
+        public void visit(OpTopN opTop)
+        {
+            for ( Iterator<SortCondition> iter = opTop.getConditions().iterator() ; iter.hasNext(); )
+            {
+                SortCondition sc = iter.next();
+                Set<Var> x = sc.getExpression().getVarsMentioned() ;
+                acc.addAll(x) ;
+            }
+        }
     }
 
     private static void addVarsFromTriple(Collection<Var> acc, Triple t)
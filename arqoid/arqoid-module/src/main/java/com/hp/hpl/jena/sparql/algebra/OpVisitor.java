@@ -49,6 +49,7 @@ public interface OpVisitor
     public void visit(OpReduced opReduced) ;
     public void visit(OpDistinct opDistinct) ;
     public void visit(OpSlice opSlice) ;
+    public void visit(OpTopN opTop) ;
     public void visit(OpAssign opAssign) ;
 
     public void visit(OpGroupAgg opGroupAgg) ;
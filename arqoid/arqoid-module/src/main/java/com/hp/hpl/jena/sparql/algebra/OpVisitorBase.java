@@ -99,6 +99,9 @@ public class OpVisitorBase implements OpVisitor
     public void visit(OpSlice opSlice)
     {}
 
+    public void visit(OpTopN opTop)
+    {}
+
     public void visit(OpGroupAgg opGroupAgg)
     {}
 }
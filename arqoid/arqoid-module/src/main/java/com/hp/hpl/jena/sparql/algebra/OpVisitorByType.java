@@ -108,6 +108,9 @@ public abstract class OpVisitorByType implements OpVisitor
     public void visit(OpSlice opSlice)
     { visit1(opSlice) ; }
 
+    public void visit(OpTopN opTop)
+    { visit1(opTop) ; }
+
     public void visit(OpGroupAgg opGroupAgg)
     { visit1(opGroupAgg) ; }
 }
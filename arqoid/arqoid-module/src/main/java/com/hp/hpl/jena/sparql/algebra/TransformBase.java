@@ -47,6 +47,7 @@ public class TransformBase implements Transform
     public Op transform(OpDistinct opDistinct, Op subOp)    { return opDistinct ; }
     public Op transform(OpReduced opReduced, Op subOp)      { return opReduced ; }
     public Op transform(OpSlice opSlice, Op subOp)          { return opSlice ; }
+    public Op transform(OpTopN opTop, Op subOp)             { return opTop ; }
     public Op transform(OpAssign opAssign, Op subOp)        { return opAssign ; }
     public Op transform(OpGroupAgg opGroupAgg, Op subOp)    { return opGroupAgg ; }
 }
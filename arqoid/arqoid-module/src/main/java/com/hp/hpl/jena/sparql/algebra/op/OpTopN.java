@@ -0,0 +1,109 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.algebra.op;
+
+import java.util.List;
+
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpVisitor;
+import com.hp.hpl.jena.sparql.algebra.Transform;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.sse.Tags;
+import com.hp.hpl.jena.sparql.util.NodeIsomorphismMap;
+import com.hp.hpl.jena.sparql.util.Utils;
+
+import com.hp.hpl.jena.query.SortCondition;
+
+/** The first <i>limit</i> solutions of the sub-op in the order of the sort
+ *  conditions: (slice (order ...)) without sorting everything.  If there are
+ *  distinct variables, solutions that are the same on those variables count
+ *  once and the first in order is the one kept, as for
+ *  (slice (distinct (project (order ...)))); the projection itself is left
+ *  to an OpProject above.
+ */
+public class OpTopN extends OpModifier
+{
+    private final List<SortCondition> conditions ;
+    private final long limit ;
+    private final List<Var> distinctVars ;
+
+    public OpTopN(Op subOp, long limit, List<SortCondition> conditions)
+    {
+        this(subOp, limit, conditions, null) ;
+    }
+
+    public OpTopN(Op subOp, long limit, List<SortCondition> conditions, List<Var> distinctVars)
+    { 
+        super(subOp) ;
+        this.limit = limit ;
+        this.conditions = conditions ;
+        this.distinctVars = distinctVars ;
+    }
+    
+    public List<SortCondition> getConditions()  { return conditions ; }
+    public long getLimit()                      { return limit ; }
+    /** The variables solutions must be distinct on, or null */
+    public List<Var> getDistinctVars()          { return distinctVars ; }
+    public boolean isDistinct()                 { return distinctVars != null ; }
+    
+    public String getName()                 { return Tags.tagTop ; }
+    public void visit(OpVisitor opVisitor)  { opVisitor.visit(this) ; }
+    @Override
+    public Op copy(Op subOp)                { return new OpTopN(subOp, limit, conditions, distinctVars) ; }
+
+    @Override
+    public Op apply(Transform transform, Op subOp)
+    { return transform.transform(this, subOp) ; }
+    
+    @Override
+    public int hashCode()
+    {
+        int x = conditions.hashCode() ^ (int)(limit&0xFFFFFFFF) ^ getSubOp().hashCode() ;
+        if ( distinctVars != null )
+            x ^= distinctVars.hashCode() ;
+        return x ;
+    }
+
+    @Override
+    public boolean equalTo(Op other, NodeIsomorphismMap labelMap)
+    {
+        if ( ! (other instanceof OpTopN) ) return false ;
+        OpTopN opTop = (OpTopN)other ;
+        if ( opTop.limit != limit || ! opTop.conditions.equals(conditions) )
+            return false ;
+        if ( ! Utils.equal(opTop.distinctVars, distinctVars) )
+            return false ;
+        return getSubOp().equalTo(opTop.getSubOp(), labelMap) ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
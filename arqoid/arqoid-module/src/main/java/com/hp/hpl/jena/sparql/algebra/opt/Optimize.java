@@ -160,6 +160,9 @@ public class Optimize implements Rewrite
             op = apply("Filter Placement", new TransformFilterPlacement(), op) ;
         
         op = apply("Path flattening", new TransformPathFlattern(), op) ;
+        
+        if ( context.isTrueOrUndef(ARQ.optTopNSorting) )
+            op = apply("TopN Sorting", new TransformTopN(), op) ;
         // Mark
         if ( false )
             op = OpLabel.create("Transformed", op) ;
@@ -0,0 +1,113 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.algebra.opt;
+
+import java.util.ArrayList ;
+import java.util.List ;
+
+import com.hp.hpl.jena.query.Query ;
+import com.hp.hpl.jena.sparql.algebra.Op ;
+import com.hp.hpl.jena.sparql.algebra.OpVars ;
+import com.hp.hpl.jena.sparql.algebra.TransformCopy ;
+import com.hp.hpl.jena.sparql.algebra.op.OpDistinct ;
+import com.hp.hpl.jena.sparql.algebra.op.OpOrder ;
+import com.hp.hpl.jena.sparql.algebra.op.OpProject ;
+import com.hp.hpl.jena.sparql.algebra.op.OpReduced ;
+import com.hp.hpl.jena.sparql.algebra.op.OpSlice ;
+import com.hp.hpl.jena.sparql.algebra.op.OpTopN ;
+import com.hp.hpl.jena.sparql.core.Var ;
+
+/** Turn ORDER BY + LIMIT into a top-N:
+ *  <pre>
+ *  (slice start length (project vars (order conditions X)))
+ *  ==> (slice start _ (project vars (top (start+length conditions) X)))
+ *  </pre>
+ *  The project is optional and the slice disappears if there is no offset.
+ *  A distinct between the slice and the project becomes a top-N distinct on
+ *  the projected variables; a reduced there stays, over the top-N.
+ */
+public class TransformTopN extends TransformCopy
+{
+    public TransformTopN() {}
+    
+    @Override
+    public Op transform(OpSlice opSlice, Op subOp)
+    { 
+        long length = opSlice.getLength() ;
+        if ( length == Query.NOLIMIT )
+            return super.transform(opSlice, subOp) ;
+        long start = ( opSlice.getStart() == Query.NOLIMIT ) ? 0 : opSlice.getStart() ;
+        if ( start > Long.MAX_VALUE - length )
+            return super.transform(opSlice, subOp) ;
+
+        Op op = subOp ;
+        boolean distinct = false ;
+        boolean reduced = false ;
+        if ( op instanceof OpDistinct )
+        {
+            distinct = true ;
+            op = ((OpDistinct)op).getSubOp() ;
+        }
+        else if ( op instanceof OpReduced )
+        {
+            reduced = true ;
+            op = ((OpReduced)op).getSubOp() ;
+        }
+
+        OpProject opProject = null ;
+        if ( op instanceof OpProject )
+        {
+            opProject = (OpProject)op ;
+            op = opProject.getSubOp() ;
+        }
+
+        if ( ! ( op instanceof OpOrder ) )
+            return super.transform(opSlice, subOp) ;
+        OpOrder opOrder = (OpOrder)op ;
+
+        List<Var> distinctVars = null ;
+        if ( distinct )
+            // No project: distinct on everything the pattern can bind.
+            distinctVars = ( opProject != null ) ? opProject.getVars() : new ArrayList<Var>(OpVars.allVars(opOrder)) ;
+
+        op = new OpTopN(opOrder.getSubOp(), start+length, opOrder.getConditions(), distinctVars) ;
+        if ( opProject != null )
+            op = new OpProject(op, opProject.getVars()) ;
+        if ( reduced )
+            op = new OpReduced(op) ;
+        if ( start > 0 )
+            op = new OpSlice(op, start, Query.NOLIMIT) ;
+        return op ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
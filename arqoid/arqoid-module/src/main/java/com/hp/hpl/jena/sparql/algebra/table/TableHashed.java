@@ -0,0 +1,165 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.algebra.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterNullIterator;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+
+/** A TableN that also indexes its rows by the values of some key variables
+ *  so that matchRightLeft only looks at the rows that can be compatible with
+ *  the left binding, rather than scanning the whole table.
+ *  <p>
+ *  The key variables should be ones that are always bound on both sides of
+ *  the join; rows that do not bind every key are kept aside and tried
+ *  against every left binding, and a left binding that does not bind every
+ *  key falls back to the full scan, so the results are the same as TableN's
+ *  whatever the key choice.
+ */
+
+public class TableHashed extends TableN
+{
+    private final Var[] keys ;
+    private Map<Object, List<Binding>> index = new HashMap<Object, List<Binding>>() ;
+    private List<Binding> unkeyed = new ArrayList<Binding>() ;
+
+    public TableHashed(List<Var> keys)
+    {
+        super() ;
+        this.keys = keys.toArray(new Var[keys.size()]) ;
+    }
+
+    public TableHashed(List<Var> keys, QueryIterator qIter)
+    {
+        this(keys) ;
+        materialize(qIter) ;
+    }
+
+    @Override
+    public void addBinding(Binding binding)
+    {
+        super.addBinding(binding) ;
+        Object k = keyOf(binding) ;
+        if ( k == null )
+        {
+            unkeyed.add(binding) ;
+            return ;
+        }
+        List<Binding> bucket = index.get(k) ;
+        if ( bucket == null )
+        {
+            bucket = new ArrayList<Binding>(2) ;
+            index.put(k, bucket) ;
+        }
+        bucket.add(binding) ;
+    }
+
+    /** The hash key of a binding: the single key node, or a list of the key
+     *  nodes; null if any key variable is unbound. */
+    private Object keyOf(Binding binding)
+    {
+        if ( keys.length == 1 )
+            return binding.get(keys[0]) ;
+        Node[] k = new Node[keys.length] ;
+        for ( int i = 0 ; i < keys.length ; i++ )
+        {
+            k[i] = binding.get(keys[i]) ;
+            if ( k[i] == null )
+                return null ;
+        }
+        return Arrays.asList(k) ;
+    }
+
+    // Note - this table is the RIGHT table, and takes a LEFT binding.
+    @Override
+    public QueryIterator matchRightLeft(Binding bindingLeft, boolean includeOnNoMatch,
+                                        ExprList conditions,
+                                        ExecutionContext execContext)
+    {
+        Object k = keyOf(bindingLeft) ;
+        if ( k == null )
+            return super.matchRightLeft(bindingLeft, includeOnNoMatch, conditions, execContext) ;
+
+        List<Binding> out = new ArrayList<Binding>() ;
+        List<Binding> bucket = index.get(k) ;
+        if ( bucket != null )
+            match(bindingLeft, bucket, conditions, execContext, out) ;
+        if ( unkeyed.size() != 0 )
+            match(bindingLeft, unkeyed, conditions, execContext, out) ;
+
+        if ( out.size() == 0 && includeOnNoMatch )
+            out.add(bindingLeft) ;
+
+        if ( out.size() == 0 )
+            return new QueryIterNullIterator(execContext) ;
+        return new QueryIterPlainWrapper(out.iterator(), execContext) ;
+    }
+
+    private static void match(Binding bindingLeft, List<Binding> candidates,
+                              ExprList conditions, ExecutionContext execContext,
+                              List<Binding> out)
+    {
+        for ( Iterator<Binding> iter = candidates.iterator() ; iter.hasNext() ; )
+        {
+            Binding r = Algebra.merge(bindingLeft, iter.next()) ;
+            if ( r == null )
+                continue ;
+            if ( conditions == null || conditions.isSatisfied(r, execContext) )
+                out.add(r) ;
+        }
+    }
+
+    public List<Var> getKeys()          { return Arrays.asList(keys) ; }
+
+    @Override
+    public void closeTable()
+    {
+        super.closeTable() ;
+        index = null ;
+        unkeyed = null ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
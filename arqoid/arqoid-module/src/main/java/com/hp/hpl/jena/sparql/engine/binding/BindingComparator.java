@@ -45,6 +45,19 @@ public class BindingComparator implements java.util.Comparator<Binding>
     //  Compare by 
 
     public int compare(Binding bind1, Binding bind2)
+    {
+        int x = compareConditions(bind1, bind2) ;
+        if ( x != Expr.CMP_EQUAL )
+            return x ;
+        // Same by the SortConditions - now do any extra tests to make sure they are unique.
+        return compareBindingsSyntactic(bind1, bind2) ;
+        //return 0 ;
+    }
+    
+    /** Compare by the sort conditions only : bindings that are the same by
+     *  all the conditions are equal, so, unlike {@link #compare}, this is 
+     *  a consistent order even when the bindings have different variables. */ 
+    public int compareConditions(Binding bind1, Binding bind2)
     {
         for ( Iterator<SortCondition> iter = conditions.iterator() ; iter.hasNext() ; )
         {
@@ -71,9 +84,7 @@ public class BindingComparator implements java.util.Comparator<Binding>
             if ( x != Expr.CMP_EQUAL )
                 return x ;
         }
-        // Same by the SortConditions - now do any extra tests to make sure they are unique.
-        return compareBindingsSyntactic(bind1, bind2) ;
-        //return 0 ;
+        return Expr.CMP_EQUAL ;
     }
     
     private static int compareNodes(NodeValue nv1, NodeValue nv2, int direction)
@@ -0,0 +1,165 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.engine.binding;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hp.hpl.jena.datatypes.RDFDatatype;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import com.hp.hpl.jena.sparql.ARQException;
+import com.hp.hpl.jena.sparql.core.Var;
+
+/** Reads the bindings written by a {@link BindingOutputStream}. */
+
+public class BindingInputStream
+{
+    private final InputStream in ;
+    private final List<Var> vars = new ArrayList<Var>() ;
+    private final List<RDFDatatype> datatypes = new ArrayList<RDFDatatype>() ;
+    private String previousURI = "" ;
+    private byte[] buffer = new byte[256] ;
+    private boolean finished = false ;
+
+    public BindingInputStream(InputStream in)
+    {
+        this.in = new BufferedInputStream(in, 1<<16) ;
+    }
+
+    /** The next binding, or null at the end of the stream. */
+    public Binding read() throws IOException
+    {
+        if ( finished )
+            return null ;
+        int size = readInt() ;
+        if ( size == BindingOutputStream.END )
+        {
+            finished = true ;
+            return null ;
+        }
+        Binding binding = new BindingMap() ;
+        for ( int i = 1 ; i < size ; i++ )
+        {
+            Var v = readVar() ;
+            binding.add(v, readNode()) ;
+        }
+        return binding ;
+    }
+
+    public void close() throws IOException
+    {
+        in.close() ;
+    }
+
+    private Var readVar() throws IOException
+    {
+        int id = readInt() ;
+        if ( id < vars.size() )
+            return vars.get(id) ;
+        Var v = Var.alloc(readString()) ;
+        vars.add(v) ;
+        return v ;
+    }
+
+    private Node readNode() throws IOException
+    {
+        int kind = readByte() ;
+        switch (kind)
+        {
+            case BindingOutputStream.URI:
+                int shared = readInt() ;
+                previousURI = previousURI.substring(0, shared) + readString() ;
+                return Node.createURI(previousURI) ;
+            case BindingOutputStream.BLANK:
+                return Node.createAnon(new AnonId(readString())) ;
+            case BindingOutputStream.PLAIN:
+                return Node.createLiteral(readString(), "", false) ;
+            case BindingOutputStream.LANG:
+                String lex = readString() ;
+                return Node.createLiteral(lex, readString(), false) ;
+            case BindingOutputStream.TYPED:
+                String lexical = readString() ;
+                int id = readInt() ;
+                if ( id == datatypes.size() )
+                    datatypes.add(TypeMapper.getInstance().getSafeTypeByName(readString())) ;
+                return Node.createLiteral(lexical, "", datatypes.get(id)) ;
+            case BindingOutputStream.VAR:
+                return Var.alloc(readString()) ;
+        }
+        throw new ARQException("Bad node kind in binding stream: "+kind) ;
+    }
+
+    private int readByte() throws IOException
+    {
+        int b = in.read() ;
+        if ( b < 0 )
+            throw new EOFException("Binding stream ends unexpectedly") ;
+        return b ;
+    }
+
+    private long readNumber() throws IOException
+    {
+        long result = 0 ;
+        for ( int shift = 0 ; ; shift += 7 )
+        {
+            int b = readByte() ;
+            result |= (long)(b & 0x7F) << shift ;
+            if ( (b & 0x80) == 0 )
+                return result ;
+        }
+    }
+
+    private int readInt() throws IOException { return (int)readNumber() ; }
+
+    private String readString() throws IOException
+    {
+        int length = readInt() ;
+        if ( buffer.length < length )
+            buffer = new byte[Math.max(length, 2*buffer.length)] ;
+        for ( int n = 0 ; n < length ; )
+        {
+            int r = in.read(buffer, n, length-n) ;
+            if ( r < 0 )
+                throw new EOFException("Binding stream ends unexpectedly") ;
+            n += r ;
+        }
+        return new String(buffer, 0, length, "UTF-8") ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
@@ -0,0 +1,208 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.engine.binding;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+
+/** Writes bindings in a compact binary form, for spilling intermediate
+ *  results to temporary files; read back with {@link BindingInputStream}.
+ *  <p>
+ *  Variables are written by name the first time they are seen and by
+ *  number after that, as are literal datatypes; each URI is front-coded
+ *  against the previous one.  The stream is only meant to be read back by
+ *  the same program - it is not an interchange format.
+ */
+
+public class BindingOutputStream
+{
+    static final int END        = 0 ;
+    static final int URI        = 1 ;
+    static final int BLANK      = 2 ;
+    static final int PLAIN      = 3 ;
+    static final int LANG       = 4 ;
+    static final int TYPED      = 5 ;
+    static final int VAR        = 6 ;
+
+    private final OutputStream out ;
+    private final Map<Var, Integer> vars = new HashMap<Var, Integer>() ;
+    private final Map<String, Integer> datatypes = new HashMap<String, Integer>() ;
+    private final List<Var> scratch = new ArrayList<Var>() ;
+    private String previousURI = "" ;
+    private long count = 0 ;
+
+    public BindingOutputStream(OutputStream out)
+    {
+        this.out = new BufferedOutputStream(out, 1<<16) ;
+    }
+
+    public void write(Binding binding) throws IOException
+    {
+        scratch.clear() ;
+        for ( Iterator<Var> iter = binding.vars() ; iter.hasNext() ; )
+        {
+            Var v = iter.next() ;
+            if ( binding.get(v) != null )
+                scratch.add(v) ;
+        }
+        // 0 marks the end of the stream, so an empty binding is a 1.
+        writeNumber(scratch.size()+1) ;
+        for ( Var v : scratch )
+        {
+            writeVar(v) ;
+            writeNode(binding.get(v)) ;
+        }
+        count++ ;
+    }
+
+    /** Number of bindings written so far */
+    public long getCount() { return count ; }
+
+    /** Write the end marker and close the underlying stream */
+    public void close() throws IOException
+    {
+        writeNumber(END) ;
+        out.close() ;
+    }
+
+    private void writeVar(Var v) throws IOException
+    {
+        Integer id = vars.get(v) ;
+        if ( id != null )
+        {
+            writeNumber(id.intValue()) ;
+            return ;
+        }
+        // A new variable: the next number, then its name.
+        int n = vars.size() ;
+        vars.put(v, new Integer(n)) ;
+        writeNumber(n) ;
+        writeString(v.getVarName()) ;
+    }
+
+    private void writeNode(Node node) throws IOException
+    {
+        if ( node.isURI() )
+        {
+            String uri = node.getURI() ;
+            int shared = sharedPrefix(previousURI, uri) ;
+            out.write(URI) ;
+            writeNumber(shared) ;
+            writeString(uri.substring(shared)) ;
+            previousURI = uri ;
+            return ;
+        }
+        if ( node.isBlank() )
+        {
+            out.write(BLANK) ;
+            writeString(node.getBlankNodeLabel()) ;
+            return ;
+        }
+        if ( node.isLiteral() )
+        {
+            String lex = node.getLiteralLexicalForm() ;
+            String type = node.getLiteralDatatypeURI() ;
+            String lang = node.getLiteralLanguage() ;
+            if ( type != null )
+            {
+                out.write(TYPED) ;
+                writeString(lex) ;
+                Integer id = datatypes.get(type) ;
+                if ( id != null )
+                    writeNumber(id.intValue()) ;
+                else
+                {
+                    int n = datatypes.size() ;
+                    datatypes.put(type, new Integer(n)) ;
+                    writeNumber(n) ;
+                    writeString(type) ;
+                }
+            }
+            else if ( lang != null && lang.length() > 0 )
+            {
+                out.write(LANG) ;
+                writeString(lex) ;
+                writeString(lang) ;
+            }
+            else
+            {
+                out.write(PLAIN) ;
+                writeString(lex) ;
+            }
+            return ;
+        }
+        if ( node.isVariable() )
+        {
+            out.write(VAR) ;
+            writeString(node.getName()) ;
+            return ;
+        }
+        throw new IllegalArgumentException("Can't write node: "+node) ;
+    }
+
+    private void writeNumber(long n) throws IOException
+    {
+        while ( (n & ~0x7FL) != 0 )
+        {
+            out.write((int)((n & 0x7F) | 0x80)) ;
+            n >>>= 7 ;
+        }
+        out.write((int)n) ;
+    }
+
+    private void writeString(String s) throws IOException
+    {
+        byte[] bytes = s.getBytes("UTF-8") ;
+        writeNumber(bytes.length) ;
+        out.write(bytes) ;
+    }
+
+    private static int sharedPrefix(String a, String b)
+    {
+        int n = Math.min(a.length(), b.length()) ;
+        int i = 0 ;
+        while ( i < n && a.charAt(i) == b.charAt(i) )
+            i++ ;
+        return i ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
@@ -0,0 +1,269 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.Iterator;
+import java.util.List;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingKey;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.expr.E_Aggregator;
+import com.hp.hpl.jena.sparql.expr.ExprEvalException;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+import com.hp.hpl.jena.sparql.expr.aggregate.AggregatorPrimitive;
+import com.hp.hpl.jena.sparql.expr.nodevalue.XSDFuncOp;
+
+/** The grouping keys and aggregators of a GROUP BY, and the state of each group.
+ *  COUNT, SUM, MIN, MAX and AVG keep their state for a group in the slots of
+ *  a {@link Group} (a long for counts, a NodeValue for the value so far);
+ *  any other aggregator is called, as before, with the group key.
+ *  Those aggregators (e.g. COUNT(DISTINCT)) keep their own state, in memory, 
+ *  for every group, so grouping with any of them does not spill to disk 
+ *  (see {@link #spillable()}).
+ *  Calculates the same answers as the aggregator classes.  
+ */ 
+class GroupAggregation
+{
+    /** One group : its key and the aggregation state. */ 
+    static class Group
+    {
+        final BindingKey key ;
+        final long[] counts ;
+        final NodeValue[] values ;
+
+        Group(BindingKey key, int numCounts, int numValues)
+        {
+            this.key = key ;
+            this.counts = ( numCounts == 0 ) ? null : new long[numCounts] ;
+            this.values = ( numValues == 0 ) ? null : new NodeValue[numValues] ;
+        }
+    }
+    
+    // XQuery/XPath Functions&Operators suggests zero (as AggSum, AggAvg)
+    private static final NodeValue noValues = NodeValue.nvZERO ;
+    
+    private final VarExprList groupVars ;
+    private final E_Aggregator[] aggregators ;
+    // Null for an aggregator that is not primitive.
+    private final AggregatorPrimitive[] primitives ;
+    private final int[] countSlot ;
+    private final int[] valueSlot ;
+    private int numCounts = 0 ;
+    private int numValues = 0 ;
+    
+    GroupAggregation(VarExprList groupVars, List<E_Aggregator> aggregators)
+    {
+        this.groupVars = groupVars ;
+        int N = ( aggregators == null ) ? 0 : aggregators.size() ;
+        this.aggregators = new E_Aggregator[N] ;
+        this.primitives = new AggregatorPrimitive[N] ;
+        this.countSlot = new int[N] ;
+        this.valueSlot = new int[N] ;
+        for ( int i = 0 ; i < N ; i++ )
+        {
+            E_Aggregator agg = aggregators.get(i) ;
+            this.aggregators[i] = agg ;
+            countSlot[i] = -1 ;
+            valueSlot[i] = -1 ;
+            if ( ! ( agg.getAggregator() instanceof AggregatorPrimitive ) )
+                continue ;
+            AggregatorPrimitive p = (AggregatorPrimitive)agg.getAggregator() ;
+            primitives[i] = p ;
+            int kind = p.getKind() ;
+            if ( kind == AggregatorPrimitive.COUNT || kind == AggregatorPrimitive.COUNT_EXPR || kind == AggregatorPrimitive.AVG )
+                countSlot[i] = numCounts++ ;
+            if ( kind != AggregatorPrimitive.COUNT && kind != AggregatorPrimitive.COUNT_EXPR )
+                valueSlot[i] = numValues++ ;
+        }
+    }
+    
+    /** Whether all the state of a group is in its {@link Group} - 
+     *  if not, there is no point spilling groups to disk.  */ 
+    boolean spillable()
+    {
+        for ( int i = 0 ; i < primitives.length ; i++ )
+        {
+            if ( primitives[i] == null )
+                return false ;
+        }
+        return true ;
+    }
+    
+    /** The group key of a binding */
+    BindingKey key(Binding binding, ExecutionContext execCxt) 
+    {
+        // No group vars (implicit or explicit) => working on whole result set. 
+        // Still need a BindingMap to assign to later.
+        Binding x = new BindingMap() ;
+        for ( Iterator<Var> iter = groupVars.getVars().iterator() ; iter.hasNext() ; )
+        {
+            Var var = iter.next() ;
+            Node node = groupVars.get(var, binding, execCxt) ;
+            if ( node != null )
+                x.add(var, node) ;
+        }
+        return new BindingKey(x) ;
+    }
+    
+    Group createGroup(BindingKey key)
+    {
+        return new Group(key, numCounts, numValues) ;
+    }
+    
+    void accumulate(Group group, Binding binding, ExecutionContext execCxt)
+    {
+        for ( int i = 0 ; i < aggregators.length ; i++ )
+        {
+            AggregatorPrimitive p = primitives[i] ;
+            if ( p == null )
+            {
+                // Assumes an aggregator is a per-execution mutable thingy
+                aggregators[i].getAggregator().accumulate(group.key, binding, execCxt) ;
+                continue ;
+            }
+            int kind = p.getKind() ;
+            if ( kind == AggregatorPrimitive.COUNT )
+            {
+                group.counts[countSlot[i]]++ ;
+                continue ;
+            }
+            NodeValue nv ;
+            try {
+                nv = p.getExpr().eval(binding, execCxt) ;
+            } catch (ExprEvalException ex)
+            { continue ; }
+            
+            int v = valueSlot[i] ;
+            switch (kind)
+            {
+                case AggregatorPrimitive.COUNT_EXPR:
+                    group.counts[countSlot[i]]++ ;
+                    break ;
+                case AggregatorPrimitive.AVG:
+                    if ( ! nv.isNumber() )
+                        break ;
+                    group.counts[countSlot[i]]++ ;
+                    group.values[v] = ( group.values[v] == null ) ? nv : XSDFuncOp.add(nv, group.values[v]) ;
+                    break ;
+                case AggregatorPrimitive.SUM:
+                    if ( ! nv.isNumber() )
+                        break ;
+                    group.values[v] = ( group.values[v] == null ) ? nv : XSDFuncOp.add(nv, group.values[v]) ;
+                    break ;
+                case AggregatorPrimitive.MIN:
+                    if ( group.values[v] == null || NodeValue.compareAlways(group.values[v], nv) > 0 )
+                        group.values[v] = nv ;
+                    break ;
+                case AggregatorPrimitive.MAX:
+                    if ( group.values[v] == null || NodeValue.compareAlways(group.values[v], nv) < 0 )
+                        group.values[v] = nv ;
+                    break ;
+            }
+        }
+    }
+
+    /** The output binding of a group : the key binding, extended with the aggregations. */ 
+    Binding finish(Group group)
+    {
+        Binding binding = group.key.getBinding() ;
+        if ( aggregators.length == 0 )
+            return binding ;
+        // Calculate all values before changing the binding in the key.
+        Node[] results = new Node[aggregators.length] ;
+        for ( int i = 0 ; i < aggregators.length ; i++ )
+            results[i] = value(group, i) ;
+        for ( int i = 0 ; i < aggregators.length ; i++ )
+        {
+            if ( results[i] != null )
+                binding.add(aggregators[i].asVar(), results[i]) ;
+        }
+        return binding ;
+    }
+    
+    private Node value(Group group, int i)
+    {
+        AggregatorPrimitive p = primitives[i] ;
+        if ( p == null )
+            return aggregators[i].getAggregator().getValue(group.key) ;
+        NodeValue nv = null ;
+        switch (p.getKind())
+        {
+            case AggregatorPrimitive.COUNT:
+            case AggregatorPrimitive.COUNT_EXPR:
+                nv = NodeValue.makeInteger(group.counts[countSlot[i]]) ;
+                break ;
+            case AggregatorPrimitive.SUM:
+                nv = group.values[valueSlot[i]] ;
+                if ( nv == null )
+                    nv = noValues ;
+                break ;
+            case AggregatorPrimitive.AVG:
+                long count = group.counts[countSlot[i]] ;
+                if ( count == 0 )
+                    nv = noValues ;
+                else
+                    nv = XSDFuncOp.divide(group.values[valueSlot[i]], NodeValue.makeInteger(count)) ;
+                break ;
+            case AggregatorPrimitive.MIN:
+            case AggregatorPrimitive.MAX:
+                nv = group.values[valueSlot[i]] ;
+                break ;
+        }
+        return ( nv == null ) ? null : nv.asNode() ; 
+    }
+    
+    /** The answer when there is no input at all : aggregators may have 
+     *  a default value.  Returns null if no aggregator has one (there are no groups). */ 
+    Binding finishEmpty()
+    {
+        boolean valueExists = false ;
+        Binding binding = new BindingMap() ;
+        for ( int i = 0 ; i < aggregators.length ; i++ )
+        {
+            E_Aggregator agg = aggregators[i] ;
+            Node value = agg.getAggregator().getValueEmpty() ;
+            if ( value != null )
+            {
+                binding.add(agg.asVar(), value) ;
+                valueExists = true ;
+            }
+        }
+        return valueExists ? binding : null ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
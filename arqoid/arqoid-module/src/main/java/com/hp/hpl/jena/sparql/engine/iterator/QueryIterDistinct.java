@@ -6,46 +6,162 @@
 
 package com.hp.hpl.jena.sparql.engine.iterator;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.ARQ;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.sparql.engine.QueryIterator;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.util.iterator.ClosableIterator;
 
 /** A QueryIterator that surpresses items already seen. 
  * Like com.hp.hpl.jena.util.iterators.UniqueExtendedIterator
  * except this one works on QueryIterators (and hence ClosableIterators)  
+ * <p>
+ * Rows seen are kept in compact form in a {@link RowTable}.  Up to 
+ * {@link ARQ#spillToDiskThreshold} rows are kept in memory, and returned 
+ * as they are found; after that, rows not in memory are written to temporary
+ * files, partitioned by their hash, and the duplicates in each partition
+ * are removed after the input is finished.
  * 
+ * @see QueryIterDistinctSorted
  * @author Andy Seaborne
  */
 
-public class QueryIterDistinct extends QueryIterDistinctReduced
+public class QueryIterDistinct extends QueryIter1
 {
-    private Set<Binding> seen = new HashSet<Binding>() ;
+    private final long threshold ;
+    private RowTable seen = new RowTable() ;
+    private SpillPartitions partitions = null ;
+    private ClosableIterator<Binding> spilled = null ;
+    private Binding slot = null ;
     
     public QueryIterDistinct(QueryIterator iter, ExecutionContext context)
     {
         super(iter, context)  ;
+        threshold = QueryIterSort.spillThreshold(context) ;
     }
 
     @Override
-    protected void closeSubIterator()
+    protected boolean hasNextBinding()
     {
-        seen = null ;
-        super.closeSubIterator() ;
+        if ( slot != null )
+            return true ;
+        
+        if ( spilled == null )
+        {
+            try {
+                for ( ; getInput().hasNext() ; )
+                {
+                    Binding b = getInput().nextBinding() ;
+                    Node[] row = RowTable.row(b) ;
+                    long fingerprint = RowTable.fingerprint(row) ;
+                    if ( seen.size() < threshold )
+                    {
+                        if ( seen.add(row, fingerprint) )
+                        {
+                            slot = b ;
+                            return true ;
+                        }
+                        continue ;
+                    }
+                    // Memory full : rows in memory are still found, 
+                    // any others are checked after the input is finished.
+                    if ( seen.contains(row, fingerprint) )
+                        continue ;
+                    if ( partitions == null )
+                        partitions = new SpillPartitions("arq-distinct", 0) ;
+                    partitions.write(RowTable.partitionHash(fingerprint), b) ;
+                }
+                if ( partitions == null )
+                    return false ;
+                seen = null ;
+                partitions.finishWriting() ;
+            } catch (RuntimeException ex)
+            {
+                if ( partitions != null )
+                    partitions.delete() ;
+                partitions = null ;
+                throw ex ;
+            }
+            spilled = partitions.results(null, processor(threshold)) ;
+        }
+        
+        if ( ! spilled.hasNext() )
+            return false ;
+        slot = spilled.next() ;
+        return true ;
     }
 
     @Override
-    protected boolean isDuplicate(Binding binding)
+    protected Binding moveToNextBinding()
     {
-        return seen.contains(binding) ;
+        Binding r = slot ;
+        slot = null ;
+        return r ;
     }
 
     @Override
-    protected void remember(Binding binding)
+    protected void closeSubIterator()
+    {
+        seen = null ;
+        slot = null ;
+        if ( spilled != null )
+            spilled.close() ;
+        else if ( partitions != null )
+            partitions.delete() ;
+        spilled = null ;
+        partitions = null ;
+    }
+    
+    // The rows of a partition were not in memory when they were written, so they
+    // can only be duplicates of each other.
+    private static Iterator<Binding> distinct(Iterator<Binding> rows, long threshold, int level)
+    {
+        RowTable table = new RowTable() ;
+        List<Binding> results = new ArrayList<Binding>() ;
+        SpillPartitions partitions = null ;
+        try {
+            for ( ; rows.hasNext() ; )
+            {
+                Binding b = rows.next() ;
+                Node[] row = RowTable.row(b) ;
+                long fingerprint = RowTable.fingerprint(row) ;
+                if ( table.size() < threshold || level >= SpillPartitions.MaxLevel )
+                {
+                    if ( table.add(row, fingerprint) )
+                        results.add(b) ;
+                    continue ;
+                }
+                if ( table.contains(row, fingerprint) )
+                    continue ;
+                if ( partitions == null )
+                    partitions = new SpillPartitions("arq-distinct", level) ;
+                partitions.write(RowTable.partitionHash(fingerprint), b) ;
+            }
+            if ( partitions != null )
+                partitions.finishWriting() ;
+        } catch (RuntimeException ex)
+        {
+            if ( partitions != null )
+                partitions.delete() ;
+            throw ex ;
+        }
+        
+        if ( partitions == null )
+            return results.iterator() ;
+        return partitions.results(results.iterator(), processor(threshold)) ;
+    }
+    
+    private static SpillPartitions.Processor processor(final long threshold)
     {
-        seen.add(binding) ;
+        return new SpillPartitions.Processor() {
+            public Iterator<Binding> process(Iterator<Binding> rows, int level)
+            { return distinct(rows, threshold, level) ; }
+        } ;
     }
 }
 
@@ -6,21 +6,31 @@
 
 package com.hp.hpl.jena.sparql.engine.iterator;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import com.hp.hpl.jena.graph.Node;
-import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.query.ARQ;
 import com.hp.hpl.jena.sparql.core.VarExprList;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.sparql.engine.QueryIterator;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
 import com.hp.hpl.jena.sparql.engine.binding.BindingKey;
-import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
 import com.hp.hpl.jena.sparql.expr.E_Aggregator;
 
+/** Group by hashing on the group key.  At most {@link ARQ#spillToDiskThreshold}
+ *  groups are kept in memory; the rows of any further groups are written to 
+ *  temporary files, partitioned by a hash of the group key, and each partition
+ *  is grouped in turn after the in-memory groups have been returned.
+ *  Aggregators other than COUNT, SUM, MIN, MAX and AVG keep per-group state
+ *  of their own, which can not be spilled, so with any of them all groups are
+ *  kept in memory.
+ *  
+ *  @see QueryIterGroupSorted 
+ */
+
 public class QueryIterGroup extends QueryIterPlainWrapper
 {
     public QueryIterGroup(QueryIterator qIter, 
@@ -29,123 +39,93 @@ public class QueryIterGroup extends QueryIterPlainWrapper
                           ExecutionContext execCxt)
     {
         super(null, execCxt) ;
-        Iterator<Binding> iter = calc(qIter, groupVars, aggregators, execCxt) ;
+        GroupAggregation aggregation = new GroupAggregation(groupVars, aggregators) ;
+        long budget = aggregation.spillable() ? QueryIterSort.spillThreshold(execCxt) : Long.MAX_VALUE ;
+        Iterator<Binding> iter = calc(qIter, aggregation, budget, execCxt) ;
         setIterator(iter) ;
     }
 
-    // Phase 1 : Consume the input iterator, assigning groups (keys) 
-    //           and push rows through the aggregator function. 
-    
-    // Phase 2 : Go over the group bindings and assign the value of each aggregation.
-    
-    private static Iterator<Binding> calc(QueryIterator iter, 
-                                          VarExprList groupVars, List<E_Aggregator> aggregators,
-                                          ExecutionContext execCxt)
+    private static Iterator<Binding> calc(QueryIterator iter, GroupAggregation aggregation, 
+                                          long budget, ExecutionContext execCxt)
     {
-        // Phase 1 : assign bindings to buckets by key and pump through the aggregrators.
-        Map<BindingKey, Binding> buckets = new HashMap<BindingKey, Binding>() ;    
-        
-        for ( ; iter.hasNext() ; )
-        {
-            Binding b = iter.nextBinding() ;
-            BindingKey key = genKey(groupVars, b, execCxt) ;
-            
-            // Assumes key binding has value based .equals/.hashCode. 
-            if ( ! buckets.containsKey(key) )
-                buckets.put(key, key.getBinding()) ;
-            
-            // Assumes an aggregator is a per-execution mutable thingy
-            if ( aggregators != null )
-            {
-                for ( Iterator<E_Aggregator> aggIter = aggregators.iterator() ; aggIter.hasNext() ; )
-                {
-                    E_Aggregator agg = aggIter.next();
-                    agg.getAggregator().accumulate(key, b, execCxt) ;
-                }
-            }
-        }
-        
-        // Phase 2 : Empty input
+        Iterator<Binding> results = group(iter, aggregation, budget, 0, execCxt) ;
+        if ( results != null )
+            return results ;
         
+        // Empty input.
         // If there are no binding from the input stage, two things can happen.
         //   If there are no aggregators, there are no groups.
         //   If there are aggregators, then they may have a default value. 
-        
-        if ( buckets.isEmpty() )
-        {
-            // The answer of an empty pattern. 
-            boolean valueExists = false ;
-            Binding binding = new BindingMap() ;
-            
-            if ( aggregators != null )
+        Binding binding = aggregation.finishEmpty() ;
+        if ( binding != null )
+            return QueryIterSingleton.create(binding, execCxt) ;
+        else 
+            return new QueryIterNullIterator(execCxt) ;
+    }
+    
+    // Phase 1 : Consume the input iterator, assigning groups (keys) 
+    //           and push rows through the aggregation.  Rows of new groups
+    //           once the budget is reached go to the spill partitions.
+    
+    // Phase 2 : Go over the groups and assign the value of each aggregation,
+    //           then (lazily) group each partition, one level down.
+    
+    // Returns null for no input.
+    private static Iterator<Binding> group(Iterator<Binding> iter, final GroupAggregation aggregation,
+                                           final long budget, int level, final ExecutionContext execCxt)
+    {
+        Map<BindingKey, GroupAggregation.Group> groups = new HashMap<BindingKey, GroupAggregation.Group>() ;
+        SpillPartitions partitions = null ;
+        boolean done = false ;
+        try {
+            for ( ; iter.hasNext() ; )
             {
-                for ( Iterator<E_Aggregator> aggIter = aggregators.iterator() ; aggIter.hasNext() ; )
+                Binding b = iter.next() ;
+                BindingKey key = aggregation.key(b, execCxt) ;
+                // Assumes key binding has value based .equals/.hashCode. 
+                GroupAggregation.Group group = groups.get(key) ;
+                if ( group == null )
                 {
-                    E_Aggregator agg = aggIter.next();
-                    Var v = agg.asVar() ;
-                    Node value = agg.getAggregator().getValueEmpty() ;
-                    if ( value != null )
+                    if ( groups.size() >= budget && level < SpillPartitions.MaxLevel )
                     {
-                        binding.add(v, value) ;
-                        valueExists = true ;
+                        if ( partitions == null )
+                            partitions = new SpillPartitions("arq-group", level) ;
+                        partitions.write(key.hashCode(), b) ;
+                        continue ;
                     }
+                    group = aggregation.createGroup(key) ;
+                    groups.put(key, group) ;
                 }
+                aggregation.accumulate(group, b, execCxt) ;
             }
+            if ( partitions != null )
+                partitions.finishWriting() ;
             
-            if ( valueExists )
-                return QueryIterSingleton.create(binding, execCxt) ;
-            else 
-                return new QueryIterNullIterator(execCxt) ;
-        }
-        
-        
-        // Phase 2 : There was input and so there are some groups.
-        
-        // For each bucket, get binding, add aggregator values to the binding.
-        if ( aggregators != null )
-        {
-            for ( Iterator<BindingKey> bIter = buckets.keySet().iterator() ; bIter.hasNext(); )
+            if ( groups.isEmpty() )
             {
-                BindingKey key = bIter.next();
-                
-                // Maybe null
-                Binding binding = buckets.get(key) ; // == key.getBinding() ;
-                
-                for ( Iterator<E_Aggregator> aggIter = aggregators.iterator() ; aggIter.hasNext() ; )
-                {
-                    E_Aggregator agg = aggIter.next();
-                    Var v = agg.asVar() ;
-                    Node value =  agg.getAggregator().getValue(key) ;
-                    if ( value != null )
-                        // Extend with the aggregations.
-                        binding.add(v, value) ;
-                }
+                done = true ;
+                return null ;
             }
-        }
-
-        // Results - the binding modified by the aggregations.
-        
-        return buckets.values().iterator() ;
-    }
-    
-    static private BindingKey genKey(VarExprList vars, Binding binding, ExecutionContext execCxt) 
-    {
-        return new BindingKey(copyProject(vars, binding, execCxt)) ;
-    }
-    
-    static private Binding copyProject(VarExprList vars, Binding binding, ExecutionContext execCxt)
-    {
-        // No group vars (implicit or explicit) => working on whole result set. 
-        // Still need a BindingMap to assign to later.
-        Binding x = new BindingMap() ;
-        for ( Iterator<Var> iter = vars.getVars().iterator() ; iter.hasNext() ; )
+            
+            List<Binding> results = new ArrayList<Binding>(groups.size()) ;
+            for ( GroupAggregation.Group group : groups.values() )
+                results.add(aggregation.finish(group)) ;
+            groups = null ;
+            
+            done = true ;
+            if ( partitions == null )
+                return results.iterator() ;
+            SpillPartitions.Processor processor = new SpillPartitions.Processor() {
+                public Iterator<Binding> process(Iterator<Binding> rows, int level)
+                { return group(rows, aggregation, budget, level, execCxt) ; }
+            } ;
+            return partitions.results(results.iterator(), processor) ;
+        } finally
         {
-            Var var = iter.next() ;
-            Node node = vars.get(var, binding, execCxt) ;
-            if ( node != null )
-                x.add(var, node) ;
+            // On any failure, the partitions are not going to be read. 
+            if ( ! done && partitions != null )
+                partitions.delete() ;
         }
-        return x ;
     }
 }
 
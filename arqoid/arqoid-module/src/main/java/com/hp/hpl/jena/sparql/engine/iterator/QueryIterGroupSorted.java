@@ -0,0 +1,124 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.List;
+
+import com.hp.hpl.jena.sparql.core.VarExprList;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingKey;
+import com.hp.hpl.jena.sparql.expr.E_Aggregator;
+
+/** Group an input that is already sorted on the group keys, so that the rows
+ *  of a group are adjacent.  Each group is returned when the key changes;
+ *  only the current group is held in memory.
+ *  
+ *  @see QueryIterGroup 
+ */
+
+public class QueryIterGroupSorted extends QueryIter1
+{
+    private final GroupAggregation aggregation ;
+    private GroupAggregation.Group current = null ;
+    private Binding slot = null ;
+    private boolean seenInput = false ;
+    private boolean finished = false ;
+
+    public QueryIterGroupSorted(QueryIterator qIter, 
+                                VarExprList groupVars,
+                                List<E_Aggregator> aggregators,
+                                ExecutionContext execCxt)
+    {
+        super(qIter, execCxt) ;
+        aggregation = new GroupAggregation(groupVars, aggregators) ;
+    }
+
+    @Override
+    protected boolean hasNextBinding()
+    {
+        if ( slot != null )
+            return true ;
+        if ( finished )
+            return false ;
+        
+        for ( ; getInput().hasNext() ; )
+        {
+            Binding b = getInput().nextBinding() ;
+            seenInput = true ;
+            BindingKey key = aggregation.key(b, getExecContext()) ;
+            Binding done = null ;
+            if ( current != null && ! current.key.equals(key) )
+            {
+                done = aggregation.finish(current) ;
+                current = null ;
+            }
+            if ( current == null )
+                current = aggregation.createGroup(key) ;
+            aggregation.accumulate(current, b, getExecContext()) ;
+            if ( done != null )
+            {
+                slot = done ;
+                return true ;
+            }
+        }
+        
+        finished = true ;
+        if ( current != null )
+        {
+            slot = aggregation.finish(current) ;
+            current = null ;
+        }
+        else if ( ! seenInput )
+            // No input : the aggregators may have default values.
+            slot = aggregation.finishEmpty() ;
+        return slot != null ;
+    }
+
+    @Override
+    protected Binding moveToNextBinding()
+    {
+        Binding r = slot ;
+        slot = null ;
+        return r ;
+    }
+
+    @Override
+    protected void closeSubIterator()
+    {
+        current = null ;
+        slot = null ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
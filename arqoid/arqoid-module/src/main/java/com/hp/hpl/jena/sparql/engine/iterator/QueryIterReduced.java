@@ -6,46 +6,57 @@
 
 package com.hp.hpl.jena.sparql.engine.iterator;
 
-import java.util.ArrayList;
-import java.util.List;
-
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.ARQ;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.sparql.engine.QueryIterator;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
 
-/** 
+/** REDUCED : surpresses duplicates within a window of recent rows.  
+ * The window is a {@link RowTable} of at most {@link ARQ#spillToDiskThreshold}
+ * rows, the same memory accounting as DISTINCT; when it is full, it is
+ * cleared and starts again.
+ * 
  * @author Andy Seaborne
  */
 
 public class QueryIterReduced extends QueryIterDistinctReduced
 {
-    List<Binding> window = new ArrayList<Binding>() ;
-    int N = 1 ;
+    private RowTable window = new RowTable() ;
+    private final long windowSize ;
+    // The row of the binding last tested, for remember()
+    private Node[] row = null ;
+    private long fingerprint = 0 ;
     
     public QueryIterReduced(QueryIterator iter, ExecutionContext context)
-    { super(iter, context)  ; }
+    { 
+        super(iter, context)  ;
+        windowSize = QueryIterSort.spillThreshold(context) ;
+    }
 
     @Override
     protected void closeSubIterator()
     {
         window = null ;
+        row = null ;
         super.closeSubIterator() ;
     }
 
     @Override
     protected boolean isDuplicate(Binding b)
     {
-        return window.contains(b) ; 
+        row = RowTable.row(b) ;
+        fingerprint = RowTable.fingerprint(row) ;
+        return window.contains(row, fingerprint) ; 
     }
     
     @Override
     protected void remember(Binding b)
     {
-        if ( window.size() >= N )
-            window.remove(window.size()-1) ;
-        window.add(0, b) ;
+        if ( window.size() >= windowSize )
+            window.clear() ;
+        window.add(row, fingerprint) ;
     }
-    
 }
 
 /*
@@ -6,20 +6,35 @@
 
 package com.hp.hpl.jena.sparql.engine.iterator;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
+import com.hp.hpl.jena.sparql.ARQException;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext;
 import com.hp.hpl.jena.sparql.engine.QueryIterator;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
 import com.hp.hpl.jena.sparql.engine.binding.BindingComparator;
+import com.hp.hpl.jena.sparql.engine.binding.BindingInputStream;
+import com.hp.hpl.jena.sparql.engine.binding.BindingOutputStream;
+import com.hp.hpl.jena.util.iterator.ClosableIterator;
+import com.hp.hpl.jena.util.iterator.NiceIterator;
+import com.hp.hpl.jena.query.ARQ;
 import com.hp.hpl.jena.query.SortCondition;
 
-/** Sort a query iterator.  Uses an in-memory sort, so limiting the size of
- * iterators that can be handled.
+/** Sort a query iterator.  Sorts in memory up to the spill threshold
+ * ({@link ARQ#spillToDiskThreshold}); beyond that, sorted runs of that many
+ * bindings are written to temporary files and merged as the results are read,
+ * at most {@link #MaxFanIn} runs at a time.  The files are deleted when the
+ * merge ends, when the iterator is closed, or on error.
  * 
  * @author Andy Seaborne
  */
@@ -37,24 +52,213 @@ public class QueryIterSort
 
     public QueryIterSort(QueryIterator qIter, Comparator<Binding> comparator, ExecutionContext context)
     {
-        super(sort(qIter, comparator), context) ;
+        super(sort(qIter, comparator, spillThreshold(context)), context) ;
+    }
+
+    /** The spill threshold set in the context, or the default. */
+    static long spillThreshold(ExecutionContext context)
+    {
+        if ( context == null || context.getContext() == null )
+            return ARQ.spillToDiskThresholdDefault ;
+        long threshold = context.getContext().getLong(ARQ.spillToDiskThreshold, ARQ.spillToDiskThresholdDefault) ;
+        return threshold > 0 ? threshold : Long.MAX_VALUE ;
     }
     
-    private static Iterator<Binding> sort(QueryIterator qIter, Comparator<Binding> comparator)
+    /** The most runs merged at once: a merge holds one open file per run. */ 
+    static final int MaxFanIn = 100 ;
+    
+    private static Iterator<Binding> sort(QueryIterator qIter, Comparator<Binding> comparator, long threshold)
     {
         // Be careful about duplicates.
         // Used to use a TreeSet but, well, that's a set.
         List<Binding> x = new ArrayList<Binding>() ;
-        for ( ; qIter.hasNext() ; )
+        List<File> runs = null ;
+        boolean done = false ;
+        try {
+            for ( ; qIter.hasNext() ; )
+            {
+                Binding b = qIter.next() ;
+                x.add(b) ;
+                if ( x.size() >= threshold )
+                {
+                    if ( runs == null )
+                        runs = new ArrayList<File>() ;
+                    runs.add(spill(Arrays.asList(sortArray(x, comparator)).iterator())) ;
+                    x.clear() ;
+                }
+            }
+            Binding[] y = sortArray(x, comparator) ;
+            x = null ;      // Drop the List now - might be big.  Unlikely to really make a real difference.  But we can try.
+            Iterator<Binding> iter ; 
+            if ( runs == null )
+                iter = Arrays.asList(y).iterator() ;
+            else
+                iter = new MergeRuns(mergePasses(runs, comparator), y, comparator) ;
+            done = true ;
+            return iter ;
+        } finally
         {
-            Binding b = qIter.next() ;
-            x.add(b) ;
+            // On any failure, the runs written so far are not needed.
+            if ( ! done && runs != null )
+                delete(runs) ;
         }
-        Binding[] y = x.toArray(new Binding[]{}) ;
-        x = null ;      // Drop the List now - might be big.  Unlikely to really make a real difference.  But we can try.
+    }
+
+    private static Binding[] sortArray(List<Binding> x, Comparator<Binding> comparator)
+    {
+        Binding[] y = x.toArray(new Binding[x.size()]) ;
         Arrays.sort(y, comparator) ;
-        x = Arrays.asList(y) ;
-        return x.iterator() ;
+        return y ;
+    }
+    
+    /** Merge the runs, MaxFanIn at a time, until a final merge of them
+     *  and the in-memory run is within MaxFanIn. The list is updated as runs are
+     *  replaced, so, on error, the caller deletes the files that remain. */ 
+    private static List<File> mergePasses(List<File> runs, Comparator<Binding> comparator)
+    {
+        while ( runs.size() >= MaxFanIn )
+        {
+            List<File> group = new ArrayList<File>(runs.subList(0, MaxFanIn)) ;
+            File merged = spill(new MergeRuns(group, new Binding[0], comparator)) ;
+            // MergeRuns has deleted the group.
+            runs.subList(0, MaxFanIn).clear() ;
+            runs.add(merged) ;
+        }
+        return runs ;
+    }
+
+    private static File spill(Iterator<Binding> sorted)
+    {
+        File file = null ;
+        BindingOutputStream out = null ;
+        boolean done = false ;
+        try {
+            file = File.createTempFile("arq-sort", ".bin") ;
+            out = new BindingOutputStream(new FileOutputStream(file)) ;
+            for ( ; sorted.hasNext() ; )
+                out.write(sorted.next()) ;
+            out.close() ;
+            out = null ;
+            done = true ;
+            return file ;
+        } catch (IOException ex)
+        {
+            throw new ARQException(ex) ;
+        } finally
+        {
+            NiceIterator.close(sorted) ;
+            if ( ! done )
+            {
+                if ( out != null )
+                {
+                    try { out.close() ; } catch (IOException ex) {}
+                }
+                if ( file != null )
+                    file.delete() ;
+            }
+        }
+    }
+
+    private static void delete(List<File> runs)
+    {
+        for ( File f : runs )
+            f.delete() ;
+    }
+
+    /** k-way merge of the spilled runs and the last, in-memory, run.
+     *  Deletes the files when the merge ends or is closed. */
+    private static class MergeRuns implements ClosableIterator<Binding>
+    {
+        private final List<File> files ;
+        private final List<BindingInputStream> inputs = new ArrayList<BindingInputStream>() ;
+        private final Binding[] inMemory ;
+        private int inMemoryIndex = 0 ;
+        private final PriorityQueue<Head> heads ;
+        private boolean closed = false ;
+
+        // The current binding of a run; ties go to the earlier run, so the
+        // merge is stable.
+        private static class Head
+        {
+            final Binding binding ;
+            final int run ;
+            Head(Binding binding, int run) { this.binding = binding ; this.run = run ; }
+        }
+
+        MergeRuns(List<File> files, Binding[] inMemory, final Comparator<Binding> comparator)
+        {
+            this.files = files ;
+            this.inMemory = inMemory ;
+            heads = new PriorityQueue<Head>(files.size()+1, new Comparator<Head>() {
+                public int compare(Head h1, Head h2)
+                {
+                    int x = comparator.compare(h1.binding, h2.binding) ;
+                    if ( x != 0 )
+                        return x ;
+                    return h1.run - h2.run ;
+                }}) ;
+            try {
+                for ( int i = 0 ; i < files.size() ; i++ )
+                {
+                    inputs.add(new BindingInputStream(new FileInputStream(files.get(i)))) ;
+                    advance(i) ;
+                }
+                advance(files.size()) ;
+            }
+            catch (IOException ex) { close() ; throw new ARQException(ex) ; }
+            catch (RuntimeException ex) { close() ; throw ex ; }
+        }
+
+        // Move run i on to its next binding, if any.
+        private void advance(int run)
+        {
+            Binding b ;
+            if ( run == inputs.size() )
+                b = ( inMemoryIndex < inMemory.length ) ? inMemory[inMemoryIndex++] : null ;
+            else
+            {
+                try { b = inputs.get(run).read() ; }
+                catch (IOException ex) { throw new ARQException(ex) ; }
+            }
+            if ( b != null )
+                heads.add(new Head(b, run)) ;
+        }
+
+        public boolean hasNext()
+        {
+            if ( heads.isEmpty() )
+            {
+                close() ;
+                return false ;
+            }
+            return true ;
+        }
+
+        public Binding next()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException("MergeRuns.next") ;
+            Head h = heads.poll() ;
+            try { advance(h.run) ; }
+            catch (RuntimeException ex) { close() ; throw ex ; }
+            return h.binding ;
+        }
+
+        public void remove()
+        { throw new UnsupportedOperationException("MergeRuns.remove") ; }
+
+        public void close()
+        {
+            if ( closed )
+                return ;
+            closed = true ;
+            heads.clear() ;
+            for ( BindingInputStream in : inputs )
+            {
+                try { in.close() ; } catch (IOException ex) {}
+            }
+            delete(files) ;
+        }
     }
 }
 
@@ -0,0 +1,279 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingComparator;
+import com.hp.hpl.jena.sparql.engine.binding.BindingKey;
+import com.hp.hpl.jena.sparql.engine.binding.BindingProject;
+import com.hp.hpl.jena.query.SortCondition;
+
+/** The first N bindings of a query iterator in sorted order - the same as
+ *  the first N of a QueryIterSort, but keeping only N bindings, in a bounded
+ *  priority queue, so ORDER BY + LIMIT takes O(N) space and O(M log N) time.
+ *  If N is over the spill threshold, this is a full (external) sort.
+ *  <p>
+ *  With distinct variables, bindings that agree on those variables count
+ *  once, and the one kept is the first in sort order (by the sort 
+ *  conditions, then arrival): the first N of (distinct (project vars
+ *  (order ...))) are the projections of the bindings this returns.
+ */
+
+public class QueryIterTopN extends QueryIterPlainWrapper
+{
+    public QueryIterTopN(QueryIterator qIter, List<SortCondition> conditions, long numItems, ExecutionContext context)
+    {
+        this(qIter, new BindingComparator(conditions, context), numItems, null, context) ;
+    }
+
+    public QueryIterTopN(QueryIterator qIter, List<SortCondition> conditions, long numItems, List<Var> distinctVars, ExecutionContext context)
+    {
+        this(qIter, new BindingComparator(conditions, context), numItems, distinctVars, context) ;
+    }
+
+    public QueryIterTopN(QueryIterator qIter, Comparator<Binding> comparator, long numItems, List<Var> distinctVars, ExecutionContext context)
+    {
+        super(distinctVars == null
+              ? topN(qIter, comparator, numItems, context)
+              : topNDistinct(qIter, comparator, numItems, distinctVars, context),
+              context) ;
+    }
+
+    private static Iterator<Binding> topN(QueryIterator qIter, Comparator<Binding> comparator, long numItems, ExecutionContext context)
+    {
+        if ( numItems >= QueryIterSort.spillThreshold(context) )
+        {
+            QueryIterator sorted = new QueryIterSort(qIter, comparator, context) ;
+            return new QueryIterSlice(sorted, 0, numItems, context) ;
+        }
+
+        int N = (int)numItems ;
+        if ( N <= 0 )
+        {
+            qIter.close() ;
+            return Collections.<Binding>emptyList().iterator() ;
+        }
+
+        // A max-heap of the N smallest so far: the head is the one to drop.
+        Comparator<Binding> reverse = Collections.reverseOrder(comparator) ;
+        PriorityQueue<Binding> heap = new PriorityQueue<Binding>(Math.min(N, 1024)+1, reverse) ;
+        for ( ; qIter.hasNext() ; )
+        {
+            Binding b = qIter.next() ;
+            if ( heap.size() < N )
+                heap.add(b) ;
+            else if ( comparator.compare(b, heap.peek()) < 0 )
+            {
+                heap.poll() ;
+                heap.add(b) ;
+            }
+        }
+        Binding[] y = new Binding[heap.size()] ;
+        for ( int i = y.length-1 ; i >= 0 ; i-- )
+            y[i] = heap.poll() ;
+        return Arrays.asList(y).iterator() ;
+    }
+
+    private static Iterator<Binding> topNDistinct(QueryIterator qIter, Comparator<Binding> comparator, long numItems, List<Var> vars, ExecutionContext context)
+    {
+        if ( numItems >= QueryIterSort.spillThreshold(context) )
+            // Sort everything; the first of each projection is then the one
+            // DISTINCT keeps.
+        {
+            QueryIterator sorted = new QueryIterSort(qIter, comparator, context) ;
+            return new QueryIterSlice(new QueryIterDistinctFirst(sorted, vars, context), 0, numItems, context) ;
+        }
+
+        int N = (int)numItems ;
+        if ( N <= 0 )
+        {
+            qIter.close() ;
+            return Collections.<Binding>emptyList().iterator() ;
+        }
+
+        // The best binding so far for each projection in the top N, and a
+        // max-heap of them.  Bindings that are equal by the sort conditions are
+        // ordered by arrival, as a stable sort would leave them, so the heap is
+        // a total order and only bindings with the same projection are merged.
+        // (BindingComparator.compare breaks ties by the variables of its
+        // first argument, which is not consistent for partly bound rows.)
+        if ( comparator instanceof BindingComparator )
+            comparator = conditionsOnly((BindingComparator)comparator) ;
+        // A binding replaced by a better one for its projection is left in
+        // the heap, marked dropped, until it reaches the head or there are
+        // more than N of them.
+        Map<BindingKey, Entry> chosen = new HashMap<BindingKey, Entry>() ;
+        Comparator<Entry> reverse = Collections.reverseOrder(new EntryComparator(comparator)) ;
+        PriorityQueue<Entry> heap = new PriorityQueue<Entry>(Math.min(N, 1024)+1, reverse) ;
+        int dropped = 0 ;
+        long seq = 0 ;
+        for ( ; qIter.hasNext() ; )
+        {
+            Binding b = qIter.next() ;
+            Entry entry = new Entry(b, new BindingKey(new BindingProject(vars, b)), seq++) ;
+            Entry current = chosen.get(entry.key) ;
+            if ( current != null )
+            {
+                // Only replace by a strictly better one : on a tie, the first stays.
+                if ( comparator.compare(b, current.binding) >= 0 )
+                    continue ;
+                current.dropped = true ;
+                dropped++ ;
+            }
+            else if ( chosen.size() >= N )
+            {
+                Entry last = heap.peek() ;
+                if ( reverse.compare(entry, last) <= 0 )
+                    // Not better than the worst kept.
+                    continue ;
+                heap.poll() ;
+                chosen.remove(last.key) ;
+            }
+            heap.add(entry) ;
+            chosen.put(entry.key, entry) ;
+            
+            // Keep dropped entries off the head, and keep the heap within 2N.
+            while ( heap.peek().dropped )
+            {
+                heap.poll() ;
+                dropped-- ;
+            }
+            if ( dropped > N )
+            {
+                PriorityQueue<Entry> heap2 = new PriorityQueue<Entry>(chosen.size()+1, reverse) ;
+                heap2.addAll(chosen.values()) ;
+                heap = heap2 ;
+                dropped = 0 ;
+            }
+        }
+        chosen = null ;
+        Binding[] y = new Binding[heap.size()-dropped] ;
+        for ( int i = y.length-1 ; i >= 0 ; )
+        {
+            Entry e = heap.poll() ;
+            if ( ! e.dropped )
+                y[i--] = e.binding ;
+        }
+        return Arrays.asList(y).iterator() ;
+    }
+    
+    private static Comparator<Binding> conditionsOnly(final BindingComparator comparator)
+    {
+        return new Comparator<Binding>() {
+            public int compare(Binding b1, Binding b2)
+            { return comparator.compareConditions(b1, b2) ; }
+        } ;
+    }
+    
+    /** A binding of the top N with DISTINCT : its projection and when it arrived. */ 
+    private static class Entry
+    {
+        final Binding binding ;
+        final BindingKey key ;
+        final long seq ;
+        boolean dropped = false ;
+        
+        Entry(Binding binding, BindingKey key, long seq)
+        {
+            this.binding = binding ;
+            this.key = key ;
+            this.seq = seq ;
+        }
+    }
+    
+    /** Sort order, then arrival order. */ 
+    private static class EntryComparator implements Comparator<Entry>
+    {
+        private final Comparator<Binding> comparator ;
+        EntryComparator(Comparator<Binding> comparator) { this.comparator = comparator ; }
+
+        public int compare(Entry e1, Entry e2)
+        {
+            int x = comparator.compare(e1.binding, e2.binding) ;
+            if ( x != 0 )
+                return x ;
+            return ( e1.seq < e2.seq ) ? -1 : ( e1.seq == e2.seq ? 0 : 1 ) ;
+        }
+    }
+
+    /** Keep the first binding for each projection of a sorted iterator.
+     *  The order must be kept, so this does not spill. */
+    private static class QueryIterDistinctFirst extends QueryIterDistinctReduced
+    {
+        private final List<Var> vars ;
+        private RowTable seen = new RowTable() ;
+        // The projection last tested, for remember()
+        private Node[] row = null ;
+        private long fingerprint = 0 ;
+
+        QueryIterDistinctFirst(QueryIterator qIter, List<Var> vars, ExecutionContext context)
+        {
+            super(qIter, context) ;
+            this.vars = vars ;
+        }
+
+        @Override
+        protected void closeSubIterator()
+        {
+            seen = null ;
+            row = null ;
+            super.closeSubIterator() ;
+        }
+
+        @Override
+        protected boolean isDuplicate(Binding binding)
+        {
+            row = RowTable.row(new BindingProject(vars, binding)) ;
+            fingerprint = RowTable.fingerprint(row) ;
+            return seen.contains(row, fingerprint) ;
+        }
+
+        @Override
+        protected void remember(Binding binding)
+        { seen.add(row, fingerprint) ; }
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
@@ -0,0 +1,193 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.util.Iterator;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+
+/** A set of rows for DISTINCT and REDUCED.  A row is the compact form of
+ *  a binding : a flat array of (variable, value) pairs, without the binding 
+ *  object or its parents.  Rows are stored, by open addressing, with a 64 bit 
+ *  hash (fingerprint) that is compared before the rows themselves;
+ *  the test for a duplicate is exact.
+ */ 
+class RowTable
+{
+    private static final int InitialSize = 64 ;
+    
+    private long[] fingerprints ;
+    private Node[][] rows ;
+    private int size = 0 ;
+    
+    RowTable() { clear() ; }
+    
+    int size() { return size ; }
+    
+    void clear()
+    {
+        fingerprints = new long[InitialSize] ;
+        rows = new Node[InitialSize][] ;
+        size = 0 ;
+    }
+    
+    /** The row of a binding : variables and values, in the binding's order. */ 
+    static Node[] row(Binding binding)
+    {
+        Node[] row = new Node[2*binding.size()] ;
+        int i = 0 ;
+        for ( Iterator<Var> iter = binding.vars() ; iter.hasNext() ; )
+        {
+            Var var = iter.next() ;
+            Node node = binding.get(var) ;
+            if ( node == null )
+                continue ;
+            if ( i == row.length )
+                row = resize(row, row.length+2) ;
+            row[i++] = var ;
+            row[i++] = node ;
+        }
+        if ( i != row.length )
+            row = resize(row, i) ;
+        return row ;
+    }
+    
+    private static Node[] resize(Node[] row, int length)
+    {
+        Node[] row2 = new Node[length] ;
+        System.arraycopy(row, 0, row2, 0, Math.min(length, row.length)) ;
+        return row2 ;
+    }
+    
+    /** Hash of a row, independent of the order of the variables. */ 
+    static long fingerprint(Node[] row)
+    {
+        long h = row.length ;
+        for ( int i = 0 ; i < row.length ; i += 2 )
+            h += mix((((long)row[i].hashCode())<<32) ^ (row[i+1].hashCode() & 0xFFFFFFFFL)) ;
+        return h ;
+    }
+    
+    /** The hash for choosing a spill partition. */ 
+    static int partitionHash(long fingerprint)
+    {
+        return (int)(fingerprint ^ (fingerprint>>>32)) ;
+    }
+    
+    boolean contains(Node[] row, long fingerprint)
+    {
+        return rows[find(row, fingerprint)] != null ;
+    }
+    
+    /** Add a row : returns false if it was already present. */ 
+    boolean add(Node[] row, long fingerprint)
+    {
+        int i = find(row, fingerprint) ;
+        if ( rows[i] != null )
+            return false ;
+        fingerprints[i] = fingerprint ;
+        rows[i] = row ;
+        size++ ;
+        // Keep the load factor at or below 1/2.
+        if ( 2*size > rows.length )
+            grow() ;
+        return true ;
+    }
+    
+    // The slot of the row, or the empty slot where it would go.
+    private int find(Node[] row, long fingerprint)
+    {
+        int mask = rows.length-1 ;
+        int i = (int)mix(fingerprint) & mask ;
+        for ( ;; )
+        {
+            if ( rows[i] == null )
+                return i ;
+            if ( fingerprints[i] == fingerprint && sameRow(rows[i], row) )
+                return i ;
+            i = (i+1) & mask ;
+        }
+    }
+    
+    private void grow()
+    {
+        long[] oldFingerprints = fingerprints ;
+        Node[][] oldRows = rows ;
+        fingerprints = new long[2*oldRows.length] ;
+        rows = new Node[2*oldRows.length][] ;
+        for ( int j = 0 ; j < oldRows.length ; j++ )
+        {
+            if ( oldRows[j] == null )
+                continue ;
+            int i = find(oldRows[j], oldFingerprints[j]) ;
+            fingerprints[i] = oldFingerprints[j] ;
+            rows[i] = oldRows[j] ;
+        }
+    }
+    
+    // Same (variable, value) pairs, in any order.
+    private static boolean sameRow(Node[] row1, Node[] row2)
+    {
+        if ( row1.length != row2.length )
+            return false ;
+        for ( int i = 0 ; i < row1.length ; i += 2 )
+        {
+            Node node2 = null ;
+            for ( int j = 0 ; j < row2.length ; j += 2 )
+            {
+                // Variables are compared by name.
+                if ( row1[i].equals(row2[j]) )
+                {
+                    node2 = row2[j+1] ;
+                    break ;
+                }
+            }
+            if ( node2 == null || ! row1[i+1].equals(node2) )
+                return false ;
+        }
+        return true ;
+    }
+    
+    private static long mix(long h)
+    {
+        h ^= (h >>> 33) ;
+        h *= 0xff51afd7ed558ccdL ;
+        h ^= (h >>> 33) ;
+        h *= 0xc4ceb9fe1a85ec53L ;
+        h ^= (h >>> 33) ;
+        return h ;
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
@@ -0,0 +1,263 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.hp.hpl.jena.sparql.ARQException;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingInputStream;
+import com.hp.hpl.jena.sparql.engine.binding.BindingOutputStream;
+import com.hp.hpl.jena.util.iterator.ClosableIterator;
+
+/** Temporary files of bindings, partitioned by a hash, for the operations that
+ *  spill to disk when they would hold more than the spill threshold in memory
+ *  (GROUP BY, DISTINCT).  Rows that must be compared with each other go to 
+ *  the same partition, so each partition can be processed on its own; 
+ *  a partition that is still too big is partitioned again, using different
+ *  bits of the hash, up to {@link #MaxLevel}.
+ */ 
+class SpillPartitions
+{
+    // Each spill splits the rows into NumPartitions files, chosen by PartitionBits
+    // of the spread hash.  Each level uses different bits; at the last
+    // level, everything must be kept in memory.
+    static final int PartitionBits = 4 ;
+    static final int NumPartitions = 1<<PartitionBits ;
+    static final int MaxLevel = 32/PartitionBits - 1 ;
+    
+    /** Process the rows of one partition. */ 
+    interface Processor
+    {
+        /** The results for the rows of a partition : null for none.
+         *  Any further spilling is at the level given. */ 
+        public Iterator<Binding> process(Iterator<Binding> rows, int level) ;
+    }
+    
+    private final String prefix ;
+    private final int level ;
+    private final File[] files = new File[NumPartitions] ;
+    private final BindingOutputStream[] outputs = new BindingOutputStream[NumPartitions] ;
+    
+    SpillPartitions(String prefix, int level)
+    {
+        this.prefix = prefix ;
+        this.level = level ; 
+    }
+    
+    private int partition(int hash)
+    {
+        int h = hash * 0x9E3779B9 ;
+        return ( h >>> (32-PartitionBits*(level+1)) ) & (NumPartitions-1) ;
+    }
+
+    void write(int hash, Binding binding)
+    {
+        int i = partition(hash) ;
+        try {
+            if ( outputs[i] == null )
+            {
+                // Not deleteOnExit: that remembers every file until the JVM exits.
+                // The caller deletes the files, by delete() or closing the results.
+                files[i] = File.createTempFile(prefix, ".bin") ;
+                outputs[i] = new BindingOutputStream(new FileOutputStream(files[i])) ;
+            }
+            outputs[i].write(binding) ;
+        } catch (IOException ex) { delete() ; throw new ARQException(ex) ; }
+    }
+    
+    void finishWriting()
+    {
+        try {
+            for ( int i = 0 ; i < NumPartitions ; i++ )
+            {
+                if ( outputs[i] != null )
+                    outputs[i].close() ;
+                outputs[i] = null ;
+            }
+        } catch (IOException ex) { delete() ; throw new ARQException(ex) ; }
+    }
+    
+    void delete()
+    {
+        for ( int i = 0 ; i < NumPartitions ; i++ )
+        {
+            if ( outputs[i] != null )
+            {
+                try { outputs[i].close() ; } catch (IOException ex) {}
+                outputs[i] = null ;
+            }
+            if ( files[i] != null )
+            {
+                files[i].delete() ;
+                files[i] = null ;
+            }
+        }
+    }
+    
+    /** The results already calculated in memory, then the results of each
+     *  partition, in turn, as the iterator is used.  Deletes the files as they
+     *  are used, when the iterator is closed, or on error. */ 
+    ClosableIterator<Binding> results(Iterator<Binding> inMemory, Processor processor)
+    {
+        return new Results(inMemory, processor) ;
+    }
+    
+    private class Results implements ClosableIterator<Binding>
+    {
+        private Iterator<Binding> current ;
+        private final Processor processor ;
+        private int nextPartition = 0 ;
+        private boolean closed = false ;
+
+        Results(Iterator<Binding> inMemory, Processor processor)
+        {
+            this.current = inMemory ;
+            this.processor = processor ;
+        }
+        
+        public boolean hasNext()
+        {
+            if ( closed )
+                return false ;
+            for ( ;; )
+            {
+                if ( current != null && current.hasNext() )
+                    return true ;
+                closeCurrent() ;
+                if ( nextPartition == NumPartitions )
+                {
+                    close() ;
+                    return false ;
+                }
+                int i = nextPartition++ ;
+                File file = files[i] ;
+                if ( file == null )
+                    continue ;
+                Reader reader = null ;
+                boolean done = false ;
+                try {
+                    reader = new Reader(file) ;
+                    current = processor.process(reader, level+1) ;
+                    done = true ;
+                } finally {
+                    if ( reader != null )
+                        reader.close() ;
+                    file.delete() ;
+                    files[i] = null ;
+                    // On error, the remaining partitions are not going to be read.
+                    if ( ! done )
+                        close() ;
+                }
+            }
+        }
+
+        public Binding next()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException("SpillPartitions.next") ;
+            return current.next() ;
+        }
+
+        public void remove()
+        { throw new UnsupportedOperationException("SpillPartitions.remove") ; }
+
+        public void close()
+        {
+            if ( closed )
+                return ;
+            closed = true ;
+            closeCurrent() ;
+            delete() ;
+        }
+        
+        private void closeCurrent()
+        {
+            if ( current instanceof ClosableIterator )
+                ((ClosableIterator<Binding>)current).close() ;
+            current = null ;
+        }
+    }
+    
+    /** Read back the rows of one partition. */
+    private static class Reader implements ClosableIterator<Binding>
+    {
+        private BindingInputStream in ;
+        private Binding slot = null ;
+        
+        Reader(File file)
+        {
+            try { in = new BindingInputStream(new FileInputStream(file)) ; }
+            catch (IOException ex) { throw new ARQException(ex) ; }
+        }
+
+        public boolean hasNext()
+        {
+            if ( slot != null )
+                return true ;
+            if ( in == null )
+                return false ;
+            try { slot = in.read() ; }
+            catch (IOException ex) { throw new ARQException(ex) ; }
+            if ( slot == null )
+                close() ;
+            return slot != null ;
+        }
+
+        public Binding next()
+        {
+            if ( ! hasNext() )
+                throw new NoSuchElementException("SpillPartitions.Reader.next") ;
+            Binding b = slot ;
+            slot = null ;
+            return b ;
+        }
+
+        public void remove()
+        { throw new UnsupportedOperationException("SpillPartitions.Reader.remove") ; }
+
+        public void close()
+        {
+            if ( in == null )
+                return ;
+            try { in.close() ; } catch (IOException ex) {}
+            in = null ;
+        }
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file
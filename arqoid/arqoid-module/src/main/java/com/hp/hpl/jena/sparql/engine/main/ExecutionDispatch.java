@@ -242,6 +242,13 @@ class ExecutionDispatch implements OpVisitor
         push(qIter) ;
     }
     
+    public void visit(OpTopN opTop)
+    {
+        QueryIterator input = pop() ;
+        QueryIterator qIter = opExecutor.execute(opTop, input) ;
+        push(qIter) ;
+    }
+    
     public void visit(OpGroupAgg opGroupAgg)
     { 
         QueryIterator input = pop() ;
@@ -5,6 +5,8 @@
 
 package com.hp.hpl.jena.sparql.engine.main ;
 
+import java.util.ArrayList ;
+import java.util.List ;
 import java.util.Set ;
 
 import com.hp.hpl.jena.sparql.algebra.Op ;
@@ -111,6 +113,22 @@ public class JoinClassifier
         return !bad1 && !bad2 ;
     }
 
+    /** The variables a hash join of left and right can be keyed on: those
+     *  both sides define other than optionally. Empty if there are none, in
+     *  which case the join is a cross product (or the sharing is only through
+     *  optional variables) and hashing does not help. The hash table copes
+     *  with rows that turn out not to bind a key, so this need not be exact. */
+    static public List<Var> joinKeys(Op left, Op right)
+    {
+        left = effectiveOp(left) ;
+        right = effectiveOp(right) ;
+        Set<Var> vLeftFixed = new VarFinder(left).getFixed() ;
+        Set<Var> vRightFixed = new VarFinder(right).getFixed() ;
+        List<Var> keys = new ArrayList<Var>(SetUtils.intersection(vLeftFixed, vRightFixed)) ;
+        if (print) System.err.println("Join keys:     " + keys) ;
+        return keys ;
+    }
+
     static public Op effectiveOp(Op op)
     {
         if (op instanceof OpExt) op = ((OpExt) op).effectiveOp() ;
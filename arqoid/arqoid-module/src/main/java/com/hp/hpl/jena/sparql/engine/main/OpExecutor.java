@@ -7,19 +7,26 @@
 package com.hp.hpl.jena.sparql.engine.main;
 
 import java.util.ArrayList ;
+import java.util.HashSet ;
 import java.util.Iterator ;
 import java.util.List ;
+import java.util.Set ;
 
 import com.hp.hpl.jena.query.QueryExecException ;
+import com.hp.hpl.jena.query.SortCondition ;
 import com.hp.hpl.jena.sparql.ARQNotImplemented ;
 import com.hp.hpl.jena.sparql.algebra.Op ;
 import com.hp.hpl.jena.sparql.algebra.op.* ;
 import com.hp.hpl.jena.sparql.core.BasicPattern ;
+import com.hp.hpl.jena.sparql.core.Var ;
+import com.hp.hpl.jena.sparql.core.VarExprList ;
 import com.hp.hpl.jena.sparql.engine.ExecutionContext ;
 import com.hp.hpl.jena.sparql.engine.QueryIterator ;
 import com.hp.hpl.jena.sparql.engine.binding.Binding ;
 import com.hp.hpl.jena.sparql.engine.iterator.* ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterGraph ;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashJoin ;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterHashLeftJoin ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterJoin ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterLeftJoin ;
 import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterOptionalIndex ;
@@ -171,6 +178,10 @@ public class OpExecutor
         }
         QueryIterator left = executeOp(opJoin.getLeft(), input) ;
         QueryIterator right = executeOp(opJoin.getRight(), root()) ;
+        // Hash the right side on the shared, always-bound variables if there are any.
+        List<Var> keys = JoinClassifier.joinKeys(opJoin.getLeft(), opJoin.getRight()) ;
+        if ( keys.size() > 0 )
+            return new QueryIterHashJoin(left, right, keys, execCxt) ;
         QueryIterator qIter = new QueryIterJoin(left, right, execCxt) ;
         return qIter ;
     }
@@ -201,6 +212,9 @@ public class OpExecutor
     {
         QueryIterator left = executeOp(opLeftJoin.getLeft(), input) ;
         QueryIterator right = executeOp(opLeftJoin.getRight(), root()) ;
+        List<Var> keys = JoinClassifier.joinKeys(opLeftJoin.getLeft(), opLeftJoin.getRight()) ;
+        if ( keys.size() > 0 )
+            return new QueryIterHashLeftJoin(left, right, keys, opLeftJoin.getExprs(), execCxt) ;
         QueryIterator qIter = new QueryIterLeftJoin(left, right, opLeftJoin.getExprs(), execCxt) ;
         return qIter ;
     }
@@ -364,17 +378,71 @@ public class OpExecutor
         return qIter ;
     }
     
+    protected QueryIterator execute(OpTopN opTop, QueryIterator input)
+    { 
+        QueryIterator qIter = executeOp(opTop.getSubOp(), input) ;
+        qIter = new QueryIterTopN(qIter, opTop.getConditions(), opTop.getLimit(), opTop.getDistinctVars(), execCxt) ;
+        return qIter ;
+    }
+    
     protected QueryIterator execute(OpGroupAgg opGroupAgg, QueryIterator input)
     { 
         QueryIterator qIter = executeOp(opGroupAgg.getSubOp(), input) ;
-        qIter = new QueryIterGroup(qIter, opGroupAgg.getGroupVars(), opGroupAgg.getAggregators(), execCxt) ;
+        if ( sortedOnGroupKeys(opGroupAgg) )
+            // Groups are adjacent - stream them.
+            qIter = new QueryIterGroupSorted(qIter, opGroupAgg.getGroupVars(), opGroupAgg.getAggregators(), execCxt) ;
+        else
+            qIter = new QueryIterGroup(qIter, opGroupAgg.getGroupVars(), opGroupAgg.getAggregators(), execCxt) ;
         return qIter ;
     }
     
+    /** Is the input to the grouping ordered on the group variables? */ 
+    private static boolean sortedOnGroupKeys(OpGroupAgg opGroupAgg)
+    {
+        VarExprList groupVars = opGroupAgg.getGroupVars() ;
+        if ( ! groupVars.getExprs().isEmpty() )
+            return false ;
+        return sortedOn(opGroupAgg.getSubOp(), groupVars.getVars()) ;
+    }
+    
+    /** Are the results of the operation ordered on the variables (in any order,
+     *  before any other sort condition)?  Looks through the operations that keep
+     *  the order of their input. */ 
+    private static boolean sortedOn(Op op, List<Var> vars)
+    {
+        if ( vars.isEmpty() )
+            return false ;
+        while ( op instanceof OpProject || op instanceof OpFilter || op instanceof OpSlice )
+            op = ((Op1)op).getSubOp() ;
+        
+        List<SortCondition> conditions = null ;
+        if ( op instanceof OpOrder )
+            conditions = ((OpOrder)op).getConditions() ;
+        else if ( op instanceof OpTopN )
+            conditions = ((OpTopN)op).getConditions() ;
+        if ( conditions == null || conditions.size() < vars.size() )
+            return false ;
+        
+        Set<Var> leading = new HashSet<Var>() ;
+        for ( int i = 0 ; i < vars.size() ; i++ )
+        {
+            Expr expr = conditions.get(i).getExpression() ;
+            if ( ! expr.isVariable() )
+                return false ;
+            leading.add(expr.asVar()) ;
+        }
+        return leading.equals(new HashSet<Var>(vars)) ;
+    }
+    
     protected QueryIterator execute(OpDistinct opDistinct, QueryIterator input)
     {
         QueryIterator qIter = executeOp(opDistinct.getSubOp(), input) ;
-        qIter = new QueryIterDistinct(qIter, execCxt) ;
+        Op subOp = opDistinct.getSubOp() ;
+        if ( subOp instanceof OpProject && sortedOn(subOp, ((OpProject)subOp).getVars()) )
+            // Duplicates are adjacent.
+            qIter = new QueryIterDistinctSorted(qIter, execCxt) ;
+        else
+            qIter = new QueryIterDistinct(qIter, execCxt) ;
         return qIter ;
     }
 
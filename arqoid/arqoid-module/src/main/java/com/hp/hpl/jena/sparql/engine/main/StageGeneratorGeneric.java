@@ -8,6 +8,8 @@ package com.hp.hpl.jena.sparql.engine.main;
 
 import static com.hp.hpl.jena.sparql.engine.optimizer.reorder.PatternElements.TERM;
 
+import java.lang.reflect.Method;
+
 import com.hp.hpl.jena.db.GraphRDB;
 import com.hp.hpl.jena.graph.Graph;
 import com.hp.hpl.jena.graph.GraphStatisticsHandler;
@@ -162,10 +164,22 @@ public class StageGeneratorGeneric implements StageGenerator
         final long N ;
         
         private GraphStatisticsHandler stats ;
+        // Live per-predicate statistics, if the graph keeps them (the in-memory graphs do).
+        // Found by capability on the statistics handler, not by type, so this still
+        // builds and runs against Jena jars that predate per-predicate statistics.
+        private Method distinctSubjects = null ;
+        private Method distinctObjects = null ;
 
         ReorderStatsHandler(Graph graph, GraphStatisticsHandler stats)
         {
             this.stats = stats ;
+            distinctSubjects = statistic(stats, "getDistinctSubjects") ;
+            distinctObjects = statistic(stats, "getDistinctObjects") ;
+            if ( distinctSubjects == null || distinctObjects == null )
+            {
+                distinctSubjects = null ;
+                distinctObjects = null ;
+            }
             N = graph.size() ;
             // Note: when these are too badly wrong, the app can supply a statistics file. 
             TERM_S = 10 ;       // Wild guess: "An average subject has 10 properties".
@@ -177,6 +191,13 @@ public class StageGeneratorGeneric implements StageGenerator
         @Override
         protected double weight(PatternTriple pt)
         {
+            if ( distinctSubjects != null )
+            {
+                double x = weightLive(pt) ;
+                if ( x >= 0 )
+                    return x ;
+            }
+            
             double x = fixed.weight(pt) ;
             // If there are two fixed terms, use the fixed weighting, all of which are quite small.
             // This chooses a less optimal triple but the worse choice is still a very selective choice.
@@ -233,6 +254,67 @@ public class StageGeneratorGeneric implements StageGenerator
 
             return x ;
         }
+        
+        /** Weight from the live statistics: the estimated number of matches
+         *  for each binding of the already-bound variables (TERM) of the pattern,
+         *  or -1 if there is no estimate.
+         *  Unlike the fixed weights, two constants are not assumed to be selective:
+         *  "?x rdf:type :C" is as expensive as :C has instances.
+         */
+        private double weightLive(PatternTriple pt)
+        {
+            Node s = pt.subject.isNode() ? pt.subject.getNode() : Node.ANY ;
+            Node p = pt.predicate.isNode() ? pt.predicate.getNode() : Node.ANY ;
+            Node o = pt.object.isNode() ? pt.object.getNode() : Node.ANY ;
+            
+            double x = stats.getStatistic(s, p, o) ;
+            if ( x <= 0 )
+                return x ;
+            
+            // A bound subject or object picks out one of the distinct values
+            // in that position, for this predicate if it is known.
+            if ( TERM.equals(pt.subject) )
+            {
+                long d = distinct(distinctSubjects, p) ;
+                if ( d <= 0 )
+                    return -1 ;
+                x = x / d ;
+            }
+            
+            if ( TERM.equals(pt.object) )
+            {
+                long d = distinct(distinctObjects, p) ;
+                if ( d <= 0 )
+                    return -1 ;
+                x = x / d ;
+            }
+
+            // Bound predicate: no distinct count, fall back to the guess. 
+            if ( TERM.equals(pt.predicate) )
+                x = Math.min(x, TERM_P) ;
+            
+            return x ;
+        }
+        
+        /** The public "long name(Node)" statistic of the handler, or null if it has none. */ 
+        private static Method statistic(GraphStatisticsHandler stats, String name)
+        {
+            try {
+                Method m = stats.getClass().getMethod(name, new Class<?>[]{ Node.class }) ;
+                if ( m.getReturnType() != Long.TYPE )
+                    return null ;
+                return m ;
+            } catch (NoSuchMethodException ex) { return null ; }
+            catch (SecurityException ex)       { return null ; }
+        }
+        
+        /** Call a per-predicate statistic; -1 (no estimate) if the call fails. */ 
+        private long distinct(Method statistic, Node p)
+        {
+            try {
+                return ((Long)statistic.invoke(stats, new Object[]{ p })).longValue() ;
+            } catch (Exception ex) { return -1 ; }
+        }
     }
 }
 
@@ -163,6 +163,36 @@ class VarFinder
                 opLeftJoin.getExprs().varsMentioned(filterMentions);
         }
 
+        // Conditional and sequence only appear after optimization; they are
+        // seen when choosing the keys of a hash join.
+        @Override
+        public void visit(OpConditional opCond)
+        {
+            VarUsageVisitor leftUsage = VarUsageVisitor.apply(opCond.getLeft()) ;
+            VarUsageVisitor rightUsage = VarUsageVisitor.apply(opCond.getRight()) ;
+
+            defines.addAll(leftUsage.defines) ;
+            optDefines.addAll(leftUsage.optDefines) ;
+            filterMentions.addAll(leftUsage.filterMentions) ;
+
+            optDefines.addAll(rightUsage.defines) ;     // Asymmetric.
+            optDefines.addAll(rightUsage.optDefines) ;
+            filterMentions.addAll(rightUsage.filterMentions) ;
+            optDefines.removeAll(leftUsage.defines) ;
+        }
+
+        @Override
+        public void visit(OpSequence opSequence)
+        {
+            for ( Op op : opSequence.getElements() )
+            {
+                VarUsageVisitor usage = VarUsageVisitor.apply(op) ;
+                defines.addAll(usage.defines) ;
+                optDefines.addAll(usage.optDefines) ;
+                filterMentions.addAll(usage.filterMentions) ;
+            }
+        }
+
         @Override
         public void visit(OpUnion opUnion)
         {
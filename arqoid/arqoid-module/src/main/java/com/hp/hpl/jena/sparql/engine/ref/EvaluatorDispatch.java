@@ -250,6 +250,20 @@ public class EvaluatorDispatch implements OpVisitor
         push(table) ;
     }
 
+    public void visit(OpTopN opTop)
+    {
+        // By definition: the first N of the ordered (distinct) solutions. 
+        Table table = eval(opTop.getSubOp()) ;
+        table = evaluator.order(table, opTop.getConditions()) ;
+        if ( opTop.isDistinct() )
+        {
+            table = evaluator.project(table, opTop.getDistinctVars()) ;
+            table = evaluator.distinct(table) ;
+        }
+        table = evaluator.slice(table, 0, opTop.getLimit()) ;
+        push(table) ;
+    }
+
     public void visit(OpAssign opAssign)
     {
         Table table = eval(opAssign.getSubOp()) ;
@@ -37,7 +37,7 @@ public class AggAvg implements AggregateFactory
     private static final NodeValue noValuesToAvg = NodeValue.nvZERO ; // null 
     
     // ---- Aggregator
-    class AggAvgWorker extends AggregatorBase
+    class AggAvgWorker extends AggregatorBase implements AggregatorPrimitive
     {
         public AggAvgWorker()
         {
@@ -54,7 +54,8 @@ public class AggAvg implements AggregateFactory
             return new AccAvgVar() ;
         }
         
-        private final Expr getExpr() { return expr ; }
+        public final Expr getExpr() { return expr ; }
+        public int getKind() { return AVG ; }
         
         public boolean equalsAsExpr(Aggregator other)
         {
@@ -10,6 +10,7 @@ import com.hp.hpl.jena.graph.Node;
 
 import com.hp.hpl.jena.sparql.core.NodeConst;
 import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.expr.Expr;
 import com.hp.hpl.jena.sparql.expr.NodeValue;
 import com.hp.hpl.jena.sparql.function.FunctionEnv;
 
@@ -31,7 +32,7 @@ public class AggCount implements AggregateFactory
     }
     
     // ---- Aggregator
-    static class AggCountWorker extends AggregatorBase
+    static class AggCountWorker extends AggregatorBase implements AggregatorPrimitive
     {
         public AggCountWorker()
         {
@@ -48,6 +49,9 @@ public class AggCount implements AggregateFactory
             return new AccCount() ;
         }
         
+        public Expr getExpr() { return null ; }
+        public int getKind() { return COUNT ; }
+        
         public boolean equalsAsExpr(Aggregator other)
         {
             // Stateless as expression
@@ -31,7 +31,7 @@ public class AggCountVar implements AggregateFactory
     }
     
     // ---- Aggregator
-    private class AggCountVarWorker extends AggregatorBase
+    private class AggCountVarWorker extends AggregatorBase implements AggregatorPrimitive
     {
         public AggCountVarWorker()
         {
@@ -48,7 +48,8 @@ public class AggCountVar implements AggregateFactory
             return new AccCountVar() ;
         }
 
-        private final Expr getExpr() { return expr ; }
+        public final Expr getExpr() { return expr ; }
+        public int getKind() { return COUNT_EXPR ; }
         
         public boolean equalsAsExpr(Aggregator other)
         {
@@ -33,7 +33,7 @@ public class AggMax implements AggregateFactory
     private static final NodeValue noValuesToMin = null ; 
     
     // ---- Aggregator
-    class AggMaxWorker extends AggregatorBase
+    class AggMaxWorker extends AggregatorBase implements AggregatorPrimitive
     {
         public AggMaxWorker()
         {
@@ -50,7 +50,8 @@ public class AggMax implements AggregateFactory
             return new AccMaxVar() ;
         }
         
-        private final Expr getExpr() { return expr ; }
+        public final Expr getExpr() { return expr ; }
+        public int getKind() { return MAX ; }
         
         public boolean equalsAsExpr(Aggregator other)
         {
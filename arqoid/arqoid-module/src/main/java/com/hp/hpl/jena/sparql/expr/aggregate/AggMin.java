@@ -33,7 +33,7 @@ public class AggMin implements AggregateFactory
     private static final NodeValue noValuesToMin = null ; 
     
     // ---- Aggregator
-    class AggMinWorker extends AggregatorBase
+    class AggMinWorker extends AggregatorBase implements AggregatorPrimitive
     {
         public AggMinWorker()
         {
@@ -50,7 +50,8 @@ public class AggMin implements AggregateFactory
             return new AccMinVar() ;
         }
         
-        private final Expr getExpr() { return expr ; }
+        public final Expr getExpr() { return expr ; }
+        public int getKind() { return MIN ; }
         
         public boolean equalsAsExpr(Aggregator other)
         {
@@ -37,7 +37,7 @@ public class AggSum implements AggregateFactory
     private static final NodeValue noValuesToSum = NodeValue.nvZERO ; // null 
     
     // ---- Aggregator
-    class AggSumWorker extends AggregatorBase
+    class AggSumWorker extends AggregatorBase implements AggregatorPrimitive
     {
         public AggSumWorker()
         {
@@ -54,7 +54,8 @@ public class AggSum implements AggregateFactory
             return new AccSumVar() ;
         }
         
-        private final Expr getExpr() { return expr ; }
+        public final Expr getExpr() { return expr ; }
+        public int getKind() { return SUM ; }
         
         public boolean equalsAsExpr(Aggregator other)
         {
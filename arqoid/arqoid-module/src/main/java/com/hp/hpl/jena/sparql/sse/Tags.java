@@ -71,6 +71,7 @@ public class Tags
     public static final String tagAssign        = "assign" ;
     public static final String symAssign        = ":=" ;
     public static final String tagSlice         = "slice" ;
+    public static final String tagTop           = "top" ;
     
     // Paths
     public static final String tagPath          = "path" ;
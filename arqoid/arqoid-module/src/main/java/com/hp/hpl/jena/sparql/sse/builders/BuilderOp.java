@@ -84,6 +84,7 @@ public class BuilderOp
         addBuild(Tags.tagAssign,        buildAssign) ;
         addBuild(Tags.symAssign,        buildAssign) ;
         addBuild(Tags.tagSlice,         buildSlice) ;
+        addBuild(Tags.tagTop,           buildTop) ;
 
         addBuild(Tags.tagTable,         buildTable) ;
         addBuild(Tags.tagNull,          buildNull) ;
@@ -615,6 +616,28 @@ public class BuilderOp
         }
     } ;
 
+    final protected Build buildTop = new Build()
+    {
+        // (top (N conditions...) [(distinct vars)] sub)
+        public Op make(ItemList list)
+        {
+            BuilderLib.checkLength(3, 4, list, "top") ;
+            ItemList details = list.get(1).getList() ;
+            BuilderLib.checkLengthAtLeast(1, details, "top") ;
+            long limit = BuilderNode.buildInt(details, 0, -1) ;
+            if ( limit < 0 )
+                BuilderLib.broken(list, "top: bad limit") ;
+            List<SortCondition> x = new ArrayList<SortCondition>() ;
+            for ( int i = 1 ; i < details.size() ; i++ )
+                x.add(scBuilder(details.get(i))) ;
+            List<Var> vars = null ;
+            if ( list.size() == 4 )
+                vars = BuilderNode.buildVars(list.get(2).getList()) ;
+            Op sub = build(list, list.size()-1) ;
+            return new OpTopN(sub, limit, x, vars) ;
+        }
+    } ;
+
     final protected Build buildNull = new Build()
     {
         public Op make(ItemList list)
@@ -482,6 +482,29 @@ public class WriterOp
             finish(opSlice) ;
         }
 
+        public void visit(OpTopN opTop)
+        { 
+            start(opTop, NoNL) ;
+            
+            // Write the limit and the conditions
+            start() ;
+            out.print(Long.toString(opTop.getLimit())) ;
+            for ( SortCondition sc : opTop.getConditions() )
+            {
+                out.print(" ") ;
+                formatSortCondition(sc) ;
+            }
+            finish() ;
+            if ( opTop.isDistinct() )
+            {
+                out.print(" ") ;
+                writeVarList(opTop.getDistinctVars()) ;
+            }
+            out.newline();
+            printOp(opTop.getSubOp()) ;
+            finish(opTop) ;
+        }
+
         private void writeIntOrDefault(long value)
         {
             String x = "_" ;
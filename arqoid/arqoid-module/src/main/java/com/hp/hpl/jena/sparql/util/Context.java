@@ -108,6 +108,19 @@ public class Context
         return x.toString() ;
     }
 
+    // -- as number
+
+    /** Get the value as a long (the value may be a Number or a string of one) - supply a default value */
+    public long getLong(Symbol property, long defaultValue)
+    {
+        Object x = context.get(property) ;
+        if ( x == null )
+            return defaultValue ;
+        if ( x instanceof Number )
+            return ((Number)x).longValue() ;
+        return Long.parseLong(x.toString().trim()) ;
+    }
+
     public void setAll(Context other)
     {
         if ( other != null )
@@ -0,0 +1,183 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package jena.bench;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.sparql.algebra.op.OpJoin;
+import com.hp.hpl.jena.sparql.algebra.op.OpLeftJoin;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutor;
+import com.hp.hpl.jena.sparql.engine.main.OpExecutorFactory;
+import com.hp.hpl.jena.sparql.engine.main.QC;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterJoin;
+import com.hp.hpl.jena.sparql.engine.main.iterator.QueryIterLeftJoin;
+
+/**
+ * OPTIONAL-heavy query benchmark.  Builds a people graph of about the given
+ * number of triples (default one million) and runs queries whose OPTIONALs
+ * cannot be done by substitution, so they go through the materializing
+ * (left) join.  Reports the time with the hash joins the engine now chooses
+ * and, for the smaller sizes, with the old nested-loop joins; the nested-loop
+ * run is skipped once it takes longer than the time limit.
+ *
+ * <pre>java jena.bench.HashJoinBench [triples [nestedLoopSecondsLimit]]</pre>
+ */
+public class HashJoinBench
+{
+    private static final String NS = "http://example.org/bench/" ;
+
+    private static final String PREFIX = "PREFIX : <"+NS+">\n" ;
+
+    private static final String[] QUERIES = {
+        // An optional variable (?e) of the left is optional in a nested OPTIONAL.
+        "SELECT * { ?s :name ?n OPTIONAL { ?s :email ?e } OPTIONAL { ?s :knows ?k OPTIONAL { ?k :email ?e } } }",
+        // A variable of the left (?n) is optional in the right.
+        "SELECT * { ?s :name ?n OPTIONAL { ?s :knows ?k OPTIONAL { ?k :name ?n } } }",
+        // Several OPTIONALs off one subject, one of them non-linear.
+        "SELECT * { ?s :name ?n OPTIONAL { ?s :email ?e } OPTIONAL { ?s :phone ?p } "+
+                   "OPTIONAL { ?s :knows ?k OPTIONAL { ?k :phone ?p } } }",
+    } ;
+
+    public static void main(String[] args)
+    {
+        int triples = args.length > 0 ? Integer.parseInt(args[0]) : 1000000 ;
+        double limit = args.length > 1 ? Double.parseDouble(args[1]) : 20 ;
+
+        boolean nestedLoop = true ;
+        System.out.printf("%-10s %-6s %10s %12s %12s%n", "triples", "query", "rows", "hash", "nested-loop") ;
+        for ( int size = Math.min(10000, triples) ; ; size = Math.min(size*10, triples) )
+        {
+            Model model = build(size) ;
+            for ( int q = 0 ; q < QUERIES.length ; q++ )
+            {
+                Query query = QueryFactory.create(PREFIX+QUERIES[q]) ;
+                long start = System.nanoTime() ;
+                long rows = run(query, model, false) ;
+                double hash = (System.nanoTime() - start) / 1e9 ;
+                String nested = "-" ;
+                if ( nestedLoop )
+                {
+                    start = System.nanoTime() ;
+                    long rows2 = run(query, model, true) ;
+                    double t = (System.nanoTime() - start) / 1e9 ;
+                    if ( rows2 != rows )
+                        throw new IllegalStateException("Row counts differ: "+rows+" / "+rows2) ;
+                    nested = String.format("%10.3fs", t) ;
+                    if ( t > limit )
+                        nestedLoop = false ;
+                }
+                System.out.printf("%-10d %-6s %10d %10.3fs %12s%n", model.size(), "Q"+(q+1), rows, hash, nested) ;
+            }
+            if ( size == triples )
+                break ;
+        }
+    }
+
+    private static long run(Query query, Model model, boolean nestedLoop)
+    {
+        QueryExecution qExec = QueryExecutionFactory.create(query, model) ;
+        if ( nestedLoop )
+            QC.setFactory(qExec.getContext(), NestedLoopExecutor.factory) ;
+        try {
+            ResultSet rs = qExec.execSelect() ;
+            long n = 0 ;
+            for ( ; rs.hasNext() ; rs.nextBinding() )
+                n++ ;
+            return n ;
+        } finally { qExec.close() ; }
+    }
+
+    /** Name and age for each person, then email for a half, phone for a
+     *  third and knows for three quarters: about 3.6 triples a person. */
+    private static Model build(int triples)
+    {
+        Model model = ModelFactory.createDefaultModel() ;
+        Property name = model.createProperty(NS, "name") ;
+        Property age = model.createProperty(NS, "age") ;
+        Property email = model.createProperty(NS, "email") ;
+        Property phone = model.createProperty(NS, "phone") ;
+        Property knows = model.createProperty(NS, "knows") ;
+        int people = Math.max(1, (int)(triples / 3.58)) ;
+        for ( int i = 0 ; i < people ; i++ )
+        {
+            Resource r = model.createResource(NS+"p"+i) ;
+            model.add(r, name, "Person "+i) ;
+            model.addLiteral(r, age, (long)(i % 90)) ;
+            if ( i % 2 == 0 )
+                model.add(r, email, "p"+i+"@example.org") ;
+            if ( i % 3 == 0 )
+                model.add(r, phone, "+44 "+i) ;
+            if ( i % 4 != 3 )
+                model.add(r, knows, model.createResource(NS+"p"+((i*7919+13) % people))) ;
+        }
+        return model ;
+    }
+
+    /** The engine as it was: the right side is materialized and scanned for
+     *  every left binding. */
+    static class NestedLoopExecutor extends OpExecutor
+    {
+        static final OpExecutorFactory factory = new OpExecutorFactory() {
+            public OpExecutor create(ExecutionContext execCxt)
+            { return new NestedLoopExecutor(execCxt) ; }
+        } ;
+
+        NestedLoopExecutor(ExecutionContext execCxt) { super(execCxt) ; }
+
+        @Override
+        protected QueryIterator execute(OpJoin opJoin, QueryIterator input)
+        {
+            QueryIterator left = executeOp(opJoin.getLeft(), input) ;
+            QueryIterator right = executeOp(opJoin.getRight(), root()) ;
+            return new QueryIterJoin(left, right, execCxt) ;
+        }
+
+        @Override
+        protected QueryIterator execute(OpLeftJoin opLeftJoin, QueryIterator input)
+        {
+            QueryIterator left = executeOp(opLeftJoin.getLeft(), input) ;
+            QueryIterator right = executeOp(opLeftJoin.getRight(), root()) ;
+            return new QueryIterLeftJoin(left, right, opLeftJoin.getExprs(), execCxt) ;
+        }
+    }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
@@ -0,0 +1,142 @@
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ * [See end of file]
+ */
+
+package com.hp.hpl.jena.sparql.engine.iterator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingComparator;
+import com.hp.hpl.jena.sparql.engine.binding.BindingKey;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.engine.binding.BindingProject;
+
+public class TestQueryIterTopN
+{
+    static Var a = Var.alloc("a") ;
+    static Var b = Var.alloc("b") ;
+    static Var c = Var.alloc("c") ;
+    
+    // Rows where the sort key and the distinct variables are not always bound,
+    // so many rows compare equal without being duplicates.
+    private static List<Binding> rows(int size, long seed)
+    {
+        Random random = new Random(seed) ;
+        List<Binding> rows = new ArrayList<Binding>() ;
+        for ( int i = 0 ; i < size ; i++ )
+        {
+            Binding binding = new BindingMap() ;
+            if ( random.nextInt(3) != 0 )
+                binding.add(a, Node.createURI("http://example/a"+random.nextInt(40))) ;
+            if ( random.nextInt(2) == 0 )
+                binding.add(b, Node.createLiteral("b"+random.nextInt(5))) ;
+            if ( random.nextInt(4) != 0 )
+                binding.add(c, Node.createLiteral("c"+random.nextInt(10))) ;
+            rows.add(binding) ;
+        }
+        return rows ;
+    }
+    
+    // The first N of (distinct (project vars (order ...))), by a stable sort. 
+    private static List<Binding> expected(List<Binding> rows, final BindingComparator comparator, List<Var> vars, int N)
+    {
+        List<Binding> sorted = new ArrayList<Binding>(rows) ;
+        Collections.sort(sorted, new Comparator<Binding>() {
+            public int compare(Binding b1, Binding b2)
+            { return comparator.compareConditions(b1, b2) ; }
+        }) ;
+        Set<BindingKey> seen = new HashSet<BindingKey>() ;
+        List<Binding> results = new ArrayList<Binding>() ;
+        for ( Binding binding : sorted )
+        {
+            if ( results.size() == N )
+                break ;
+            if ( seen.add(new BindingKey(new BindingProject(vars, binding))) )
+                results.add(binding) ;
+        }
+        return results ;
+    }
+    
+    private static List<Binding> topN(List<Binding> rows, List<SortCondition> conditions, List<Var> vars, int N)
+    {
+        QueryIterator qIter = new QueryIterTopN(new QueryIterPlainWrapper(rows.iterator()), conditions, N, vars, null) ;
+        List<Binding> results = new ArrayList<Binding>() ;
+        for ( ; qIter.hasNext() ; )
+            results.add(qIter.nextBinding()) ;
+        qIter.close() ;
+        return results ;
+    }
+    
+    private static void test(int size, long seed, List<Var> vars, int N)
+    {
+        List<SortCondition> conditions = new ArrayList<SortCondition>() ;
+        conditions.add(new SortCondition(b, Query.ORDER_ASCENDING)) ;
+        List<Binding> rows = rows(size, seed) ;
+        List<Binding> expected = expected(rows, new BindingComparator(conditions), vars, N) ;
+        List<Binding> actual = topN(rows, conditions, vars, N) ;
+        assertEquals(expected.size(), actual.size()) ;
+        // The same bindings, not just equal ones : the first in sort order is kept. 
+        for ( int i = 0 ; i < expected.size() ; i++ )
+            assertEquals(System.identityHashCode(expected.get(i)), System.identityHashCode(actual.get(i))) ;
+    }
+    
+    private static List<Var> vars(Var... vars)
+    {
+        List<Var> x = new ArrayList<Var>() ;
+        for ( Var v : vars )
+            x.add(v) ;
+        return x ;
+    }
+    
+    @Test public void topNDistinct_1()  { test(500, 1, vars(a, c), 60) ; }
+    @Test public void topNDistinct_2()  { test(500, 2, vars(a), 25) ; }
+    @Test public void topNDistinct_3()  { test(2000, 3, vars(a, b, c), 100) ; }
+    @Test public void topNDistinct_4()  { test(50, 4, vars(a, c), 1000) ; }
+    @Test public void topNDistinct_5()  { test(3000, 5, vars(c), 5) ; }
+    @Test public void topNDistinct_6()  { test(0, 6, vars(a), 10) ; }
+}
+
+/*
+ * (c) Copyright 2009 Hewlett-Packard Development Company, LP
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
\ No newline at end of file